@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.benchmarks;
+
+import org.apache.ratis.util.PureJavaCrc32C;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Compare {@link PureJavaCrc32C}, which is used by the raft log, with the JDK checksums.
+ * The JDK CRC32C is only available in Java 9 or above;
+ * its benchmark fails when running with Java 8.
+ */
+@State(Scope.Thread)
+public class ChecksumBenchmark {
+  @Param({"64", "4096", "65536"})
+  private int size;
+
+  private byte[] data;
+  private final Checksum pureJavaCrc32C = new PureJavaCrc32C();
+  private final Checksum jdkCrc32 = new CRC32();
+  private Checksum jdkCrc32C;
+
+  @Setup
+  public void setup() {
+    data = new byte[size];
+    ThreadLocalRandom.current().nextBytes(data);
+    try {
+      jdkCrc32C = (Checksum) Class.forName("java.util.zip.CRC32C").getConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      jdkCrc32C = null;
+    }
+  }
+
+  private long checksum(Checksum checksum) {
+    checksum.reset();
+    checksum.update(data, 0, data.length);
+    return checksum.getValue();
+  }
+
+  @Benchmark
+  public long pureJavaCrc32C() {
+    return checksum(pureJavaCrc32C);
+  }
+
+  @Benchmark
+  public long jdkCrc32() {
+    return checksum(jdkCrc32);
+  }
+
+  @Benchmark
+  public long jdkCrc32C() {
+    if (jdkCrc32C == null) {
+      throw new UnsupportedOperationException("java.util.zip.CRC32C requires Java 9 or above");
+    }
+    return checksum(jdkCrc32C);
+  }
+}
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.benchmarks;
+
+import org.apache.ratis.client.impl.ClientProtoUtils;
+import org.apache.ratis.proto.RaftProtos.RaftClientReplyProto;
+import org.apache.ratis.proto.RaftProtos.RaftClientRequestProto;
+import org.apache.ratis.protocol.ClientId;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftClientRequest;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.ProtoUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Benchmark the conversions between the client requests/replies and their protos. */
+@State(Scope.Thread)
+public class ClientProtoUtilsBenchmark {
+  @Param({"16", "4096"})
+  private int messageSize;
+
+  private RaftClientRequest request;
+  private RaftClientRequestProto requestProto;
+  private RaftClientReply reply;
+  private RaftClientReplyProto replyProto;
+
+  @Setup
+  public void setup() {
+    final byte[] bytes = new byte[messageSize];
+    ThreadLocalRandom.current().nextBytes(bytes);
+    final Message message = Message.valueOf(ByteString.copyFrom(bytes));
+
+    request = new RaftClientRequest(ClientId.randomId(), RaftPeerId.valueOf("s0"), RaftGroupId.randomId(),
+        1, message, RaftClientRequest.writeRequestType(), ProtoUtils.toSlidingWindowEntry(1, false));
+    requestProto = ClientProtoUtils.toRaftClientRequestProto(request);
+    reply = new RaftClientReply(request, message, Collections.emptyList());
+    replyProto = ClientProtoUtils.toRaftClientReplyProto(reply);
+  }
+
+  @Benchmark
+  public RaftClientRequestProto toRequestProto() {
+    return ClientProtoUtils.toRaftClientRequestProto(request);
+  }
+
+  @Benchmark
+  public RaftClientRequest fromRequestProto() {
+    return ClientProtoUtils.toRaftClientRequest(requestProto);
+  }
+
+  @Benchmark
+  public RaftClientReplyProto toReplyProto() {
+    return ClientProtoUtils.toRaftClientReplyProto(reply);
+  }
+
+  @Benchmark
+  public RaftClientReply fromReplyProto() {
+    return ClientProtoUtils.toRaftClientReply(replyProto);
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.benchmarks;
+
+import org.apache.ratis.RaftConfigKeys;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.grpc.GrpcConfigKeys;
+import org.apache.ratis.netty.NettyConfigKeys;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftGroup;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.protocol.RaftPeer;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.rpc.SupportedRpcType;
+import org.apache.ratis.server.RaftServer;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.statemachine.impl.BaseStateMachine;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.FileUtils;
+import org.apache.ratis.util.NetUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the write latency, including the p50 and the p99 percentiles,
+ * of a single-server group over the Netty and the gRPC rpc, with or without the epoll transport.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RpcLatencyBenchmark {
+  @Param({"NETTY", "GRPC"})
+  private SupportedRpcType rpc;
+
+  @Param({"false", "true"})
+  private boolean epoll;
+
+  @Param({"128"})
+  private int messageSize;
+
+  private File storageDir;
+  private RaftServer server;
+  private RaftClient client;
+  private Message message;
+
+  @Setup
+  public void setup() throws IOException {
+    final RaftProperties properties = new RaftProperties();
+    RaftConfigKeys.Rpc.setType(properties, rpc);
+    final InetSocketAddress address = NetUtils.createLocalServerAddress();
+    if (rpc == SupportedRpcType.NETTY) {
+      NettyConfigKeys.Server.setPort(properties, address.getPort());
+      NettyConfigKeys.setUseEpoll(properties, epoll);
+    } else {
+      GrpcConfigKeys.Server.setPort(properties, address.getPort());
+      GrpcConfigKeys.Server.setUseEpoll(properties, epoll);
+    }
+    storageDir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+    RaftServerConfigKeys.setStorageDirs(properties, Collections.singletonList(storageDir));
+
+    final RaftPeer peer = new RaftPeer(RaftPeerId.valueOf("s0"), address);
+    final RaftGroup group = RaftGroup.valueOf(RaftGroupId.randomId(), peer);
+    server = RaftServer.newBuilder()
+        .setServerId(peer.getId())
+        .setGroup(group)
+        .setProperties(properties)
+        .setStateMachine(new BaseStateMachine())
+        .build();
+    server.start();
+
+    client = RaftClient.newBuilder()
+        .setRaftGroup(group)
+        .setLeaderId(peer.getId())
+        .setProperties(properties)
+        .build();
+    message = Message.valueOf(ByteString.copyFrom(new byte[messageSize]));
+    // wait for the leader election and warm up the connection
+    if (!client.send(message).isSuccess()) {
+      throw new IllegalStateException("Failed to send the first message to " + server.getId());
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    client.close();
+    server.close();
+    FileUtils.deleteFully(storageDir);
+  }
+
+  @Benchmark
+  public RaftClientReply send() throws IOException {
+    return client.send(message);
+  }
+}
@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.benchmarks;
+
+import org.apache.ratis.util.SlidingWindow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark the request maps of {@link SlidingWindow.Client} and {@link SlidingWindow.Server}:
+ * each invocation passes a window of requests through a new sliding window and then replies all of them.
+ */
+@State(Scope.Thread)
+public class SlidingWindowBenchmark {
+  static final int WINDOW = 256;
+
+  static class ClientRequest implements SlidingWindow.ClientSideRequest<String> {
+    private final long seqNum;
+    private String reply;
+
+    ClientRequest(long seqNum) {
+      this.seqNum = seqNum;
+    }
+
+    @Override
+    public void setFirstRequest() {
+    }
+
+    @Override
+    public long getSeqNum() {
+      return seqNum;
+    }
+
+    @Override
+    public void setReply(String reply) {
+      this.reply = reply;
+    }
+
+    @Override
+    public boolean hasReply() {
+      return reply != null;
+    }
+
+    @Override
+    public void fail(Throwable e) {
+      throw new IllegalStateException("Unexpected failure", e);
+    }
+  }
+
+  static class ServerRequest implements SlidingWindow.ServerSideRequest<String> {
+    static final ServerRequest END = new ServerRequest(Long.MAX_VALUE);
+
+    private final long seqNum;
+    private String reply;
+
+    ServerRequest(long seqNum) {
+      this.seqNum = seqNum;
+    }
+
+    @Override
+    public boolean isFirstRequest() {
+      return seqNum == 1;
+    }
+
+    @Override
+    public long getSeqNum() {
+      return seqNum;
+    }
+
+    @Override
+    public void setReply(String reply) {
+      this.reply = reply;
+    }
+
+    @Override
+    public boolean hasReply() {
+      return reply != null;
+    }
+
+    @Override
+    public void fail(Throwable e) {
+      throw new IllegalStateException("Unexpected failure", e);
+    }
+  }
+
+  /** Reply in order or in the reverse order. */
+  @Param({"true", "false"})
+  private boolean inOrder;
+
+  @Benchmark
+  @OperationsPerInvocation(WINDOW)
+  public SlidingWindow.Client<ClientRequest, String> client() {
+    final SlidingWindow.Client<ClientRequest, String> client = new SlidingWindow.Client<>("benchmark");
+    for (int i = 1; i <= WINDOW; i++) {
+      client.submitNewRequest(ClientRequest::new, r -> {});
+    }
+    // the first request must be replied first; otherwise, the other requests are delayed
+    client.receiveReply(1, "reply", r -> {});
+    for (int i = 2; i <= WINDOW; i++) {
+      client.receiveReply(inOrder? i: WINDOW + 2 - i, "reply", r -> {});
+    }
+    return client;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(WINDOW)
+  public SlidingWindow.Server<ServerRequest, String> server() {
+    final SlidingWindow.Server<ServerRequest, String> server = new SlidingWindow.Server<>(
+        "benchmark", ServerRequest.END);
+    for (int i = 1; i <= WINDOW; i++) {
+      server.receivedRequest(new ServerRequest(i), r -> {});
+    }
+    for (int i = 1; i <= WINDOW; i++) {
+      server.receiveReply(inOrder? i: WINDOW + 1 - i, "reply", r -> {});
+    }
+    return server;
+  }
+}
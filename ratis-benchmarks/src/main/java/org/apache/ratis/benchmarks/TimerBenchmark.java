@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.benchmarks;
+
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.apache.ratis.metrics.MetricRegistryInfo;
+import org.apache.ratis.metrics.impl.MetricRegistryFactoryImpl;
+import org.apache.ratis.metrics.impl.MetricRegistryFactoryImpl.ReservoirType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the overhead of the timers with the {@link ReservoirType}s.
+ * The timer is shared by the benchmark threads, as the timers of a server are shared by its threads.
+ */
+@State(Scope.Benchmark)
+public class TimerBenchmark {
+  @Param({"EXPONENTIALLY_DECAYING", "HDR_HISTOGRAM"})
+  private ReservoirType reservoirType;
+
+  private Timer timer;
+
+  @Setup
+  public void setup() {
+    final MetricRegistryInfo info = new MetricRegistryInfo("benchmark", "ratis", "timer", "timer benchmark");
+    timer = new MetricRegistryFactoryImpl(reservoirType).create(info).timer("timer");
+    for (int i = 0; i < 100_000; i++) {
+      timer.update(nextValue(), TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private static long nextValue() {
+    // between 10us and 10ms
+    return ThreadLocalRandom.current().nextLong(10_000L, 10_000_000L);
+  }
+
+  @Benchmark
+  public void update() {
+    timer.update(nextValue(), TimeUnit.NANOSECONDS);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void updateContended() {
+    timer.update(nextValue(), TimeUnit.NANOSECONDS);
+  }
+
+  @Benchmark
+  public long timeContext() {
+    try (Timer.Context ignored = timer.time()) {
+      return System.nanoTime();
+    }
+  }
+
+  /** The cost of a reporter to get the percentiles. */
+  @Benchmark
+  public double snapshot() {
+    final Snapshot snapshot = timer.getSnapshot();
+    return snapshot.get99thPercentile();
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.examples.filestore;
+
+import org.apache.ratis.proto.ExamplesProtos.ReadReplyProto;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The sequential and random reads and the sequential writes of large files in {@link FileStore},
+ * without the raft log and the rpc.
+ * A write is a chunk appended to the end of a file, followed by the commit;
+ * the writes are sequential since {@link FileStore} does not support writing in the middle of a file.
+ */
+@State(Scope.Thread)
+public class FileStoreBenchmark {
+  private static final String READ_FILE = "read";
+
+  @Param({"256"})
+  private int fileSizeMb;
+
+  @Param({"65536", "1048576"})
+  private int chunkSize;
+
+  private Path dir;
+  private FileStore store;
+  private long fileSize;
+  private ByteString chunk;
+
+  private long index = 0;
+  private int writeFileCount = 0;
+  private String writeFile;
+  private long writeOffset;
+  private long readOffset = 0;
+
+  @Setup
+  public void setup() throws IOException {
+    dir = Files.createTempDirectory(getClass().getSimpleName());
+    store = new FileStore(() -> RaftPeerId.valueOf("s0"), dir);
+    FileUtils.createDirectories(store.getRoot());
+    fileSize = fileSizeMb * (1L << 20);
+    final byte[] bytes = new byte[chunkSize];
+    ThreadLocalRandom.current().nextBytes(bytes);
+    chunk = ByteString.copyFrom(bytes);
+
+    for (long offset = 0; offset < fileSize; offset += chunkSize) {
+      write(READ_FILE, offset, offset + chunkSize >= fileSize);
+    }
+    writeFile = nextWriteFile();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    store.close();
+    FileUtils.deleteFully(dir);
+  }
+
+  private long write(String path, long offset, boolean close) {
+    final long i = ++index;
+    return store.write(i, path, close, offset, chunk)
+        .thenCompose(n -> store.submitCommit(i, path, close, offset, n))
+        .join().getLength();
+  }
+
+  private String nextWriteFile() {
+    writeOffset = 0;
+    return "write" + writeFileCount++;
+  }
+
+  private ByteString read(long offset) {
+    final ReadReplyProto reply = store.read(READ_FILE, offset, chunkSize).join();
+    return reply.getData();
+  }
+
+  /** Append a chunk; when the file is full, delete it and start a new file. */
+  @Benchmark
+  public long sequentialWrite() {
+    final boolean close = writeOffset + chunkSize >= fileSize;
+    final long n = write(writeFile, writeOffset, close);
+    writeOffset += n;
+    if (close) {
+      store.delete(++index, writeFile).join();
+      writeFile = nextWriteFile();
+    }
+    return n;
+  }
+
+  @Benchmark
+  public ByteString sequentialRead() {
+    final ByteString data = read(readOffset);
+    readOffset += chunkSize;
+    if (readOffset + chunkSize > fileSize) {
+      readOffset = 0;
+    }
+    return data;
+  }
+
+  @Benchmark
+  public ByteString randomRead() {
+    final long chunks = fileSize / chunkSize;
+    return read(ThreadLocalRandom.current().nextLong(chunks) * chunkSize);
+  }
+}
@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.rmap;
+
+import org.apache.ratis.proto.rmap.RMapProtos.RMapInfo;
+import org.apache.ratis.proto.rmap.RMapProtos.Scan;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The throughput of the puts and the scans of {@link RMap}, the in-memory map of {@link RMapStateMachine}.
+ * The puts are benchmarked with a single thread since they are applied by the state machine updater;
+ * use -t to benchmark concurrent scans.
+ */
+@State(Scope.Benchmark)
+public class RMapBenchmark {
+  @Param({"100000", "1000000"})
+  private int numEntries;
+
+  @Param({"100", "1000"})
+  private int scanSize;
+
+  private ByteString[] keys;
+  private ByteString value;
+  private RMap map;
+  private long index;
+
+  private static ByteString key(int i) {
+    return ByteString.copyFromUtf8(String.format("key%010d", i));
+  }
+
+  @Setup
+  public void setup() {
+    keys = new ByteString[numEntries];
+    final byte[] v = new byte[100];
+    ThreadLocalRandom.current().nextBytes(v);
+    value = ByteString.copyFrom(v);
+
+    map = new RMap(RMapInfo.newBuilder().setRmapId(1).setName("benchmark").build());
+    for (int i = 0; i < numEntries; i++) {
+      keys[i] = key(i);
+      map.put(keys[i], value, ++index, -1);
+    }
+  }
+
+  private ByteString randomKey() {
+    return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+  }
+
+  @Benchmark
+  public void put() {
+    map.put(randomKey(), value, ++index, -1);
+  }
+
+  /** A put while a snapshot is in progress keeps the previous version. */
+  @Benchmark
+  public void putDuringSnapshot() {
+    map.put(randomKey(), value, ++index, 0);
+  }
+
+  @Benchmark
+  public ByteString get() {
+    return map.get(randomKey());
+  }
+
+  @Benchmark
+  public boolean scan(Blackhole blackhole) {
+    final Scan scan = Scan.newBuilder().setStartKey(randomKey()).setStartKeyInclusive(true).build();
+    return map.scan(scan, scanSize, blackhole::consume);
+  }
+}
@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark the commit index computation of the leader,
+ * i.e. sorting the match indices and then computing {@link LeaderState.MinMajorityMax}.
+ */
+@State(Scope.Thread)
+public class CommitIndexBenchmark {
+  @Param({"3", "5", "7"})
+  private int numPeers;
+
+  private long[] indices;
+  private long[] oldIndices;
+
+  @Setup
+  public void setup() {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    indices = random.longs(numPeers, 0, 1 << 20).toArray();
+    oldIndices = random.longs(numPeers, 0, 1 << 20).toArray();
+  }
+
+  private static LeaderState.MinMajorityMax valueOf(long[] indices) {
+    final long[] sorted = indices.clone();
+    Arrays.sort(sorted);
+    return LeaderState.MinMajorityMax.valueOf(sorted);
+  }
+
+  // return Object since the JMH generated classes cannot access the package private class
+  @Benchmark
+  public Object stable() {
+    return valueOf(indices);
+  }
+
+  /** The configuration is in transitional state. */
+  @Benchmark
+  public Object transitional() {
+    return valueOf(indices).combine(valueOf(oldIndices));
+  }
+}
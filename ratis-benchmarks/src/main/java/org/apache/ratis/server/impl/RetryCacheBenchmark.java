@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.protocol.ClientId;
+import org.apache.ratis.util.TimeDuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark {@link RetryCache#queryCache(ClientId, long)},
+ * which is invoked for each write request received by the server.
+ */
+@State(Scope.Benchmark)
+public class RetryCacheBenchmark {
+  /** Close (i.e. invalidate) the cache periodically so that the miss benchmark does not run out of memory. */
+  private static final long CLOSE_PERIOD = 1 << 16;
+
+  @Param({"1", "16"})
+  private int numClients;
+
+  private RetryCache cache;
+  private ClientId[] clientIds;
+  private final AtomicLong callIds = new AtomicLong();
+
+  @Setup(Level.Trial)
+  public void setup() {
+    cache = new RetryCache(TimeDuration.valueOf(60, TimeUnit.SECONDS));
+    clientIds = new ClientId[numClients];
+    for (int i = 0; i < clientIds.length; i++) {
+      clientIds[i] = ClientId.randomId();
+    }
+    // prepopulate the entries for the hit benchmark
+    for (ClientId clientId : clientIds) {
+      for (long callId = 0; callId < CLOSE_PERIOD; callId++) {
+        cache.queryCache(clientId, callId);
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    cache.close();
+  }
+
+  private ClientId getClientId(long callId) {
+    return clientIds[(int) (callId % clientIds.length)];
+  }
+
+  /** A retry of an existing request. */
+  @Benchmark
+  @Threads(4)
+  public RetryCache.CacheEntry hit() {
+    final long n = callIds.getAndIncrement();
+    return cache.queryCache(getClientId(n), (n / clientIds.length) % CLOSE_PERIOD).getEntry();
+  }
+
+  /** A new request. */
+  @Benchmark
+  @Threads(4)
+  public RetryCache.CacheEntry miss() {
+    final long n = callIds.getAndIncrement();
+    if (n % CLOSE_PERIOD == 0) {
+      cache.close();
+    }
+    return cache.queryCache(getClientId(n), CLOSE_PERIOD + n).getEntry();
+  }
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.raftlog.segmented;
+
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.proto.RaftProtos.StateMachineLogEntryProto;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark {@link SegmentedRaftLogOutputStream#write(LogEntryProto)}
+ * and {@link SegmentedRaftLogReader#readEntry()}, i.e. encoding with checksum and decoding with verification.
+ * Each invocation writes or reads a segment of {@link #NUM_ENTRIES} entries.
+ */
+@State(Scope.Thread)
+public class SegmentedRaftLogBenchmark {
+  static final int NUM_ENTRIES = 1024;
+
+  @Param({"128", "4096"})
+  private int entrySize;
+
+  private final LogEntryProto[] entries = new LogEntryProto[NUM_ENTRIES];
+  private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(64 << 10);
+  private File dir;
+  private File writeFile;
+  private File readFile;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    final byte[] data = new byte[entrySize];
+    ThreadLocalRandom.current().nextBytes(data);
+    final StateMachineLogEntryProto smLog = StateMachineLogEntryProto.newBuilder()
+        .setLogData(ByteString.copyFrom(data))
+        .build();
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = LogEntryProto.newBuilder()
+          .setTerm(1)
+          .setIndex(i)
+          .setStateMachineLogEntry(smLog)
+          .build();
+    }
+
+    dir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+    writeFile = new File(dir, "write");
+    readFile = new File(dir, "read");
+    writeSegment(readFile);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    FileUtils.deleteFully(dir);
+  }
+
+  private void writeSegment(File file) throws IOException {
+    writeBuffer.clear();
+    try (SegmentedRaftLogOutputStream out = new SegmentedRaftLogOutputStream(
+        file, false, Long.MAX_VALUE, 4 << 20, writeBuffer)) {
+      for (LogEntryProto e : entries) {
+        out.write(e);
+      }
+      out.flush();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ENTRIES)
+  public void write() throws IOException {
+    writeSegment(writeFile);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ENTRIES)
+  public void read(Blackhole blackhole) throws IOException {
+    try (SegmentedRaftLogReader in = new SegmentedRaftLogReader(readFile, null)) {
+      if (!in.verifyHeader()) {
+        throw new IllegalStateException("Failed to verify the header of " + readFile);
+      }
+      for (LogEntryProto e; (e = in.readEntry()) != null; ) {
+        blackhole.consume(e);
+      }
+    }
+  }
+}
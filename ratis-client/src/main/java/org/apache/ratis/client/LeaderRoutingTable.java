@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.client;
+
+import org.apache.ratis.proto.RaftProtos.CommitInfoProto;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.util.JavaUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * The known leaders of the raft groups,
+ * which are shared by the clients using the same {@link RaftClientRpc}
+ * so that a new client can send its first request to the leader directly.
+ * By default, a single table is shared by all the clients in the process.
+ *
+ * The table is updated by the replies received by the clients.
+ * Since a reply does not carry the leader term,
+ * the commit index of the replying server is used to order the updates:
+ * a server replaces the current leader only if its commit index is not smaller.
+ */
+public final class LeaderRoutingTable {
+  public static final Logger LOG = LoggerFactory.getLogger(LeaderRoutingTable.class);
+
+  private static final Supplier<LeaderRoutingTable> INSTANCE = JavaUtils.memoize(LeaderRoutingTable::new);
+
+  /** @return the table shared by all the clients in the process. */
+  public static LeaderRoutingTable getInstance() {
+    return INSTANCE.get();
+  }
+
+  private static final class Route {
+    private final RaftPeerId leaderId;
+    private final long commitIndex;
+
+    private Route(RaftPeerId leaderId, long commitIndex) {
+      this.leaderId = Objects.requireNonNull(leaderId, "leaderId == null");
+      this.commitIndex = commitIndex;
+    }
+
+    @Override
+    public String toString() {
+      return leaderId + "@" + commitIndex;
+    }
+  }
+
+  private final ConcurrentMap<RaftGroupId, Route> routes = new ConcurrentHashMap<>();
+
+  /** @return the known leader of the given group, or null if it is unknown. */
+  public RaftPeerId getLeader(RaftGroupId groupId) {
+    final Route r = routes.get(groupId);
+    return r != null? r.leaderId: null;
+  }
+
+  /** Update the table with a successful reply sent by the leader. */
+  public void onLeaderReply(RaftGroupId groupId, RaftClientReply reply) {
+    final RaftPeerId leaderId = reply.getServerId();
+    final long commitIndex = reply.getCommitInfos().stream()
+        .filter(info -> leaderId.equals(RaftPeerId.valueOf(info.getServer().getId())))
+        .mapToLong(CommitInfoProto::getCommitIndex)
+        .findAny().orElse(-1L);
+    routes.compute(groupId, (id, r) -> {
+      if (r == null || commitIndex >= r.commitIndex) {
+        return new Route(leaderId, commitIndex);
+      } else if (!r.leaderId.equals(leaderId)) {
+        LOG.debug("{}: ignore the reply from {} since its commit index {} < {}", groupId, leaderId, commitIndex, r);
+      }
+      return r;
+    });
+  }
+
+  /**
+   * The given server is not the leader of the given group.
+   * If it is the leader in the table, replace it with the suggested leader, or remove it if there is no suggestion.
+   */
+  public void onNotLeader(RaftGroupId groupId, RaftPeerId server, RaftPeerId suggestedLeader) {
+    routes.compute(groupId, (id, r) -> {
+      if (r == null) {
+        return suggestedLeader != null? new Route(suggestedLeader, -1L): null;
+      } else if (r.leaderId.equals(server)) {
+        return suggestedLeader != null? new Route(suggestedLeader, r.commitIndex): null;
+      }
+      return r;
+    });
+  }
+
+  /** Set the leader of the given group as reported by the group info of a server. */
+  public void setLeader(RaftGroupId groupId, RaftPeerId leaderId) {
+    routes.compute(groupId, (id, r) -> new Route(leaderId, r != null? r.commitIndex: -1L));
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + routes;
+  }
+}
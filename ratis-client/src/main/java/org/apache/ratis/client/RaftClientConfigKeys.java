@@ -89,6 +89,48 @@ public interface RaftClientConfigKeys {
     }
   }
 
+  /**
+   * Routing the requests using the {@link LeaderRoutingTable} shared with the other clients
+   * of the same {@link RaftClientRpc}; it is disabled by default.
+   */
+  interface Routing {
+    String PREFIX = RaftClientConfigKeys.PREFIX + ".routing";
+
+    String SHARED_KEY = PREFIX + ".shared";
+    boolean SHARED_DEFAULT = false;
+    static boolean shared(RaftProperties properties) {
+      return getBoolean(properties::getBoolean, SHARED_KEY, SHARED_DEFAULT, getDefaultLog());
+    }
+    static void setShared(RaftProperties properties, boolean shared) {
+      setBoolean(properties::setBoolean, SHARED_KEY, shared);
+    }
+
+    /** The interval to refresh the leader with the group info; zero means no refresh. */
+    String REFRESH_INTERVAL_KEY = PREFIX + ".refresh.interval";
+    TimeDuration REFRESH_INTERVAL_DEFAULT = TimeDuration.ZERO;
+    static TimeDuration refreshInterval(RaftProperties properties) {
+      return getTimeDuration(properties.getTimeDuration(REFRESH_INTERVAL_DEFAULT.getUnit()),
+          REFRESH_INTERVAL_KEY, REFRESH_INTERVAL_DEFAULT, getDefaultLog(), requireNonNegativeTimeDuration());
+    }
+    static void setRefreshInterval(RaftProperties properties, TimeDuration refreshInterval) {
+      setTimeDuration(properties::setTimeDuration, REFRESH_INTERVAL_KEY, refreshInterval);
+    }
+  }
+
+  /** The per-client metrics, which are registered in the global metric registries when enabled. */
+  interface Metrics {
+    String PREFIX = RaftClientConfigKeys.PREFIX + ".metrics";
+
+    String ENABLED_KEY = PREFIX + ".enabled";
+    boolean ENABLED_DEFAULT = false;
+    static boolean enabled(RaftProperties properties) {
+      return getBoolean(properties::getBoolean, ENABLED_KEY, ENABLED_DEFAULT, getDefaultLog());
+    }
+    static void setEnabled(RaftProperties properties, boolean enabled) {
+      setBoolean(properties::setBoolean, ENABLED_KEY, enabled);
+    }
+  }
+
   static void main(String[] args) {
     printAll(RaftClientConfigKeys.class);
   }
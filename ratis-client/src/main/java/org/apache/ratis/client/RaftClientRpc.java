@@ -30,12 +30,15 @@ import java.util.concurrent.CompletableFuture;
 
 /** The client side rpc of a raft service. */
 public interface RaftClientRpc extends Closeable {
-  /** Async call to send a request. */
+  /**
+   * Async call to send a request.
+   * Cancelling the returned future releases the request in this rpc so that a late reply is discarded.
+   */
   default CompletableFuture<RaftClientReply> sendRequestAsync(RaftClientRequest request) {
     throw new UnsupportedOperationException(getClass() + " does not support this method.");
   }
 
-  /** Async call to send a request. */
+  /** The same as {@link #sendRequestAsync(RaftClientRequest)} except that the request is not ordered. */
   default CompletableFuture<RaftClientReply> sendRequestAsyncUnordered(RaftClientRequest request) {
     throw new UnsupportedOperationException(getClass() + " does not support "
         + JavaUtils.getCurrentStackTraceElement().getMethodName());
@@ -47,6 +50,11 @@ public interface RaftClientRpc extends Closeable {
   /** Add the information of the given raft servers */
   void addServers(Iterable<RaftPeer> servers);
 
+  /** @return the {@link LeaderRoutingTable} shared by the clients using this rpc. */
+  default LeaderRoutingTable getLeaderRoutingTable() {
+    return LeaderRoutingTable.getInstance();
+  }
+
   /**
    * Handle the given throwable. For example, try reconnecting.
    *
@@ -27,6 +27,7 @@ import org.apache.ratis.util.ReflectionUtils;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static org.apache.ratis.proto.RaftProtos.RaftClientReplyProto.ExceptionDetailsCase.ALREADYAPPLIEDEXCEPTION;
 import static org.apache.ratis.proto.RaftProtos.RaftClientReplyProto.ExceptionDetailsCase.ALREADYCLOSEDEXCEPTION;
 import static org.apache.ratis.proto.RaftProtos.RaftClientReplyProto.ExceptionDetailsCase.LEADERNOTREADYEXCEPTION;
 import static org.apache.ratis.proto.RaftProtos.RaftClientReplyProto.ExceptionDetailsCase.NOTLEADEREXCEPTION;
@@ -201,6 +202,14 @@ public interface ClientProtoUtils {
         b.setLeaderNotReadyException(lnreBuilder);
       }
 
+      final AlreadyAppliedException aae = reply.getAlreadyAppliedException();
+      if (aae != null) {
+        final AlreadyAppliedExceptionProto.Builder aaeBuilder = AlreadyAppliedExceptionProto.newBuilder()
+            .setCallId(aae.getCallId())
+            .setLogIndex(aae.getLogIndex());
+        b.setAlreadyAppliedException(aaeBuilder);
+      }
+
       final AlreadyClosedException ace = reply.getAlreadyClosedException();
       if (ace != null) {
         final Throwable t = ace.getCause() != null ? ace.getCause() : ace;
@@ -283,6 +292,9 @@ public interface ClientProtoUtils {
       AlreadyClosedExceptionProto aceProto = replyProto.getAlreadyClosedException();
       e = wrapAlreadyClosedException(aceProto.getExceptionClassName(),
           aceProto.getErrorMsg(), aceProto.getStacktrace());
+    } else if (replyProto.getExceptionDetailsCase() == ALREADYAPPLIEDEXCEPTION) {
+      final AlreadyAppliedExceptionProto aae = replyProto.getAlreadyAppliedException();
+      e = new AlreadyAppliedException(aae.getCallId(), aae.getLogIndex());
     } else {
       e = null;
     }
@@ -232,8 +232,11 @@ public final class OrderedAsync {
     }
     request = pending.newRequest();
     LOG.debug("{}: send* {}", client.getId(), request);
-    f = client.getClientRpc().sendRequestAsync(request);
+    f = client.sendRequestAsync(request, true);
     int attemptCount = pending.getAttemptCount();
+    if (attemptCount > 1) {
+      client.getMetrics().ifPresent(RaftClientMetrics::onRetry);
+    }
     return f.thenApply(reply -> {
       LOG.debug("{}: receive* {}", client.getId(), reply);
       final RaftException replyException = reply != null? reply.getException(): null;
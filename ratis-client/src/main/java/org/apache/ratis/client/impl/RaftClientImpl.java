@@ -18,18 +18,25 @@
 package org.apache.ratis.client.impl;
 
 import org.apache.ratis.client.ClientRetryEvent;
+import org.apache.ratis.client.LeaderRoutingTable;
 import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.client.RaftClientConfigKeys;
 import org.apache.ratis.client.RaftClientRpc;
 import org.apache.ratis.client.api.StreamApi;
+import org.apache.ratis.client.retry.AdaptiveTimeoutRetryPolicy;
 import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.proto.RaftProtos.RaftClientRequestProto.TypeCase;
+import org.apache.ratis.proto.RaftProtos.RaftPeerRole;
 import org.apache.ratis.proto.RaftProtos.ReplicationLevel;
+import org.apache.ratis.proto.RaftProtos.RoleInfoProto;
 import org.apache.ratis.proto.RaftProtos.SlidingWindowEntry;
 import org.apache.ratis.protocol.*;
 import org.apache.ratis.retry.RetryPolicy;
 import org.apache.ratis.util.CollectionUtils;
+import org.apache.ratis.util.Daemon;
 import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.Preconditions;
+import org.apache.ratis.util.TimeDuration;
 import org.apache.ratis.util.TimeoutScheduler;
 
 import java.io.IOException;
@@ -40,6 +47,9 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
@@ -80,8 +90,17 @@ final class RaftClientImpl implements RaftClient {
   private final Collection<RaftPeer> peers;
   private final RaftGroupId groupId;
   private final RetryPolicy retryPolicy;
+  /** Null if the retry policy is not adaptive. */
+  private final AdaptiveTimeoutRetryPolicy adaptiveTimeoutPolicy;
+  /** Null if the metrics are not enabled. */
+  private final RaftClientMetrics metrics;
 
   private volatile RaftPeerId leaderId;
+  /** Null if the routing table is not shared. */
+  private final LeaderRoutingTable routingTable;
+  /** Refresh the leader in the routing table; null if the refresh is disabled. */
+  private final ScheduledExecutorService leaderRefresher;
+  private volatile boolean closed = false;
 
   private final TimeoutScheduler scheduler;
 
@@ -94,16 +113,74 @@ final class RaftClientImpl implements RaftClient {
     this.clientRpc = clientRpc;
     this.peers = new ConcurrentLinkedQueue<>(group.getPeers());
     this.groupId = group.getGroupId();
-    this.leaderId = leaderId != null? leaderId
-        : !peers.isEmpty()? peers.iterator().next().getId(): null;
+    this.routingTable = properties != null && RaftClientConfigKeys.Routing.shared(properties)?
+        clientRpc.getLeaderRoutingTable(): null;
+    this.leaderId = leaderId != null? leaderId : getInitialLeader();
     Preconditions.assertTrue(retryPolicy != null, "retry policy can't be null");
     this.retryPolicy = retryPolicy;
+    this.adaptiveTimeoutPolicy = retryPolicy instanceof AdaptiveTimeoutRetryPolicy?
+        (AdaptiveTimeoutRetryPolicy) retryPolicy: null;
+    this.metrics = properties != null && RaftClientConfigKeys.Metrics.enabled(properties)?
+        RaftClientMetrics.getRaftClientMetrics(clientId): null;
 
     scheduler = TimeoutScheduler.getInstance();
     clientRpc.addServers(peers);
 
     this.orderedAsync = JavaUtils.memoize(() -> OrderedAsync.newInstance(this, properties));
     this.streamApi = JavaUtils.memoize(() -> StreamImpl.newInstance(this, properties));
+
+    final TimeDuration refreshInterval = properties == null? RaftClientConfigKeys.Routing.REFRESH_INTERVAL_DEFAULT
+        : RaftClientConfigKeys.Routing.refreshInterval(properties);
+    this.leaderRefresher = routingTable != null && refreshInterval.getDuration() > 0?
+        newLeaderRefresher(refreshInterval): null;
+  }
+
+  /** @return the leader in the routing table if it is a peer of the group; otherwise, return the first peer. */
+  private RaftPeerId getInitialLeader() {
+    final RaftPeerId known = Optional.ofNullable(routingTable).map(t -> t.getLeader(groupId)).orElse(null);
+    if (known != null && peers.stream().map(RaftPeer::getId).anyMatch(known::equals)) {
+      return known;
+    }
+    return !peers.isEmpty()? peers.iterator().next().getId(): null;
+  }
+
+  /**
+   * Refresh the leader in the routing table with the group info periodically until this client is closed.
+   * The refresh blocks on getGroupInfo, so it runs in a thread owned by this client.
+   */
+  private ScheduledExecutorService newLeaderRefresher(TimeDuration interval) {
+    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+        r -> new Daemon(r, clientId + "-leaderRefresher"));
+    final long millis = interval.toLong(TimeUnit.MILLISECONDS);
+    executor.scheduleWithFixedDelay(() -> {
+      if (closed) {
+        return;
+      }
+      try {
+        refreshLeader();
+      } catch (Throwable e) {
+        LOG.debug("{}: Failed to refresh the leader of {} from {}", clientId, groupId, leaderId, e);
+      }
+    }, millis, millis, TimeUnit.MILLISECONDS);
+    return executor;
+  }
+
+  private void refreshLeader() throws IOException {
+    final RaftPeerId server = leaderId;
+    final RoleInfoProto role = getGroupInfo(groupId, server).getRoleInfoProto();
+    final RaftPeerId newLeader;
+    if (role.getRole() == RaftPeerRole.LEADER) {
+      newLeader = server;
+    } else if (role.hasFollowerInfo() && role.getFollowerInfo().hasLeaderInfo()) {
+      newLeader = RaftPeerId.valueOf(role.getFollowerInfo().getLeaderInfo().getId().getId());
+    } else {
+      return;
+    }
+    routingTable.setLeader(groupId, newLeader);
+    if (!newLeader.equals(server) && server.equals(leaderId)) {
+      LOG.debug("{}: refresh the leader of {} from {} to {}", clientId, groupId, server, newLeader);
+      leaderId = newLeader;
+    }
   }
 
   @Override
@@ -111,6 +188,10 @@ final class RaftClientImpl implements RaftClient {
     return clientId;
   }
 
+  RaftPeerId getLeaderId() {
+    return leaderId;
+  }
+
   RetryPolicy getRetryPolicy() {
     return retryPolicy;
   }
@@ -119,6 +200,10 @@ final class RaftClientImpl implements RaftClient {
     return scheduler;
   }
 
+  Optional<RaftClientMetrics> getMetrics() {
+    return Optional.ofNullable(metrics);
+  }
+
   OrderedAsync getOrderedAsync() {
     return orderedAsync.get();
   }
@@ -140,7 +225,50 @@ final class RaftClientImpl implements RaftClient {
 
   @Override
   public CompletableFuture<RaftClientReply> sendStaleReadAsync(Message message, long minIndex, RaftPeerId server) {
-    return sendAsync(RaftClientRequest.staleReadRequestType(minIndex), message, server);
+    final RaftClientRequest.Type type = RaftClientRequest.staleReadRequestType(minIndex);
+    final CompletableFuture<RaftClientReply> primary = sendAsync(type, message, server);
+    final RaftPeerId primaryServer = server != null? server: leaderId;
+    return Optional.ofNullable(adaptiveTimeoutPolicy)
+        .flatMap(p -> p.getHedgeDelay(primaryServer))
+        .map(delay -> hedgeStaleRead(primary, delay, primaryServer, type, message))
+        .orElse(primary);
+  }
+
+  /**
+   * If there is no reply from the primary server after the given delay,
+   * send the same stale read to another server.
+   * Stale reads can be served by any server, unlike the other requests which must be served by the leader.
+   *
+   * @return a future completed with the first successful reply,
+   *         or the last failure if all the requests have failed.
+   */
+  private CompletableFuture<RaftClientReply> hedgeStaleRead(CompletableFuture<RaftClientReply> primary,
+      TimeDuration delay, RaftPeerId primaryServer, RaftClientRequest.Type type, Message message) {
+    final CompletableFuture<RaftClientReply> result = new CompletableFuture<>();
+    final AtomicInteger outstanding = new AtomicInteger(1);
+    final Consumer<CompletableFuture<RaftClientReply>> firstSuccess = f -> f.whenComplete((reply, e) -> {
+      if (e == null) {
+        result.complete(reply);
+      } else if (outstanding.decrementAndGet() == 0) {
+        result.completeExceptionally(e);
+      }
+    });
+    firstSuccess.accept(primary);
+
+    scheduler.onTimeout(delay, () -> {
+      if (result.isDone()) {
+        return;
+      }
+      final RaftPeerId other = CollectionUtils.random(primaryServer, CollectionUtils.as(peers, RaftPeer::getId));
+      if (other == null) {
+        return;
+      }
+      LOG.debug("{}: no reply from {} after {}, send a hedged stale read to {}", clientId, primaryServer, delay, other);
+      getMetrics().ifPresent(RaftClientMetrics::onHedgedRequest);
+      outstanding.incrementAndGet();
+      firstSuccess.accept(UnorderedAsync.send(type, message, other, this));
+    }, LOG, () -> clientId + ": Failed to hedge the stale read sent to " + primaryServer);
+    return result;
   }
 
   @Override
@@ -258,6 +386,9 @@ final class RaftClientImpl implements RaftClient {
   private RaftClientReply sendRequestWithRetry(Supplier<RaftClientRequest> supplier) throws IOException {
     for(int attemptCount = 1;; attemptCount++) {
       final RaftClientRequest request = supplier.get();
+      if (attemptCount > 1) {
+        getMetrics().ifPresent(RaftClientMetrics::onRetry);
+      }
       IOException ioe = null;
       try {
         final RaftClientReply reply = sendRequest(request);
@@ -297,7 +428,9 @@ final class RaftClientImpl implements RaftClient {
     LOG.debug("{}: send {}", clientId, request);
     RaftClientReply reply;
     try {
+      final long startTime = System.nanoTime();
       reply = clientRpc.sendRequest(request);
+      onReply(request, reply, System.nanoTime() - startTime);
     } catch (GroupMismatchException gme) {
       throw gme;
     } catch (IOException ioe) {
@@ -310,6 +443,55 @@ final class RaftClientImpl implements RaftClient {
     return reply;
   }
 
+  /**
+   * Send the given request asynchronously, either ordered or unordered.
+   * The latency of the reply is recorded.
+   * When the retry policy is an {@link AdaptiveTimeoutRetryPolicy},
+   * the returned future is completed exceptionally with a {@link TimeoutIOException}
+   * if there is no reply within the adaptive timeout of the server.
+   * The request is cancelled in the rpc before the future is completed,
+   * so that a retry of the request never overlaps with it.
+   */
+  CompletableFuture<RaftClientReply> sendRequestAsync(RaftClientRequest request, boolean ordered) {
+    final long startTime = System.nanoTime();
+    final CompletableFuture<RaftClientReply> sent = ordered? clientRpc.sendRequestAsync(request)
+        : clientRpc.sendRequestAsyncUnordered(request);
+    final CompletableFuture<RaftClientReply> f = sent.whenComplete(
+        (reply, e) -> onReply(request, reply, System.nanoTime() - startTime));
+    if (adaptiveTimeoutPolicy == null || request.is(TypeCase.WATCH)) {
+      // a watch request may wait for a long time by design
+      return f;
+    }
+
+    final TimeDuration timeout = adaptiveTimeoutPolicy.getTimeout(request.getServerId());
+    final CompletableFuture<RaftClientReply> timed = new CompletableFuture<>();
+    f.whenComplete((reply, e) -> {
+      if (e == null) {
+        timed.complete(reply);
+      } else if (!sent.isCancelled()) {
+        timed.completeExceptionally(e);
+      }
+    });
+    scheduler.onTimeout(timeout, () -> {
+      if (sent.cancel(false)) {
+        getMetrics().ifPresent(RaftClientMetrics::onRequestTimeout);
+        timed.completeExceptionally(new TimeoutIOException(clientId + ": Timeout " + timeout + " for " + request));
+      }
+    }, LOG, () -> clientId + ": Failed to timeout " + request);
+    return timed;
+  }
+
+  private void onReply(RaftClientRequest request, RaftClientReply reply, long latencyNanos) {
+    if (reply == null) {
+      return;
+    }
+    final TypeCase type = request.getType().getTypeCase();
+    getMetrics().ifPresent(m -> m.getRequestTimer(type).update(latencyNanos, TimeUnit.NANOSECONDS));
+    if (adaptiveTimeoutPolicy != null && type != TypeCase.WATCH) {
+      adaptiveTimeoutPolicy.onReply(request.getServerId(), latencyNanos);
+    }
+  }
+
   static <E extends Throwable> RaftClientReply handleRaftException(
       RaftClientReply reply, Function<RaftException, E> converter) throws E {
     if (reply != null) {
@@ -333,6 +515,9 @@ final class RaftClientImpl implements RaftClient {
     }
     final NotLeaderException nle = reply.getNotLeaderException();
     if (nle == null) {
+      if (routingTable != null && reply.isSuccess() && isSentToLeader(request)) {
+        routingTable.onLeaderReply(groupId, reply);
+      }
       return reply;
     }
     return handleNotLeaderException(request, nle, handler);
@@ -343,10 +528,22 @@ final class RaftClientImpl implements RaftClient {
     refreshPeers(nle.getPeers());
     final RaftPeerId newLeader = nle.getSuggestedLeader() == null ? null
         : nle.getSuggestedLeader().getId();
+    if (routingTable != null && groupId.equals(request.getRaftGroupId())) {
+      routingTable.onNotLeader(groupId, request.getServerId(), newLeader);
+    }
     handleIOException(request, nle, newLeader, handler);
     return null;
   }
 
+  /** Is the given request served by the leader of the group of this client? */
+  private boolean isSentToLeader(RaftClientRequest request) {
+    return groupId.equals(request.getRaftGroupId())
+        && !request.is(TypeCase.STALEREAD)
+        && !(request instanceof GroupInfoRequest)
+        && !(request instanceof GroupListRequest)
+        && !(request instanceof GroupManagementRequest);
+  }
+
   private void refreshPeers(Collection<RaftPeer> newPeers) {
     if (newPeers != null && newPeers.size() > 0) {
       peers.clear();
@@ -406,6 +603,11 @@ final class RaftClientImpl implements RaftClient {
 
   @Override
   public void close() throws IOException {
+    closed = true;
+    if (leaderRefresher != null) {
+      leaderRefresher.shutdownNow();
+    }
+    getMetrics().ifPresent(RaftClientMetrics::unregister);
     scheduler.close();
     clientRpc.close();
   }
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.client.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
+import org.apache.ratis.metrics.MetricRegistries;
+import org.apache.ratis.metrics.MetricRegistryInfo;
+import org.apache.ratis.metrics.RatisMetricRegistry;
+import org.apache.ratis.proto.RaftProtos.RaftClientRequestProto.TypeCase;
+import org.apache.ratis.protocol.ClientId;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metric Registry for Raft client. One instance per client.
+ * The registry is removed from the global registries by {@link #unregister()} when the client is closed.
+ */
+public final class RaftClientMetrics {
+  public static final String RATIS_APPLICATION_NAME_METRICS = "ratis";
+  public static final String RATIS_CLIENT_METRICS = "client";
+  public static final String RATIS_CLIENT_METRICS_DESC = "Metrics for Raft client";
+
+  /** The latency of the replies of a request type, e.g. writeRequest. */
+  public static final String REQUEST_LATENCY = "%sRequest";
+  public static final String RETRY_COUNTER = "numRetries";
+  public static final String HEDGED_REQUEST_COUNTER = "numHedgedRequests";
+  public static final String REQUEST_TIMEOUT_COUNTER = "numRequestTimeouts";
+
+  static RaftClientMetrics getRaftClientMetrics(ClientId clientId) {
+    return new RaftClientMetrics(new MetricRegistryInfo(clientId.toString(),
+        RATIS_APPLICATION_NAME_METRICS, RATIS_CLIENT_METRICS, RATIS_CLIENT_METRICS_DESC));
+  }
+
+  private final RatisMetricRegistry registry;
+  /** The timers are created on demand, only for the request types sent by the client. */
+  private final Map<TypeCase, Timer> requestTimers = new ConcurrentHashMap<>();
+  private final Counter retryCounter;
+  private final Counter hedgedRequestCounter;
+  private final Counter requestTimeoutCounter;
+
+  private RaftClientMetrics(MetricRegistryInfo info) {
+    this.registry = MetricRegistries.global().create(info);
+    this.retryCounter = registry.counter(RETRY_COUNTER);
+    this.hedgedRequestCounter = registry.counter(HEDGED_REQUEST_COUNTER);
+    this.requestTimeoutCounter = registry.counter(REQUEST_TIMEOUT_COUNTER);
+  }
+
+  public RatisMetricRegistry getRegistry() {
+    return registry;
+  }
+
+  Timer getRequestTimer(TypeCase type) {
+    return requestTimers.computeIfAbsent(type,
+        t -> registry.timer(String.format(REQUEST_LATENCY, t.name().toLowerCase())));
+  }
+
+  void onRetry() {
+    retryCounter.inc();
+  }
+
+  void onHedgedRequest() {
+    hedgedRequestCounter.inc();
+  }
+
+  void onRequestTimeout() {
+    requestTimeoutCounter.inc();
+  }
+
+  void unregister() {
+    MetricRegistries.global().remove(registry.getMetricRegistryInfo());
+  }
+}
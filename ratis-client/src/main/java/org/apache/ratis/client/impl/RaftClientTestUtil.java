@@ -33,6 +33,10 @@ public interface RaftClientTestUtil {
     return ((RaftClientImpl) client).getCallId();
   }
 
+  static RaftPeerId getLeaderId(RaftClient client) {
+    return ((RaftClientImpl) client).getLeaderId();
+  }
+
   static RaftClientRequest newRaftClientRequest(RaftClient client, RaftPeerId server,
       long callId, Message message, RaftClientRequest.Type type, SlidingWindowEntry slidingWindowEntry) {
     return ((RaftClientImpl)client).newRaftClientRequest(server, callId, message, type, slidingWindowEntry);
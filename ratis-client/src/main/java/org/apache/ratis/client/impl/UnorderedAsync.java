@@ -21,10 +21,12 @@ import org.apache.ratis.client.ClientRetryEvent;
 import org.apache.ratis.client.impl.RaftClientImpl.PendingClientRequest;
 import org.apache.ratis.protocol.ClientId;
 import org.apache.ratis.protocol.GroupMismatchException;
+import org.apache.ratis.protocol.Message;
 import org.apache.ratis.protocol.NotLeaderException;
 import org.apache.ratis.protocol.RaftClientReply;
 import org.apache.ratis.protocol.RaftClientRequest;
 import org.apache.ratis.protocol.RaftException;
+import org.apache.ratis.protocol.RaftPeerId;
 import org.apache.ratis.retry.RetryPolicies;
 import org.apache.ratis.retry.RetryPolicy;
 import org.apache.ratis.util.JavaUtils;
@@ -54,9 +56,14 @@ public interface UnorderedAsync {
   }
 
   static CompletableFuture<RaftClientReply> send(RaftClientRequest.Type type, RaftClientImpl client) {
+    return send(type, null, null, client);
+  }
+
+  static CompletableFuture<RaftClientReply> send(RaftClientRequest.Type type, Message message, RaftPeerId server,
+      RaftClientImpl client) {
     final long callId = RaftClientImpl.nextCallId();
     final PendingClientRequest pending = new PendingUnorderedRequest(
-        () -> client.newRaftClientRequest(null, callId, null, type, null));
+        () -> client.newRaftClientRequest(server, callId, message, type, null));
     sendRequestWithRetry(pending, client);
     return pending.getReplyFuture()
         .thenApply(reply -> RaftClientImpl.handleRaftException(reply, CompletionException::new));
@@ -70,10 +77,13 @@ public interface UnorderedAsync {
 
     final RaftClientRequest request = pending.newRequest();
     final int attemptCount = pending.getAttemptCount();
+    if (attemptCount > 1) {
+      client.getMetrics().ifPresent(RaftClientMetrics::onRetry);
+    }
 
     final ClientId clientId = client.getId();
     LOG.debug("{}: attempt #{} send~ {}", clientId, attemptCount, request);
-    client.getClientRpc().sendRequestAsyncUnordered(request).whenCompleteAsync((reply, e) -> {
+    client.sendRequestAsync(request, false).whenCompleteAsync((reply, e) -> {
       try {
         LOG.debug("{}: attempt #{} receive~ {}", clientId, attemptCount, reply);
         final RaftException replyException = reply != null? reply.getException(): null;
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.client.retry;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Snapshot;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.retry.RetryPolicies;
+import org.apache.ratis.retry.RetryPolicy;
+import org.apache.ratis.util.Preconditions;
+import org.apache.ratis.util.TimeDuration;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link RetryPolicy} adapting the request timeout to the latencies observed from each server.
+ *
+ * The latencies of the replies are recorded in a histogram per server,
+ * which is biased to the recent replies.
+ * The timeout of a request to a server is its timeout percentile latency times the timeout multiplier,
+ * bounded by the min and the max timeouts.
+ * A hedged stale read is sent to another server when there is no reply by the hedge percentile latency.
+ * Before a server has the min number of samples, the max timeout is used and no hedged requests are sent.
+ *
+ * The sleep time between the attempts is determined by the underlying retry policy.
+ * The policy can be shared by multiple clients so that they share the latency histograms.
+ */
+public final class AdaptiveTimeoutRetryPolicy implements RetryPolicy {
+  public static final class Builder {
+    private RetryPolicy retryPolicy = RetryPolicies.retryForeverNoSleep();
+    private double timeoutPercentile = 0.99;
+    private double timeoutMultiplier = 2;
+    private TimeDuration minTimeout = TimeDuration.valueOf(100, TimeUnit.MILLISECONDS);
+    private TimeDuration maxTimeout = TimeDuration.valueOf(3, TimeUnit.SECONDS);
+    private double hedgePercentile = 0.95;
+    private boolean hedgeEnabled = true;
+    private int minSamples = 20;
+
+    private Builder() {}
+
+    /** Set the underlying policy to determine whether to retry and the sleep time. */
+    public Builder setRetryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    public Builder setTimeoutPercentile(double timeoutPercentile) {
+      this.timeoutPercentile = timeoutPercentile;
+      return this;
+    }
+
+    public Builder setTimeoutMultiplier(double timeoutMultiplier) {
+      this.timeoutMultiplier = timeoutMultiplier;
+      return this;
+    }
+
+    public Builder setMinTimeout(TimeDuration minTimeout) {
+      this.minTimeout = minTimeout;
+      return this;
+    }
+
+    public Builder setMaxTimeout(TimeDuration maxTimeout) {
+      this.maxTimeout = maxTimeout;
+      return this;
+    }
+
+    public Builder setHedgePercentile(double hedgePercentile) {
+      this.hedgePercentile = hedgePercentile;
+      return this;
+    }
+
+    public Builder setHedgeEnabled(boolean hedgeEnabled) {
+      this.hedgeEnabled = hedgeEnabled;
+      return this;
+    }
+
+    public Builder setMinSamples(int minSamples) {
+      this.minSamples = minSamples;
+      return this;
+    }
+
+    public AdaptiveTimeoutRetryPolicy build() {
+      return new AdaptiveTimeoutRetryPolicy(this);
+    }
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** The latencies of a server. */
+  private static final class PeerLatency {
+    /** Refresh the snapshot once in this number of samples since taking a snapshot is not cheap. */
+    private static final int SNAPSHOT_INTERVAL = 32;
+
+    private final Histogram histogram = new Histogram(new ExponentiallyDecayingReservoir());
+    private final AtomicLong count = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    void update(long latencyNanos) {
+      histogram.update(latencyNanos);
+      final long n = count.incrementAndGet();
+      if (snapshot == null || n % SNAPSHOT_INTERVAL == 0) {
+        snapshot = histogram.getSnapshot();
+      }
+    }
+
+    boolean hasSamples(int minSamples) {
+      return snapshot != null && count.get() >= minSamples;
+    }
+
+    long getValueNanos(double percentile) {
+      return (long) snapshot.getValue(percentile);
+    }
+  }
+
+  private final RetryPolicy retryPolicy;
+  private final double timeoutPercentile;
+  private final double timeoutMultiplier;
+  private final long minTimeoutNanos;
+  private final long maxTimeoutNanos;
+  private final double hedgePercentile;
+  private final boolean hedgeEnabled;
+  private final int minSamples;
+
+  private final ConcurrentMap<RaftPeerId, PeerLatency> latencies = new ConcurrentHashMap<>();
+
+  private AdaptiveTimeoutRetryPolicy(Builder b) {
+    Preconditions.assertTrue(b.timeoutPercentile > 0 && b.timeoutPercentile <= 1,
+        () -> "Illegal timeoutPercentile = " + b.timeoutPercentile);
+    Preconditions.assertTrue(b.hedgePercentile > 0 && b.hedgePercentile <= 1,
+        () -> "Illegal hedgePercentile = " + b.hedgePercentile);
+    Preconditions.assertTrue(b.timeoutMultiplier >= 1, () -> "Illegal timeoutMultiplier = " + b.timeoutMultiplier);
+    this.retryPolicy = b.retryPolicy;
+    this.timeoutPercentile = b.timeoutPercentile;
+    this.timeoutMultiplier = b.timeoutMultiplier;
+    this.minTimeoutNanos = b.minTimeout.toLong(TimeUnit.NANOSECONDS);
+    this.maxTimeoutNanos = b.maxTimeout.toLong(TimeUnit.NANOSECONDS);
+    Preconditions.assertTrue(minTimeoutNanos <= maxTimeoutNanos,
+        () -> "minTimeout = " + b.minTimeout + " > maxTimeout = " + b.maxTimeout);
+    this.hedgePercentile = b.hedgePercentile;
+    this.hedgeEnabled = b.hedgeEnabled;
+    Preconditions.assertTrue(b.minSamples > 0, () -> "Illegal minSamples = " + b.minSamples);
+    this.minSamples = b.minSamples;
+  }
+
+  @Override
+  public Action handleAttemptFailure(Event event) {
+    return retryPolicy.handleAttemptFailure(event);
+  }
+
+  /** Record the latency of a reply from the given server. */
+  public void onReply(RaftPeerId server, long latencyNanos) {
+    latencies.computeIfAbsent(server, key -> new PeerLatency()).update(latencyNanos);
+  }
+
+  private Optional<PeerLatency> getLatency(RaftPeerId server) {
+    return Optional.ofNullable(latencies.get(server)).filter(l -> l.hasSamples(minSamples));
+  }
+
+  /** @return the timeout for the requests sent to the given server. */
+  public TimeDuration getTimeout(RaftPeerId server) {
+    final long nanos = getLatency(server)
+        .map(l -> (long) (l.getValueNanos(timeoutPercentile) * timeoutMultiplier))
+        .map(t -> Math.min(Math.max(t, minTimeoutNanos), maxTimeoutNanos))
+        .orElse(maxTimeoutNanos);
+    return TimeDuration.valueOf(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** @return the delay to send a hedged request if there is no reply from the given server. */
+  public Optional<TimeDuration> getHedgeDelay(RaftPeerId server) {
+    if (!hedgeEnabled) {
+      return Optional.empty();
+    }
+    return getLatency(server)
+        .map(l -> TimeDuration.valueOf(l.getValueNanos(hedgePercentile), TimeUnit.NANOSECONDS));
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(p" + timeoutPercentile * 100 + "x" + timeoutMultiplier
+        + ", timeout=[" + minTimeoutNanos / 1_000_000 + "ms, " + maxTimeoutNanos / 1_000_000 + "ms]"
+        + (hedgeEnabled? ", hedge=p" + hedgePercentile * 100: "") + ", " + retryPolicy + ")";
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.protocol;
+
+/**
+ * This exception is sent from the server to a client retrying a write request
+ * which has already been applied to the state machine
+ * but its reply is no longer available, e.g. after a server restart.
+ * Only the log index of the call is known; the state machine reply is lost.
+ */
+public class AlreadyAppliedException extends RaftException {
+  private final long callId;
+  private final long logIndex;
+
+  public AlreadyAppliedException(long callId, long logIndex) {
+    super("Request with call Id " + callId + " has already been applied at log index " + logIndex
+        + " but its result is unavailable");
+    this.callId = callId;
+    this.logIndex = logIndex;
+  }
+
+  public long getCallId() {
+    return callId;
+  }
+
+  public long getLogIndex() {
+    return logIndex;
+  }
+}
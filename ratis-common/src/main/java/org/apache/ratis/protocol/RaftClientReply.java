@@ -76,7 +76,7 @@ public class RaftClientReply extends RaftClientMessage {
       Preconditions.assertTrue(!success,
           () -> "Inconsistent parameters: success && exception != null: " + this);
       Preconditions.assertTrue(ReflectionUtils.isInstance(exception,
-          AlreadyClosedException.class,
+          AlreadyClosedException.class, AlreadyAppliedException.class,
           NotLeaderException.class, NotReplicatedException.class,
           LeaderNotReadyException.class, StateMachineException.class),
           () -> "Unexpected exception class: " + this);
@@ -146,6 +146,11 @@ public class RaftClientReply extends RaftClientMessage {
     return JavaUtils.cast(exception, AlreadyClosedException.class);
   }
 
+  /** If this reply has {@link AlreadyAppliedException}, return it; otherwise return null. */
+  public AlreadyAppliedException getAlreadyAppliedException() {
+    return JavaUtils.cast(exception, AlreadyAppliedException.class);
+  }
+
   /** If this reply has {@link NotLeaderException}, return it; otherwise return null. */
   public NotLeaderException getNotLeaderException() {
     return JavaUtils.cast(exception, NotLeaderException.class);
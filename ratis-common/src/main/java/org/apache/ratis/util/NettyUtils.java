@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.util;
+
+import org.apache.ratis.thirdparty.io.netty.buffer.ByteBufAllocator;
+import org.apache.ratis.thirdparty.io.netty.buffer.PooledByteBufAllocator;
+import org.apache.ratis.thirdparty.io.netty.channel.EventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.ServerChannel;
+import org.apache.ratis.thirdparty.io.netty.channel.epoll.Epoll;
+import org.apache.ratis.thirdparty.io.netty.channel.epoll.EpollEventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.epoll.EpollServerSocketChannel;
+import org.apache.ratis.thirdparty.io.netty.channel.epoll.EpollSocketChannel;
+import org.apache.ratis.thirdparty.io.netty.channel.nio.NioEventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.socket.SocketChannel;
+import org.apache.ratis.thirdparty.io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.apache.ratis.thirdparty.io.netty.channel.socket.nio.NioSocketChannel;
+import org.apache.ratis.thirdparty.io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Netty related utility methods.
+ */
+public interface NettyUtils {
+  Logger LOG = LoggerFactory.getLogger(NettyUtils.class);
+
+  /** The pooled allocator, which prefers direct buffers, for the channels and the encoders. */
+  static ByteBufAllocator getAllocator() {
+    return PooledByteBufAllocator.DEFAULT;
+  }
+
+  /** @return true if the native epoll transport is available. */
+  static boolean isEpollAvailable() {
+    try {
+      return Epoll.isAvailable();
+    } catch (Throwable t) {
+      // the native library or the epoll classes are missing
+      return false;
+    }
+  }
+
+  /** @return true if epoll is requested and available; otherwise, fall back to NIO. */
+  static boolean useEpoll(boolean requested) {
+    if (!requested) {
+      return false;
+    } else if (isEpollAvailable()) {
+      return true;
+    }
+    LOG.warn("Epoll is requested but not available, fall back to NIO");
+    return false;
+  }
+
+  /**
+   * @param size the number of threads; 0 for the Netty default.
+   * @return a new {@link EventLoopGroup} of daemon threads.
+   */
+  static EventLoopGroup newEventLoopGroup(String name, int size, boolean useEpoll) {
+    final DefaultThreadFactory threadFactory = new DefaultThreadFactory(name, true);
+    return useEpoll(useEpoll)? new EpollEventLoopGroup(size, threadFactory)
+        : new NioEventLoopGroup(size, threadFactory);
+  }
+
+  static Class<? extends ServerChannel> getServerChannelClass(EventLoopGroup group) {
+    return group instanceof EpollEventLoopGroup? EpollServerSocketChannel.class: NioServerSocketChannel.class;
+  }
+
+  static Class<? extends SocketChannel> getSocketChannelClass(EventLoopGroup group) {
+    return group instanceof EpollEventLoopGroup? EpollSocketChannel.class: NioSocketChannel.class;
+  }
+
+  /**
+   * An {@link EventLoopGroup} shared by all the servers in a JVM with the same name, size and transport.
+   * It is shut down when it is released by all the servers.
+   */
+  final class SharedEventLoopGroup {
+    private static final Map<String, SharedEventLoopGroup> GROUPS = new HashMap<>();
+
+    /** Acquire the shared group; the caller must {@link #release()} it. */
+    public static synchronized SharedEventLoopGroup acquire(String name, int size, boolean useEpoll) {
+      final boolean epoll = useEpoll(useEpoll);
+      final String key = name + "-" + size + (epoll? "-epoll": "-nio");
+      final SharedEventLoopGroup shared = GROUPS.computeIfAbsent(key,
+          k -> new SharedEventLoopGroup(k, newEventLoopGroup(k, size, epoll)));
+      shared.count++;
+      return shared;
+    }
+
+    private final String key;
+    private final EventLoopGroup group;
+    private int count = 0;
+
+    private SharedEventLoopGroup(String key, EventLoopGroup group) {
+      this.key = key;
+      this.group = Objects.requireNonNull(group, "group == null");
+    }
+
+    public EventLoopGroup get() {
+      return group;
+    }
+
+    public void release() {
+      synchronized (SharedEventLoopGroup.class) {
+        Preconditions.assertTrue(count > 0, () -> key + " is already released");
+        if (--count == 0) {
+          GROUPS.remove(key);
+          group.shutdownGracefully();
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return key + ":" + count;
+    }
+  }
+}
@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.examples.benchmark;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.Preconditions;
+import org.apache.ratis.util.TimeDuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintStream;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generate an open-loop load, i.e. the requests are sent at a fixed target rate
+ * regardless of how fast the previous requests are replied.
+ *
+ * The latency of a request is measured from its intended send time, instead of its actual send time,
+ * so that it is corrected for coordinated omission:
+ * when the client falls behind the schedule (e.g. it is blocked by the outstanding request limit),
+ * the waiting time is counted in the latency.
+ * The service time, which is measured from the actual send time, is reported separately.
+ */
+public class OpenLoopLoadGenerator {
+  public static final Logger LOG = LoggerFactory.getLogger(OpenLoopLoadGenerator.class);
+
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  /** The result of a run. The latencies are in microseconds. */
+  public static class Result {
+    private final Histogram latency;
+    private final Histogram serviceTime;
+    private final long succeeded;
+    private final long failed;
+    private final long elapsedNanos;
+
+    Result(Histogram latency, Histogram serviceTime, long succeeded, long failed, long elapsedNanos) {
+      this.latency = latency;
+      this.serviceTime = serviceTime;
+      this.succeeded = succeeded;
+      this.failed = failed;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /** @return the latency histogram, which is corrected for coordinated omission. */
+    public Histogram getLatency() {
+      return latency;
+    }
+
+    public Histogram getServiceTime() {
+      return serviceTime;
+    }
+
+    public long getSucceeded() {
+      return succeeded;
+    }
+
+    public long getFailed() {
+      return failed;
+    }
+
+    /** @return the number of succeeded requests per second. */
+    public double getThroughput() {
+      return succeeded * (double) NANOS_PER_SECOND / Math.max(1, elapsedNanos);
+    }
+
+    private static void printPercentiles(String name, Histogram h, PrintStream out) {
+      out.printf("%-13s p50=%d p90=%d p99=%d p99.9=%d max=%d (us)%n", name,
+          h.getValueAtPercentile(50), h.getValueAtPercentile(90), h.getValueAtPercentile(99),
+          h.getValueAtPercentile(99.9), h.getMaxValue());
+    }
+
+    public void print(PrintStream out) {
+      out.printf("Requests:     succeeded=%d failed=%d in %.3f s%n",
+          succeeded, failed, elapsedNanos / (double) NANOS_PER_SECOND);
+      out.printf("Throughput:   %.1f requests/s%n", getThroughput());
+      printPercentiles("Latency:", latency, out);
+      printPercentiles("Service time:", serviceTime, out);
+    }
+  }
+
+  private final RaftClient client;
+  private final int rate;
+  private final TimeDuration duration;
+  private final TimeDuration warmup;
+  private final double readRatio;
+  private final Message writeMessage;
+
+  private final Recorder latency = new Recorder(SIGNIFICANT_DIGITS);
+  private final Recorder serviceTime = new Recorder(SIGNIFICANT_DIGITS);
+  private final AtomicLong succeeded = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong pending = new AtomicLong();
+
+  /**
+   * @param rate the target number of requests per second.
+   * @param duration the duration of the measurement, excluding the warmup.
+   * @param warmup the duration of the warmup; the requests sent during the warmup are not measured.
+   * @param messageSize the size of the write messages in bytes.
+   * @param readRatio the ratio of the read requests in [0, 1].
+   */
+  public OpenLoopLoadGenerator(RaftClient client, int rate, TimeDuration duration, TimeDuration warmup,
+      int messageSize, double readRatio) {
+    Preconditions.assertTrue(rate > 0, () -> "rate = " + rate + " <= 0");
+    Preconditions.assertTrue(messageSize >= 0, () -> "messageSize = " + messageSize + " < 0");
+    Preconditions.assertTrue(readRatio >= 0 && readRatio <= 1, () -> "readRatio = " + readRatio + " not in [0, 1]");
+    this.client = Objects.requireNonNull(client, "client == null");
+    this.rate = rate;
+    this.duration = duration;
+    this.warmup = warmup;
+    this.readRatio = readRatio;
+
+    final byte[] bytes = new byte[messageSize];
+    ThreadLocalRandom.current().nextBytes(bytes);
+    this.writeMessage = Message.valueOf(ByteString.copyFrom(bytes));
+  }
+
+  /**
+   * Send the requests at the target rate and then wait for the outstanding requests.
+   *
+   * @param drainTimeout the maximum time to wait for the outstanding requests after sending all the requests.
+   */
+  public Result run(TimeDuration drainTimeout) throws InterruptedException {
+    final long warmupNanos = warmup.toLong(TimeUnit.NANOSECONDS);
+    final long totalNanos = warmupNanos + duration.toLong(TimeUnit.NANOSECONDS);
+    LOG.info("Start sending {} requests/s for {} after a warmup of {}", rate, duration, warmup);
+
+    final long start = System.nanoTime();
+    for (long i = 0; ; i++) {
+      final long offset = i * NANOS_PER_SECOND / rate;
+      if (offset >= totalNanos) {
+        break;
+      }
+      final long intended = start + offset;
+      for (long delay; (delay = intended - System.nanoTime()) > 0; ) {
+        LockSupport.parkNanos(delay);
+      }
+      send(intended, offset >= warmupNanos);
+    }
+
+    final long drainNanos = drainTimeout.toLong(TimeUnit.NANOSECONDS);
+    final long sent = System.nanoTime();
+    for (; pending.get() > 0 && System.nanoTime() - sent < drainNanos; ) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    final long end = System.nanoTime();
+    if (pending.get() > 0) {
+      LOG.warn("{} requests are still outstanding after {}", pending.get(), drainTimeout);
+    }
+    return new Result(latency.getIntervalHistogram(), serviceTime.getIntervalHistogram(),
+        succeeded.get(), failed.get(), end - start - warmupNanos);
+  }
+
+  private void send(long intended, boolean measured) {
+    final boolean read = readRatio > 0 && ThreadLocalRandom.current().nextDouble() < readRatio;
+    pending.incrementAndGet();
+    final long sendTime = System.nanoTime();
+    final CompletableFuture<RaftClientReply> reply = read? client.sendReadOnlyAsync(Message.EMPTY)
+        : client.sendAsync(writeMessage);
+    reply.whenComplete((r, e) -> {
+      final long now = System.nanoTime();
+      if (measured) {
+        if (e == null && r.isSuccess()) {
+          succeeded.incrementAndGet();
+          latency.recordValue(TimeUnit.NANOSECONDS.toMicros(now - intended));
+          serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(now - sendTime));
+        } else {
+          failed.incrementAndGet();
+          LOG.debug("Failed to {}: reply={}", read? "read": "write", r, e);
+        }
+      }
+      pending.decrementAndGet();
+    });
+  }
+}
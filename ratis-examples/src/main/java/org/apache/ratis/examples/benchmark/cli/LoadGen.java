@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.examples.benchmark.cli;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.client.RaftClientConfigKeys;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.examples.benchmark.OpenLoopLoadGenerator;
+import org.apache.ratis.examples.common.SubCommandBase;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftGroup;
+import org.apache.ratis.protocol.RaftPeer;
+import org.apache.ratis.rpc.SupportedRpcType;
+import org.apache.ratis.server.RaftServer;
+import org.apache.ratis.util.TimeDuration;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subcommand to generate an open-loop load and report the latency percentiles.
+ * With --local, the servers of the peers are started in this process.
+ */
+@Parameters(commandDescription = "Open-loop load generator")
+public class LoadGen extends SubCommandBase {
+
+  @Parameter(names = {"--rpc"}, description = "Rpc type, GRPC or NETTY")
+  private SupportedRpcType rpc = SupportedRpcType.GRPC;
+
+  @Parameter(names = {"--rate"}, description = "Target number of requests per second", required = true)
+  private int rate;
+
+  @Parameter(names = {"--duration"}, description = "Duration of the measurement in seconds")
+  private int durationSeconds = 60;
+
+  @Parameter(names = {"--warmup"}, description = "Duration of the warmup in seconds")
+  private int warmupSeconds = 10;
+
+  @Parameter(names = {"--size"}, description = "Size of each write message in bytes")
+  private int size = 1024;
+
+  @Parameter(names = {"--readRatio"}, description = "Ratio of the read requests, in [0, 1]")
+  private double readRatio = 0;
+
+  @Parameter(names = {"--maxOutstanding"}, description = "Maximum number of outstanding requests")
+  private int maxOutstanding = 1000;
+
+  @Parameter(names = {"--local"}, description = "Start the servers of the peers in this process")
+  private boolean local = false;
+
+  @Parameter(names = {"--storage", "-s"}, description = "Storage dir of the local servers (default: a temp dir)")
+  private File storageDir;
+
+  @Parameter(names = {"--histogramFile"}, description = "File to write the latency percentile distribution")
+  private File histogramFile;
+
+  @Parameter(names = {"--maxP99"},
+      description = "Fail if any request fails or the p99 latency exceeds this value in milliseconds")
+  private long maxP99Ms = 0;
+
+  private List<RaftServer> startLocalServers(RaftGroup group) throws IOException {
+    final File dir = storageDir != null? storageDir: Files.createTempDirectory("ratis-loadgen").toFile();
+    final List<RaftServer> servers = new ArrayList<>();
+    for (RaftPeer peer : group.getPeers()) {
+      final RaftServer server = Server.newRaftServer(peer, group, rpc, new File(dir, peer.getId().toString()));
+      servers.add(server);
+      server.start();
+    }
+    return servers;
+  }
+
+  private RaftClient newRaftClient(RaftGroup group) {
+    final RaftProperties properties = Server.newProperties(rpc);
+    RaftClientConfigKeys.Async.setMaxOutstandingRequests(properties, maxOutstanding);
+    return RaftClient.newBuilder()
+        .setProperties(properties)
+        .setRaftGroup(group)
+        .build();
+  }
+
+  @Override
+  public void run() throws Exception {
+    final RaftGroup group = Server.newRaftGroup(this);
+    final List<RaftServer> servers = local? startLocalServers(group): new ArrayList<>();
+    final OpenLoopLoadGenerator.Result result;
+    try (RaftClient client = newRaftClient(group)) {
+      // wait for the leader election and warm up the connection
+      if (!client.send(Message.EMPTY).isSuccess()) {
+        throw new IllegalStateException("Failed to send the first request to " + group);
+      }
+
+      result = new OpenLoopLoadGenerator(client, rate, TimeDuration.valueOf(durationSeconds, TimeUnit.SECONDS),
+          TimeDuration.valueOf(warmupSeconds, TimeUnit.SECONDS), size, readRatio)
+          .run(TimeDuration.valueOf(60, TimeUnit.SECONDS));
+    } finally {
+      for (RaftServer server : servers) {
+        server.close();
+      }
+    }
+
+    System.out.printf("Open-loop load: rpc=%s, rate=%d requests/s, size=%d bytes, readRatio=%s%n",
+        rpc, rate, size, readRatio);
+    result.print(System.out);
+    if (histogramFile != null) {
+      try (PrintStream out = new PrintStream(new FileOutputStream(histogramFile), false, "UTF-8")) {
+        result.getLatency().outputPercentileDistribution(out, 1.0);
+      }
+    }
+
+    if (maxP99Ms > 0) {
+      if (result.getFailed() > 0 || result.getSucceeded() == 0) {
+        throw new IllegalStateException("Failed requests: succeeded=" + result.getSucceeded()
+            + ", failed=" + result.getFailed());
+      }
+      final long p99 = result.getLatency().getValueAtPercentile(99);
+      if (p99 > TimeUnit.MILLISECONDS.toMicros(maxP99Ms)) {
+        throw new IllegalStateException("The p99 latency " + p99 + "us exceeds the limit " + maxP99Ms + "ms");
+      }
+    }
+  }
+}
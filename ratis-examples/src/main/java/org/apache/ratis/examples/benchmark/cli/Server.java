@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.examples.benchmark.cli;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import org.apache.ratis.RaftConfigKeys;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.examples.benchmark.BenchmarkStateMachine;
+import org.apache.ratis.examples.common.SubCommandBase;
+import org.apache.ratis.grpc.GrpcConfigKeys;
+import org.apache.ratis.netty.NettyConfigKeys;
+import org.apache.ratis.protocol.RaftGroup;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.protocol.RaftPeer;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.rpc.SupportedRpcType;
+import org.apache.ratis.server.RaftServer;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.LifeCycle;
+import org.apache.ratis.util.NetUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class to start a ratis benchmark server.
+ */
+@Parameters(commandDescription = "Start a benchmark server")
+public class Server extends SubCommandBase {
+
+  @Parameter(names = {"--id", "-i"}, description = "Raft id of this server", required = true)
+  private String id;
+
+  @Parameter(names = {"--storage", "-s"}, description = "Storage dir", required = true)
+  private File storageDir;
+
+  @Parameter(names = {"--rpc"}, description = "Rpc type, GRPC or NETTY")
+  private SupportedRpcType rpc = SupportedRpcType.GRPC;
+
+  static RaftProperties newProperties(SupportedRpcType rpc) {
+    if (rpc != SupportedRpcType.GRPC && rpc != SupportedRpcType.NETTY) {
+      throw new IllegalArgumentException("Unsupported rpc type " + rpc + ", only GRPC and NETTY are supported");
+    }
+    final RaftProperties properties = new RaftProperties();
+    RaftConfigKeys.Rpc.setType(properties, rpc);
+    return properties;
+  }
+
+  static RaftGroup newRaftGroup(SubCommandBase command) {
+    return RaftGroup.valueOf(RaftGroupId.valueOf(ByteString.copyFromUtf8(command.getRaftGroupId())),
+        command.getPeers());
+  }
+
+  static RaftServer newRaftServer(RaftPeer peer, RaftGroup group, SupportedRpcType rpc, File storageDir)
+      throws IOException {
+    final RaftProperties properties = newProperties(rpc);
+    final int port = NetUtils.createSocketAddr(peer.getAddress()).getPort();
+    if (rpc == SupportedRpcType.NETTY) {
+      NettyConfigKeys.Server.setPort(properties, port);
+    } else {
+      GrpcConfigKeys.Server.setPort(properties, port);
+    }
+    RaftServerConfigKeys.setStorageDirs(properties, Collections.singletonList(storageDir));
+
+    return RaftServer.newBuilder()
+        .setServerId(peer.getId())
+        .setStateMachine(new BenchmarkStateMachine()).setProperties(properties)
+        .setGroup(group)
+        .build();
+  }
+
+  @Override
+  public void run() throws Exception {
+    final RaftServer raftServer = newRaftServer(getPeer(RaftPeerId.valueOf(id)), newRaftGroup(this), rpc, storageDir);
+    raftServer.start();
+
+    for (; raftServer.getLifeCycleState() != LifeCycle.State.CLOSED; ) {
+      TimeUnit.SECONDS.sleep(1);
+    }
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.ratis.examples.common;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterException;
 import org.apache.ratis.examples.arithmetic.cli.Arithmetic;
+import org.apache.ratis.examples.benchmark.cli.Benchmark;
 import org.apache.ratis.examples.filestore.cli.FileStore;
 
 import java.util.List;
@@ -75,6 +76,8 @@ public final class Runner {
       return FileStore.getSubCommands();
     } else if (command.equalsIgnoreCase(Arithmetic.class.getSimpleName())) {
       return Arithmetic.getSubCommands();
+    } else if (command.equalsIgnoreCase(Benchmark.class.getSimpleName())) {
+      return Benchmark.getSubCommands();
     }
     return null;
   }
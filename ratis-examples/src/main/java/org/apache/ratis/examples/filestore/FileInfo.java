@@ -19,8 +19,8 @@ package org.apache.ratis.examples.filestore;
 
 import org.apache.ratis.protocol.RaftPeerId;
 import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.thirdparty.com.google.protobuf.UnsafeByteOperations;
 import org.apache.ratis.util.CollectionUtils;
-import org.apache.ratis.util.FileUtils;
 import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.LogUtils;
 import org.apache.ratis.util.Preconditions;
@@ -31,15 +31,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.SeekableByteChannel;
-import java.nio.channels.WritableByteChannel;
-import java.nio.file.Files;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
@@ -67,26 +65,32 @@ abstract class FileInfo {
         "File " + getRelativePath() + " size is unknown.");
   }
 
-  void flush() throws IOException {
-    // no-op
-  }
-
+  /**
+   * Read the file using positional reads into an array,
+   * which is then wrapped, without copying, as the returned {@link ByteString}.
+   * Since the writes do not buffer, the committed data can be read without flushing.
+   */
   ByteString read(CheckedFunction<Path, Path, IOException> resolver, long offset, long length)
       throws IOException {
-    flush();
     if (offset + length > getSize()) {
       throw new IOException("Failed to read: offset (=" + offset
           + " + length (=" + length + ") > size = " + getSize()
           + ", path=" + getRelativePath());
     }
 
-    try(SeekableByteChannel in = Files.newByteChannel(
-        resolver.apply(getRelativePath()), StandardOpenOption.READ)) {
-      final ByteBuffer buffer = ByteBuffer.allocateDirect(FileStoreCommon.getChunkSize(length));
-      in.position(offset).read(buffer);
-      buffer.flip();
-      return ByteString.copyFrom(buffer);
+    final byte[] array = new byte[FileStoreCommon.getChunkSize(length)];
+    final ByteBuffer buffer = ByteBuffer.wrap(array);
+    try(FileChannel in = FileChannel.open(resolver.apply(getRelativePath()), StandardOpenOption.READ)) {
+      for (long position = offset; buffer.hasRemaining(); ) {
+        final int n = in.read(buffer, position);
+        if (n < 0) {
+          throw new EOFException("Failed to read: reached the end of file at position " + position
+              + ", offset=" + offset + ", length=" + length + ", path=" + getRelativePath());
+        }
+        position += n;
+      }
     }
+    return UnsafeByteOperations.unsafeWrap(array);
   }
 
   UnderConstruction asUnderConstruction() {
@@ -108,27 +112,34 @@ abstract class FileInfo {
     }
   }
 
+  /** Write to a {@link FileChannel} directly, without any intermediate buffer. */
   static class FileOut implements Closeable {
-    private final OutputStream out;
-    private final WritableByteChannel channel;
+    private final FileChannel channel;
 
     FileOut(Path p) throws IOException {
-      this.out = FileUtils.createNewFile(p);
-      this.channel = Channels.newChannel(out);
+      this.channel = LogUtils.supplyAndLog(LOG,
+          () -> FileChannel.open(p, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE),
+          () -> "FileChannel.open " + StandardOpenOption.CREATE_NEW + " " + p);
     }
 
-    int write(ByteBuffer data) throws IOException {
-      return channel.write(data);
-    }
-
-    void flush() throws IOException {
-      out.flush();
+    /** Write the buffers of the given data using gathering writes. */
+    long write(ByteString data) throws IOException {
+      final List<ByteBuffer> list = data.asReadOnlyByteBufferList();
+      final ByteBuffer[] buffers = list.toArray(new ByteBuffer[list.size()]);
+      long n = 0;
+      int i = 0;
+      while (i < buffers.length) {
+        n += channel.write(buffers, i, buffers.length - i);
+        while (i < buffers.length && !buffers[i].hasRemaining()) {
+          i++;
+        }
+      }
+      return n;
     }
 
     @Override
     public void close() throws IOException {
       channel.close();
-      out.close();
     }
   }
 
@@ -166,8 +177,6 @@ abstract class FileInfo {
     private volatile long writeSize;
     /** The size committed to client. */
     private volatile long committedSize;
-    /** The size at last flush. */
-    private volatile long flushSize;
 
     /** A queue to make sure that the writes are in order. */
     private final TaskQueue writeQueue = new TaskQueue("writeQueue");
@@ -235,14 +244,8 @@ abstract class FileInfo {
       synchronized (out) {
         int n = 0;
         if (data != null) {
-          final ByteBuffer buffer = data.asReadOnlyByteBuffer();
-          try {
-            for (; buffer.remaining() > 0; ) {
-              n += out.write(buffer);
-            }
-          } finally {
-            writeSize += n;
-          }
+          n = Math.toIntExact(out.write(data));
+          writeSize += n;
         }
 
         if (close) {
@@ -252,19 +255,6 @@ abstract class FileInfo {
       }
     }
 
-    void flush() throws IOException {
-      if (flushSize >= committedSize) {
-        return;
-      }
-      synchronized (out) {
-        if (flushSize >= committedSize) {
-          return;
-        }
-        out.flush();
-        flushSize = writeSize;
-      }
-    }
-
     CompletableFuture<Integer> submitCommit(
         long offset, int size, Function<UnderConstruction, ReadOnly> closeFunction,
         ExecutorService executor, RaftPeerId id, long index) {
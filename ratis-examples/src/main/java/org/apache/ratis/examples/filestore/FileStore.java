@@ -92,10 +92,13 @@ public class FileStore implements Closeable {
   private final Supplier<Path> rootSupplier;
   private final FileMap files;
 
-  private final ExecutorService writer = Executors.newFixedThreadPool(10);
-  private final ExecutorService committer = Executors.newFixedThreadPool(3);
-  private final ExecutorService reader = Executors.newFixedThreadPool(10);
-  private final ExecutorService deleter = Executors.newFixedThreadPool(3);
+  /** The writes and the reads are I/O bound only if the data is not in the page cache. */
+  private static final int NUM_CORES = Runtime.getRuntime().availableProcessors();
+
+  private final ExecutorService writer = Executors.newFixedThreadPool(NUM_CORES);
+  private final ExecutorService committer = Executors.newFixedThreadPool(Math.min(3, NUM_CORES));
+  private final ExecutorService reader = Executors.newFixedThreadPool(NUM_CORES);
+  private final ExecutorService deleter = Executors.newFixedThreadPool(Math.min(3, NUM_CORES));
 
   public FileStore(Supplier<RaftPeerId> idSupplier, Path dir) {
     this.idSupplier = idSupplier;
@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.examples.benchmark;
+
+import org.apache.ratis.MiniRaftCluster;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.examples.ParameterizedBaseTest;
+import org.apache.ratis.grpc.MiniRaftClusterWithGrpc;
+import org.apache.ratis.netty.MiniRaftClusterWithNetty;
+import org.apache.ratis.util.TimeDuration;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+public class TestOpenLoopLoadGenerator extends ParameterizedBaseTest {
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() throws IOException {
+    return getMiniRaftClusters(BenchmarkStateMachine.class, 3,
+        MiniRaftClusterWithGrpc.class, MiniRaftClusterWithNetty.class);
+  }
+
+  @Parameterized.Parameter
+  public MiniRaftCluster cluster;
+
+  @Test
+  public void testOpenLoop() throws Exception {
+    setAndStart(cluster);
+    try (final RaftClient client = cluster.createClient()) {
+      final int rate = 200;
+      final int seconds = 2;
+      final OpenLoopLoadGenerator.Result result = new OpenLoopLoadGenerator(client, rate,
+          TimeDuration.valueOf(seconds, TimeUnit.SECONDS), TimeDuration.valueOf(500, TimeUnit.MILLISECONDS),
+          100, 0.2).run(TimeDuration.valueOf(30, TimeUnit.SECONDS));
+      result.print(System.out);
+
+      Assert.assertEquals(0, result.getFailed());
+      Assert.assertEquals(rate * seconds, result.getSucceeded());
+      Assert.assertEquals(result.getSucceeded(), result.getLatency().getTotalCount());
+      Assert.assertEquals(result.getSucceeded(), result.getServiceTime().getTotalCount());
+      Assert.assertTrue(result.getLatency().getMaxValue() >= result.getServiceTime().getMinValue());
+    }
+  }
+}
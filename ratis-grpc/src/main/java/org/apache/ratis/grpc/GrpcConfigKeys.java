@@ -108,6 +108,41 @@ public interface GrpcConfigKeys {
     static void setLeaderOutstandingAppendsMax(RaftProperties properties, int maxAppend) {
       setInt(properties::setInt, LEADER_OUTSTANDING_APPENDS_MAX_KEY, maxAppend);
     }
+
+    /** Use the native epoll transport if it is available. */
+    String USE_EPOLL_KEY = PREFIX + ".use-epoll";
+    boolean USE_EPOLL_DEFAULT = false;
+    static boolean useEpoll(RaftProperties properties) {
+      return getBoolean(properties::getBoolean, USE_EPOLL_KEY, USE_EPOLL_DEFAULT, getDefaultLog());
+    }
+    static void setUseEpoll(RaftProperties properties, boolean useEpoll) {
+      setBoolean(properties::setBoolean, USE_EPOLL_KEY, useEpoll);
+    }
+
+    /**
+     * The boss group is shared by the servers in a JVM; 0 for the Netty default size.
+     * When neither epoll nor the group sizes are set, the default groups of gRPC are used.
+     */
+    String BOSS_GROUP_SIZE_KEY = PREFIX + ".boss-group.size";
+    int BOSS_GROUP_SIZE_DEFAULT = 0;
+    static int bossGroupSize(RaftProperties properties) {
+      return getInt(properties::getInt,
+          BOSS_GROUP_SIZE_KEY, BOSS_GROUP_SIZE_DEFAULT, getDefaultLog(), requireMin(0));
+    }
+    static void setBossGroupSize(RaftProperties properties, int size) {
+      setInt(properties::setInt, BOSS_GROUP_SIZE_KEY, size);
+    }
+
+    /** The worker group is shared by the servers in a JVM; 0 for the Netty default size. */
+    String WORKER_GROUP_SIZE_KEY = PREFIX + ".worker-group.size";
+    int WORKER_GROUP_SIZE_DEFAULT = 0;
+    static int workerGroupSize(RaftProperties properties) {
+      return getInt(properties::getInt,
+          WORKER_GROUP_SIZE_KEY, WORKER_GROUP_SIZE_DEFAULT, getDefaultLog(), requireMin(0));
+    }
+    static void setWorkerGroupSize(RaftProperties properties, int size) {
+      setInt(properties::setInt, WORKER_GROUP_SIZE_KEY, size);
+    }
   }
 
   interface OutputStream {
@@ -226,6 +226,10 @@ public class GrpcClientProtocolClient implements Closeable {
       return Optional.ofNullable(map.get()).map(m -> m.remove(callId));
     }
 
+    void remove(long callId, CompletableFuture<RaftClientReply> future) {
+      Optional.ofNullable(map.get()).ifPresent(m -> m.remove(callId, future));
+    }
+
     // synchronized to avoid putNew after getAndSetNull
     synchronized Map<Long, CompletableFuture<RaftClientReply>> getAndSetNull() {
       return map.getAndSet(null);
@@ -310,6 +314,12 @@ public class GrpcClientProtocolClient implements Closeable {
       if (f == null) {
         return JavaUtils.completeExceptionally(new AlreadyClosedException(getName() + " is closed."));
       }
+      // a cancelled request is released so that a retry can reuse the callId
+      f.whenComplete((reply, e) -> {
+        if (f.isCancelled()) {
+          replies.remove(callId, f);
+        }
+      });
       try {
         if (!requestStreamer.onNext(ClientProtoUtils.toRaftClientRequestProto(request))) {
           return JavaUtils.completeExceptionally(new AlreadyClosedException(getName() + ": the stream is closed."));
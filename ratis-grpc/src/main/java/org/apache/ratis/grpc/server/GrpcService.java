@@ -82,6 +82,9 @@ public class GrpcService extends RaftServerRpcWithProxy<GrpcServerProtocolClient
 
   private final Server server;
   private final Supplier<InetSocketAddress> addressSupplier;
+  /** The event loop groups shared by the servers in the JVM, or null to use the gRPC default groups. */
+  private final NettyUtils.SharedEventLoopGroup bossGroup;
+  private final NettyUtils.SharedEventLoopGroup workerGroup;
 
   private final GrpcClientProtocolService clientProtocolService;
 
@@ -92,12 +95,16 @@ public class GrpcService extends RaftServerRpcWithProxy<GrpcServerProtocolClient
         RaftServerConfigKeys.Log.Appender.bufferByteLimit(server.getProperties()),
         GrpcConfigKeys.flowControlWindow(server.getProperties(), LOG::info),
         RaftServerConfigKeys.Rpc.requestTimeout(server.getProperties()),
-        tlsConfig);
+        tlsConfig,
+        GrpcConfigKeys.Server.useEpoll(server.getProperties()),
+        GrpcConfigKeys.Server.bossGroupSize(server.getProperties()),
+        GrpcConfigKeys.Server.workerGroupSize(server.getProperties()));
   }
 
   private GrpcService(RaftServer raftServer, Supplier<RaftPeerId> idSupplier, int port,
       SizeInBytes grpcMessageSizeMax, SizeInBytes appenderBufferSize,
-      SizeInBytes flowControlWindow,TimeDuration requestTimeoutDuration, GrpcTlsConfig tlsConfig) {
+      SizeInBytes flowControlWindow,TimeDuration requestTimeoutDuration, GrpcTlsConfig tlsConfig,
+      boolean useEpoll, int bossGroupSize, int workerGroupSize) {
     super(idSupplier, id -> new PeerProxyMap<>(id.toString(),
         p -> new GrpcServerProtocolClient(p, flowControlWindow.getSizeInt(),
             requestTimeoutDuration, tlsConfig)));
@@ -111,12 +118,26 @@ public class GrpcService extends RaftServerRpcWithProxy<GrpcServerProtocolClient
 
     NettyServerBuilder nettyServerBuilder = NettyServerBuilder.forPort(port)
         .withChildOption(ChannelOption.SO_REUSEADDR, true)
+        .withChildOption(ChannelOption.ALLOCATOR, NettyUtils.getAllocator())
         .maxInboundMessageSize(grpcMessageSizeMax.getSizeInt())
         .flowControlWindow(flowControlWindow.getSizeInt())
         .addService(new GrpcServerProtocolService(idSupplier, raftServer))
         .addService(clientProtocolService)
         .addService(new GrpcAdminProtocolService(raftServer));
 
+    if (useEpoll || bossGroupSize > 0 || workerGroupSize > 0) {
+      bossGroup = NettyUtils.SharedEventLoopGroup.acquire(getClass().getSimpleName() + "-boss",
+          bossGroupSize, useEpoll);
+      workerGroup = NettyUtils.SharedEventLoopGroup.acquire(getClass().getSimpleName() + "-worker",
+          workerGroupSize, useEpoll);
+      nettyServerBuilder.bossEventLoopGroup(bossGroup.get())
+          .workerEventLoopGroup(workerGroup.get())
+          .channelType(NettyUtils.getServerChannelClass(workerGroup.get()));
+    } else {
+      bossGroup = null;
+      workerGroup = null;
+    }
+
     if (tlsConfig != null) {
       SslContextBuilder sslContextBuilder =
           tlsConfig.isFileBasedConfig()?
@@ -168,6 +189,11 @@ public class GrpcService extends RaftServerRpcWithProxy<GrpcServerProtocolClient
       s.awaitTermination();
     } catch(InterruptedException e) {
       throw IOUtils.toInterruptedIOException(name + " failed", e);
+    } finally {
+      if (bossGroup != null) {
+        bossGroup.release();
+        workerGroup.release();
+      }
     }
     LOG.info("{} successfully", name);
   }
@@ -255,6 +255,25 @@ public class LogServiceClient implements AutoCloseable {
         }
     }
 
+    /**
+     * Sets the {@link RetentionPolicy} of the given log, overriding the policy configured on the servers.
+     * The records removed by the policy cannot be read anymore.
+     *
+     * @param name The name of the log
+     * @param policy The retention policy of the log
+     */
+    public void setRetentionPolicy(LogName name, RetentionPolicy policy) throws IOException {
+        try (RaftClient client = getRaftClient(getLogInfo(name))) {
+            RaftClientReply reply = client.send(
+                () -> LogServiceProtoUtil.toSetRetentionRequestProto(name, policy).toByteString());
+            LogServiceProtos.SetRetentionReplyProto message =
+                LogServiceProtos.SetRetentionReplyProto.parseFrom(reply.getMessage().getContent());
+            if (message.hasException()) {
+                throw new IOException(message.getException().getErrorMsg());
+            }
+        }
+    }
+
     /**
      * Updates a log with the new configuration object, overriding
      * the previous configuration.
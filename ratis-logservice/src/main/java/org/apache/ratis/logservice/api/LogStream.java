@@ -112,11 +112,19 @@ public interface LogStream extends AutoCloseable{
   LogServiceConfiguration getConfiguration();
 
   /**
-   * Add new log record listener
+   * Add new log record listener, which receives the records written after it is added.
+   * The records are pushed to the listener by the server as soon as they are written.
    * @param listener listener
    */
   void addRecordListener(RecordListener listener);
 
+  /**
+   * Add new log record listener, which receives the records starting at the given recordId.
+   * @param listener listener
+   * @param startRecordId the recordId of the first record to receive
+   */
+  void addRecordListener(RecordListener listener, long startRecordId);
+
 
   /**
    * Remove record listener
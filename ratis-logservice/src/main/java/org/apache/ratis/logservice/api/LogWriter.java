@@ -20,9 +20,10 @@ package org.apache.ratis.logservice.api;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Synchronous client interface to write to a LogStream.
+ * Client interface to write to a LogStream, synchronously or asynchronously.
  */
 public interface LogWriter extends AutoCloseable {
 
@@ -44,6 +45,18 @@ public interface LogWriter extends AutoCloseable {
    */
   List<Long> write(List<ByteBuffer> records) throws IOException;
 
+  /**
+   * Asynchronously appends each entry of data as a new record in the LogStream.
+   * The records of the concurrent calls may be batched into one append,
+   * which is sent after a linger time or once the batch is large enough.
+   * The appends are pipelined, and the records are appended in the order of the calls.
+   * The call blocks if the records waiting for their appends exceed the configured limit of outstanding bytes.
+   *
+   * @param records Records to append
+   * @return a future of the recordIds assigned to the records written
+   */
+  CompletableFuture<List<Long>> writeAsync(List<ByteBuffer> records);
+
   /**
    * Guarantees that all previous data appended by {@link #write(ByteBuffer)} are persisted
    * and durable in the LogStream.
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.logservice.api;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ratis.util.Preconditions;
+import org.apache.ratis.util.TimeDuration;
+
+/**
+ * The retention of the records of a {@link LogStream}.
+ *
+ * The records older than the max age, the oldest records beyond the max bytes,
+ * and, if untilArchived is set, the archived records are removed from the log,
+ * i.e. {@link LogStream#getStartRecordId()} is advanced and the raft log below it is purged.
+ * The records are removed at the granularity of the record index interval,
+ * so a log may retain a few more records than the policy requires.
+ */
+public final class RetentionPolicy {
+  /** Retain all the records. */
+  public static final RetentionPolicy NONE = new RetentionPolicy(0, 0, false);
+
+  private final long maxAgeMs;
+  private final long maxBytes;
+  private final boolean untilArchived;
+
+  private RetentionPolicy(long maxAgeMs, long maxBytes, boolean untilArchived) {
+    Preconditions.assertTrue(maxAgeMs >= 0, () -> "Negative maxAgeMs " + maxAgeMs);
+    Preconditions.assertTrue(maxBytes >= 0, () -> "Negative maxBytes " + maxBytes);
+    this.maxAgeMs = maxAgeMs;
+    this.maxBytes = maxBytes;
+    this.untilArchived = untilArchived;
+  }
+
+  public static RetentionPolicy valueOf(long maxAgeMs, long maxBytes, boolean untilArchived) {
+    return new RetentionPolicy(maxAgeMs, maxBytes, untilArchived);
+  }
+
+  /** @return a copy of this policy with the given max age; zero for no limit. */
+  public RetentionPolicy withMaxAge(TimeDuration maxAge) {
+    return new RetentionPolicy(maxAge.toLong(TimeUnit.MILLISECONDS), maxBytes, untilArchived);
+  }
+
+  /** @return a copy of this policy with the given max bytes; zero for no limit. */
+  public RetentionPolicy withMaxBytes(long bytes) {
+    return new RetentionPolicy(maxAgeMs, bytes, untilArchived);
+  }
+
+  /** @return a copy of this policy which removes the archived records or not. */
+  public RetentionPolicy withUntilArchived(boolean archived) {
+    return new RetentionPolicy(maxAgeMs, maxBytes, archived);
+  }
+
+  public long getMaxAgeMs() {
+    return maxAgeMs;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public boolean isUntilArchived() {
+    return untilArchived;
+  }
+
+  /** @return true if this policy may remove any record. */
+  public boolean isEnabled() {
+    return maxAgeMs > 0 || maxBytes > 0 || untilArchived;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    } else if (!(obj instanceof RetentionPolicy)) {
+      return false;
+    }
+    final RetentionPolicy that = (RetentionPolicy) obj;
+    return maxAgeMs == that.maxAgeMs && maxBytes == that.maxBytes && untilArchived == that.untilArchived;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(maxAgeMs) * 31 * 31 + Long.hashCode(maxBytes) * 31 + Boolean.hashCode(untilArchived);
+  }
+
+  @Override
+  public String toString() {
+    return "RetentionPolicy(maxAgeMs=" + maxAgeMs + ", maxBytes=" + maxBytes
+        + ", untilArchived=" + untilArchived + ")";
+  }
+}
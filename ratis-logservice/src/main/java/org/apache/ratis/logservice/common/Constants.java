@@ -68,4 +68,80 @@ public final class Constants {
             "logservice.peer.failure.detection.period"; // in ms
     public static final long DEFAULT_PEER_FAILURE_DETECTION_PERIOD = 60000;// 1 min.
 
+    public static final String LOG_SERVICE_PLACEMENT_WEIGHT_APPEND_RATE_KEY =
+            "logservice.placement.weight.append.rate";
+    public static final double DEFAULT_PLACEMENT_WEIGHT_APPEND_RATE = 1.0;
+    public static final String LOG_SERVICE_PLACEMENT_WEIGHT_BYTES_STORED_KEY =
+            "logservice.placement.weight.bytes.stored";
+    public static final double DEFAULT_PLACEMENT_WEIGHT_BYTES_STORED = 0.5;
+    public static final String LOG_SERVICE_PLACEMENT_WEIGHT_LOGS_KEY =
+            "logservice.placement.weight.logs";
+    public static final double DEFAULT_PLACEMENT_WEIGHT_LOGS = 0.5;
+    public static final String LOG_SERVICE_PLACEMENT_WEIGHT_DISK_USED_KEY =
+            "logservice.placement.weight.disk.used";
+    public static final double DEFAULT_PLACEMENT_WEIGHT_DISK_USED = 0.5;
+    public static final String LOG_SERVICE_REBALANCE_INTERVAL_KEY =
+            "logservice.rebalance.interval"; // in ms, non-positive to disable
+    public static final long DEFAULT_REBALANCE_INTERVAL = -1;// disabled
+    public static final String LOG_SERVICE_REBALANCE_THRESHOLD_KEY =
+            "logservice.rebalance.threshold"; // ratio of the max score to the mean score
+    public static final double DEFAULT_REBALANCE_THRESHOLD = 1.5;
+
+    public static final String LOG_SERVICE_RECORD_INDEX_INTERVAL_KEY =
+            "logservice.record.index.interval"; // in records
+    public static final long DEFAULT_RECORD_INDEX_INTERVAL = 1024;
+
+    public static final String LOG_SERVICE_READ_CURSOR_MAX_KEY =
+            "logservice.read.cursor.max";
+    public static final int DEFAULT_READ_CURSOR_MAX = 1024;
+    public static final String LOG_SERVICE_READ_CURSOR_IDLE_TIMEOUT_KEY =
+            "logservice.read.cursor.idle.timeout"; // in ms
+    public static final long DEFAULT_READ_CURSOR_IDLE_TIMEOUT = 60000;// 1 min.
+    public static final String LOG_SERVICE_READ_MAX_BYTES_KEY =
+            "logservice.read.max.bytes"; // in bytes
+    public static final long DEFAULT_READ_MAX_BYTES = 4 * 1024 * 1024;// 4MB
+
+    public static final String LOG_SERVICE_SUBSCRIPTION_CREDITS_KEY =
+            "logservice.subscription.credits"; // in records
+    public static final int DEFAULT_SUBSCRIPTION_CREDITS = 256;
+    public static final String LOG_SERVICE_SUBSCRIPTION_MAX_WAIT_KEY =
+            "logservice.subscription.max.wait"; // in ms
+    public static final long DEFAULT_SUBSCRIPTION_MAX_WAIT = 1000;// 1 sec.
+
+    public static final String LOG_SERVICE_ARCHIVE_CHUNK_RECORDS_KEY =
+            "logservice.archive.chunk.records"; // in records
+    public static final long DEFAULT_ARCHIVE_CHUNK_RECORDS = 1000000;
+    public static final String LOG_SERVICE_ARCHIVE_THREADS_KEY =
+            "logservice.archive.threads";
+    public static final int DEFAULT_ARCHIVE_THREADS = 4;
+    public static final String LOG_SERVICE_ARCHIVE_BLOCK_SIZE_KEY =
+            "logservice.archive.block.size"; // in bytes, before compression
+    public static final int DEFAULT_ARCHIVE_BLOCK_SIZE = 64 * 1024;// 64KB
+    public static final String LOG_SERVICE_ARCHIVE_READ_AHEAD_KEY =
+            "logservice.archive.read.ahead"; // in bytes
+    public static final int DEFAULT_ARCHIVE_READ_AHEAD = 1024 * 1024;// 1MB
+
+    public static final String LOG_SERVICE_RETENTION_MAX_AGE_KEY =
+            "logservice.retention.max.age"; // in ms, 0 for no limit
+    public static final long DEFAULT_RETENTION_MAX_AGE = 0;
+    public static final String LOG_SERVICE_RETENTION_MAX_BYTES_KEY =
+            "logservice.retention.max.bytes"; // in bytes, 0 for no limit
+    public static final long DEFAULT_RETENTION_MAX_BYTES = 0;
+    public static final String LOG_SERVICE_RETENTION_UNTIL_ARCHIVED_KEY =
+            "logservice.retention.until.archived";
+    public static final boolean DEFAULT_RETENTION_UNTIL_ARCHIVED = false;
+    public static final String LOG_SERVICE_RETENTION_CHECK_INTERVAL_KEY =
+            "logservice.retention.check.interval"; // in ms, non-positive to disable
+    public static final long DEFAULT_RETENTION_CHECK_INTERVAL = 60000;// 1 min.
+
+    public static final String LOG_SERVICE_WRITER_LINGER_KEY =
+            "logservice.writer.linger"; // in ms
+    public static final long DEFAULT_WRITER_LINGER = 5;
+    public static final String LOG_SERVICE_WRITER_BATCH_SIZE_KEY =
+            "logservice.writer.batch.size"; // in bytes
+    public static final int DEFAULT_WRITER_BATCH_SIZE = 64 * 1024;// 64KB
+    public static final String LOG_SERVICE_WRITER_OUTSTANDING_BYTES_MAX_KEY =
+            "logservice.writer.outstanding.bytes.max"; // in bytes
+    public static final int DEFAULT_WRITER_OUTSTANDING_BYTES_MAX = 32 * 1024 * 1024;// 32MB
+
 }
@@ -0,0 +1,448 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.logservice.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An archive file of a range of records, stored in compressed blocks with a footer index.
+ *
+ * The file layout is
+ * <pre>
+ *   header: magic, firstRecordId
+ *   block_1 ... block_n, each of which is (blockMagic, numRecords, compressedLength, length, data)
+ *   footer: (firstRecordId, numRecords, offset, compressedLength, length) of each block
+ *   trailer: footerOffset, numBlocks, version, magic
+ * </pre>
+ * The data of a block is the deflate-compressed records, each of which is an int length followed by the bytes.
+ * The footer allows reading a block, or the block of a recordId, without reading the blocks before it.
+ * The footer and the trailer are written when the file is closed.
+ * A file without the trailer, i.e. a file being written or left by a crash,
+ * is read by scanning the block headers, so the blocks flushed by {@link Writer#flush()} are readable.
+ */
+public final class ArchiveBlockFile {
+  private static final Logger LOG = LoggerFactory.getLogger(ArchiveBlockFile.class);
+
+  private static final long MAGIC = 0x524154495341524CL; // "RATISARL"
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 8 + 8;
+  private static final int BLOCK_MAGIC = 0x424C4B31; // "BLK1"
+  private static final int BLOCK_HEADER_SIZE = 4 + 4 + 4 + 4;
+  private static final int TRAILER_SIZE = 8 + 4 + 4 + 8;
+
+  private ArchiveBlockFile() {
+  }
+
+  /** The footer index entry of a block. */
+  public static final class Block {
+    private final long firstRecordId;
+    private final int numRecords;
+    private final long offset;
+    private final int compressedLength;
+    private final int length;
+
+    private Block(long firstRecordId, int numRecords, long offset, int compressedLength, int length) {
+      this.firstRecordId = firstRecordId;
+      this.numRecords = numRecords;
+      this.offset = offset;
+      this.compressedLength = compressedLength;
+      this.length = length;
+    }
+
+    public long getFirstRecordId() {
+      return firstRecordId;
+    }
+
+    public int getNumRecords() {
+      return numRecords;
+    }
+
+    /** @return the recordId after the last record of this block. */
+    public long getEndRecordId() {
+      return firstRecordId + numRecords;
+    }
+
+    @Override
+    public String toString() {
+      return "Block[" + firstRecordId + ", " + getEndRecordId() + ")@" + offset;
+    }
+  }
+
+  /**
+   * @return true if the file starts with the header of an archive block file.
+   *         The length of a file being written may not include its flushed bytes, so it is not used.
+   */
+  public static boolean isBlockFile(FileSystem fs, Path path) throws IOException {
+    try (FSDataInputStream in = fs.open(path)) {
+      return in.readLong() == MAGIC;
+    } catch (EOFException e) {
+      return false;
+    }
+  }
+
+  /** Write the records into compressed blocks of the given uncompressed size. */
+  public static final class Writer implements Closeable {
+    private final FSDataOutputStream out;
+    private final int blockSize;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final List<Block> blocks = new ArrayList<>();
+
+    private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+    private final DataOutputStream blockOut = new DataOutputStream(blockBytes);
+    private long blockFirstRecordId;
+    private int blockNumRecords = 0;
+    private byte[] compressBuffer = new byte[0];
+
+    public Writer(FileSystem fs, Path path, int blockSize, long firstRecordId) throws IOException {
+      Preconditions.assertTrue(blockSize > 0, () -> "Non-positive blockSize " + blockSize);
+      this.out = fs.create(path, true);
+      this.out.writeLong(MAGIC);
+      this.out.writeLong(firstRecordId);
+      this.blockSize = blockSize;
+      this.blockFirstRecordId = firstRecordId;
+    }
+
+    public void append(ByteString record) throws IOException {
+      blockOut.writeInt(record.size());
+      record.writeTo(blockOut);
+      blockNumRecords++;
+      if (blockBytes.size() >= blockSize) {
+        flushBlock();
+      }
+    }
+
+    public void append(ByteBuffer record) throws IOException {
+      append(ByteString.copyFrom(record.duplicate()));
+    }
+
+    private void flushBlock() throws IOException {
+      if (blockNumRecords == 0) {
+        return;
+      }
+      final byte[] bytes = blockBytes.toByteArray();
+      deflater.reset();
+      deflater.setInput(bytes);
+      deflater.finish();
+      // the compressed length of incompressible data slightly exceeds its length
+      final int bound = bytes.length + (bytes.length >> 3) + 64;
+      if (compressBuffer.length < bound) {
+        compressBuffer = new byte[bound];
+      }
+      int compressedLength = 0;
+      while (!deflater.finished()) {
+        if (compressedLength == compressBuffer.length) {
+          final byte[] larger = new byte[2 * compressBuffer.length];
+          System.arraycopy(compressBuffer, 0, larger, 0, compressedLength);
+          compressBuffer = larger;
+        }
+        compressedLength += deflater.deflate(compressBuffer, compressedLength,
+            compressBuffer.length - compressedLength);
+      }
+
+      out.writeInt(BLOCK_MAGIC);
+      out.writeInt(blockNumRecords);
+      out.writeInt(compressedLength);
+      out.writeInt(bytes.length);
+      blocks.add(new Block(blockFirstRecordId, blockNumRecords, out.getPos(), compressedLength, bytes.length));
+      out.write(compressBuffer, 0, compressedLength);
+
+      blockFirstRecordId += blockNumRecords;
+      blockNumRecords = 0;
+      blockBytes.reset();
+    }
+
+    /**
+     * Write the current block, even if it is not full, and flush the file,
+     * so that the appended records are readable before the file is closed.
+     */
+    public void flush() throws IOException {
+      flushBlock();
+      out.hflush();
+    }
+
+    /** @return the recordId after the last appended record. */
+    public long getEndRecordId() {
+      return blockFirstRecordId + blockNumRecords;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        flushBlock();
+        final long footerOffset = out.getPos();
+        for (Block b : blocks) {
+          out.writeLong(b.firstRecordId);
+          out.writeInt(b.numRecords);
+          out.writeLong(b.offset);
+          out.writeInt(b.compressedLength);
+          out.writeInt(b.length);
+        }
+        out.writeLong(footerOffset);
+        out.writeInt(blocks.size());
+        out.writeInt(VERSION);
+        out.writeLong(MAGIC);
+      } finally {
+        deflater.end();
+        out.close();
+      }
+    }
+  }
+
+  /**
+   * Read the records of an archive block file.
+   *
+   * The blocks are read ahead, i.e. a block is read together with the blocks following it
+   * up to the read-ahead size, so that a sequential scan reads the file in large chunks.
+   */
+  public static final class Reader implements Closeable {
+    private final Path path;
+    private final FSDataInputStream in;
+    private final int readAheadSize;
+    private long footerOffset;
+    private final List<Block> blocks;
+
+    private int blockIndex = -1;
+    private ByteBuffer blockRecords = null;
+
+    /** The bytes read ahead from the file, starting at readAheadOffset. */
+    private byte[] readAhead = new byte[0];
+    private long readAheadOffset = 0;
+    private int readAheadLength = 0;
+
+    /**
+     * @param incompleteAllowed read a file without the trailer, i.e. a file being written,
+     *                          by scanning its flushed blocks, instead of failing.
+     */
+    public Reader(FileSystem fs, Path path, long fileLength, int readAheadSize, boolean incompleteAllowed)
+        throws IOException {
+      this.path = path;
+      this.in = fs.open(path);
+      this.readAheadSize = readAheadSize;
+      try {
+        this.blocks = readFooter(fileLength, incompleteAllowed);
+      } catch (IOException e) {
+        in.close();
+        throw e;
+      }
+    }
+
+    private List<Block> readFooter(long fileLength, boolean incompleteAllowed) throws IOException {
+      boolean complete = fileLength >= 8 + TRAILER_SIZE;
+      if (complete) {
+        in.seek(fileLength - 8);
+        complete = in.readLong() == MAGIC;
+      }
+      if (!complete) {
+        if (incompleteAllowed) {
+          LOG.debug("{} is being written, read its flushed blocks", path);
+          return scanBlocks();
+        }
+        throw new EOFException(path + " seems to be corrupted: the trailer is not found, length=" + fileLength);
+      }
+      in.seek(fileLength - TRAILER_SIZE);
+      footerOffset = in.readLong();
+      final int numBlocks = in.readInt();
+      final int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException(path + ": unsupported version " + version);
+      }
+      in.seek(footerOffset);
+      final List<Block> list = new ArrayList<>(numBlocks);
+      for (int i = 0; i < numBlocks; i++) {
+        list.add(new Block(in.readLong(), in.readInt(), in.readLong(), in.readInt(), in.readInt()));
+      }
+      return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Scan the block headers of a file without the trailer, up to the last complete block.
+     * The file is read until the end of the stream
+     * since the file length may not include the bytes flushed to a file being written.
+     */
+    private List<Block> scanBlocks() throws IOException {
+      final List<Block> list = new ArrayList<>();
+      long offset = HEADER_SIZE;
+      try {
+        in.seek(8);
+        long firstRecordId = in.readLong();
+        for(;;) {
+          in.seek(offset);
+          if (in.readInt() != BLOCK_MAGIC) {
+            // e.g. a partially written footer
+            break;
+          }
+          final int numRecords = in.readInt();
+          final int compressedLength = in.readInt();
+          final int length = in.readInt();
+          if (numRecords <= 0 || compressedLength < 0 || length < 0) {
+            break;
+          }
+          final long dataOffset = offset + BLOCK_HEADER_SIZE;
+          // check that the block is completely written
+          if (compressedLength > 0) {
+            in.seek(dataOffset + compressedLength - 1);
+            if (in.read() < 0) {
+              break;
+            }
+          }
+          list.add(new Block(firstRecordId, numRecords, dataOffset, compressedLength, length));
+          firstRecordId += numRecords;
+          offset = dataOffset + compressedLength;
+        }
+      } catch (EOFException e) {
+        LOG.trace("{}: reached the end at offset {}", path, offset, e);
+      }
+      footerOffset = offset;
+      return Collections.unmodifiableList(list);
+    }
+
+    /** @return the footer index of the blocks. */
+    public List<Block> getBlocks() {
+      return blocks;
+    }
+
+    /** @return the recordId of the first record, or the given default if there are no records. */
+    public long getFirstRecordId(long defaultRecordId) {
+      return blocks.isEmpty() ? defaultRecordId : blocks.get(0).firstRecordId;
+    }
+
+    /** @return the number of the records in this file. */
+    public long getNumRecords() {
+      return blocks.isEmpty() ? 0 : blocks.get(blocks.size() - 1).getEndRecordId() - blocks.get(0).firstRecordId;
+    }
+
+    /**
+     * Position this reader before the n-th record of this file, or at the end if there are no more records.
+     * Only the block of the record is read.
+     * @return the number of records before the position, i.e. n unless the file has less records.
+     */
+    public long seek(long n) throws IOException {
+      Preconditions.assertTrue(n >= 0, () -> "Negative n " + n);
+      if (n >= getNumRecords()) {
+        blockIndex = blocks.size() - 1;
+        blockRecords = null;
+        return getNumRecords();
+      }
+      final long recordId = blocks.get(0).firstRecordId + n;
+      // binary search for the block of the record
+      int low = 0;
+      int high = blocks.size() - 1;
+      while (low < high) {
+        final int mid = (low + high + 1) >>> 1;
+        if (blocks.get(mid).firstRecordId <= recordId) {
+          low = mid;
+        } else {
+          high = mid - 1;
+        }
+      }
+      blockIndex = low;
+      final Block block = blocks.get(blockIndex);
+      blockRecords = readBlock(block);
+      for (long i = block.firstRecordId; i < recordId; i++) {
+        final int length = blockRecords.getInt();
+        checkLength(length);
+        blockRecords.position(blockRecords.position() + length);
+      }
+      return n;
+    }
+
+    private void checkLength(int length) throws EOFException {
+      if (length < 0 || length > blockRecords.remaining()) {
+        throw new EOFException(path + " seems to be corrupted: record length " + length
+            + " exceeds the remaining " + blockRecords.remaining() + " bytes of " + blocks.get(blockIndex));
+      }
+    }
+
+    /** @return the next record, or null if there are no more records. */
+    public byte[] next() throws IOException {
+      while (blockRecords == null || !blockRecords.hasRemaining()) {
+        if (blockIndex + 1 >= blocks.size()) {
+          return null;
+        }
+        blockRecords = readBlock(blocks.get(++blockIndex));
+      }
+      final int length = blockRecords.getInt();
+      checkLength(length);
+      final byte[] record = new byte[length];
+      blockRecords.get(record);
+      return record;
+    }
+
+    private ByteBuffer readBlock(Block block) throws IOException {
+      if (block.offset < readAheadOffset
+          || block.offset + block.compressedLength > readAheadOffset + readAheadLength) {
+        // read the block and the following blocks up to the read-ahead size
+        final int length = (int) Math.max(block.compressedLength,
+            Math.min(readAheadSize, footerOffset - block.offset));
+        if (readAhead.length < length) {
+          readAhead = new byte[length];
+        }
+        in.readFully(block.offset, readAhead, 0, length);
+        readAheadOffset = block.offset;
+        readAheadLength = length;
+      }
+      final byte[] bytes = new byte[block.length];
+      final Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(readAhead, (int) (block.offset - readAheadOffset), block.compressedLength);
+        int n = 0;
+        while (n < bytes.length && !inflater.finished()) {
+          final int inflated = inflater.inflate(bytes, n, bytes.length - n);
+          if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          n += inflated;
+        }
+        if (n != bytes.length) {
+          throw new EOFException(path + " seems to be corrupted: inflated " + n + " bytes from " + block
+              + " but expected " + bytes.length);
+        }
+      } catch (DataFormatException e) {
+        throw new IOException(path + " seems to be corrupted: failed to inflate " + block, e);
+      } finally {
+        inflater.end();
+      }
+      return ByteBuffer.wrap(bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
@@ -17,6 +17,8 @@
  */
 package org.apache.ratis.logservice.impl;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -27,6 +29,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
@@ -34,20 +37,53 @@ import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.ratis.logservice.api.ArchiveLogReader;
+import org.apache.ratis.logservice.common.Constants;
 import org.apache.ratis.logservice.util.LogServiceUtils;
 import org.apache.ratis.thirdparty.com.google.common.base.Preconditions;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.thirdparty.com.google.protobuf.UnsafeByteOperations;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Reads the archive files of a log in the order of their recordIds.
+ * A file is either an {@link ArchiveBlockFile} or, as written by {@link ArchiveHdfsLogWriter},
+ * a sequence of records each of which is an int length followed by the bytes.
+ *
+ * The name of a rolled file has the recordId after its last record,
+ * so a seek opens the file of the recordId directly and, if it is a block file,
+ * reads only the block of the recordId using the footer index.
+ * The files are read ahead for sequential scans.
+ */
 public class ArchiveHdfsLogReader implements ArchiveLogReader {
   public static final Logger LOG = LoggerFactory.getLogger(ArchiveHdfsLogReader.class);
   private long fileLength;
   private List<FileStatus> files;
+  /*
+   * The recordId after the last record of each file, Long.MAX_VALUE for the file being written
+   */
+  private long[] fileEnds;
+  /*
+   * The recordId of the first record of the first file
+   */
+  private long firstRecordId = 0;
   private FileSystem hdfs;
+  private final int readAheadSize;
   private FSDataInputStream is;
+  /*
+   * The buffered stream of is
+   */
+  private DataInputStream in;
+  /*
+   * The reader of the current file if it is a block file; otherwise, the records are read from in
+   */
+  private ArchiveBlockFile.Reader blockReader;
   private byte[] currentRecord;
+  /*
+   * The index of the next file to open, i.e. the current file is fileCounter - 1
+   */
   private int fileCounter = 0;
-  private int currentRecordId;
+  private long currentRecordId;
 
   public ArchiveHdfsLogReader(String archiveLocation) throws IOException {
     this(new Configuration(), archiveLocation);
@@ -56,11 +92,16 @@ public class ArchiveHdfsLogReader implements ArchiveLogReader {
   public ArchiveHdfsLogReader(Configuration configuration, String archiveLocation)
       throws IOException {
     this.hdfs = FileSystem.get(configuration);
+    this.readAheadSize = configuration.getInt(Constants.LOG_SERVICE_ARCHIVE_READ_AHEAD_KEY,
+        Constants.DEFAULT_ARCHIVE_READ_AHEAD);
     Path archiveLocationPath = new Path(archiveLocation);
     if (!hdfs.exists(archiveLocationPath)) {
       throw new FileNotFoundException(archiveLocation);
     }
-    files = Arrays.asList(hdfs.listStatus(archiveLocationPath));
+    // skip the directories, e.g. the temporary directory of an archival in progress
+    files = Arrays.stream(hdfs.listStatus(archiveLocationPath))
+        .filter(FileStatus::isFile)
+        .collect(Collectors.toList());
     if (files.size() > 0) {
       Collections.sort(files, new Comparator<FileStatus>() {
         @Override public int compare(FileStatus o1, FileStatus o2) {
@@ -70,21 +111,90 @@ public class ArchiveHdfsLogReader implements ArchiveLogReader {
               .compareTo(LogServiceUtils.getRecordIdFromRolledArchiveFile(o2.getPath()));
         }
       });
-      openNextFilePath();
+    }
+    fileEnds = files.stream()
+        .mapToLong(f -> LogServiceUtils.getRecordIdFromRolledArchiveFile(f.getPath()))
+        .toArray();
+    if (files.size() > 0) {
+      openFile(0);
+      if (blockReader != null) {
+        firstRecordId = blockReader.getFirstRecordId(0);
+      }
+      currentRecordId = firstRecordId;
       loadNext();
     }
   }
 
-  private Path openNextFilePath() throws IOException {
-    Path filePath = files.get(fileCounter).getPath();
-    this.is = this.hdfs.open(filePath);
+  private Path openFile(int index) throws IOException {
+    closeCurrentFile();
+    Path filePath = files.get(index).getPath();
     this.fileLength = this.hdfs.getFileStatus(filePath).getLen();
-    fileCounter++;
+    if (ArchiveBlockFile.isBlockFile(hdfs, filePath)) {
+      // the file being written has no trailer yet
+      final boolean beingWritten = fileEnds[index] == Long.MAX_VALUE;
+      this.blockReader = new ArchiveBlockFile.Reader(hdfs, filePath, fileLength, readAheadSize, beingWritten);
+    } else {
+      this.is = this.hdfs.open(filePath);
+      this.in = new DataInputStream(new BufferedInputStream(is, readAheadSize));
+    }
+    fileCounter = index + 1;
     return filePath;
 
   }
 
+  private long getFileStart(int index) {
+    return index == 0 ? firstRecordId : fileEnds[index - 1];
+  }
+
+  /**
+   * @return the index of the first file with records after the given recordId,
+   *         or the last file if there is no such file.
+   */
+  private int getFileIndex(long recordId) {
+    int low = 0;
+    int high = files.size() - 1;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (fileEnds[mid] > recordId) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  private void closeCurrentFile() throws IOException {
+    if (this.in != null) {
+      this.in.close();
+      this.in = null;
+      this.is = null;
+    }
+    if (this.blockReader != null) {
+      this.blockReader.close();
+      this.blockReader = null;
+    }
+  }
+
   @Override public void seek(long recordId) throws IOException {
+    if (files.isEmpty()) {
+      return;
+    }
+    final int index = getFileIndex(recordId);
+    final long fileStart = getFileStart(index);
+    if (index != fileCounter - 1 || (blockReader == null && recordId < currentRecordId)) {
+      openFile(index);
+      currentRecord = null;
+      currentRecordId = fileStart;
+      if (blockReader == null) {
+        loadNext();
+      }
+    }
+    if (blockReader != null) {
+      // jump to the block of the recordId
+      currentRecordId = fileStart + blockReader.seek(Math.max(0, recordId - fileStart));
+      loadNext();
+    }
     while (currentRecordId < recordId && hasNext()) {
       next();
     }
@@ -104,6 +214,13 @@ public class ArchiveHdfsLogReader implements ArchiveLogReader {
     return current;
   }
 
+  @Override public ByteString peekRecord() {
+    if (currentRecord == null) {
+      throw new NoSuchElementException();
+    }
+    return UnsafeByteOperations.unsafeWrap(currentRecord);
+  }
+
   @Override public long getCurrentRaftIndex() {
     throw new UnsupportedOperationException(
         "getCurrentRaftIndex() is not supported for archive hdfs log reader");
@@ -117,21 +234,31 @@ public class ArchiveHdfsLogReader implements ArchiveLogReader {
     return ByteBuffer.wrap(current);
   }
 
-  private int readLength() throws IOException {
+  /**
+   * @return the next record of the current file, or null at the end of the file.
+   */
+  private byte[] readFromCurrentFile() throws IOException {
+    if (blockReader != null) {
+      return blockReader.next();
+    }
+    if (in == null) {
+      return null;
+    }
     int length;
     try {
-      length = is.readInt();
+      length = in.readInt();
     } catch (EOFException e) {
-      if (files.size() <= fileCounter) {
-        LOG.trace("EOF and no more file to read, throwing back", e);
-        throw e;
-      } else {
-        LOG.trace("EOF.. Opening next file: {}!!", files.get(fileCounter).getPath());
-        openNextFilePath();
-        length = is.readInt();
-      }
+      LOG.trace("EOF of the current file", e);
+      return null;
     }
-    return length;
+    byte[] bytes = new byte[length];
+    try {
+      in.readFully(bytes);
+    } catch (EOFException e) {
+      throw new EOFException(
+          "File seems to be corrupted, Encountered EOF before reading the complete record");
+    }
+    return bytes;
   }
 
   @Override public void readNext(ByteBuffer buffer) throws IOException {
@@ -182,26 +309,24 @@ public class ArchiveHdfsLogReader implements ArchiveLogReader {
   }
 
   @Override public void close() throws IOException {
-    if (this.is != null) {
-      this.is.close();
-      this.is = null;
-    }
+    closeCurrentFile();
   }
 
   private void loadNext() throws IOException {
-    int length;
-    try {
-      length = readLength();
-    } catch (EOFException e) {
-      currentRecord = null;
-      return;
-    }
-    byte[] bytes = new byte[length];
-    if (is.read(bytes) != length) {
-      throw new EOFException(
-          "File seems to be corrupted, Encountered EOF before reading the complete record");
+    currentRecord = null;
+    for(;;) {
+      byte[] record = readFromCurrentFile();
+      if (record != null) {
+        currentRecord = record;
+        return;
+      }
+      if (files.size() <= fileCounter) {
+        LOG.trace("EOF and no more file to read");
+        return;
+      }
+      LOG.trace("EOF.. Opening next file: {}!!", files.get(fileCounter).getPath());
+      openFile(fileCounter);
     }
-    currentRecord = bytes;
   }
 
   //Only for testing
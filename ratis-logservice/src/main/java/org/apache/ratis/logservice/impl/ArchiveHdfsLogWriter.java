@@ -21,29 +21,42 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.ratis.logservice.api.ArchiveLogWriter;
 import org.apache.ratis.logservice.api.LogName;
+import org.apache.ratis.logservice.common.Constants;
 import org.apache.ratis.logservice.util.LogServiceUtils;
+import org.apache.ratis.thirdparty.com.google.protobuf.UnsafeByteOperations;
+import org.apache.ratis.util.JavaUtils;
 
+/**
+ * Writes the records of a log into {@link ArchiveBlockFile}s.
+ * The current file is named after the log, and it is renamed with the recordId after its last record
+ * when it is rolled or closed, so that the file names give the recordId range of each file.
+ * The records of the current file become readable once they are flushed by {@link #getLastWrittenRecordId()},
+ * or once the file is rolled or closed.
+ */
 public class ArchiveHdfsLogWriter implements ArchiveLogWriter {
   private final Configuration configuration;
+  private final int blockSize;
   private FileSystem hdfs;
-  private FSDataOutputStream os;
+  private ArchiveBlockFile.Writer os;
   private Path currentPath;
   private long currentRecordId;
   private long lastRollRecordId;
 
   public ArchiveHdfsLogWriter(Configuration conf) {
     this.configuration = conf;
+    this.blockSize = conf.getInt(Constants.LOG_SERVICE_ARCHIVE_BLOCK_SIZE_KEY,
+        Constants.DEFAULT_ARCHIVE_BLOCK_SIZE);
   }
 
   public ArchiveHdfsLogWriter() {
-    this.configuration = new Configuration();
+    this(new Configuration());
   }
 
   @Override public void init(String archiveLocation, LogName logName) throws IOException {
@@ -53,7 +66,7 @@ public class ArchiveHdfsLogWriter implements ArchiveLogWriter {
       hdfs.mkdirs(loc);
     }
     currentPath = new Path(loc, logName.getName());
-    os = hdfs.create(currentPath, true);
+    os = new ArchiveBlockFile.Writer(hdfs, currentPath, blockSize, currentRecordId);
   }
 
   @Override public long write(ByteBuffer buffer) throws IOException {
@@ -62,8 +75,8 @@ public class ArchiveHdfsLogWriter implements ArchiveLogWriter {
       int curIndex = buffer.arrayOffset() + buffer.position();
       int endIndex = curIndex + buffer.remaining();
       int length = endIndex - startIndex;
-      os.writeInt(length);
-      os.write(buffer.array(), startIndex, length);
+      // the record is compressed into the current block before this call returns
+      os.append(UnsafeByteOperations.unsafeWrap(buffer.array(), startIndex, length));
     } else {
       throw new IllegalArgumentException(
           "Currently array backed byte buffer is only supported for archive write !!");
@@ -80,6 +93,14 @@ public class ArchiveHdfsLogWriter implements ArchiveLogWriter {
     return list;
   }
 
+  @Override public CompletableFuture<List<Long>> writeAsync(List<ByteBuffer> records) {
+    try {
+      return CompletableFuture.completedFuture(write(records));
+    } catch (IOException e) {
+      return JavaUtils.completeExceptionally(e);
+    }
+  }
+
   @Override public long sync() throws IOException {
     return 0;
   }
@@ -99,12 +120,16 @@ public class ArchiveHdfsLogWriter implements ArchiveLogWriter {
           new Path(LogServiceUtils.getRolledPathForArchiveWriter(currentPath, currentRecordId)));
       lastRollRecordId = currentRecordId;
       //create new file
-      os = hdfs.create(currentPath, true);
+      os = new ArchiveBlockFile.Writer(hdfs, currentPath, blockSize, currentRecordId);
     }
   }
 
+  /**
+   * Flush the current file, so that the records written so far are readable and survive a crash.
+   * @return the recordId of the last written record.
+   */
   @Override public long getLastWrittenRecordId() throws IOException {
-    os.hflush();
+    os.flush();
     return currentRecordId;
   }
 
@@ -130,6 +130,10 @@ public class ArchivedLogStreamImpl implements LogStream {
     throw new UnsupportedOperationException("Add record listener");
   }
 
+  @Override public void addRecordListener(RecordListener listener, long startRecordId) {
+    throw new UnsupportedOperationException("Add record listener");
+  }
+
   @Override public boolean removeRecordListener(RecordListener listener) {
     throw new UnsupportedOperationException("remove record listener");
   }
@@ -21,11 +21,13 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.ratis.client.RaftClient;
 import org.apache.ratis.logservice.api.LogReader;
 import org.apache.ratis.logservice.api.LogServiceConfiguration;
 import org.apache.ratis.logservice.api.LogStream;
+import org.apache.ratis.logservice.common.Constants;
 import org.apache.ratis.logservice.proto.LogServiceProtos.*;
 import org.apache.ratis.logservice.util.LogServiceProtoUtil;
 import org.apache.ratis.protocol.Message;
@@ -60,10 +62,35 @@ public class LogReaderImpl implements LogReader {
    */
   private long currentRecordId;
 
+  /*
+   * The id of the server-side cursor keeping the read position, never 0
+   */
+  private final long cursorId;
+  private boolean cursorOpened = false;
+
+  /*
+   * The max number of bytes of the records per read request
+   */
+  private final long maxBytes;
+
   public LogReaderImpl(LogStream logStream) {
     this.parent = logStream;
     this.raftClient = logStream.getRaftClient();
     this.config = logStream.getConfiguration();
+    long id;
+    do {
+      id = ThreadLocalRandom.current().nextLong();
+    } while (id == 0);
+    this.cursorId = id;
+    this.maxBytes = config.getLong(Constants.LOG_SERVICE_READ_MAX_BYTES_KEY,
+        Constants.DEFAULT_READ_MAX_BYTES);
+  }
+
+  private Message toReadLogRequest(int numRecords) {
+    cursorOpened = true;
+    return Message.valueOf(LogServiceProtoUtil
+        .toReadLogRequestProto(parent.getName(), currentRecordId, numRecords, cursorId, false, maxBytes)
+        .toByteString());
   }
 
   @Override
@@ -72,15 +99,19 @@ public class LogReaderImpl implements LogReader {
     this.currentRecordId = recordId;
   }
 
+  /** Parse the reply with aliasing so that the records are not copied. */
+  private static ReadLogReplyProto parseReply(RaftClientReply reply) throws IOException {
+    return LogServiceProtoUtil.parseFromAliased(reply.getMessage().getContent(), ReadLogReplyProto.parser());
+  }
+
   @Override
   public ByteBuffer readNext() throws IOException {
 
     try {
       RaftClientReply reply =
           raftClient
-              .sendReadOnly(Message.valueOf(LogServiceProtoUtil
-                  .toReadLogRequestProto(parent.getName(), currentRecordId, 1).toByteString()));
-      ReadLogReplyProto proto = ReadLogReplyProto.parseFrom(reply.getMessage().getContent());
+              .sendReadOnly(toReadLogRequest(1));
+      ReadLogReplyProto proto = parseReply(reply);
       if (proto.hasException()) {
         LogServiceException e = proto.getException();
         throw new IOException(e.getErrorMsg());
@@ -104,9 +135,8 @@ public class LogReaderImpl implements LogReader {
 
     Preconditions.checkNotNull(buffer, "buffer is NULL" );
     try {
-      RaftClientReply reply = raftClient.sendReadOnly(Message.valueOf(LogServiceProtoUtil
-          .toReadLogRequestProto(parent.getName(), currentRecordId, 1).toByteString()));
-      ReadLogReplyProto proto = ReadLogReplyProto.parseFrom(reply.getMessage().getContent());
+      RaftClientReply reply = raftClient.sendReadOnly(toReadLogRequest(1));
+      ReadLogReplyProto proto = parseReply(reply);
       if (proto.hasException()) {
         LogServiceException e = proto.getException();
         throw new IOException(e.getErrorMsg());
@@ -114,7 +144,7 @@ public class LogReaderImpl implements LogReader {
       currentRecordId++;
       if (proto.getLogRecordCount() > 0) {
         // TODO limits
-        buffer.put(proto.getLogRecord(0).toByteArray());
+        proto.getLogRecord(0).copyTo(buffer);
       }
     } catch (Exception e) {
       throw new IOException(e);
@@ -127,9 +157,8 @@ public class LogReaderImpl implements LogReader {
 
     try {
       RaftClientReply reply = raftClient
-          .sendReadOnly(Message.valueOf(LogServiceProtoUtil
-              .toReadLogRequestProto(parent.getName(), currentRecordId, numRecords).toByteString()));
-      ReadLogReplyProto proto = ReadLogReplyProto.parseFrom(reply.getMessage().getContent());
+          .sendReadOnly(toReadLogRequest(numRecords));
+      ReadLogReplyProto proto = parseReply(reply);
       if (proto.hasException()) {
         LogServiceException e = proto.getException();
         throw new IOException(e.getErrorMsg());
@@ -138,7 +167,8 @@ public class LogReaderImpl implements LogReader {
 
       // TODO correct current record
       currentRecordId += n;
-      List<ByteBuffer> ret = new ArrayList<ByteBuffer>();
+      // The records parsed with aliasing are the slices of the reply, so each record is copied only once here
+      List<ByteBuffer> ret = new ArrayList<ByteBuffer>(n);
       for (int i = 0; i < n; i++) {
         ret.add(ByteBuffer.wrap(proto.getLogRecord(i).toByteArray()));
       }
@@ -154,9 +184,8 @@ public class LogReaderImpl implements LogReader {
     Preconditions.checkArgument(buffers.length > 0, "list of buffers is empty");
 
     try {
-      RaftClientReply reply = raftClient.sendReadOnly(Message.valueOf(LogServiceProtoUtil
-          .toReadLogRequestProto(parent.getName(), currentRecordId, buffers.length).toByteString()));
-      ReadLogReplyProto proto = ReadLogReplyProto.parseFrom(reply.getMessage().getContent());
+      RaftClientReply reply = raftClient.sendReadOnly(toReadLogRequest(buffers.length));
+      ReadLogReplyProto proto = parseReply(reply);
       if (proto.hasException()) {
         LogServiceException e = proto.getException();
         throw new IOException(e.getErrorMsg());
@@ -180,8 +209,17 @@ public class LogReaderImpl implements LogReader {
 
   @Override
   public void close() throws IOException {
-    // TODO Auto-generated method stub
-
+    if (!cursorOpened) {
+      return;
+    }
+    // Release the server-side cursor asynchronously; an unreleased cursor expires when it is idle
+    cursorOpened = false;
+    raftClient.sendReadOnlyAsync(Message.valueOf(LogServiceProtoUtil
+        .toReadLogRequestProto(parent.getName(), currentRecordId, 0, cursorId, true).toByteString()))
+        .exceptionally(e -> {
+          LOG.debug("Failed to close the cursor of {}", parent.getName(), e);
+          return null;
+        });
   }
 
 }
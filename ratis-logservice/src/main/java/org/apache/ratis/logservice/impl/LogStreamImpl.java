@@ -22,6 +22,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.ratis.client.RaftClient;
 import org.apache.ratis.logservice.api.LogName;
@@ -49,6 +51,10 @@ public class LogStreamImpl implements LogStream {
    * Log stream listeners
    */
   private List<RecordListener> listeners;
+  /*
+   * The subscriptions pushing the records to the listeners
+   */
+  private final Map<RecordListener, RecordSubscription> subscriptions = new ConcurrentHashMap<>();
   /*
    * Log stream name
    */
@@ -193,20 +199,44 @@ public class LogStreamImpl implements LogStream {
   public void close() throws Exception {
     // TODO Auto-generated method stub
     state = State.CLOSED;
+    synchronized (listeners) {
+      subscriptions.values().forEach(RecordSubscription::close);
+      subscriptions.clear();
+      listeners.clear();
+    }
   }
 
   @Override
   public void addRecordListener(RecordListener listener) {
+    addRecordListener(listener, 0, true);
+  }
+
+  @Override
+  public void addRecordListener(RecordListener listener, long startRecordId) {
+    addRecordListener(listener, startRecordId, false);
+  }
+
+  private void addRecordListener(RecordListener listener, long startRecordId, boolean fromLogEnd) {
     synchronized (listeners) {
       if (!listeners.contains(listener)) {
         listeners.add(listener);
+        final RecordSubscription subscription =
+            new RecordSubscription(this, listener, startRecordId, fromLogEnd);
+        subscriptions.put(listener, subscription);
+        subscription.start();
       }
     }
   }
 
   @Override
   public boolean removeRecordListener(RecordListener listener) {
-    return listeners.remove(listener);
+    synchronized (listeners) {
+      final RecordSubscription subscription = subscriptions.remove(listener);
+      if (subscription != null) {
+        subscription.close();
+      }
+      return listeners.remove(listener);
+    }
   }
 
   @Override
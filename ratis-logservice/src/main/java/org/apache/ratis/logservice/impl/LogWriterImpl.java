@@ -18,26 +18,76 @@
 package org.apache.ratis.logservice.impl;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ratis.client.RaftClient;
 import org.apache.ratis.logservice.api.LogServiceConfiguration;
 import org.apache.ratis.logservice.api.LogStream;
 import org.apache.ratis.logservice.api.LogWriter;
+import org.apache.ratis.logservice.common.Constants;
 import org.apache.ratis.logservice.proto.LogServiceProtos.AppendLogEntryReplyProto;
 import org.apache.ratis.logservice.proto.LogServiceProtos.LogServiceException;
 import org.apache.ratis.logservice.proto.LogServiceProtos.SyncLogReplyProto;
 import org.apache.ratis.logservice.util.LogServiceProtoUtil;
 import org.apache.ratis.protocol.Message;
 import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.thirdparty.com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.ratis.util.Daemon;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.TimeDuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * The {@link LogWriter} of a {@link LogStream}.
+ *
+ * The asynchronous writes are buffered in a batch, which is sent as one append request
+ * once it reaches the batch size or after the linger time of its first write.
+ * The append requests are sent with {@link RaftClient#sendAsync(Message)},
+ * so that the batches are pipelined in the sliding window of the client and applied in order.
+ * The bytes of the writes waiting for their replies are bounded by the max outstanding bytes.
+ * Since sending may block on the outstanding requests of the client,
+ * the batches are sent outside the batch lock and the linger timeouts run in a thread owned by the writer.
+ */
 public class LogWriterImpl implements LogWriter {
   public static final Logger LOG = LoggerFactory.getLogger(LogWriterImpl.class);
 
+  /** The records and the writes of a batch taken for sending. */
+  private static final class Batch {
+    private final List<ByteString> records;
+    private final List<PendingWrite> writes;
+
+    private Batch(List<ByteString> records, List<PendingWrite> writes) {
+      this.records = records;
+      this.writes = writes;
+    }
+  }
+
+  /** An asynchronous write waiting for the reply of its batch. */
+  private static final class PendingWrite {
+    private final int numRecords;
+    private final int permits;
+    private final CompletableFuture<List<Long>> future = new CompletableFuture<>();
+
+    private PendingWrite(int numRecords, int permits) {
+      this.numRecords = numRecords;
+      this.permits = permits;
+    }
+  }
+
   /*
    * Parent log stream
    */
@@ -52,10 +102,54 @@ public class LogWriterImpl implements LogWriter {
    */
   private LogServiceConfiguration config;
 
+  private final TimeDuration linger;
+  private final int batchSize;
+  private final int maxOutstandingBytes;
+  /*
+   * The permits are the bytes of the asynchronous writes which are not yet replied
+   */
+  private final Semaphore outstandingBytes;
+
+  /*
+   * Sends the batches whose linger time has elapsed
+   */
+  private final ScheduledExecutorService lingerScheduler;
+
+  /*
+   * Held when taking and sending a batch, so that the batches are sent in order.
+   * It is always acquired before the batchLock.
+   */
+  private final Object sendLock = new Object();
+  private final Object batchLock = new Object();
+  /*
+   * The records and the writes of the current batch, guarded by batchLock
+   */
+  private List<ByteString> batchRecords = new ArrayList<>();
+  private List<PendingWrite> batchWrites = new ArrayList<>();
+  private long batchBytes = 0;
+  /*
+   * Incremented when a batch is sent, so that the linger timeout of a sent batch is ignored
+   */
+  private long batchGeneration = 0;
+  /*
+   * Completed when the last sent batch is replied, guarded by sendLock
+   */
+  private CompletableFuture<Void> lastBatch = CompletableFuture.completedFuture(null);
+  private volatile boolean closed = false;
+
   public LogWriterImpl(LogStream logStream) {
     this.parent = logStream;
     this.raftClient = logStream.getRaftClient();
     this.config = logStream.getConfiguration();
+    this.linger = TimeDuration.valueOf(config.getLong(Constants.LOG_SERVICE_WRITER_LINGER_KEY,
+        Constants.DEFAULT_WRITER_LINGER), TimeUnit.MILLISECONDS);
+    this.batchSize = config.getInt(Constants.LOG_SERVICE_WRITER_BATCH_SIZE_KEY,
+        Constants.DEFAULT_WRITER_BATCH_SIZE);
+    this.maxOutstandingBytes = config.getInt(Constants.LOG_SERVICE_WRITER_OUTSTANDING_BYTES_MAX_KEY,
+        Constants.DEFAULT_WRITER_OUTSTANDING_BYTES_MAX);
+    this.outstandingBytes = new Semaphore(maxOutstandingBytes);
+    this.lingerScheduler = Executors.newSingleThreadScheduledExecutor(
+        r -> new Daemon(r, logStream.getName() + "-writer-linger"));
   }
 
   @Override
@@ -82,8 +176,164 @@ public class LogWriterImpl implements LogWriter {
     }
   }
 
- @Override
- public long sync() throws IOException {
+  @Override
+  public CompletableFuture<List<Long>> writeAsync(List<ByteBuffer> records) {
+    if (closed) {
+      return JavaUtils.completeExceptionally(new IOException(parent.getName() + ": writer is closed"));
+    }
+    if (records.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyList());
+    }
+    // copy the records so that the buffers can be reused once this call returns
+    final List<ByteString> copies = new ArrayList<>(records.size());
+    long bytes = 0;
+    for (ByteBuffer record : records) {
+      final ByteString copy = ByteString.copyFrom(record.duplicate());
+      copies.add(copy);
+      bytes += copy.size();
+    }
+    // a write larger than the limit takes all the permits
+    final int permits = (int) Math.min(bytes, maxOutstandingBytes);
+    try {
+      outstandingBytes.acquire(permits);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return JavaUtils.completeExceptionally(new InterruptedIOException(
+          parent.getName() + ": interrupted when waiting for the outstanding writes"));
+    }
+
+    final PendingWrite write = new PendingWrite(copies.size(), permits);
+    final boolean full;
+    synchronized (batchLock) {
+      batchRecords.addAll(copies);
+      batchWrites.add(write);
+      batchBytes += bytes;
+      full = batchBytes >= batchSize || linger.getDuration() <= 0;
+      if (!full && batchWrites.size() == 1) {
+        scheduleFlush(batchGeneration);
+      }
+    }
+    if (full) {
+      flush(null);
+    }
+    return write.future;
+  }
+
+  private void scheduleFlush(long generation) {
+    try {
+      lingerScheduler.schedule(() -> {
+        try {
+          flush(generation);
+        } catch (Throwable t) {
+          LOG.error("{}: Failed to send batch {}", parent.getName(), generation, t);
+        }
+      }, linger.getDuration(), linger.getUnit());
+    } catch (RejectedExecutionException e) {
+      // the writer is closed; close() sends the batch
+      LOG.debug("{}: Failed to schedule the linger timeout of batch {}", parent.getName(), generation, e);
+    }
+  }
+
+  /**
+   * Send the current batch if it is the given generation, or if the given generation is null.
+   * The batch is taken with the batchLock held but sent without it,
+   * so that the writes can be added to the next batch while sending is blocked.
+   */
+  private void flush(Long generation) {
+    synchronized (sendLock) {
+      final Batch batch;
+      synchronized (batchLock) {
+        batch = generation == null || generation == batchGeneration? takeBatch(): null;
+      }
+      if (batch != null) {
+        sendBatch(batch);
+      }
+    }
+  }
+
+  /** Send the current batch and wait for the replies of all the sent batches. */
+  private void flushAndWait() throws IOException {
+    final CompletableFuture<Void> last;
+    synchronized (sendLock) {
+      flush(null);
+      last = lastBatch;
+    }
+    try {
+      last.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(parent.getName() + ": interrupted when waiting for the outstanding writes");
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Take the current batch, or return null if it is empty.
+   * It is called with the batchLock held.
+   */
+  private Batch takeBatch() {
+    if (batchWrites.isEmpty()) {
+      return null;
+    }
+    final Batch batch = new Batch(batchRecords, batchWrites);
+    batchRecords = new ArrayList<>();
+    batchWrites = new ArrayList<>();
+    batchBytes = 0;
+    batchGeneration++;
+    return batch;
+  }
+
+  /**
+   * Send the given batch as one append request.
+   * It is called with the sendLock held, so that the batches are sent in order.
+   */
+  private void sendBatch(Batch batch) {
+    final List<ByteString> records = batch.records;
+    final List<PendingWrite> writes = batch.writes;
+    final Message request = Message.valueOf(
+        LogServiceProtoUtil.toAppendByteStringLogRequestProto(parent.getName(), records).toByteString());
+    lastBatch = raftClient.sendAsync(request)
+        .thenApply(LogWriterImpl::getRecordIds)
+        .handle((ids, e) -> {
+          completeWrites(writes, records.size(), ids, e);
+          return null;
+        });
+  }
+
+  private static List<Long> getRecordIds(RaftClientReply reply) {
+    final AppendLogEntryReplyProto proto;
+    try {
+      proto = AppendLogEntryReplyProto.parseFrom(reply.getMessage().getContent());
+    } catch (InvalidProtocolBufferException e) {
+      throw new CompletionException(e);
+    }
+    if (proto.hasException()) {
+      throw new CompletionException(new IOException(proto.getException().getErrorMsg()));
+    }
+    return proto.getRecordIdList();
+  }
+
+  private void completeWrites(List<PendingWrite> writes, int numRecords, List<Long> ids, Throwable e) {
+    if (e == null && ids.size() != numRecords) {
+      e = new IOException(parent.getName() + ": received " + ids.size()
+          + " recordIds for " + numRecords + " records");
+    }
+    int offset = 0;
+    for (PendingWrite w : writes) {
+      outstandingBytes.release(w.permits);
+      if (e != null) {
+        w.future.completeExceptionally(JavaUtils.unwrapCompletionException(e));
+      } else {
+        w.future.complete(new ArrayList<>(ids.subList(offset, offset + w.numRecords)));
+        offset += w.numRecords;
+      }
+    }
+  }
+
+  @Override
+  public long sync() throws IOException {
+     flushAndWait();
      try {
        RaftClientReply reply = raftClient.send(Message
            .valueOf(LogServiceProtoUtil.toSyncLogRequestProto(parent.getName()).toByteString()));
@@ -100,7 +350,12 @@ public class LogWriterImpl implements LogWriter {
   }
   @Override
   public void close() throws IOException {
-    //TODO
+    closed = true;
+    try {
+      flushAndWait();
+    } finally {
+      lingerScheduler.shutdownNow();
+    }
   }
 
 }
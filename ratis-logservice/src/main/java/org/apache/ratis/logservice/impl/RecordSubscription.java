@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.logservice.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.ratis.logservice.api.LogServiceConfiguration;
+import org.apache.ratis.logservice.api.LogStream;
+import org.apache.ratis.logservice.api.RecordListener;
+import org.apache.ratis.logservice.common.Constants;
+import org.apache.ratis.logservice.proto.LogServiceProtos.SubscribeReplyProto;
+import org.apache.ratis.logservice.util.LogServiceProtoUtil;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.Daemon;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A tailing subscription delivering the records of a {@link LogStream} to a {@link RecordListener}.
+ *
+ * The subscription sends a long-poll subscribe request with its credits, i.e. the max number of records per reply.
+ * The server replies as soon as there are new records, or with no records after the max wait time.
+ * The next request is sent after the listener has consumed the records,
+ * so a slow listener slows down the subscription instead of buffering the records.
+ * The records are delivered at least once: a failed delivery is retried from the first undelivered record.
+ */
+class RecordSubscription implements Closeable {
+  public static final Logger LOG = LoggerFactory.getLogger(RecordSubscription.class);
+
+  private static final long RETRY_INTERVAL_MS = 1000;
+
+  private final LogStream stream;
+  private final RecordListener listener;
+  private final long subscriptionId;
+  private final int credits;
+  private final long maxWaitMs;
+  private final Daemon daemon;
+
+  /*
+   * The recordId of the next record to deliver
+   */
+  private long nextRecordId;
+  /*
+   * Start at the end of the log, until the first reply
+   */
+  private boolean fromLogEnd;
+  private volatile boolean closed = false;
+
+  RecordSubscription(LogStream stream, RecordListener listener, long startRecordId, boolean fromLogEnd) {
+    this.stream = stream;
+    this.listener = listener;
+    long id;
+    do {
+      id = ThreadLocalRandom.current().nextLong();
+    } while (id == 0);
+    this.subscriptionId = id;
+    final LogServiceConfiguration config = stream.getConfiguration();
+    this.credits = config.getInt(Constants.LOG_SERVICE_SUBSCRIPTION_CREDITS_KEY,
+        Constants.DEFAULT_SUBSCRIPTION_CREDITS);
+    this.maxWaitMs = config.getLong(Constants.LOG_SERVICE_SUBSCRIPTION_MAX_WAIT_KEY,
+        Constants.DEFAULT_SUBSCRIPTION_MAX_WAIT);
+    this.nextRecordId = startRecordId;
+    this.fromLogEnd = fromLogEnd;
+    this.daemon = new Daemon(this::run, stream.getName() + "-" + listener.getName());
+  }
+
+  void start() {
+    daemon.start();
+  }
+
+  private void run() {
+    while (!closed) {
+      try {
+        poll();
+      } catch (Exception e) {
+        if (closed) {
+          break;
+        }
+        LOG.warn("{}: Failed to poll {} at recordId {}", this, stream.getName(), nextRecordId, e);
+        try {
+          Thread.sleep(RETRY_INTERVAL_MS);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+    LOG.debug("{} is closed", this);
+  }
+
+  private void poll() throws IOException {
+    final RaftClientReply reply = stream.getRaftClient().sendReadOnly(Message.valueOf(LogServiceProtoUtil
+        .toSubscribeRequestProto(stream.getName(), subscriptionId, nextRecordId, fromLogEnd, credits, maxWaitMs)
+        .toByteString()));
+    final SubscribeReplyProto proto = LogServiceProtoUtil.parseFromAliased(
+        reply.getMessage().getContent(), SubscribeReplyProto.parser());
+    if (proto.hasException()) {
+      throw new IOException(proto.getException().getErrorMsg());
+    }
+    nextRecordId = proto.getStartRecordId();
+    fromLogEnd = false;
+    for (ByteString record : proto.getLogRecordList()) {
+      if (closed) {
+        return;
+      }
+      listener.accept(ByteBuffer.wrap(record.toByteArray()));
+      nextRecordId++;
+    }
+  }
+
+  RecordListener getListener() {
+    return listener;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    daemon.interrupt();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "-" + listener.getName();
+  }
+}
@@ -21,8 +21,14 @@ package org.apache.ratis.logservice.server;
 import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.ratis.client.RaftClient;
@@ -30,6 +36,7 @@ import org.apache.ratis.client.RaftClientConfigKeys;
 import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.logservice.api.LogServiceConfiguration;
 import org.apache.ratis.logservice.common.Constants;
+import org.apache.ratis.logservice.proto.MetaServiceProtos.LogLoadProto;
 import org.apache.ratis.logservice.util.LogServiceUtils;
 import org.apache.ratis.logservice.util.MetaServiceProtoUtil;
 import org.apache.ratis.protocol.ClientId;
@@ -56,6 +63,9 @@ public class LogServer extends BaseServer {
 
     private Daemon daemon =  null;
     private long heartbeatInterval = Constants.DEFAULT_HEARTBEAT_INTERVAL;
+    // The state machines of the logs, for reporting their load in the heartbeats
+    private final Map<RaftGroupId, LogStateMachine> logStateMachines = new ConcurrentHashMap<>();
+    private List<File> storageDirs = Collections.emptyList();
     public LogServer(ServerOpts opts) {
       super(opts);
       LOG.debug("Log Server options: {}", opts);
@@ -131,7 +141,9 @@ public class LogServer extends BaseServer {
                         if(raftGroupId.equals(logServerGroupId)) {
                             return new ManagementStateMachine();
                         }
-                        return new LogStateMachine(properties);
+                        final LogStateMachine logStateMachine = new LogStateMachine(properties);
+                        logStateMachines.put(raftGroupId, logStateMachine);
+                        return logStateMachine;
                     }
                 })
                 .setProperties(properties)
@@ -139,6 +151,7 @@ public class LogServer extends BaseServer {
                 .setGroup(all)
                 .build();
         raftServer.start();
+        storageDirs = RaftServerConfigKeys.storageDirs(properties);
 
         metaClient = RaftClient.newBuilder()
                 .setRaftGroup(meta)
@@ -190,17 +203,48 @@ public class LogServer extends BaseServer {
     private class HeartbeatSender implements Runnable {
 
         private RaftPeer peer;
+        // The bytes stored by each log at the last heartbeat, for computing the append rates
+        private final Map<RaftGroupId, Long> lastBytesStored = new HashMap<>();
+        private long lastHeartbeat = System.nanoTime();
+
         HeartbeatSender(RaftPeer peer) {
             this.peer = peer;
         }
 
+        private List<LogLoadProto> getLogLoads() {
+            final long now = System.nanoTime();
+            final double seconds = Math.max(now - lastHeartbeat, 1) / 1e9;
+            lastHeartbeat = now;
+
+            final Set<RaftGroupId> groupIds = new HashSet<>();
+            raftServer.getGroupIds().forEach(groupIds::add);
+            // forget the logs removed from this server
+            logStateMachines.keySet().retainAll(groupIds);
+            lastBytesStored.keySet().retainAll(groupIds);
+
+            final List<LogLoadProto> loads = new ArrayList<>();
+            logStateMachines.forEach((groupId, logStateMachine) -> {
+                final long bytesStored = logStateMachine.getDataRecordsSize();
+                final Long last = lastBytesStored.put(groupId, bytesStored);
+                final double appendRate = last == null ? 0 : Math.max(bytesStored - last, 0) / seconds;
+                loads.add(MetaServiceProtoUtil.toLogLoadProto(groupId, appendRate, bytesStored));
+            });
+            return loads;
+        }
+
+        private long getDiskFree() {
+            return storageDirs.stream().mapToLong(File::getUsableSpace).sum();
+        }
+
         @Override
         public void run() {
 
             while (true) {
                 try {
+                    final List<LogLoadProto> logLoads = getLogLoads();
+                    final long diskFree = getDiskFree();
                     metaClient.send(() -> MetaServiceProtoUtil.
-                            toHeartbeatRequestProto(peer).toByteString());
+                            toHeartbeatRequestProto(peer, logLoads, diskFree).toByteString());
                     Thread.sleep(heartbeatInterval);
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
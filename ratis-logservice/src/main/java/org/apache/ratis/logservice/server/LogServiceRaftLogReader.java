@@ -24,6 +24,7 @@ import java.util.NoSuchElementException;
 import org.apache.ratis.logservice.proto.LogServiceProtos.AppendLogEntryRequestProto;
 import org.apache.ratis.logservice.proto.LogServiceProtos.LogServiceRequestProto;
 import org.apache.ratis.logservice.proto.LogServiceProtos.LogServiceRequestProto.RequestCase;
+import org.apache.ratis.logservice.util.LogServiceProtoUtil;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
 import org.apache.ratis.server.raftlog.RaftLog;
 import org.apache.ratis.server.raftlog.RaftLogIOException;
@@ -40,6 +41,8 @@ import org.slf4j.LoggerFactory;
 public class LogServiceRaftLogReader implements  RaftLogReader{
   private static final Logger LOG = LoggerFactory.getLogger(LogServiceRaftLogReader.class);
   private final RaftLog raftLog;
+  /** For seeking to a recordId without reading from the start of the log; null if there is no index. */
+  private final RecordIndex recordIndex;
 
   private long currentRecordId = -1;
   private long currentRaftIndex = -1;
@@ -48,7 +51,19 @@ public class LogServiceRaftLogReader implements  RaftLogReader{
   private ByteString currentRecord = null;
 
   public LogServiceRaftLogReader(RaftLog raftLog) {
+    this(raftLog, null);
+  }
+
+  public LogServiceRaftLogReader(RaftLog raftLog, RecordIndex recordIndex) {
     this.raftLog = requireNonNull(raftLog);
+    this.recordIndex = recordIndex;
+  }
+
+  /**
+   * Returns the recordId of the record returned by the next {@link #next()} call.
+   */
+  public long getCurrentRecordId() {
+    return currentRecordId;
   }
 
   /**
@@ -58,19 +73,60 @@ public class LogServiceRaftLogReader implements  RaftLogReader{
   @Override
   public void seek(long recordId) throws RaftLogIOException, InvalidProtocolBufferException {
     LOG.trace("Seeking to recordId={}", recordId);
-    // RaftLog starting index
-    currentRaftIndex = raftLog.getStartIndex();
-    currentRecordId = 0;
+    final RecordIndex.Position position = recordIndex == null ? null
+        : recordIndex.floor(recordId, raftLog.getStartIndex());
+    if (position == null || !seek(position)) {
+      seekFromStart();
+    }
+    while (currentRecordId < recordId && hasNext()) {
+      next();
+    }
+  }
+
+  /** Positions this reader at the first record of the RaftLog. */
+  private void seekFromStart() throws RaftLogIOException, InvalidProtocolBufferException {
+    final long startIndex = raftLog.getStartIndex();
+    if (startIndex <= RaftLog.LEAST_VALID_LOG_INDEX) {
+      // the log is not purged, so it starts with recordId 0
+      seek(startIndex, 0);
+      return;
+    }
+    // the recordId at the start of a purged log is only known from the index
+    final RecordIndex.Position first = recordIndex == null ? null : recordIndex.first(startIndex);
+    if (first == null || !seek(first)) {
+      throw new RaftLogIOException("Failed to seek in the RaftLog starting at index " + startIndex
+          + " after a purge, the first indexed position is " + first);
+    }
+  }
+
+  private void seek(long raftIndex, long recordId)
+      throws RaftLogIOException, InvalidProtocolBufferException {
+    currentRaftIndex = raftIndex;
+    currentRecordId = recordId;
 
     currentLogEntry = null;
     currentLogEntryOffset = -1;
     currentRecord = null;
 
     loadNext();
-    while (currentRecordId < recordId && hasNext()) {
-      next();
-      currentRecordId++;
+  }
+
+  /**
+   * Positions this reader at the given indexed position.
+   * @return true if the position is found in the RaftLog.
+   */
+  private boolean seek(RecordIndex.Position position)
+      throws RaftLogIOException, InvalidProtocolBufferException {
+    LOG.trace("Seeking from {}", position);
+    seek(position.getRaftIndex(), position.getRecordId());
+    if (currentLogEntry == null || currentRaftIndex != position.getRaftIndex()
+        || position.getOffset() >= currentLogEntry.getDataCount()) {
+      LOG.warn("Position {} not found in the RaftLog, currentRaftIndex={}", position, currentRaftIndex);
+      return false;
     }
+    currentLogEntryOffset = position.getOffset();
+    currentRecord = currentLogEntry.getData(currentLogEntryOffset);
+    return true;
   }
 
   /**
@@ -87,13 +143,39 @@ public class LogServiceRaftLogReader implements  RaftLogReader{
    */
   @Override
   public byte[] next() throws RaftLogIOException, InvalidProtocolBufferException {
+    return nextRecord().toByteArray();
+  }
+
+  @Override
+  public ByteString peekRecord() {
+    if (currentRecord == null) {
+      throw new NoSuchElementException();
+    }
+    return currentRecord;
+  }
+
+  /**
+   * Returns the next record as a slice of the log entry, which is cached in the {@link RaftLog}.
+   */
+  @Override
+  public ByteString nextRecord() throws RaftLogIOException, InvalidProtocolBufferException {
     if (currentRecord == null) {
       throw new NoSuchElementException();
     }
     ByteString current = currentRecord;
     currentRecord = null;
+    currentRecordId++;
     loadNext();
-    return current.toByteArray();
+    return current;
+  }
+
+  /**
+   * Looks for the records committed after this reader has reached the end of the RaftLog.
+   */
+  public void refresh() throws RaftLogIOException, InvalidProtocolBufferException {
+    if (currentRecord == null) {
+      loadNext();
+    }
   }
 
   /**
@@ -126,7 +208,7 @@ public class LogServiceRaftLogReader implements  RaftLogReader{
     }
 
     // Make sure we don't read off the end of the Raft log
-    for (; currentRaftIndex < raftLog.getLastCommittedIndex(); currentRaftIndex++) {
+    for (; currentRaftIndex <= raftLog.getLastCommittedIndex(); currentRaftIndex++) {
       try {
         LogEntryProto entry = raftLog.get(currentRaftIndex);
         if (LOG.isTraceEnabled()) {
@@ -137,8 +219,9 @@ public class LogServiceRaftLogReader implements  RaftLogReader{
           continue;
         }
 
-        LogServiceRequestProto logServiceProto =
-            LogServiceRequestProto.parseFrom(entry.getStateMachineLogEntry().getLogData());
+        // The records parsed with aliasing are the slices of the log entry, not copies
+        LogServiceRequestProto logServiceProto = LogServiceProtoUtil.parseFromAliased(
+            entry.getStateMachineLogEntry().getLogData(), LogServiceRequestProto.parser());
         // TODO is it possible to get LogService messages that aren't appends?
         if (RequestCase.APPENDREQUEST != logServiceProto.getRequestCase()) {
           continue;
@@ -21,35 +21,41 @@ import static org.apache.ratis.logservice.api.LogStream.State;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import com.codahale.metrics.Timer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.ratis.client.RaftClient;
 import org.apache.ratis.conf.RaftProperties;
-import org.apache.ratis.logservice.api.ArchiveLogWriter;
 import org.apache.ratis.logservice.api.LogName;
+import org.apache.ratis.logservice.api.RetentionPolicy;
 import org.apache.ratis.logservice.common.Constants;
 import org.apache.ratis.logservice.impl.ArchiveHdfsLogReader;
-import org.apache.ratis.logservice.impl.ArchiveHdfsLogWriter;
 import org.apache.ratis.logservice.metrics.LogServiceMetricsRegistry;
 import org.apache.ratis.logservice.proto.LogServiceProtos;
 import org.apache.ratis.logservice.proto.LogServiceProtos.AppendLogEntryRequestProto;
@@ -57,7 +63,9 @@ import org.apache.ratis.logservice.proto.LogServiceProtos.GetLogLengthRequestPro
 import org.apache.ratis.logservice.proto.LogServiceProtos.GetLogSizeRequestProto;
 import org.apache.ratis.logservice.proto.LogServiceProtos.GetStateRequestProto;
 import org.apache.ratis.logservice.proto.LogServiceProtos.LogServiceRequestProto;
+import org.apache.ratis.logservice.proto.LogServiceProtos.LogStateMachineSnapshotProto;
 import org.apache.ratis.logservice.proto.LogServiceProtos.ReadLogRequestProto;
+import org.apache.ratis.logservice.proto.LogServiceProtos.SubscribeRequestProto;
 import org.apache.ratis.logservice.util.LogServiceProtoUtil;
 import org.apache.ratis.logservice.util.LogServiceUtils;
 import org.apache.ratis.metrics.RatisMetricRegistry;
@@ -66,9 +74,11 @@ import org.apache.ratis.proto.RaftProtos.LogEntryProto;
 import org.apache.ratis.protocol.ClientId;
 import org.apache.ratis.protocol.Message;
 import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftClientRequest;
 import org.apache.ratis.protocol.RaftGroup;
 import org.apache.ratis.protocol.RaftGroupId;
 import org.apache.ratis.server.RaftServer;
+import org.apache.ratis.server.RaftServerConfigKeys;
 import org.apache.ratis.logservice.server.ArchivalInfo.ArchivalStatus;
 import org.apache.ratis.server.impl.RaftServerConstants;
 import org.apache.ratis.server.impl.RaftServerProxy;
@@ -81,14 +91,24 @@ import org.apache.ratis.statemachine.TransactionContext;
 import org.apache.ratis.statemachine.impl.BaseStateMachine;
 import org.apache.ratis.statemachine.impl.SimpleStateMachineStorage;
 import org.apache.ratis.statemachine.impl.SingleFileSnapshotInfo;
+import org.apache.ratis.statemachine.impl.SnapshotRetentionPolicy;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
 import org.apache.ratis.thirdparty.com.google.protobuf.TextFormat;
+import org.apache.ratis.util.AtomicFileOutputStream;
 import org.apache.ratis.util.AutoCloseableLock;
+import org.apache.ratis.util.Daemon;
+import org.apache.ratis.util.TimeDuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class LogStateMachine extends BaseStateMachine {
   public static final Logger LOG = LoggerFactory.getLogger(LogStateMachine.class);
   public static final long DEFAULT_ARCHIVE_THRESHOLD_PER_FILE = 1000000;
+  /** The magic number at the start of a snapshot file, followed by the snapshot format version. */
+  static final int SNAPSHOT_MAGIC = 0x4c4f4753; // "LOGS"
+  static final int SNAPSHOT_VERSION = 1;
+  /** The stream header of the snapshot files written by ObjectOutputStream before the snapshots are versioned. */
+  private static final int LEGACY_SNAPSHOT_HEADER = 0xACED0005;
   private final RaftProperties properties;
   private RatisMetricRegistry metricRegistry;
   private Timer sizeRequestTimer;
@@ -111,27 +131,71 @@ public class LogStateMachine extends BaseStateMachine {
   /**
    * The size (number of bytes) of the log records. Does not include Ratis storage overhead
    */
-  private long dataRecordsSize;
+  private volatile long dataRecordsSize;
 
   private State state = State.OPEN;
 
+  /** The recordId of the first record which is not removed by the retention policy. */
+  private volatile long firstRecordId;
+  /** The retention policy set for this log, or null to use the default policy. */
+  private RetentionPolicy retentionPolicy;
+  /** The retention policy configured on the server. */
+  private final RetentionPolicy defaultRetentionPolicy;
+  private final long retentionCheckInterval;
+  private ScheduledExecutorService retentionScheduler;
+  /** For taking the snapshots and purging the raft log off the StateMachineUpdater thread. */
+  private ExecutorService purgeExecutor;
+
   private final SimpleStateMachineStorage storage = new SimpleStateMachineStorage();
 
   private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
 
   private RaftLog log;
 
+  /** The positions of the records in the raft log for seeking. */
+  private final RecordIndex recordIndex;
+  /** The positions of the readers between the read requests. */
+  private final ReadCursors readCursors;
+  /** The subscriptions waiting for new records. */
+  private final RecordSubscriptions subscriptions;
+  /** The max number of bytes of the records per read. */
+  private final long readMaxBytes;
 
   private RaftServerProxy proxy ;
   private ExecutorService executorService;
+  /** For archiving the chunks of a log in parallel. */
+  private ExecutorService archiveChunkExecutor;
   private boolean isArchivalRequest;
   private ArchivalInfo archivalInfo;
-  private Map<String,ArchivalInfo> exportMap = new HashMap<String,ArchivalInfo>();
+  private Map<String,ArchivalInfo> exportMap = new ConcurrentHashMap<>();
   private Map<String, Future<Boolean>> archiveExportFutures = new HashMap<>();
   private Timer archiveLogTimer;
 
   public LogStateMachine(RaftProperties properties) {
     this.properties = properties;
+    this.recordIndex = new RecordIndex(properties.getLong(
+        Constants.LOG_SERVICE_RECORD_INDEX_INTERVAL_KEY, Constants.DEFAULT_RECORD_INDEX_INTERVAL));
+    this.readCursors = new ReadCursors(
+        properties.getInt(Constants.LOG_SERVICE_READ_CURSOR_MAX_KEY, Constants.DEFAULT_READ_CURSOR_MAX),
+        properties.getLong(Constants.LOG_SERVICE_READ_CURSOR_IDLE_TIMEOUT_KEY,
+            Constants.DEFAULT_READ_CURSOR_IDLE_TIMEOUT),
+        () -> new LogServiceRaftLogReader(log, recordIndex));
+    this.readMaxBytes = properties.getLong(Constants.LOG_SERVICE_READ_MAX_BYTES_KEY,
+        Constants.DEFAULT_READ_MAX_BYTES);
+    this.subscriptions = new RecordSubscriptions(readCursors, this::getLength, readMaxBytes);
+    this.defaultRetentionPolicy = RetentionPolicy.valueOf(
+        properties.getLong(Constants.LOG_SERVICE_RETENTION_MAX_AGE_KEY, Constants.DEFAULT_RETENTION_MAX_AGE),
+        properties.getLong(Constants.LOG_SERVICE_RETENTION_MAX_BYTES_KEY, Constants.DEFAULT_RETENTION_MAX_BYTES),
+        properties.getBoolean(Constants.LOG_SERVICE_RETENTION_UNTIL_ARCHIVED_KEY,
+            Constants.DEFAULT_RETENTION_UNTIL_ARCHIVED));
+    this.retentionCheckInterval = properties.getLong(Constants.LOG_SERVICE_RETENTION_CHECK_INTERVAL_KEY,
+        Constants.DEFAULT_RETENTION_CHECK_INTERVAL);
+  }
+
+  private long getLength() {
+    try (AutoCloseableLock readLock = readLock()) {
+      return length;
+    }
   }
 
   private AutoCloseableLock readLock() {
@@ -148,9 +212,21 @@ public class LogStateMachine extends BaseStateMachine {
   void reset() {
     this.length = 0;
     this.dataRecordsSize = 0;
+    this.firstRecordId = 0;
+    this.retentionPolicy = null;
+    this.recordIndex.clear();
+    this.readCursors.clear();
+    this.subscriptions.clear();
     setLastAppliedTermIndex(null);
   }
 
+  /**
+   * @return the total size of the records of the log, in bytes.
+   */
+  long getDataRecordsSize() {
+    return dataRecordsSize;
+  }
+
   @Override
   public void initialize(RaftServer server, RaftGroupId groupId,
       RaftStorage raftStorage) throws IOException {
@@ -172,10 +248,19 @@ public class LogStateMachine extends BaseStateMachine {
     //archiving request time not the actual archiving time
     this.archiveLogRequestTimer = metricRegistry.timer("archiveLogRequestTime");
     this.archiveLogTimer = metricRegistry.timer("archiveLogTime");
-    loadSnapshot(storage.getLatestSnapshot());
-    executorService = Executors.newSingleThreadExecutor();
     this.archivalInfo =
         new ArchivalInfo(properties.get(Constants.LOG_SERVICE_ARCHIVAL_LOCATION_KEY));
+    loadSnapshot(storage.getLatestSnapshot());
+    executorService = Executors.newSingleThreadExecutor();
+    archiveChunkExecutor = Executors.newFixedThreadPool(
+        properties.getInt(Constants.LOG_SERVICE_ARCHIVE_THREADS_KEY, Constants.DEFAULT_ARCHIVE_THREADS),
+        r -> new Daemon(r, "archive-" + groupId));
+    purgeExecutor = Executors.newSingleThreadExecutor(r -> new Daemon(r, "purge-" + groupId));
+    if (retentionCheckInterval > 0) {
+      retentionScheduler = Executors.newSingleThreadScheduledExecutor(r -> new Daemon(r, "retention-" + groupId));
+      retentionScheduler.scheduleWithFixedDelay(this::checkRetention,
+          retentionCheckInterval, retentionCheckInterval, TimeUnit.MILLISECONDS);
+    }
 
 
   }
@@ -189,34 +274,194 @@ public class LogStateMachine extends BaseStateMachine {
 
   @Override
   public void reinitialize() throws IOException {
-    close();
+    reset();
     loadSnapshot(storage.getLatestSnapshot());
   }
 
+  private RetentionPolicy getRetentionPolicy() {
+    try (AutoCloseableLock readLock = readLock()) {
+      return retentionPolicy != null ? retentionPolicy : defaultRetentionPolicy;
+    }
+  }
+
+  /** Send the retention decision through the raft log so that all the servers remove the same records. */
+  private void checkRetention() {
+    try {
+      // the leader assigns the time, which is then used by all the servers
+      final long now = System.currentTimeMillis();
+      if (!proxy.getImpl(groupId).isLeader() || getFirstRetained(now) == null) {
+        return;
+      }
+      final RaftClientReply reply = getClient().send(
+          () -> LogServiceProtoUtil.toApplyRetentionRequestProto(now).toByteString());
+      final LogServiceProtos.ApplyRetentionReplyProto proto =
+          LogServiceProtos.ApplyRetentionReplyProto.parseFrom(reply.getMessage().getContent());
+      if (proto.hasException()) {
+        throw new IOException(proto.getException().getErrorMsg());
+      }
+    } catch (Exception e) {
+      LOG.warn("{}: Failed to apply the retention policy", getId(), e);
+    }
+  }
+
+  /**
+   * @return the indexed position of the first record retained at the given time,
+   *         or null if the policy does not remove any more records.
+   */
+  private RecordIndex.Position getFirstRetained(long time) {
+    final RetentionPolicy policy = getRetentionPolicy();
+    if (!policy.isEnabled()) {
+      return null;
+    }
+    final long cutoff = time - policy.getMaxAgeMs();
+    final long totalBytes = dataRecordsSize;
+    final ArchivalInfo archival = archivalInfo;
+    final long archived = policy.isUntilArchived() && archival != null && archival.getArchiveLogName() != null
+        ? archival.getLastArchivedIndex() : 0;
+    // each condition holds for a prefix of the positions since the timestamps and the sizes are increasing
+    final RecordIndex.Position first = recordIndex.lastOfPrefix(p ->
+        (policy.getMaxAgeMs() > 0 && p.getTimestamp() != RecordIndex.UNKNOWN && p.getTimestamp() < cutoff)
+        || (policy.getMaxBytes() > 0 && p.getBytesBefore() != RecordIndex.UNKNOWN
+            && totalBytes - p.getBytesBefore() >= policy.getMaxBytes())
+        || p.getRecordId() <= archived);
+    return first == null || first.getRecordId() <= firstRecordId ? null : first;
+  }
+
+  /**
+   * Remove the records according to the retention policy at the time assigned by the leader:
+   * advance the first recordId to an indexed position, and then asynchronously
+   * take a snapshot including it and purge the raft log below the position.
+   */
+  private CompletableFuture<Message> processApplyRetention(TransactionContext trx,
+      LogServiceRequestProto logServiceRequestProto) {
+    final LogEntryProto entry = trx.getLogEntry();
+    final RecordIndex.Position first = getFirstRetained(logServiceRequestProto.getApplyRetention().getTime());
+    final long startRecordId;
+    try (AutoCloseableLock writeLock = writeLock()) {
+      if (first != null) {
+        firstRecordId = first.getRecordId();
+      }
+      startRecordId = firstRecordId;
+      updateLastAppliedTermIndex(entry.getTerm(), entry.getIndex());
+    }
+    if (first != null) {
+      LOG.info("{}: Removed the records before recordId {} by {}", getId(), first.getRecordId(),
+          getRetentionPolicy());
+      // the positions before the first record are not read anymore
+      recordIndex.purge(first.getRaftIndex());
+      final long purgeIndex = first.getRaftIndex() - 1;
+      purgeExecutor.execute(() -> purgeLog(purgeIndex));
+    }
+    return CompletableFuture.completedFuture(Message.valueOf(
+        LogServiceProtoUtil.toApplyRetentionReplyProto(startRecordId, null).toByteString()));
+  }
+
+  /**
+   * Purge the raft log up to the given index, which requires a snapshot since the log cannot be replayed.
+   * The server does not purge beyond the commit index of any follower.
+   * It runs in {@link #purgeExecutor} so that the StateMachineUpdater is not blocked by writing the snapshot.
+   */
+  private void purgeLog(long index) {
+    final long snapshotIndex = takeSnapshot();
+    if (snapshotIndex == RaftServerConstants.INVALID_LOG_INDEX) {
+      return;
+    }
+    final int numSnapshotFilesRetained = RaftServerConfigKeys.Snapshot.retentionFileNum(properties);
+    try {
+      storage.cleanupOldSnapshots(new SnapshotRetentionPolicy() {
+        @Override
+        public int getNumSnapshotsRetained() {
+          return numSnapshotFilesRetained;
+        }
+      });
+      proxy.getImpl(groupId).purgeLog(Math.min(index, snapshotIndex));
+    } catch (IOException e) {
+      LOG.warn("{}: Failed to purge the raft log up to index {}", getId(), index, e);
+    }
+  }
+
+  /** Synchronized since it is called by both the StateMachineUpdater and {@link #purgeLog(long)}. */
   @Override
-  public long takeSnapshot() {
+  public synchronized long takeSnapshot() {
+    if (log != null) {
+      // the records before the start of the log cannot be read anymore
+      recordIndex.purge(log.getStartIndex());
+    }
+
+    // copy the state under the lock, and write it after releasing the lock so that the appends are not blocked
     final TermIndex last;
+    final LogStateMachineSnapshotProto.Builder snapshot = LogStateMachineSnapshotProto.newBuilder();
     try(AutoCloseableLock readLock = readLock()) {
       last = getLastAppliedTermIndex();
+      snapshot.setLength(length)
+          .setDataRecordsSize(dataRecordsSize)
+          .setState(LogServiceProtos.LogStreamState.valueOf(state.name()))
+          .setStartRecordId(firstRecordId);
+      if (retentionPolicy != null) {
+        snapshot.setRetentionPolicy(LogServiceProtoUtil.toRetentionPolicyProto(retentionPolicy));
+      }
+      if (archivalInfo != null && archivalInfo.getStatus() != null && archivalInfo.getArchiveLocation() != null) {
+        snapshot.setArchivalInfo(LogServiceProtoUtil.toArchivalInfoProto(archivalInfo, false));
+      }
+      exportMap.values().stream().filter(info -> info.getStatus() != null)
+          .forEach(info -> snapshot.addExportInfo(LogServiceProtoUtil.toExportInfoProto(info)));
     }
+    // the record index is thread-safe; the positions after the last applied index are added again when replaying
+    snapshot.addAllRecordPosition(recordIndex.toProtos());
 
     final File snapshotFile =  storage.getSnapshotFile(last.getTerm(), last.getIndex());
     LOG.info("Taking a snapshot to file {}", snapshotFile);
-
-    try(AutoCloseableLock readLock = readLock();
-        ObjectOutputStream out = new ObjectOutputStream(
-        new BufferedOutputStream(new FileOutputStream(snapshotFile)))) {
-      out.writeLong(length);
-      out.writeLong(dataRecordsSize);
-      out.writeObject(state);
+    try {
+      writeSnapshotFile(snapshot.build(), snapshotFile);
+      storage.loadLatestSnapshot();
     } catch(IOException ioe) {
       LOG.warn("Failed to write snapshot file \"" + snapshotFile
-          + "\", last applied index=" + last);
+          + "\", last applied index=" + last, ioe);
+      return RaftServerConstants.INVALID_LOG_INDEX;
     }
 
     return last.getIndex();
   }
 
+  /** Atomically write a snapshot file: the magic number, the format version and then the snapshot proto. */
+  static void writeSnapshotFile(LogStateMachineSnapshotProto snapshot, File snapshotFile) throws IOException {
+    AtomicFileOutputStream fos = new AtomicFileOutputStream(snapshotFile);
+    try {
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeInt(SNAPSHOT_VERSION);
+      snapshot.writeTo(out);
+      out.close();
+      fos = null;
+    } finally {
+      if (fos != null) {
+        fos.abort();
+      }
+    }
+  }
+
+  /**
+   * @return the snapshot proto read from the given file,
+   *         or null if the file is written by ObjectOutputStream before the snapshots are versioned.
+   */
+  static LogStateMachineSnapshotProto readSnapshotFile(File snapshotFile) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+      final int header = in.readInt();
+      if (header == LEGACY_SNAPSHOT_HEADER) {
+        return null;
+      } else if (header != SNAPSHOT_MAGIC) {
+        throw new IOException("Unexpected header " + Integer.toHexString(header)
+            + " in snapshot file " + snapshotFile);
+      }
+      final int version = in.readInt();
+      if (version > SNAPSHOT_VERSION) {
+        throw new IOException("Unsupported version " + version + " of snapshot file " + snapshotFile
+            + ", the latest supported version is " + SNAPSHOT_VERSION);
+      }
+      return LogStateMachineSnapshotProto.parseFrom(in);
+    }
+  }
+
   private long loadSnapshot(SingleFileSnapshotInfo snapshot) throws IOException {
     return load(snapshot, false);
   }
@@ -233,6 +478,40 @@ public class LogStateMachine extends BaseStateMachine {
     }
 
     final TermIndex last = SimpleStateMachineStorage.getTermIndexFromSnapshotFile(snapshotFile);
+    // parse the file before taking the lock
+    final LogStateMachineSnapshotProto proto = readSnapshotFile(snapshotFile);
+    if (proto == null) {
+      loadLegacy(snapshotFile, last, reload);
+      return last.getIndex();
+    }
+    try(AutoCloseableLock writeLock = writeLock()) {
+      if (reload) {
+        reset();
+      }
+      setLastAppliedTermIndex(last);
+      this.length = proto.getLength();
+      this.dataRecordsSize = proto.getDataRecordsSize();
+      this.state = State.valueOf(proto.getState().name());
+      this.firstRecordId = proto.getStartRecordId();
+      this.retentionPolicy = proto.hasRetentionPolicy()
+          ? LogServiceProtoUtil.toRetentionPolicy(proto.getRetentionPolicy()) : null;
+      recordIndex.read(proto.getRecordPositionList());
+      if (proto.hasArchivalInfo()) {
+        archivalInfo.updateArchivalInfo(proto.getArchivalInfo());
+      }
+      exportMap.clear();
+      proto.getExportInfoList().forEach(
+          info -> exportMap.put(info.getLocation(), LogServiceProtoUtil.toExportInfo(info)));
+    }
+    return last.getIndex();
+  }
+
+  /**
+   * Load a snapshot written by ObjectOutputStream, which has only the length, the size and the state.
+   * It has no record index, so the readers seek from the start of the log.
+   */
+  private void loadLegacy(File snapshotFile, TermIndex last, boolean reload) throws IOException {
+    LOG.info("Loading the snapshot file {} written before the snapshots are versioned", snapshotFile);
     try(AutoCloseableLock writeLock = writeLock();
         ObjectInputStream in = new ObjectInputStream(
             new BufferedInputStream(new FileInputStream(snapshotFile)))) {
@@ -243,10 +522,10 @@ public class LogStateMachine extends BaseStateMachine {
       this.length = in.readLong();
       this.dataRecordsSize = in.readLong();
       this.state = (State) in.readObject();
+      recordIndex.clear();
     } catch (ClassNotFoundException e) {
       throw new IllegalStateException(e);
     }
-    return last.getIndex();
   }
 
   @Override
@@ -311,6 +590,8 @@ public class LogStateMachine extends BaseStateMachine {
           }});
       case EXPORTINFO:
         return processExportInfo(logServiceRequestProto);
+      case SUBSCRIBE:
+        return processSubscribeRequest(logServiceRequestProto);
       default:
           // TODO
           throw new RuntimeException(
@@ -346,7 +627,8 @@ public class LogStateMachine extends BaseStateMachine {
       processGetStartIndexRequest(LogServiceRequestProto proto) {
 
     Throwable t = verifyState(State.OPEN);
-    long startIndex = log.getStartIndex();
+    // the recordId of the first record not removed by the retention policy
+    long startIndex = firstRecordId;
     return CompletableFuture.completedFuture(Message
       .valueOf(LogServiceProtoUtil.toGetLogStartIndexReplyProto(startIndex, t).toByteString()));
   }
@@ -395,17 +677,32 @@ public class LogStateMachine extends BaseStateMachine {
     long startRecordId = msgProto.getStartRecordId();
     // And the number of records they want to read
     int numRecordsToRead = msgProto.getNumRecords();
+    // And the number of bytes, limited by the server
+    final long maxBytes = msgProto.getMaxBytes() > 0 ? Math.min(msgProto.getMaxBytes(), readMaxBytes)
+        : readMaxBytes;
     //Log must have been closed while Archiving , so we can let user only to
     // read when the log is either OPEN or ARCHIVED
     Throwable t = verifyState(State.OPEN, State.ARCHIVING, State.CLOSED, State.ARCHIVED);
-    List<byte[]> list = null;
+    if (t == null && this.state != State.ARCHIVED && startRecordId < firstRecordId) {
+      t = new IOException("Record " + startRecordId + " is removed by the retention policy,"
+          + " the first recordId is " + firstRecordId);
+    }
+    // The records are the slices of the log entries, which are copied only when the reply is serialized
+    List<ByteString> list = null;
+
+    final long cursorId = msgProto.getCursorId();
 
     if (t == null) {
       RaftLogReader reader = null;
       try {
-        if (this.state == State.OPEN || this.state == State.CLOSED
+        if (cursorId != 0 && (this.state == State.OPEN || this.state == State.CLOSED
+            || this.state == State.ARCHIVING)) {
+          // a sequential reader continues from the position kept in its cursor
+          list = numRecordsToRead > 0 ? readCursors.read(cursorId, startRecordId, numRecordsToRead, maxBytes)
+              : Collections.emptyList();
+        } else if (this.state == State.OPEN || this.state == State.CLOSED
             || this.state == State.ARCHIVING) {
-          reader = new LogServiceRaftLogReader(log);
+          reader = new LogServiceRaftLogReader(log, recordIndex);
         } else if (this.state == State.ARCHIVED) {
           reader = new ArchiveHdfsLogReader(LogServiceUtils
               .getArchiveLocationForLog(archivalInfo.getArchiveLocation(),
@@ -415,14 +712,8 @@ public class LogStateMachine extends BaseStateMachine {
           t = verifyState(State.OPEN, State.ARCHIVED);
         }
         if (t == null && reader != null) {
-          list = new ArrayList<byte[]>();
           reader.seek(startRecordId);
-          for (int i = 0; i < numRecordsToRead; i++) {
-            if (!reader.hasNext()) {
-              break;
-            }
-            list.add(reader.next());
-          }
+          list = reader.readRecords(numRecordsToRead, maxBytes);
         }
       } catch (Exception e) {
         LOG.error("Failed to execute ReadNextQuery", e);
@@ -430,10 +721,34 @@ public class LogStateMachine extends BaseStateMachine {
         list = null;
       }
     }
+    if (cursorId != 0 && (msgProto.getCloseCursor() || t != null)) {
+      readCursors.close(cursorId);
+    }
     return CompletableFuture.completedFuture(
       Message.valueOf(LogServiceProtoUtil.toReadLogReplyProto(list, t).toByteString()));
   }
 
+  /**
+   * Process subscribe request, which is replied when there are records to read
+   * @param proto message
+   * @return reply message
+   */
+  private CompletableFuture<Message> processSubscribeRequest(LogServiceRequestProto proto) {
+    SubscribeRequestProto msgProto = proto.getSubscribe();
+    // skip the records removed by the retention policy; the reply has the recordId of the first record
+    final long startRecordId = Math.max(msgProto.getStartRecordId(), firstRecordId);
+    Throwable t = verifyState(State.OPEN, State.CLOSED, State.ARCHIVING);
+    if (t != null) {
+      return CompletableFuture.completedFuture(Message.valueOf(
+          LogServiceProtoUtil.toSubscribeReplyProto(startRecordId, null, t).toByteString()));
+    }
+    return subscriptions.subscribe(msgProto.getSubscriptionId(), startRecordId, msgProto.getFromLogEnd(),
+        Math.max(1, msgProto.getCredits()), TimeDuration.valueOf(msgProto.getMaxWaitMs(), TimeUnit.MILLISECONDS))
+        .handle((records, e) -> Message.valueOf((e == null
+            ? LogServiceProtoUtil.toSubscribeReplyProto(records.getStartRecordId(), records.getRecords(), null)
+            : LogServiceProtoUtil.toSubscribeReplyProto(startRecordId, null, e)).toByteString()));
+  }
+
   /**
    * Process sync request
    * @param trx transaction
@@ -458,18 +773,24 @@ public class LogStateMachine extends BaseStateMachine {
     long newSize = 0;
     Throwable t = verifyState(State.OPEN);
     final List<Long> ids = new ArrayList<Long>();
+    long newLength = -1;
     if (t == null) {
       try (AutoCloseableLock writeLock = writeLock()) {
-          List<byte[]> entries = LogServiceProtoUtil.toListByteArray(proto.getDataList());
-          for (byte[] bb : entries) {
+          final List<ByteString> entries = proto.getDataList();
+          // the time assigned by the leader, so that all the servers have the same timestamps
+          final long timestamp = proto.getTimestamp() > 0 ? proto.getTimestamp() : RecordIndex.UNKNOWN;
+          recordIndex.add(this.length, entries.size(), index, timestamp, this.dataRecordsSize);
+          for (ByteString bb : entries) {
             ids.add(this.length);
-            newSize += bb.length;
+            newSize += bb.size();
             this.length++;
           }
           this.dataRecordsSize += newSize;
+          newLength = this.length;
           // TODO do we need this for other write request (close, sync)
           updateLastAppliedTermIndex(entry.getTerm(), index);
       }
+      subscriptions.onAppend(newLength);
     }
     final CompletableFuture<Message> f =
         CompletableFuture.completedFuture(
@@ -482,9 +803,55 @@ public class LogStateMachine extends BaseStateMachine {
     return f;
   }
 
+  private CompletableFuture<Message> processSetRetention(TransactionContext trx,
+      LogServiceRequestProto logServiceRequestProto) {
+    final RetentionPolicy policy =
+        LogServiceProtoUtil.toRetentionPolicy(logServiceRequestProto.getSetRetention().getPolicy());
+    final LogEntryProto entry = trx.getLogEntry();
+    try (AutoCloseableLock writeLock = writeLock()) {
+      this.retentionPolicy = policy;
+      updateLastAppliedTermIndex(entry.getTerm(), entry.getIndex());
+    }
+    LOG.info("{}: Set {}", getId(), policy);
+    return CompletableFuture.completedFuture(
+        Message.valueOf(LogServiceProtoUtil.toSetRetentionReplyProto(null).toByteString()));
+  }
+
   @Override
   public void close() {
     reset();
+    subscriptions.close();
+    if (retentionScheduler != null) {
+      retentionScheduler.shutdownNow();
+    }
+    if (executorService != null) {
+      executorService.shutdownNow();
+    }
+    if (archiveChunkExecutor != null) {
+      archiveChunkExecutor.shutdownNow();
+    }
+    if (purgeExecutor != null) {
+      purgeExecutor.shutdownNow();
+    }
+  }
+
+  @Override
+  public TransactionContext startTransaction(RaftClientRequest request) throws IOException {
+    final ByteString content = request.getMessage().getContent();
+    final LogServiceRequestProto proto = LogServiceProtoUtil.parseFromAliased(
+        content, LogServiceRequestProto.parser());
+    final TransactionContext.Builder b = TransactionContext.newBuilder()
+        .setStateMachine(this)
+        .setClientRequest(request);
+    if (proto.getRequestCase() == LogServiceRequestProto.RequestCase.APPENDREQUEST) {
+      // the leader assigns the timestamp of the records, which is used by the retention policy
+      final AppendLogEntryRequestProto append = proto.getAppendRequest().toBuilder()
+          .setTimestamp(System.currentTimeMillis()).build();
+      b.setLogData(LogServiceRequestProto.newBuilder().setAppendRequest(append).build().toByteString());
+    } else {
+      b.setLogData(content);
+    }
+    return b.build();
   }
 
   @Override
@@ -492,8 +859,9 @@ public class LogStateMachine extends BaseStateMachine {
     try {
       checkInitialization();
       final LogEntryProto entry = trx.getLogEntry();
-      LogServiceRequestProto logServiceRequestProto =
-          LogServiceRequestProto.parseFrom(entry.getStateMachineLogEntry().getLogData());
+      // parse with aliasing so that the records are not copied
+      LogServiceRequestProto logServiceRequestProto = LogServiceProtoUtil.parseFromAliased(
+          entry.getStateMachineLogEntry().getLogData(), LogServiceRequestProto.parser());
       switch (logServiceRequestProto.getRequestCase()) {
       case CHANGESTATE:
           return recordTime(getCloseLogTimer, new Task(){
@@ -512,6 +880,10 @@ public class LogStateMachine extends BaseStateMachine {
             }});
         case ARCHIVELOG:
           return updateArchiveLogInfo(logServiceRequestProto);
+        case SETRETENTION:
+          return processSetRetention(trx, logServiceRequestProto);
+        case APPLYRETENTION:
+          return processApplyRetention(trx, logServiceRequestProto);
         default:
           //TODO
           return null;
@@ -560,6 +932,11 @@ public class LogStateMachine extends BaseStateMachine {
                       setException(LogServiceProtoUtil.toLogException(t)).build().toByteString()));
     }
     this.state = targetState;
+    if (targetState == State.ARCHIVED || targetState == State.DELETED) {
+      // the records are no longer read from the raft log
+      readCursors.clear();
+      subscriptions.clear();
+    }
     return CompletableFuture.completedFuture(Message
         .valueOf(LogServiceProtos.ChangeStateReplyProto.newBuilder().build().toByteString()));
   }
@@ -638,33 +1015,32 @@ public class LogStateMachine extends BaseStateMachine {
       if (t == null) {
         Callable<Boolean> callable = () -> {
           final Timer.Context timerContext = archiveLogTimer.time();
+          // the recordId after the last committed record
+          final AtomicLong committed = new AtomicLong(recordId);
           try {
             startArchival(recordId, logName, location);
-            //Init ArchiveLogWriter for writing in export/archival location
-            ArchiveLogWriter writer = new ArchiveHdfsLogWriter();
-            writer.init(location, logName);
-
-            LogServiceRaftLogReader reader = new LogServiceRaftLogReader(log);
-            reader.seek(recordId);
-            long records = 0;
+            // the records removed by the retention policy cannot be archived
+            final long archiveStart = Math.max(recordId, firstRecordId);
+            // Archive the chunks of the records in parallel into export/archival location
+            final ParallelArchiver archiver = new ParallelArchiver(FileSystem.get(new Configuration()),
+                location, logName, () -> new LogServiceRaftLogReader(log, recordIndex),
+                properties.getLong(Constants.LOG_SERVICE_ARCHIVE_CHUNK_RECORDS_KEY,
+                    Constants.DEFAULT_ARCHIVE_CHUNK_RECORDS),
+                properties.getInt(Constants.LOG_SERVICE_ARCHIVE_BLOCK_SIZE_KEY,
+                    Constants.DEFAULT_ARCHIVE_BLOCK_SIZE),
+                archiveChunkExecutor);
             boolean isInterrupted = false;
-            while (reader.hasNext()) {
-              writer.write(ByteBuffer.wrap(reader.next()));
-              isInterrupted = Thread.currentThread().isInterrupted();
-              if (records >= DEFAULT_ARCHIVE_THRESHOLD_PER_FILE || isInterrupted) {
-                //roll writer when interuppted or no. of records threshold per file is met
-                commit(writer, logName, location);
-                if (isInterrupted) {
-                  break;
-                }
-                records = 0;
-              }
-              records++;
+            try {
+              archiver.archive(archiveStart, getLength(), end -> {
+                committed.set(end);
+                commit(end, logName, location);
+              });
+            } catch (InterruptedException | InterruptedIOException e) {
+              isInterrupted = true;
             }
-            writer.close();
             if (!isInterrupted) {
               //It means archival is successfully completed on this leader
-              completeArchival(writer.getLastWrittenRecordId(), logName, location);
+              completeArchival(committed.get(), logName, location);
             } else {
               //Thread is interuppted either leader is going down or it become follower
               try {
@@ -673,7 +1049,7 @@ public class LogStateMachine extends BaseStateMachine {
                 Thread.sleep(10000);
               } catch (InterruptedException e) {
               }
-              sendArchiveLogrequestToNewLeader(writer.getLastWrittenRecordId(), logName, location);
+              sendArchiveLogrequestToNewLeader(committed.get(), logName, location);
             }
             return true;
           } catch (Exception e) {
@@ -724,10 +1100,9 @@ public class LogStateMachine extends BaseStateMachine {
     updateArchivingInfo(recordId, logName, location, isArchivalRequest, ArchivalStatus.COMPLETED);
   }
 
-  private void commit(ArchiveLogWriter writer, LogName logName, String location)
+  private void commit(long recordId, LogName logName, String location)
       throws IOException {
-    writer.rollWriter();
-    updateArchivingInfo(writer.getLastWrittenRecordId(), logName, location, isArchivalRequest,
+    updateArchivingInfo(recordId, logName, location, isArchivalRequest,
         ArchivalStatus.RUNNING);
   }
 
@@ -19,13 +19,13 @@
 package org.apache.ratis.logservice.server;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
 
 import com.codahale.metrics.Timer;
@@ -55,6 +55,7 @@ import org.apache.ratis.protocol.*;
 
 
 import org.apache.ratis.server.RaftServer;
+import org.apache.ratis.server.impl.RaftServerProxy;
 import org.apache.ratis.server.storage.RaftStorage;
 import org.apache.ratis.statemachine.TransactionContext;
 import org.apache.ratis.statemachine.impl.BaseStateMachine;
@@ -105,11 +106,35 @@ public class MetaStateMachine extends BaseStateMachine {
     private RaftGroupId logServerGroupId;
     private RatisMetricRegistry metricRegistry;
 
+    // Load reported by the heartbeats for placing and rebalancing the logs
+    private final WorkerLoads workerLoads;
+    private final long rebalanceInterval;
+    private final double rebalanceThreshold;
+    private Daemon rebalancer = null;
+
     public MetaStateMachine(RaftGroupId metadataGroupId, RaftGroupId logServerGroupId,
                             long failureDetectionPeriod) {
+      this(metadataGroupId, logServerGroupId, failureDetectionPeriod, new RaftProperties());
+    }
+
+    public MetaStateMachine(RaftGroupId metadataGroupId, RaftGroupId logServerGroupId,
+                            long failureDetectionPeriod, RaftProperties config) {
       this.metadataGroupId = metadataGroupId;
       this.logServerGroupId = logServerGroupId;
       this.failureDetectionPeriod = failureDetectionPeriod;
+      this.workerLoads = new WorkerLoads(
+          config.getDouble(Constants.LOG_SERVICE_PLACEMENT_WEIGHT_APPEND_RATE_KEY,
+              Constants.DEFAULT_PLACEMENT_WEIGHT_APPEND_RATE),
+          config.getDouble(Constants.LOG_SERVICE_PLACEMENT_WEIGHT_BYTES_STORED_KEY,
+              Constants.DEFAULT_PLACEMENT_WEIGHT_BYTES_STORED),
+          config.getDouble(Constants.LOG_SERVICE_PLACEMENT_WEIGHT_LOGS_KEY,
+              Constants.DEFAULT_PLACEMENT_WEIGHT_LOGS),
+          config.getDouble(Constants.LOG_SERVICE_PLACEMENT_WEIGHT_DISK_USED_KEY,
+              Constants.DEFAULT_PLACEMENT_WEIGHT_DISK_USED));
+      this.rebalanceInterval = config.getLong(Constants.LOG_SERVICE_REBALANCE_INTERVAL_KEY,
+          Constants.DEFAULT_REBALANCE_INTERVAL);
+      this.rebalanceThreshold = config.getDouble(Constants.LOG_SERVICE_REBALANCE_THRESHOLD_KEY,
+          Constants.DEFAULT_REBALANCE_THRESHOLD);
     }
 
     @Override
@@ -120,6 +145,25 @@ public class MetaStateMachine extends BaseStateMachine {
         super.initialize(server, groupId, storage);
         peerHealthChecker = new Daemon(new PeerHealthChecker(),"peer-Health-Checker");
         peerHealthChecker.start();
+        if (rebalanceInterval > 0) {
+            rebalancer = new Daemon(new Rebalancer(), "log-Rebalancer");
+            rebalancer.start();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (rebalancer != null) {
+            rebalancer.interrupt();
+            try {
+                rebalancer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw (InterruptedIOException) new InterruptedIOException(
+                    "Interrupted when stopping the rebalancer").initCause(e);
+            }
+        }
+        super.close();
     }
 
     @Override
@@ -136,6 +180,16 @@ public class MetaStateMachine extends BaseStateMachine {
                 LogServiceRegisterLogRequestProto r = req.getRegisterRequest();
                 LogName logname = LogServiceProtoUtil.toLogName(r.getLogname());
                 RaftGroup rg = MetaServiceProtoUtil.toRaftGroup(r.getRaftGroup());
+                RaftGroup previous = map.get(logname);
+                if (previous != null) {
+                    // The log is moved, remove it from the peers no longer in the group.
+                    previous.getPeers().stream().filter(p -> rg.getPeer(p.getId()) == null).forEach(p -> {
+                        Set<LogName> logNames = peerLogs.get(p);
+                        if (logNames != null) {
+                            logNames.remove(logname);
+                        }
+                    });
+                }
                 rg.getPeers().stream().forEach(raftPeer -> {
                     Set<LogName> logNames;
                     if(!peerLogs.containsKey(raftPeer)) {
@@ -153,8 +207,8 @@ public class MetaStateMachine extends BaseStateMachine {
                 break;
             case UNREGISTERREQUEST:
                 LogServiceUnregisterLogRequestProto unregReq = req.getUnregisterRequest();
-                logname = LogServiceProtoUtil.toLogName(unregReq.getLogname());
-                map.remove(logname);
+                LogName unregLogName = LogServiceProtoUtil.toLogName(unregReq.getLogname());
+                map.remove(unregLogName);
                 break;
             case PINGREQUEST:
                 LogServicePingRequestProto pingRequest = req.getPingRequest();
@@ -170,6 +224,10 @@ public class MetaStateMachine extends BaseStateMachine {
                 MetaServiceProtos.LogServiceHeartbeatRequestProto heartbeatRequest = req.getHeartbeatRequest();
                 RaftPeer heartbeatPeer = MetaServiceProtoUtil.toRaftPeer(heartbeatRequest.getPeer());
                 heartbeatInfo.put(heartbeatPeer,  System.currentTimeMillis());
+                Map<RaftGroupId, WorkerLoads.LogLoad> logLoads = new HashMap<>();
+                heartbeatRequest.getLogLoadList().forEach(l -> logLoads.put(RaftGroupId.valueOf(l.getGroupId()),
+                    new WorkerLoads.LogLoad(l.getAppendRate(), l.getBytesStored())));
+                workerLoads.update(heartbeatPeer.getId(), logLoads, heartbeatRequest.getDiskFree());
                 break;
             default:
         }
@@ -309,14 +367,17 @@ public class MetaStateMachine extends BaseStateMachine {
                         .build()
                         .toByteString()));
             } else {
-                List<PeerGroups> peerGroup = IntStream.range(0, 3).mapToObj(i -> avail.poll())
-                    .collect(Collectors.toList());
-                List<RaftPeer> peersFromGroup =
-                    peerGroup.stream().map(obj -> obj.getPeer()).collect(Collectors.toList());
+                // Place the log on the least loaded peers
+                Map<RaftPeer, PeerGroups> candidates = new HashMap<>();
+                avail.forEach(pg -> candidates.put(pg.getPeer(), pg));
+                List<RaftPeer> peersFromGroup = workerLoads.chooseLeastLoaded(candidates.keySet(), 3);
                 RaftGroup raftGroup = RaftGroup.valueOf(RaftGroupId.randomId(), peersFromGroup);
-                peerGroup.stream().forEach(pg -> {
+                peersFromGroup.forEach(p -> {
+                    PeerGroups pg = candidates.get(p);
+                    avail.remove(pg);
                     pg.getGroups().add(raftGroup);
                     avail.add(pg);
+                    workerLoads.addLog(p.getId(), raftGroup.getGroupId());
                 });
                 peersFromGroup.forEach(i -> {
                     RaftClient client = RaftClient.newBuilder().setProperties(properties)
@@ -327,18 +388,8 @@ public class MetaStateMachine extends BaseStateMachine {
                         e.printStackTrace();
                     }
                 });
-                RaftClient client = RaftClient.newBuilder()
-                        .setRaftGroup(currentGroup)
-                        .setClientId(ClientId.randomId())
-                        .setProperties(properties)
-                        .build();
                 try {
-                    client.send(() -> MetaServiceProtos.MetaSMRequestProto.newBuilder()
-                            .setRegisterRequest(LogServiceRegisterLogRequestProto.newBuilder()
-                                    .setLogname(LogServiceProtoUtil.toLogNameProto(name))
-                                    .setRaftGroup(MetaServiceProtoUtil
-                                            .toRaftGroupProto(raftGroup)))
-                            .build().toByteString());
+                    registerLog(name, raftGroup);
                 } catch (IOException e) {
                     LOG.error(
                         "Exception while registering raft group with Metadata Service during creation of log");
@@ -351,6 +402,121 @@ public class MetaStateMachine extends BaseStateMachine {
     }
 
 
+    private void registerLog(LogName name, RaftGroup raftGroup) throws IOException {
+        RaftClient client = RaftClient.newBuilder()
+                .setRaftGroup(currentGroup)
+                .setClientId(ClientId.randomId())
+                .setProperties(properties)
+                .build();
+        client.send(() -> MetaServiceProtos.MetaSMRequestProto.newBuilder()
+                .setRegisterRequest(LogServiceRegisterLogRequestProto.newBuilder()
+                        .setLogname(LogServiceProtoUtil.toLogNameProto(name))
+                        .setRaftGroup(MetaServiceProtoUtil
+                                .toRaftGroupProto(raftGroup)))
+                .build().toByteString());
+    }
+
+    private RaftClient newLogServerClient(RaftPeer peer) {
+        return RaftClient.newBuilder().setProperties(properties)
+            .setRaftGroup(RaftGroup.valueOf(logServerGroupId, peer)).build();
+    }
+
+    /**
+     * Move a log group off the most loaded worker, if the workers are not balanced.
+     * The move is planned with the lock held, but the lock is not held across the blocking calls of the move.
+     */
+    void rebalance() throws IOException {
+        final LogName logName;
+        final RaftGroup group;
+        final PeerGroups from;
+        final PeerGroups to;
+        try (AutoCloseableLock writeLock = writeLock()) {
+            if (currentGroup == null) {
+                // not serving any request yet
+                return;
+            }
+            Map<RaftGroupId, LogName> logs = new HashMap<>();
+            Map<RaftGroupId, RaftGroup> groups = new HashMap<>();
+            map.forEach((n, g) -> {
+                logs.put(g.getGroupId(), n);
+                groups.put(g.getGroupId(), g);
+            });
+            Map<RaftPeerId, PeerGroups> workers = new HashMap<>();
+            avail.forEach(pg -> workers.put(pg.getPeer().getId(), pg));
+            WorkerLoads.Move move = workerLoads.planMove(
+                workers.values().stream().map(PeerGroups::getPeer).collect(Collectors.toList()),
+                groups, rebalanceThreshold);
+            if (move == null) {
+                return;
+            }
+            logName = logs.get(move.getGroupId());
+            group = groups.get(move.getGroupId());
+            from = workers.get(move.getFrom());
+            to = workers.get(move.getTo());
+        }
+
+        final RaftGroup newGroup = moveLog(logName, group, from, to);
+        try (AutoCloseableLock writeLock = writeLock()) {
+            onLogMoved(group, newGroup, from, to);
+        }
+    }
+
+    /**
+     * Move a log from a worker to another: the log is started on the new worker,
+     * the new worker replaces the old one in the raft configuration of the log group
+     * after catching up, and then the log is removed from the old worker.
+     */
+    private RaftGroup moveLog(LogName logName, RaftGroup group, PeerGroups from, PeerGroups to) throws IOException {
+        LOG.info("Moving log {} with group {} from {} to {}", logName, group, from.getPeer(), to.getPeer());
+        List<RaftPeer> newPeers = group.getPeers().stream()
+            .filter(p -> !p.equals(from.getPeer())).collect(Collectors.toList());
+        newPeers.add(to.getPeer());
+        RaftGroup newGroup = RaftGroup.valueOf(group.getGroupId(), newPeers);
+
+        try (RaftClient client = newLogServerClient(to.getPeer())) {
+            client.groupAdd(newGroup, to.getPeer().getId());
+        }
+        try (RaftClient client = RaftClient.newBuilder().setProperties(properties).setRaftGroup(group).build()) {
+            RaftClientReply reply = client.setConfiguration(newPeers.toArray(new RaftPeer[0]));
+            if (!reply.isSuccess()) {
+                throw new IOException("Failed to change the peers of " + logName + " to " + newPeers,
+                    reply.getException());
+            }
+        } catch (IOException e) {
+            try (RaftClient client = newLogServerClient(to.getPeer())) {
+                client.groupRemove(group.getGroupId(), true, to.getPeer().getId());
+            } catch (IOException re) {
+                LOG.warn("Failed to remove {} from {}", group.getGroupId(), to.getPeer(), re);
+            }
+            throw e;
+        }
+        try (RaftClient client = newLogServerClient(from.getPeer())) {
+            client.groupRemove(group.getGroupId(), true, from.getPeer().getId());
+        } catch (IOException e) {
+            // The old worker is not in the group anymore, so it only keeps a stale copy.
+            LOG.warn("Failed to remove {} from {}", group.getGroupId(), from.getPeer(), e);
+        }
+        registerLog(logName, newGroup);
+        return newGroup;
+    }
+
+    /** Update the groups and the loads of the workers after a log is moved. */
+    private void onLogMoved(RaftGroup group, RaftGroup newGroup, PeerGroups from, PeerGroups to) {
+        avail.stream().filter(pg -> pg.getGroups().contains(group)).collect(Collectors.toList()).forEach(pg -> {
+            avail.remove(pg);
+            pg.getGroups().remove(group);
+            if (pg != from) {
+                pg.getGroups().add(newGroup);
+            }
+            avail.add(pg);
+        });
+        avail.remove(to);
+        to.getGroups().add(newGroup);
+        avail.add(to);
+        workerLoads.removeLog(from.getPeer().getId(), group.getGroupId());
+        workerLoads.addLog(to.getPeer().getId(), group.getGroupId());
+    }
+
     private AutoCloseableLock writeLock() {
         return AutoCloseableLock.acquire(lock.writeLock());
     }
@@ -462,6 +628,7 @@ public class MetaStateMachine extends BaseStateMachine {
                             for(PeerGroups peerGroups: peerGroupsToRemove) {
                                 avail.remove(peerGroups);
                             }
+                            workerLoads.remove(raftPeer.getId());
                         }
                     });
                 } catch (Exception e) {
@@ -474,6 +641,26 @@ public class MetaStateMachine extends BaseStateMachine {
     }
 
 
+    private class Rebalancer implements Runnable {
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(rebalanceInterval);
+                    if (((RaftServerProxy) raftServer).getImpl(metadataGroupId).isLeader()) {
+                        rebalance();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    LOG.warn("Failed to rebalance the logs across the peers", e);
+                }
+            }
+        }
+    }
+
+
     // This method need to be used for testing only.
     public boolean checkPeersAreSame() {
         if(!peers.equals(peerLogs.keySet()) || !peers.equals(heartbeatInfo.keySet())) {
@@ -93,7 +93,7 @@ public class MetadataServer extends BaseServer {
         RaftGroupId raftMetaGroupId = RaftGroupId.valueOf(opts.getMetaGroupId());
         RaftGroup metaGroup = RaftGroup.valueOf(raftMetaGroupId, peers);
         metaStateMachine = new MetaStateMachine(raftMetaGroupId, RaftGroupId.valueOf(opts.getLogServerGroupId()),
-                failureDetectionPeriod);
+                failureDetectionPeriod, getConfig());
 
         // Make sure that we aren't setting any invalid/harmful properties
         validateRaftProperties(properties);
@@ -0,0 +1,170 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.logservice.server;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.ratis.logservice.api.LogName;
+import org.apache.ratis.logservice.impl.ArchiveBlockFile;
+import org.apache.ratis.logservice.util.LogServiceUtils;
+import org.apache.ratis.util.Preconditions;
+import org.apache.ratis.util.function.CheckedConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Archive a range of records of a log in parallel.
+ *
+ * The range is split into chunks of records.
+ * The chunks are written concurrently, each by its own {@link RaftLogReader},
+ * into {@link ArchiveBlockFile}s in a temporary directory.
+ * The chunks are committed in order, i.e. a chunk is renamed into the archive location
+ * only after all the chunks before it, so that the committed files always cover a prefix of the range.
+ * The committed files are named as the files rolled by the
+ * {@link org.apache.ratis.logservice.impl.ArchiveHdfsLogWriter},
+ * with the recordId after the last record of the chunk,
+ * so that they are read in order by the {@link org.apache.ratis.logservice.impl.ArchiveHdfsLogReader}.
+ */
+class ParallelArchiver {
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelArchiver.class);
+
+  static final String TMP_DIR = "_tmp";
+
+  private final FileSystem fs;
+  private final LogName logName;
+  private final Path archiveDir;
+  private final Path tmpDir;
+  private final Supplier<RaftLogReader> readers;
+  private final long chunkRecords;
+  private final int blockSize;
+  private final ExecutorService executor;
+
+  ParallelArchiver(FileSystem fs, String location, LogName logName, Supplier<RaftLogReader> readers,
+      long chunkRecords, int blockSize, ExecutorService executor) {
+    Preconditions.assertTrue(chunkRecords > 0, () -> "Non-positive chunkRecords " + chunkRecords);
+    this.fs = fs;
+    this.logName = logName;
+    this.archiveDir = new Path(LogServiceUtils.getArchiveLocationForLog(location, logName));
+    this.tmpDir = new Path(archiveDir, TMP_DIR);
+    this.readers = readers;
+    this.chunkRecords = chunkRecords;
+    this.blockSize = blockSize;
+    this.executor = executor;
+  }
+
+  Path getArchiveDir() {
+    return archiveDir;
+  }
+
+  /**
+   * Archive the records in [startRecordId, endRecordId).
+   * @param onCommit called in order with the recordId after the last record of each committed chunk.
+   * @return the recordId after the last archived record, which is endRecordId unless interrupted.
+   */
+  long archive(long startRecordId, long endRecordId, CheckedConsumer<Long, IOException> onCommit)
+      throws IOException, InterruptedException {
+    fs.mkdirs(tmpDir);
+    // a chunk is written with the read lock held; the write lock is acquired to wait for the writing chunks
+    final ReadWriteLock writing = new ReentrantReadWriteLock();
+    final AtomicBoolean aborted = new AtomicBoolean();
+    final List<Future<Path>> chunks = new ArrayList<>();
+    for (long start = startRecordId; start < endRecordId; start += chunkRecords) {
+      final long chunkStart = start;
+      final long chunkEnd = Math.min(start + chunkRecords, endRecordId);
+      chunks.add(executor.submit(() -> {
+        writing.readLock().lock();
+        try {
+          if (aborted.get()) {
+            throw new InterruptedIOException("Aborted archiving " + logName + " at recordId " + chunkStart);
+          }
+          return writeChunk(chunkStart, chunkEnd);
+        } finally {
+          writing.readLock().unlock();
+        }
+      }));
+    }
+    LOG.info("Archiving records [{}, {}) of {} in {} chunks", startRecordId, endRecordId, logName, chunks.size());
+
+    long committed = startRecordId;
+    try {
+      for (Future<Path> chunk : chunks) {
+        final Path tmp;
+        try {
+          tmp = chunk.get();
+        } catch (ExecutionException e) {
+          final Throwable cause = e.getCause();
+          throw cause instanceof IOException ? (IOException) cause
+              : new IOException("Failed to archive " + logName + " from recordId " + committed, cause);
+        }
+        final long end = Math.min(committed + chunkRecords, endRecordId);
+        final Path committedPath = new Path(LogServiceUtils.getRolledPathForArchiveWriter(
+            new Path(archiveDir, logName.getName()), end));
+        if (!fs.rename(tmp, committedPath)) {
+          throw new IOException("Failed to rename " + tmp + " to " + committedPath);
+        }
+        committed = end;
+        onCommit.accept(committed);
+      }
+      return committed;
+    } finally {
+      // the uncommitted chunks are archived again when the archival is resumed
+      aborted.set(true);
+      chunks.forEach(c -> c.cancel(true));
+      // wait for the cancelled chunks still being written before deleting their files
+      writing.writeLock().lock();
+      try {
+        fs.delete(tmpDir, true);
+      } catch (IOException e) {
+        LOG.warn("Failed to delete {}", tmpDir, e);
+      } finally {
+        writing.writeLock().unlock();
+      }
+    }
+  }
+
+  private Path writeChunk(long start, long end) throws IOException {
+    final Path tmp = new Path(tmpDir, logName.getName() + "_" + start);
+    final RaftLogReader reader = readers.get();
+    reader.seek(start);
+    try (ArchiveBlockFile.Writer writer = new ArchiveBlockFile.Writer(fs, tmp, blockSize, start)) {
+      for (long recordId = start; recordId < end; recordId++) {
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedIOException("Interrupted when archiving " + logName + " at recordId " + recordId);
+        }
+        if (!reader.hasNext()) {
+          throw new IOException("Record " + recordId + " of " + logName + " not found");
+        }
+        writer.append(reader.nextRecord());
+      }
+    }
+    LOG.debug("Archived records [{}, {}) of {} to {}", start, end, logName, tmp);
+    return tmp;
+  }
+}
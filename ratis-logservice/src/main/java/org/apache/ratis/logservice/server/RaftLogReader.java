@@ -18,6 +18,11 @@
 package org.apache.ratis.logservice.server;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.thirdparty.com.google.protobuf.UnsafeByteOperations;
 
 public interface RaftLogReader {
 
@@ -38,6 +43,40 @@ public interface RaftLogReader {
    */
   byte[] next() throws IOException;
 
+  /**
+   * Same as {@link #next()} except that the record is returned as a {@link ByteString},
+   * which is not copied if the implementation holds it as a {@link ByteString}.
+   * The returned record must not be modified.
+   */
+  default ByteString nextRecord() throws IOException {
+    return UnsafeByteOperations.unsafeWrap(next());
+  }
+
+  /**
+   * Returns the next record without moving this reader. Ensure {@link #hasNext()} returns true before
+   * calling this method.
+   */
+  ByteString peekRecord() throws IOException;
+
+  /**
+   * Reads at most numRecords records of at most maxBytes bytes in total,
+   * except that the first record is read even if it is larger than maxBytes.
+   * A record which does not fit in maxBytes is left for the next read.
+   */
+  default List<ByteString> readRecords(int numRecords, long maxBytes) throws IOException {
+    final List<ByteString> records = new ArrayList<>();
+    long bytes = 0;
+    for (int i = 0; i < numRecords && hasNext(); i++) {
+      if (i > 0 && bytes + peekRecord().size() > maxBytes) {
+        break;
+      }
+      final ByteString record = nextRecord();
+      records.add(record);
+      bytes += record.size();
+    }
+    return records;
+  }
+
   /**
    * Returns current raft index read
    * @return
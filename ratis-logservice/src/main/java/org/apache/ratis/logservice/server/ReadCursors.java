@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.logservice.server;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Server-side read cursors, each of which keeps a {@link LogServiceRaftLogReader} positioned
+ * between the read requests of a client reader,
+ * so that a sequential read only reads the requested records
+ * instead of seeking to the start record for every request.
+ *
+ * A cursor is addressed by an id chosen by the client.
+ * It is created by the first read request with the id and removed when the client closes it.
+ * When a new cursor is created, the cursors idle for longer than the idle timeout are removed
+ * and, if the number of cursors still reaches the limit, the least recently used cursor is removed.
+ * A removed cursor is transparently re-created by the next read request with the same id.
+ */
+class ReadCursors {
+  private static final Logger LOG = LoggerFactory.getLogger(ReadCursors.class);
+
+  private static final class Cursor {
+    private final LogServiceRaftLogReader reader;
+    private volatile long lastAccessTime = System.nanoTime();
+
+    private Cursor(LogServiceRaftLogReader reader) {
+      this.reader = reader;
+    }
+
+    private synchronized List<ByteString> read(long startRecordId, int numRecords, long maxBytes)
+        throws IOException {
+      lastAccessTime = System.nanoTime();
+      if (reader.getCurrentRecordId() == startRecordId) {
+        reader.refresh();
+      } else {
+        reader.seek(startRecordId);
+      }
+      return reader.readRecords(numRecords, maxBytes);
+    }
+
+    private long getIdleNanos(long now) {
+      return now - lastAccessTime;
+    }
+  }
+
+  private final int maxCursors;
+  private final long idleTimeoutNanos;
+  private final Supplier<LogServiceRaftLogReader> readerSupplier;
+  private final ConcurrentMap<Long, Cursor> cursors = new ConcurrentHashMap<>();
+
+  ReadCursors(int maxCursors, long idleTimeoutMs, Supplier<LogServiceRaftLogReader> readerSupplier) {
+    Preconditions.assertTrue(maxCursors > 0, () -> "Non-positive maxCursors " + maxCursors);
+    this.maxCursors = maxCursors;
+    this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+    this.readerSupplier = readerSupplier;
+  }
+
+  /**
+   * Read the records using the given cursor.
+   * @return at most numRecords records starting at startRecordId, as limited by maxBytes.
+   * @see RaftLogReader#readRecords(int, long)
+   */
+  List<ByteString> read(long cursorId, long startRecordId, int numRecords, long maxBytes) throws IOException {
+    final Cursor cursor = getOrCreate(cursorId);
+    try {
+      return cursor.read(startRecordId, numRecords, maxBytes);
+    } catch (IOException | RuntimeException e) {
+      // the position of the reader is unknown
+      cursors.remove(cursorId, cursor);
+      throw e;
+    }
+  }
+
+  private Cursor getOrCreate(long cursorId) {
+    final Cursor cursor = cursors.get(cursorId);
+    if (cursor != null) {
+      return cursor;
+    }
+    expire();
+    if (cursors.size() >= maxCursors) {
+      evict();
+    }
+    return cursors.computeIfAbsent(cursorId, id -> {
+      LOG.debug("Open cursor {}", id);
+      return new Cursor(readerSupplier.get());
+    });
+  }
+
+  /** Remove the least recently used cursor. */
+  private void evict() {
+    final long now = System.nanoTime();
+    cursors.entrySet().stream()
+        .max(Comparator.comparingLong(e -> e.getValue().getIdleNanos(now)))
+        .map(Map.Entry::getKey)
+        .ifPresent(id -> {
+          LOG.debug("Evict cursor {} since the number of cursors reaches the limit {}", id, maxCursors);
+          cursors.remove(id);
+        });
+  }
+
+  /** Remove the cursors which have been idle for the idle timeout. */
+  void expire() {
+    final long now = System.nanoTime();
+    cursors.values().removeIf(c -> c.getIdleNanos(now) > idleTimeoutNanos);
+  }
+
+  void close(long cursorId) {
+    if (cursors.remove(cursorId) != null) {
+      LOG.debug("Close cursor {}", cursorId);
+    }
+  }
+
+  void clear() {
+    cursors.clear();
+  }
+
+  int size() {
+    return cursors.size();
+  }
+}
@@ -0,0 +1,206 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.logservice.server;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.apache.ratis.logservice.proto.LogServiceProtos.RecordPositionProto;
+import org.apache.ratis.util.Preconditions;
+
+/**
+ * A sparse index from LogService recordId's to their positions in the {@link org.apache.ratis.server.raftlog.RaftLog},
+ * i.e. the raft index of the entry containing the record and the offset of the record within the entry.
+ * A position is kept for every recordId which is a multiple of the interval,
+ * so that a reader can seek to a recordId by reading at most an interval of records
+ * instead of all the records from the beginning of the log.
+ *
+ * The index is updated when the append requests are applied to the state machine
+ * and it is saved with the state machine snapshots. Thread-safe.
+ */
+public class RecordIndex {
+  /** The timestamp or the size of a position which are unknown, e.g. read from an old snapshot. */
+  public static final long UNKNOWN = -1;
+
+  /** The position of a record in the raft log. */
+  public static final class Position {
+    private final long recordId;
+    private final long raftIndex;
+    private final int offset;
+    private final long timestamp;
+    private final long bytesBefore;
+
+    Position(long recordId, long raftIndex, int offset, long timestamp, long bytesBefore) {
+      this.recordId = recordId;
+      this.raftIndex = raftIndex;
+      this.offset = offset;
+      this.timestamp = timestamp;
+      this.bytesBefore = bytesBefore;
+    }
+
+    public long getRecordId() {
+      return recordId;
+    }
+
+    public long getRaftIndex() {
+      return raftIndex;
+    }
+
+    /** @return the offset of the record within the raft log entry. */
+    public int getOffset() {
+      return offset;
+    }
+
+    /** @return the time when the raft log entry is applied, in milliseconds. */
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    /** @return the size of the records before the raft log entry. */
+    public long getBytesBefore() {
+      return bytesBefore;
+    }
+
+    @Override
+    public String toString() {
+      return recordId + "@" + raftIndex + ":" + offset;
+    }
+  }
+
+  private final long interval;
+  private final ConcurrentNavigableMap<Long, Position> positions = new ConcurrentSkipListMap<>();
+
+  public RecordIndex(long interval) {
+    Preconditions.assertTrue(interval > 0, () -> "Non-positive interval " + interval);
+    this.interval = interval;
+  }
+
+  /**
+   * Add the records appended by a raft log entry.
+   *
+   * @param firstRecordId the recordId of the first record in the entry.
+   * @param numRecords the number of records in the entry.
+   * @param raftIndex the raft index of the entry.
+   */
+  public void add(long firstRecordId, int numRecords, long raftIndex) {
+    add(firstRecordId, numRecords, raftIndex, UNKNOWN, UNKNOWN);
+  }
+
+  /**
+   * Add the records appended by a raft log entry.
+   *
+   * @param firstRecordId the recordId of the first record in the entry.
+   * @param numRecords the number of records in the entry.
+   * @param raftIndex the raft index of the entry.
+   * @param timestamp the time assigned by the leader to the entry, for the retention by age.
+   * @param bytesBefore the size of the records before the entry, for the retention by size.
+   */
+  public void add(long firstRecordId, int numRecords, long raftIndex, long timestamp, long bytesBefore) {
+    // the first multiple of the interval which is >= firstRecordId
+    final long recordId = (firstRecordId + interval - 1) / interval * interval;
+    for(long r = recordId; r < firstRecordId + numRecords; r += interval) {
+      positions.put(r, new Position(r, raftIndex, Math.toIntExact(r - firstRecordId), timestamp, bytesBefore));
+    }
+  }
+
+  /**
+   * @return the position of the greatest indexed recordId less than or equal to the given recordId
+   *         such that the raft index is at least the given min raft index,
+   *         or null if there is no such position.
+   */
+  public Position floor(long recordId, long minRaftIndex) {
+    final Map.Entry<Long, Position> floor = positions.floorEntry(recordId);
+    if (floor == null || floor.getValue().getRaftIndex() < minRaftIndex) {
+      return null;
+    }
+    return floor.getValue();
+  }
+
+  /**
+   * @return the first position such that the raft index is at least the given min raft index,
+   *         or null if there is no such position.
+   */
+  public Position first(long minRaftIndex) {
+    for(Position p : positions.values()) {
+      if (p.getRaftIndex() >= minRaftIndex) {
+        return p;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the last position of the leading positions satisfying the given condition,
+   *         or null if the first position does not satisfy it.
+   *         The condition must hold for a prefix of the positions, e.g. the positions older than a time.
+   */
+  public Position lastOfPrefix(Predicate<Position> condition) {
+    Position last = null;
+    for(Position p : positions.values()) {
+      if (!condition.test(p)) {
+        break;
+      }
+      last = p;
+    }
+    return last;
+  }
+
+  /** Remove the positions with raft index less than the given index, e.g. after the log is purged. */
+  public void purge(long raftIndex) {
+    positions.values().removeIf(p -> p.getRaftIndex() < raftIndex);
+  }
+
+  public void clear() {
+    positions.clear();
+  }
+
+  public int size() {
+    return positions.size();
+  }
+
+  /** @return the positions for saving in a snapshot. */
+  List<RecordPositionProto> toProtos() {
+    return positions.values().stream()
+        .map(p -> RecordPositionProto.newBuilder()
+            .setRecordId(p.getRecordId())
+            .setRaftIndex(p.getRaftIndex())
+            .setOffset(p.getOffset())
+            .setTimestamp(p.getTimestamp())
+            .setBytesBefore(p.getBytesBefore())
+            .build())
+        .collect(Collectors.toList());
+  }
+
+  /** Replace the positions with the positions loaded from a snapshot. */
+  void read(List<RecordPositionProto> protos) {
+    clear();
+    for(RecordPositionProto p : protos) {
+      positions.put(p.getRecordId(), new Position(p.getRecordId(), p.getRaftIndex(), p.getOffset(),
+          p.getTimestamp(), p.getBytesBefore()));
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(interval=" + interval + ", size=" + size() + ")";
+  }
+}
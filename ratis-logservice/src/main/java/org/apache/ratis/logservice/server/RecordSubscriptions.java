@@ -0,0 +1,184 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.logservice.server;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.Daemon;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.TimeDuration;
+import org.apache.ratis.util.TimeoutScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The tailing subscriptions of a log.
+ *
+ * A subscriber sends a long-poll request at a recordId with its credits,
+ * i.e. the max number of records it can receive.
+ * If there are records at the recordId, the request is replied immediately.
+ * Otherwise, the request waits until new records are appended, when the records are pushed to the subscriber,
+ * or until the max wait time, when an empty reply is sent.
+ * The subscriber sends the next request after it has consumed the records,
+ * so that the records are pushed no faster than the subscriber can consume them.
+ *
+ * The records are read using the {@link ReadCursors}, with the subscription id as the cursor id,
+ * so that the subscriptions read sequentially.
+ */
+class RecordSubscriptions {
+  private static final Logger LOG = LoggerFactory.getLogger(RecordSubscriptions.class);
+
+  static final TimeDuration MAX_WAIT_LIMIT = TimeDuration.valueOf(60, TimeUnit.SECONDS);
+
+  /** The result of a subscription request. */
+  static final class Records {
+    private final long startRecordId;
+    private final List<ByteString> records;
+
+    Records(long startRecordId, List<ByteString> records) {
+      this.startRecordId = startRecordId;
+      this.records = records;
+    }
+
+    long getStartRecordId() {
+      return startRecordId;
+    }
+
+    List<ByteString> getRecords() {
+      return records;
+    }
+  }
+
+  /** A subscription request waiting for new records. */
+  private static final class Waiter {
+    private final long subscriptionId;
+    private final long startRecordId;
+    private final int credits;
+    private final CompletableFuture<Records> future = new CompletableFuture<>();
+
+    private Waiter(long subscriptionId, long startRecordId, int credits) {
+      this.subscriptionId = subscriptionId;
+      this.startRecordId = startRecordId;
+      this.credits = credits;
+    }
+  }
+
+  private final ReadCursors cursors;
+  /** The number of records in the log. */
+  private final LongSupplier length;
+  /** The max number of bytes per reply. */
+  private final long maxBytes;
+  private final ConcurrentMap<Long, Waiter> waiters = new ConcurrentHashMap<>();
+  /** For reading the records off the applyTransaction thread. */
+  private final ExecutorService pushExecutor = Executors.newSingleThreadExecutor(
+      r -> new Daemon(r, RecordSubscriptions.class.getSimpleName()));
+
+  RecordSubscriptions(ReadCursors cursors, LongSupplier length, long maxBytes) {
+    this.cursors = cursors;
+    this.length = length;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Subscribe to the records starting at the given recordId, or at the end of the log if fromLogEnd is true.
+   * @return a future of at most credits records, which may be empty if there is no new record within maxWait.
+   */
+  CompletableFuture<Records> subscribe(long subscriptionId, long startRecordId, boolean fromLogEnd,
+      int credits, TimeDuration maxWait) {
+    final long start = fromLogEnd ? length.getAsLong() : startRecordId;
+    if (start < length.getAsLong()) {
+      return read(subscriptionId, start, credits);
+    }
+
+    final Waiter waiter = new Waiter(subscriptionId, start, credits);
+    final Waiter previous = waiters.put(subscriptionId, waiter);
+    if (previous != null) {
+      // the previous request has been retried; it will be discarded by the client
+      previous.future.complete(new Records(previous.startRecordId, Collections.emptyList()));
+    }
+    final TimeDuration wait = maxWait.compareTo(MAX_WAIT_LIMIT) < 0 ? maxWait : MAX_WAIT_LIMIT;
+    TimeoutScheduler.getInstance().onTimeout(wait, () -> {
+      if (waiters.remove(subscriptionId, waiter)) {
+        waiter.future.complete(new Records(start, Collections.emptyList()));
+      }
+    }, LOG, () -> "Failed to timeout subscription " + subscriptionId);
+
+    // records may be appended before the waiter is added
+    if (start < length.getAsLong()) {
+      onAppend(length.getAsLong());
+    }
+    return waiter.future;
+  }
+
+  /** Push the new records to the waiting subscriptions. */
+  void onAppend(long newLength) {
+    if (waiters.isEmpty()) {
+      return;
+    }
+    for (Waiter w : waiters.values()) {
+      if (w.startRecordId < newLength && waiters.remove(w.subscriptionId, w)) {
+        pushExecutor.execute(() -> read(w.subscriptionId, w.startRecordId, w.credits)
+            .whenComplete((records, e) -> {
+              if (e != null) {
+                w.future.completeExceptionally(e);
+              } else {
+                w.future.complete(records);
+              }
+            }));
+      }
+    }
+  }
+
+  private CompletableFuture<Records> read(long subscriptionId, long start, int credits) {
+    try {
+      return CompletableFuture.completedFuture(
+          new Records(start, cursors.read(subscriptionId, start, credits, maxBytes)));
+    } catch (Exception e) {
+      LOG.warn("Failed to read the records for subscription {} at recordId {}", subscriptionId, start, e);
+      return JavaUtils.completeExceptionally(e);
+    }
+  }
+
+  /** Reply the waiting subscriptions with no records, e.g. when the log is reset. */
+  void clear() {
+    for (Waiter w : waiters.values()) {
+      if (waiters.remove(w.subscriptionId, w)) {
+        w.future.complete(new Records(w.startRecordId, Collections.emptyList()));
+      }
+    }
+  }
+
+  /** Reply the waiting subscriptions with no records and stop pushing the new records. */
+  void close() {
+    clear();
+    pushExecutor.shutdownNow();
+  }
+
+  int getNumWaiters() {
+    return waiters.size();
+  }
+}
@@ -0,0 +1,237 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.logservice.server;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.ratis.protocol.RaftGroup;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.protocol.RaftPeer;
+import org.apache.ratis.protocol.RaftPeerId;
+
+/**
+ * The load of the log servers as reported by their heartbeats.
+ *
+ * The score of a worker is the weighted sum of its append rate, bytes stored, number of logs and used disk,
+ * each normalized by the max over all the workers, so that the weights do not depend on the units.
+ * A worker without any reported load has a zero score.
+ */
+class WorkerLoads {
+  /** The load of a log on a worker. */
+  static class LogLoad {
+    private final double appendRate;
+    private final long bytesStored;
+
+    LogLoad(double appendRate, long bytesStored) {
+      this.appendRate = appendRate;
+      this.bytesStored = bytesStored;
+    }
+
+    double getAppendRate() {
+      return appendRate;
+    }
+
+    long getBytesStored() {
+      return bytesStored;
+    }
+  }
+
+  /** The load of a worker. */
+  private static class WorkerLoad {
+    private final Map<RaftGroupId, LogLoad> logs;
+    private final long diskFree;
+
+    WorkerLoad(Map<RaftGroupId, LogLoad> logs, long diskFree) {
+      this.logs = logs;
+      this.diskFree = diskFree;
+    }
+
+    double getAppendRate() {
+      return logs.values().stream().mapToDouble(LogLoad::getAppendRate).sum();
+    }
+
+    long getBytesStored() {
+      return logs.values().stream().mapToLong(LogLoad::getBytesStored).sum();
+    }
+  }
+
+  /** A log group to move from a worker to another. */
+  static class Move {
+    private final RaftGroupId groupId;
+    private final RaftPeerId from;
+    private final RaftPeerId to;
+
+    Move(RaftGroupId groupId, RaftPeerId from, RaftPeerId to) {
+      this.groupId = groupId;
+      this.from = from;
+      this.to = to;
+    }
+
+    RaftGroupId getGroupId() {
+      return groupId;
+    }
+
+    RaftPeerId getFrom() {
+      return from;
+    }
+
+    RaftPeerId getTo() {
+      return to;
+    }
+
+    @Override
+    public String toString() {
+      return groupId + ": " + from + " -> " + to;
+    }
+  }
+
+  private final double appendRateWeight;
+  private final double bytesStoredWeight;
+  private final double logsWeight;
+  private final double diskUsedWeight;
+  private final Map<RaftPeerId, WorkerLoad> loads = new HashMap<>();
+
+  WorkerLoads(double appendRateWeight, double bytesStoredWeight, double logsWeight, double diskUsedWeight) {
+    this.appendRateWeight = appendRateWeight;
+    this.bytesStoredWeight = bytesStoredWeight;
+    this.logsWeight = logsWeight;
+    this.diskUsedWeight = diskUsedWeight;
+  }
+
+  synchronized void update(RaftPeerId peer, Map<RaftGroupId, LogLoad> logs, long diskFree) {
+    loads.put(peer, new WorkerLoad(new HashMap<>(logs), diskFree));
+  }
+
+  /** Account a new log on a worker until it is reported by the next heartbeat. */
+  synchronized void addLog(RaftPeerId peer, RaftGroupId groupId) {
+    loads.computeIfAbsent(peer, p -> new WorkerLoad(new HashMap<>(), 0)).logs.putIfAbsent(groupId, new LogLoad(0, 0));
+  }
+
+  synchronized void removeLog(RaftPeerId peer, RaftGroupId groupId) {
+    final WorkerLoad load = loads.get(peer);
+    if (load != null) {
+      load.logs.remove(groupId);
+    }
+  }
+
+  synchronized void remove(RaftPeerId peer) {
+    loads.remove(peer);
+  }
+
+  /** The max of each figure over all the workers, used to normalize the scores. */
+  private class Max {
+    private final double appendRate = loads.values().stream().mapToDouble(WorkerLoad::getAppendRate).max().orElse(0);
+    private final double bytesStored = loads.values().stream().mapToLong(WorkerLoad::getBytesStored).max().orElse(0);
+    private final double logs = loads.values().stream().mapToInt(l -> l.logs.size()).max().orElse(0);
+    private final double diskFree = loads.values().stream().mapToLong(l -> l.diskFree).max().orElse(0);
+
+    double score(WorkerLoad load) {
+      if (load == null) {
+        return 0;
+      }
+      return appendRateWeight * ratio(load.getAppendRate(), appendRate)
+          + bytesStoredWeight * ratio(load.getBytesStored(), bytesStored)
+          + logsWeight * ratio(load.logs.size(), logs)
+          + diskUsedWeight * (diskFree > 0 ? 1 - ratio(load.diskFree, diskFree) : 0);
+    }
+
+    double score(LogLoad log) {
+      return appendRateWeight * ratio(log.getAppendRate(), appendRate)
+          + bytesStoredWeight * ratio(log.getBytesStored(), bytesStored)
+          + logsWeight * ratio(1, logs);
+    }
+
+    private double ratio(double value, double max) {
+      return max > 0 ? value / max : 0;
+    }
+  }
+
+  synchronized double getScore(RaftPeerId peer) {
+    return new Max().score(loads.get(peer));
+  }
+
+  /** @return the n least loaded peers among the candidates. */
+  synchronized List<RaftPeer> chooseLeastLoaded(Collection<RaftPeer> candidates, int n) {
+    final Max max = new Max();
+    return candidates.stream()
+        .sorted(Comparator.comparingDouble(p -> max.score(loads.get(p.getId()))))
+        .limit(n)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Plan a move of a log group from the most loaded worker to the least loaded worker,
+   * if the score of the most loaded worker exceeds the mean score by the given ratio.
+   * The group moved is the one which brings the two workers closest to each other.
+   *
+   * @param workers the live workers.
+   * @param groups the log groups.
+   * @return the move, or null if the workers are balanced.
+   */
+  synchronized Move planMove(Collection<RaftPeer> workers, Map<RaftGroupId, RaftGroup> groups, double threshold) {
+    if (workers.size() < 2) {
+      return null;
+    }
+    final Max max = new Max();
+    final Map<RaftPeerId, Double> scores = new HashMap<>();
+    workers.forEach(w -> scores.put(w.getId(), max.score(loads.get(w.getId()))));
+    final double mean = scores.values().stream().mapToDouble(Double::doubleValue).average().orElse(0);
+    final Comparator<Map.Entry<RaftPeerId, Double>> byScore = Map.Entry.comparingByValue();
+    final Map.Entry<RaftPeerId, Double> from = scores.entrySet().stream().max(byScore).get();
+    if (mean <= 0 || from.getValue() <= threshold * mean) {
+      return null;
+    }
+    final WorkerLoad fromLoad = loads.get(from.getKey());
+    // try the least loaded worker first
+    final List<Map.Entry<RaftPeerId, Double>> targets = scores.entrySet().stream()
+        .sorted(byScore).collect(Collectors.toList());
+    for (Map.Entry<RaftPeerId, Double> to : targets) {
+      final double gap = from.getValue() - to.getValue();
+      if (gap <= 0) {
+        break;
+      }
+      RaftGroupId best = null;
+      double bestDistance = Double.MAX_VALUE;
+      for (Map.Entry<RaftGroupId, LogLoad> log : fromLoad.logs.entrySet()) {
+        final RaftGroup group = groups.get(log.getKey());
+        if (group == null || group.getPeer(to.getKey()) != null) {
+          continue;
+        }
+        final double contribution = max.score(log.getValue());
+        // moving a log larger than the gap only moves the hot spot
+        if (contribution >= gap) {
+          continue;
+        }
+        final double distance = Math.abs(gap / 2 - contribution);
+        if (distance < bestDistance) {
+          best = log.getKey();
+          bestDistance = distance;
+        }
+      }
+      if (best != null) {
+        return new Move(best, from.getKey(), to.getKey());
+      }
+    }
+    return null;
+  }
+}
@@ -27,10 +27,14 @@ import java.util.List;
 import org.apache.ratis.logservice.api.LogName;
 import org.apache.ratis.logservice.api.LogStream;
 import org.apache.ratis.logservice.api.LogStream.State;
+import org.apache.ratis.logservice.api.RetentionPolicy;
 import org.apache.ratis.logservice.proto.LogServiceProtos;
 import org.apache.ratis.logservice.proto.LogServiceProtos.*;
 import org.apache.ratis.logservice.server.ArchivalInfo;
 import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.thirdparty.com.google.protobuf.CodedInputStream;
+import org.apache.ratis.thirdparty.com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.ratis.thirdparty.com.google.protobuf.Parser;
 
 public class LogServiceProtoUtil {
 
@@ -118,15 +122,42 @@ public class LogServiceProtoUtil {
   }
 
   public static LogServiceRequestProto toReadLogRequestProto(LogName name, long start, int total) {
+    return toReadLogRequestProto(name, start, total, 0, false);
+  }
+
+  public static LogServiceRequestProto toReadLogRequestProto(LogName name, long start, int total,
+      long cursorId, boolean closeCursor) {
+    return toReadLogRequestProto(name, start, total, cursorId, closeCursor, 0);
+  }
+
+  public static LogServiceRequestProto toReadLogRequestProto(LogName name, long start, int total,
+      long cursorId, boolean closeCursor, long maxBytes) {
     LogNameProto logNameProto =
         LogNameProto.newBuilder().setName(name.getName()).build();
     ReadLogRequestProto.Builder builder = ReadLogRequestProto.newBuilder();
     builder.setLogName(logNameProto);
     builder.setStartRecordId(start);
     builder.setNumRecords(total);
+    builder.setCursorId(cursorId);
+    builder.setCloseCursor(closeCursor);
+    builder.setMaxBytes(maxBytes);
     return LogServiceRequestProto.newBuilder().setReadNextQuery(builder.build()).build();
   }
 
+  public static LogServiceRequestProto toSubscribeRequestProto(LogName name, long subscriptionId,
+      long startRecordId, boolean fromLogEnd, int credits, long maxWaitMs) {
+    LogNameProto logNameProto =
+        LogNameProto.newBuilder().setName(name.getName()).build();
+    SubscribeRequestProto.Builder builder = SubscribeRequestProto.newBuilder();
+    builder.setLogName(logNameProto);
+    builder.setSubscriptionId(subscriptionId);
+    builder.setStartRecordId(startRecordId);
+    builder.setFromLogEnd(fromLogEnd);
+    builder.setCredits(credits);
+    builder.setMaxWaitMs(maxWaitMs);
+    return LogServiceRequestProto.newBuilder().setSubscribe(builder.build()).build();
+  }
+
   public static LogServiceRequestProto toSyncLogRequestProto(LogName name) {
     LogNameProto logNameProto =
         LogNameProto.newBuilder().setName(name.getName()).build();
@@ -147,6 +178,16 @@ public class LogServiceProtoUtil {
     return LogServiceRequestProto.newBuilder().setAppendRequest(builder.build()).build();
   }
 
+  public static LogServiceRequestProto toAppendByteStringLogRequestProto(LogName name,
+      List<ByteString> entries) {
+    LogNameProto logNameProto =
+        LogNameProto.newBuilder().setName(name.getName()).build();
+    AppendLogEntryRequestProto.Builder builder = AppendLogEntryRequestProto.newBuilder();
+    builder.setLogName(logNameProto);
+    builder.addAllData(entries);
+    return LogServiceRequestProto.newBuilder().setAppendRequest(builder.build()).build();
+  }
+
   public static LogServiceRequestProto toAppendBBEntryLogRequestProto(LogName name,
       List<ByteBuffer> entries) {
     LogNameProto logNameProto =
@@ -164,6 +205,18 @@ public class LogServiceProtoUtil {
     return LogServiceRequestProto.newBuilder().setAppendRequest(builder.build()).build();
   }
 
+  /**
+   * Parse a message with aliasing enabled so that the bytes fields of the message,
+   * such as the records, are the slices of the given {@link ByteString}, not copies.
+   * Note that parseFrom(ByteString) copies the bytes fields.
+   */
+  public static <T> T parseFromAliased(ByteString bytes, Parser<T> parser)
+      throws InvalidProtocolBufferException {
+    final CodedInputStream in = bytes.newCodedInput();
+    in.enableAliasing(true);
+    return parser.parseFrom(in);
+  }
+
   public static List<byte[]> toListByteArray(List<ByteString> list) {
     List<byte[]> retVal = new ArrayList<byte[]>(list.size());
     for(int i=0; i < list.size(); i++) {
@@ -219,14 +272,24 @@ public class LogServiceProtoUtil {
     return builder.build();
   }
 
-  public static ReadLogReplyProto toReadLogReplyProto(List<byte[]> entries, Throwable t) {
+  public static ReadLogReplyProto toReadLogReplyProto(List<ByteString> entries, Throwable t) {
     ReadLogReplyProto.Builder builder = ReadLogReplyProto.newBuilder();
     if (t != null) {
       builder.setException(toLogException(t));
     } else {
-      for(byte[] record: entries) {
-        builder.addLogRecord( ByteString.copyFrom(record));
-      }
+      builder.addAllLogRecord(entries);
+    }
+    return builder.build();
+  }
+
+  public static SubscribeReplyProto toSubscribeReplyProto(long startRecordId, List<ByteString> entries,
+      Throwable t) {
+    SubscribeReplyProto.Builder builder = SubscribeReplyProto.newBuilder();
+    builder.setStartRecordId(startRecordId);
+    if (t != null) {
+      builder.setException(toLogException(t));
+    } else {
+      builder.addAllLogRecord(entries);
     }
     return builder.build();
   }
@@ -254,7 +317,11 @@ public class LogServiceProtoUtil {
   }
 
   public static ArchiveLogRequestProto toExportInfoProto(ArchivalInfo info) {
-    return ArchiveLogRequestProto.newBuilder().setIsExport(true)
+    return toArchivalInfoProto(info, true);
+  }
+
+  public static ArchiveLogRequestProto toArchivalInfoProto(ArchivalInfo info, boolean isExport) {
+    return ArchiveLogRequestProto.newBuilder().setIsExport(isExport)
         .setLastArchivedRaftIndex(info.getLastArchivedIndex())
         .setLocation(info.getArchiveLocation()).setLogName(
             LogServiceProtos.LogNameProto.newBuilder().setName(info.getArchiveLogName().getName())
@@ -294,6 +361,45 @@ public class LogServiceProtoUtil {
     return LogServiceRequestProto.newBuilder().setExportInfo(exportInfoRequestProto).build();
   }
 
+  public static RetentionPolicyProto toRetentionPolicyProto(RetentionPolicy policy) {
+    return RetentionPolicyProto.newBuilder()
+        .setMaxAgeMs(policy.getMaxAgeMs())
+        .setMaxBytes(policy.getMaxBytes())
+        .setUntilArchived(policy.isUntilArchived()).build();
+  }
+
+  public static RetentionPolicy toRetentionPolicy(RetentionPolicyProto proto) {
+    return RetentionPolicy.valueOf(proto.getMaxAgeMs(), proto.getMaxBytes(), proto.getUntilArchived());
+  }
+
+  public static LogServiceRequestProto toSetRetentionRequestProto(LogName logName, RetentionPolicy policy) {
+    SetRetentionRequestProto setRetention = SetRetentionRequestProto.newBuilder()
+        .setLogName(toLogNameProto(logName))
+        .setPolicy(toRetentionPolicyProto(policy)).build();
+    return LogServiceRequestProto.newBuilder().setSetRetention(setRetention).build();
+  }
+
+  public static SetRetentionReplyProto toSetRetentionReplyProto(Throwable t) {
+    SetRetentionReplyProto.Builder builder = SetRetentionReplyProto.newBuilder();
+    if (t != null) {
+      builder.setException(toLogException(t));
+    }
+    return builder.build();
+  }
+
+  public static LogServiceRequestProto toApplyRetentionRequestProto(long time) {
+    ApplyRetentionRequestProto applyRetention = ApplyRetentionRequestProto.newBuilder().setTime(time).build();
+    return LogServiceRequestProto.newBuilder().setApplyRetention(applyRetention).build();
+  }
+
+  public static ApplyRetentionReplyProto toApplyRetentionReplyProto(long startRecordId, Throwable t) {
+    ApplyRetentionReplyProto.Builder builder = ApplyRetentionReplyProto.newBuilder().setStartRecordId(startRecordId);
+    if (t != null) {
+      builder.setException(toLogException(t));
+    }
+    return builder.build();
+  }
+
   public static LogServiceRequestProto toArchiveLogRequestProto(LogName logName, String location,
       long raftIndex, boolean isArchival, ArchivalInfo.ArchivalStatus status) {
     LogServiceProtos.LogNameProto logNameProto =
@@ -63,13 +63,13 @@ public final class LogServiceUtils {
         return path + "_recordId_" + lastWrittenId;
     }
 
-    public static Integer getRecordIdFromRolledArchiveFile(Path path) {
+    public static Long getRecordIdFromRolledArchiveFile(Path path) {
         String[] splits = path.getName().toString().split("_recordId_");
         if (splits.length != 2) {
             //currently written file, should be read last
-            return Integer.MAX_VALUE;
+            return Long.MAX_VALUE;
         }
-        return Integer.parseInt(splits[1]);
+        return Long.parseLong(splits[1]);
     }
 
 }
@@ -30,6 +30,7 @@ import org.apache.ratis.util.ReflectionUtils;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -84,12 +85,26 @@ public final class MetaServiceProtoUtil {
     }
 
     public static MetaSMRequestProto toHeartbeatRequestProto(RaftPeer peer) {
+        return toHeartbeatRequestProto(peer, Collections.emptyList(), 0);
+    }
+
+    public static MetaSMRequestProto toHeartbeatRequestProto(RaftPeer peer, List<LogLoadProto> logLoads,
+        long diskFree) {
         return MetaServiceProtos.MetaSMRequestProto
                 .newBuilder()
                 .setHeartbeatRequest(
                         MetaServiceProtos.LogServiceHeartbeatRequestProto
                                 .newBuilder()
-                                .setPeer(MetaServiceProtoUtil.toRaftPeerProto(peer)).build()).build();
+                                .setPeer(MetaServiceProtoUtil.toRaftPeerProto(peer))
+                                .addAllLogLoad(logLoads)
+                                .setDiskFree(diskFree).build()).build();
+    }
+
+    public static LogLoadProto toLogLoadProto(RaftGroupId groupId, double appendRate, long bytesStored) {
+        return LogLoadProto.newBuilder()
+                .setGroupId(groupId.toByteString())
+                .setAppendRate(appendRate)
+                .setBytesStored(bytesStored).build();
     }
 
     public static MetaServiceRequestProto toCreateLogRequestProto(LogName logName) {
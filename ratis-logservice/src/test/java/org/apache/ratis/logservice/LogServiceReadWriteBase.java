@@ -18,6 +18,7 @@
 package org.apache.ratis.logservice;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -25,6 +26,10 @@ import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.LongStream;
@@ -40,15 +45,24 @@ import org.apache.ratis.client.RaftClient;
 import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.logservice.api.LogName;
 import org.apache.ratis.logservice.api.LogReader;
+import org.apache.ratis.logservice.api.LogServiceConfiguration;
 import org.apache.ratis.logservice.api.LogStream;
 import org.apache.ratis.logservice.api.LogStream.State;
 import org.apache.ratis.logservice.api.LogWriter;
+import org.apache.ratis.logservice.api.RecordListener;
+import org.apache.ratis.logservice.api.RetentionPolicy;
+import org.apache.ratis.logservice.common.Constants;
 import org.apache.ratis.logservice.impl.LogStreamImpl;
 import org.apache.ratis.logservice.metrics.LogServiceMetricsRegistry;
 import org.apache.ratis.logservice.server.LogStateMachine;
+import org.apache.ratis.logservice.util.LogServiceProtoUtil;
 import org.apache.ratis.logservice.util.TestUtils;
 import org.apache.ratis.metrics.JVMMetrics;
+import org.apache.ratis.server.RaftServerConfigKeys;
 import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.Preconditions;
+import org.apache.ratis.util.SizeInBytes;
 import org.apache.ratis.util.TimeDuration;
 import org.junit.After;
 import org.junit.Before;
@@ -69,6 +83,11 @@ public abstract class LogServiceReadWriteBase<CLUSTER extends MiniRaftCluster>
     final RaftProperties p = getProperties();
     p.setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY,
         LogStateMachine.class, StateMachine.class);
+    // for testRetention
+    p.setLong(Constants.LOG_SERVICE_RECORD_INDEX_INTERVAL_KEY, 10);
+    p.setLong(Constants.LOG_SERVICE_RETENTION_CHECK_INTERVAL_KEY, 100);
+    RaftServerConfigKeys.Log.setPurgeGap(p, 1);
+    RaftServerConfigKeys.Log.setSegmentSizeMax(p, SizeInBytes.valueOf("1KB"));
     LOG.info("Set LogStateMachine OK");
   }
 
@@ -300,6 +319,204 @@ public abstract class LogServiceReadWriteBase<CLUSTER extends MiniRaftCluster>
     }
   }
 
+  @Test
+  public void testTailingReader() throws Exception {
+    final RaftClient raftClient =
+        RaftClient.newBuilder().setProperties(getProperties()).setRaftGroup(cluster.getGroup())
+            .build();
+    final LogName logName = LogName.of("log1");
+    final int numRecords = 10;
+    try (LogStream logStream = new MetricLogStream(logName, raftClient);
+         LogWriter writer = logStream.createWriter();
+         LogReader reader = logStream.createReader()) {
+      // The reader keeps its position on the server after reaching the end of the log,
+      // and then reads the records written afterwards.
+      for (int round = 0; round < 3; round++) {
+        for (int i = 0; i < numRecords; i++) {
+          writer.write(toBytes(round * numRecords + i));
+        }
+        List<ByteBuffer> records = reader.readBulk(2 * numRecords);
+        assertEquals(numRecords, records.size());
+        for (int i = 0; i < numRecords; i++) {
+          assertEquals(round * numRecords + i, fromBytes(records.get(i)));
+        }
+        assertEquals((round + 1) * numRecords, reader.getPosition());
+      }
+    }
+  }
+
+  @Test
+  public void testAsyncWriter() throws Exception {
+    final RaftClient raftClient =
+        RaftClient.newBuilder().setProperties(getProperties()).setRaftGroup(cluster.getGroup())
+            .build();
+    final LogName logName = LogName.of("log1");
+    final int numWrites = 100;
+    final int recordsPerWrite = 3;
+    try (LogStream logStream = new MetricLogStream(logName, raftClient);
+         LogWriter writer = logStream.createWriter();
+         LogReader reader = logStream.createReader()) {
+      final List<CompletableFuture<List<Long>>> futures = new ArrayList<>();
+      for (int i = 0; i < numWrites; i++) {
+        final List<ByteBuffer> records = new ArrayList<>();
+        for (int j = 0; j < recordsPerWrite; j++) {
+          records.add(toBytes(i * recordsPerWrite + j));
+        }
+        futures.add(writer.writeAsync(records));
+      }
+      assertEquals(Collections.emptyList(), writer.writeAsync(Collections.emptyList()).get());
+
+      // the records are assigned the recordIds in the order of the writes
+      for (int i = 0; i < numWrites; i++) {
+        final List<Long> ids = futures.get(i).get();
+        assertEquals(recordsPerWrite, ids.size());
+        for (int j = 0; j < recordsPerWrite; j++) {
+          assertEquals(i * recordsPerWrite + j, ids.get(j).longValue());
+        }
+      }
+      writer.sync();
+
+      final List<ByteBuffer> records = reader.readBulk(numWrites * recordsPerWrite);
+      assertEquals(numWrites * recordsPerWrite, records.size());
+      for (int i = 0; i < records.size(); i++) {
+        assertEquals(i, fromBytes(records.get(i)));
+      }
+    }
+  }
+
+  @Test
+  public void testReadMaxBytes() throws Exception {
+    final RaftClient raftClient =
+        RaftClient.newBuilder().setProperties(getProperties()).setRaftGroup(cluster.getGroup())
+            .build();
+    final LogName logName = LogName.of("log1");
+    final int numRecords = 10;
+    final int recordSize = 100;
+    final LogServiceConfiguration config = LogServiceConfiguration.create();
+    // each read returns the records until the limit is reached
+    config.setLong(Constants.LOG_SERVICE_READ_MAX_BYTES_KEY, 2 * recordSize + 1);
+    try (LogStream logStream = new LogStreamImpl(logName, raftClient, config);
+         LogWriter writer = logStream.createWriter();
+         LogReader reader = logStream.createReader()) {
+      final List<ByteBuffer> written = new ArrayList<>();
+      for (int i = 0; i < numRecords; i++) {
+        final byte[] record = new byte[recordSize];
+        record[0] = (byte) i;
+        written.add(ByteBuffer.wrap(record));
+      }
+      writer.write(written);
+
+      final List<ByteBuffer> read = new ArrayList<>();
+      while (read.size() < numRecords) {
+        final List<ByteBuffer> records = reader.readBulk(numRecords);
+        assertEquals(Math.min(3, numRecords - read.size()), records.size());
+        read.addAll(records);
+      }
+      assertEquals(written, read);
+      assertEquals(numRecords, reader.getPosition());
+    }
+  }
+
+  static class QueueListener implements RecordListener {
+    private final String name;
+    private final BlockingQueue<ByteBuffer> records = new LinkedBlockingQueue<>();
+
+    QueueListener(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public void accept(ByteBuffer record) {
+      records.add(record);
+    }
+
+    ByteBuffer take() throws InterruptedException {
+      final ByteBuffer record = records.poll(10, TimeUnit.SECONDS);
+      assertNotNull("No record received by " + name, record);
+      return record;
+    }
+  }
+
+  @Test
+  public void testRecordListener() throws Exception {
+    final RaftClient raftClient =
+        RaftClient.newBuilder().setProperties(getProperties()).setRaftGroup(cluster.getGroup())
+            .build();
+    final LogName logName = LogName.of("log1");
+    final int numRecords = 10;
+    try (LogStream logStream = new MetricLogStream(logName, raftClient);
+         LogWriter writer = logStream.createWriter()) {
+      for (int i = 0; i < numRecords; i++) {
+        writer.write(toBytes(i));
+      }
+
+      // receives all the records
+      final QueueListener fromStart = new QueueListener("fromStart");
+      logStream.addRecordListener(fromStart, 0);
+      for (int i = 0; i < numRecords; i++) {
+        assertEquals(i, fromBytes(fromStart.take()));
+      }
+
+      // receives only the records written after it is added
+      final QueueListener fromEnd = new QueueListener("fromEnd");
+      logStream.addRecordListener(fromEnd);
+      // wait for the first subscribe request to anchor at the end of the log
+      TimeUnit.SECONDS.sleep(2);
+      for (int i = numRecords; i < 2 * numRecords; i++) {
+        writer.write(toBytes(i));
+      }
+      for (int i = numRecords; i < 2 * numRecords; i++) {
+        assertEquals(i, fromBytes(fromStart.take()));
+        assertEquals(i, fromBytes(fromEnd.take()));
+      }
+
+      assertTrue(logStream.removeRecordListener(fromStart));
+      assertTrue(logStream.removeRecordListener(fromEnd));
+    }
+  }
+
+  @Test
+  public void testRetention() throws Exception {
+    final RaftClient raftClient =
+        RaftClient.newBuilder().setProperties(getProperties()).setRaftGroup(cluster.getGroup())
+            .build();
+    final LogName logName = LogName.of("log1");
+    try (LogStream logStream = new MetricLogStream(logName, raftClient);
+         LogWriter writer = logStream.createWriter()) {
+      // retain at least 500 bytes, i.e. 5 records
+      raftClient.send(() -> LogServiceProtoUtil.toSetRetentionRequestProto(
+          logName, RetentionPolicy.valueOf(0, 500, false)).toByteString());
+      final List<ByteBuffer> records = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        final List<ByteBuffer> batch = TestUtils.getRandomData(100, 10);
+        writer.write(batch);
+        records.addAll(batch);
+      }
+
+      final long startId = JavaUtils.attemptRepeatedly(() -> {
+        final long id = logStream.getStartRecordId();
+        Preconditions.assertTrue(id > 0, () -> "No record is removed");
+        return id;
+      }, 50, TimeDuration.valueOf(100, TimeUnit.MILLISECONDS), "getStartRecordId", LOG);
+      assertTrue(startId <= records.size() - 5);
+
+      // all the servers purge the log below the first retained record
+      JavaUtils.attemptUntilTrue(() -> cluster.getServerAliveStream()
+              .allMatch(s -> s.getState().getLog().getStartIndex() > 0),
+          100, TimeDuration.valueOf(100, TimeUnit.MILLISECONDS), "purge", LOG);
+
+      final LogReader reader = logStream.createReader();
+      reader.seek(startId);
+      assertEquals(records.subList(Math.toIntExact(startId), records.size()),
+          reader.readBulk(records.size()));
+    }
+  }
+
   @After
   public void tearDown() {
     cluster.shutdown();
@@ -38,6 +38,7 @@ import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.apache.ratis.logservice.api.ArchiveLogReader;
 import org.apache.ratis.logservice.api.ArchiveLogWriter;
 import org.apache.ratis.logservice.api.LogName;
+import org.apache.ratis.logservice.common.Constants;
 import org.apache.ratis.logservice.util.LogServiceUtils;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -149,6 +150,73 @@ public class TestArchiveHdfsLogReaderAndWriter {
     Assert.assertEquals(20, count);
   }
 
+  @Test public void testRandomSeek() throws IOException {
+    String archiveLocation = location+"/testRandomSeek";
+    LogName logName = LogName.of("testRandomSeek");
+    DistributedFileSystem fs = cluster.getFileSystem();
+    fs.delete(new Path(archiveLocation), true);
+    Configuration writerConf = new Configuration(conf);
+    // a few records per block
+    writerConf.setInt(Constants.LOG_SERVICE_ARCHIVE_BLOCK_SIZE_KEY, 20);
+    ArchiveLogWriter writer = new ArchiveHdfsLogWriter(writerConf);
+    writer.init(archiveLocation, logName);
+    int k = 100;
+    for (int i = 1; i <= k; i += 10) {
+      write(writer, i, i + 9);
+      writer.rollWriter();
+    }
+    writer.close();
+    ArchiveLogReader reader = new ArchiveHdfsLogReader(conf,
+        LogServiceUtils.getArchiveLocationForLog(archiveLocation, logName));
+    // seek backward and forward, within a file and across the files
+    for (int recordId : new int[] {55, 12, 99, 0, 37, 38, 90, 89, 5, 70}) {
+      reader.seek(recordId);
+      Assert.assertEquals(recordId, reader.getPosition());
+      Assert.assertEquals(recordId + 1, ByteBuffer.wrap(reader.next()).getInt());
+    }
+    // seek beyond the end
+    reader.seek(2 * k);
+    Assert.assertEquals(k, reader.getPosition());
+    Assert.assertFalse(reader.hasNext());
+    // sequential scan after a seek
+    reader.seek(45);
+    for (int i = 46; i <= k; i++) {
+      Assert.assertEquals(i, ByteBuffer.wrap(reader.next()).getInt());
+    }
+    Assert.assertFalse(reader.hasNext());
+    reader.close();
+  }
+
+  @Test public void testReadFlushedRecords() throws IOException {
+    String archiveLocation = location+"/testReadFlushedRecords";
+    LogName logName = LogName.of("testReadFlushedRecords");
+    DistributedFileSystem fs = cluster.getFileSystem();
+    fs.delete(new Path(archiveLocation), true);
+    Configuration writerConf = new Configuration(conf);
+    // a few records per block
+    writerConf.setInt(Constants.LOG_SERVICE_ARCHIVE_BLOCK_SIZE_KEY, 20);
+    ArchiveLogWriter writer = new ArchiveHdfsLogWriter(writerConf);
+    writer.init(archiveLocation, logName);
+    int k = 10;
+    write(writer, 1, k);
+    // the records are readable from the current file once they are flushed
+    Assert.assertEquals(k, writer.getLastWrittenRecordId());
+    write(writer, k + 1, k + 1);
+    ArchiveLogReader reader = new ArchiveHdfsLogReader(conf,
+        LogServiceUtils.getArchiveLocationForLog(archiveLocation, logName));
+    verifyRecords(reader, k);
+    reader.seek(5);
+    Assert.assertEquals(6, ByteBuffer.wrap(reader.next()).getInt());
+    reader.close();
+
+    Assert.assertEquals(k + 1, writer.getLastWrittenRecordId());
+    reader = new ArchiveHdfsLogReader(conf,
+        LogServiceUtils.getArchiveLocationForLog(archiveLocation, logName));
+    verifyRecords(reader, k + 1);
+    reader.close();
+    writer.close();
+  }
+
   @AfterClass
   public static void teardownafterclass(){
     if (cluster != null) {
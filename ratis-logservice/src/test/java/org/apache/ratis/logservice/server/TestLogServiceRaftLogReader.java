@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.logservice.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.apache.ratis.logservice.proto.LogServiceProtos.AppendLogEntryRequestProto;
+import org.apache.ratis.logservice.proto.LogServiceProtos.LogServiceRequestProto;
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.proto.RaftProtos.StateMachineLogEntryProto;
+import org.apache.ratis.server.raftlog.RaftLog;
+import org.apache.ratis.server.raftlog.RaftLogIOException;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.junit.Test;
+
+public class TestLogServiceRaftLogReader {
+  static final int RECORDS_PER_ENTRY = 7;
+
+  /** @return a log entry at the given index with the records 7*(index-1), ..., 7*index-1. */
+  private static LogEntryProto newEntry(long raftIndex) {
+    final AppendLogEntryRequestProto.Builder append = AppendLogEntryRequestProto.newBuilder();
+    for (long recordId = RECORDS_PER_ENTRY * (raftIndex - 1); recordId < RECORDS_PER_ENTRY * raftIndex; recordId++) {
+      append.addData(ByteString.copyFromUtf8(String.valueOf(recordId)));
+    }
+    final ByteString logData = LogServiceRequestProto.newBuilder().setAppendRequest(append).build().toByteString();
+    return LogEntryProto.newBuilder().setIndex(raftIndex)
+        .setStateMachineLogEntry(StateMachineLogEntryProto.newBuilder().setLogData(logData))
+        .build();
+  }
+
+  /** @return a log with the entries from the given start index to the given last index. */
+  private static RaftLog newRaftLog(long startIndex, long lastIndex) throws Exception {
+    final RaftLog raftLog = mock(RaftLog.class);
+    when(raftLog.getStartIndex()).thenReturn(startIndex);
+    when(raftLog.getLastCommittedIndex()).thenReturn(lastIndex);
+    for (long i = startIndex; i <= lastIndex; i++) {
+      when(raftLog.get(i)).thenReturn(newEntry(i));
+    }
+    return raftLog;
+  }
+
+  private static void assertNext(long expectedRecordId, LogServiceRaftLogReader reader) throws Exception {
+    assertEquals(expectedRecordId, reader.getCurrentRecordId());
+    assertEquals(String.valueOf(expectedRecordId), reader.nextRecord().toStringUtf8());
+  }
+
+  @Test
+  public void testSeek() throws Exception {
+    final RecordIndex index = new RecordIndex(10);
+    for (long raftIndex = 1; raftIndex <= 5; raftIndex++) {
+      index.add(RECORDS_PER_ENTRY * (raftIndex - 1), RECORDS_PER_ENTRY, raftIndex);
+    }
+    final LogServiceRaftLogReader reader = new LogServiceRaftLogReader(newRaftLog(0, 5), index);
+    reader.seek(25);
+    assertNext(25, reader);
+    reader.seek(3);
+    assertNext(3, reader);
+  }
+
+  @Test
+  public void testReadRecords() throws Exception {
+    final RecordIndex index = new RecordIndex(10);
+    for (long raftIndex = 1; raftIndex <= 5; raftIndex++) {
+      index.add(RECORDS_PER_ENTRY * (raftIndex - 1), RECORDS_PER_ENTRY, raftIndex);
+    }
+    final LogServiceRaftLogReader reader = new LogServiceRaftLogReader(newRaftLog(0, 5), index);
+    reader.seek(0);
+    // the records 0-9 have 1 byte and the records 10-34 have 2 bytes
+    assertRecords(0, 5, reader.readRecords(100, 5));
+    assertRecords(5, 4, reader.readRecords(100, 4));
+    // the record 11 does not fit in the limit
+    assertRecords(9, 2, reader.readRecords(100, 4));
+    // the first record is read even if it exceeds the limit
+    assertRecords(11, 1, reader.readRecords(100, 1));
+    assertRecords(12, 2, reader.readRecords(2, 100));
+    assertNext(14, reader);
+  }
+
+  private static void assertRecords(long firstRecordId, int expectedSize, List<ByteString> records) {
+    assertEquals(expectedSize, records.size());
+    for (int i = 0; i < records.size(); i++) {
+      assertEquals(String.valueOf(firstRecordId + i), records.get(i).toStringUtf8());
+    }
+  }
+
+  @Test
+  public void testSeekAfterPurge() throws Exception {
+    final RecordIndex index = new RecordIndex(10);
+    for (long raftIndex = 1; raftIndex <= 5; raftIndex++) {
+      index.add(RECORDS_PER_ENTRY * (raftIndex - 1), RECORDS_PER_ENTRY, raftIndex);
+    }
+    // the log is purged below index 3, which starts with recordId 14
+    index.purge(3);
+    final LogServiceRaftLogReader reader = new LogServiceRaftLogReader(newRaftLog(3, 5), index);
+    reader.seek(25);
+    assertNext(25, reader);
+
+    // the removed records are skipped to the first indexed position
+    reader.seek(5);
+    assertNext(20, reader);
+    assertNext(21, reader);
+
+    // the recordIds cannot be found without the index
+    try {
+      new LogServiceRaftLogReader(newRaftLog(3, 5)).seek(25);
+      fail();
+    } catch (RaftLogIOException e) {
+      assertEquals(RaftLogIOException.class, e.getClass());
+    }
+  }
+}
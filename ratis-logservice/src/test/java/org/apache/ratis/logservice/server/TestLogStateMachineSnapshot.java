@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.logservice.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+import org.apache.ratis.logservice.api.LogName;
+import org.apache.ratis.logservice.api.LogStream;
+import org.apache.ratis.logservice.proto.LogServiceProtos.ArchiveLogRequestProto;
+import org.apache.ratis.logservice.proto.LogServiceProtos.LogStateMachineSnapshotProto;
+import org.apache.ratis.logservice.proto.LogServiceProtos.LogStreamState;
+import org.apache.ratis.logservice.util.LogServiceProtoUtil;
+import org.apache.ratis.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestLogStateMachineSnapshot {
+  private final File dir = new File("target/tmp/TestLogStateMachineSnapshot");
+
+  @Before
+  public void setUp() throws IOException {
+    FileUtils.deleteFully(dir);
+    assertTrue(dir.mkdirs());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteFully(dir);
+  }
+
+  @Test
+  public void testWriteAndRead() throws Exception {
+    final RecordIndex index = new RecordIndex(2);
+    index.add(0, 5, 1);
+    final ArchivalInfo export = new ArchivalInfo("/export").updateArchivalInfo(
+        LogServiceProtoUtil.toArchiveLogRequestProto(LogName.of("log"), "/export", 3, false,
+            ArchivalInfo.ArchivalStatus.COMPLETED).getArchiveLog());
+    final LogStateMachineSnapshotProto snapshot = LogStateMachineSnapshotProto.newBuilder()
+        .setLength(5)
+        .setDataRecordsSize(100)
+        .setState(LogStreamState.CLOSED)
+        .addAllRecordPosition(index.toProtos())
+        .addExportInfo(LogServiceProtoUtil.toExportInfoProto(export))
+        .build();
+
+    final File file = new File(dir, "snapshot.1_10");
+    LogStateMachine.writeSnapshotFile(snapshot, file);
+    final LogStateMachineSnapshotProto read = LogStateMachine.readSnapshotFile(file);
+    assertEquals(snapshot, read);
+    assertEquals(3, read.getRecordPositionCount());
+    assertFalse(read.hasArchivalInfo());
+
+    final ArchiveLogRequestProto info = read.getExportInfo(0);
+    assertEquals("/export", info.getLocation());
+    assertEquals(ArchivalInfo.ArchivalStatus.COMPLETED, LogServiceProtoUtil.toExportInfo(info).getStatus());
+  }
+
+  @Test
+  public void testLegacySnapshot() throws Exception {
+    final File file = new File(dir, "snapshot.1_10");
+    try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+      out.writeLong(5);
+      out.writeLong(100);
+      out.writeObject(LogStream.State.OPEN);
+    }
+    // the legacy snapshots are loaded with ObjectInputStream
+    assertNull(LogStateMachine.readSnapshotFile(file));
+  }
+
+  @Test
+  public void testUnsupportedVersion() throws Exception {
+    final File file = new File(dir, "snapshot.1_10");
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+      out.writeInt(LogStateMachine.SNAPSHOT_MAGIC);
+      out.writeInt(LogStateMachine.SNAPSHOT_VERSION + 1);
+    }
+    try {
+      LogStateMachine.readSnapshotFile(file);
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("Unsupported version"));
+    }
+  }
+}
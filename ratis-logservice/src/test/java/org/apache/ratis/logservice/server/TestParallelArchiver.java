@@ -0,0 +1,221 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.logservice.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.ratis.logservice.api.LogName;
+import org.apache.ratis.logservice.impl.ArchiveHdfsLogReader;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestParallelArchiver {
+  private static final String LOCATION = "target/tmp/archive/TestParallelArchiver";
+
+  /** Read the records from a list. */
+  static class ListReader implements RaftLogReader {
+    private final List<byte[]> records;
+    private int next = 0;
+
+    ListReader(List<byte[]> records) {
+      this.records = records;
+    }
+
+    @Override
+    public void seek(long recordId) {
+      next = (int) Math.min(recordId, records.size());
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < records.size();
+    }
+
+    @Override
+    public byte[] next() {
+      return records.get(next++);
+    }
+
+    @Override
+    public ByteString peekRecord() {
+      return ByteString.copyFrom(records.get(next));
+    }
+
+    @Override
+    public long getCurrentRaftIndex() {
+      return next;
+    }
+  }
+
+  /** Fail the chunk starting at recordId 0 and read the other chunks slowly, ignoring interrupts. */
+  static class SlowReader extends ListReader {
+    private final AtomicInteger numReads;
+    private boolean failed = false;
+
+    SlowReader(List<byte[]> records, AtomicInteger numReads) {
+      super(records);
+      this.numReads = numReads;
+    }
+
+    @Override
+    public void seek(long recordId) {
+      failed = recordId == 0;
+      super.seek(recordId);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !failed && super.hasNext();
+    }
+
+    @Override
+    public byte[] next() {
+      try {
+        TimeUnit.MILLISECONDS.sleep(2);
+      } catch (InterruptedException e) {
+        // ignore, as a writer blocked in I/O
+      }
+      numReads.incrementAndGet();
+      return super.next();
+    }
+  }
+
+  private FileSystem fs;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws IOException {
+    fs = FileSystem.getLocal(new Configuration());
+    fs.delete(new Path(LOCATION), true);
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    executor.shutdownNow();
+    fs.delete(new Path(LOCATION), true);
+  }
+
+  private static List<byte[]> newRecords(int n) {
+    final List<byte[]> records = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      // compressible records of different sizes
+      records.add(ByteBuffer.allocate(4 + i % 50).putInt(i).array());
+    }
+    return records;
+  }
+
+  @Test
+  public void testArchive() throws Exception {
+    final LogName logName = LogName.of("testArchive");
+    final List<byte[]> records = newRecords(1000);
+    final ParallelArchiver archiver = new ParallelArchiver(fs, LOCATION, logName,
+        () -> new ListReader(records), 128, 256, executor);
+
+    final List<Long> commits = new ArrayList<>();
+    assertEquals(1000, archiver.archive(0, 1000, commits::add));
+    // the chunks are committed in order
+    assertEquals(Arrays.asList(128L, 256L, 384L, 512L, 640L, 768L, 896L, 1000L), commits);
+
+    final FileStatus[] files = fs.listStatus(archiver.getArchiveDir());
+    assertEquals(8, files.length);
+    for (FileStatus f : files) {
+      assertTrue(f.isFile());
+      assertFalse(f.getPath().getName().equals(ParallelArchiver.TMP_DIR));
+    }
+
+    final ArchiveHdfsLogReader reader = new ArchiveHdfsLogReader(new Configuration(),
+        archiver.getArchiveDir().toString());
+    for (byte[] expected : records) {
+      assertTrue(reader.hasNext());
+      assertArrayEquals(expected, reader.next());
+    }
+    assertFalse(reader.hasNext());
+    reader.close();
+  }
+
+  @Test
+  public void testMissingRecords() throws Exception {
+    final LogName logName = LogName.of("testMissingRecords");
+    final List<byte[]> records = newRecords(500);
+    final ParallelArchiver archiver = new ParallelArchiver(fs, LOCATION, logName,
+        () -> new ListReader(records), 128, 256, executor);
+
+    final List<Long> commits = new ArrayList<>();
+    try {
+      archiver.archive(0, 1000, commits::add);
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+    // only the chunks before the failed chunk are committed
+    assertEquals(Arrays.asList(128L, 256L, 384L), commits);
+    assertEquals(3, fs.listStatus(archiver.getArchiveDir()).length);
+
+    final ArchiveHdfsLogReader reader = new ArchiveHdfsLogReader(new Configuration(),
+        archiver.getArchiveDir().toString());
+    for (int i = 0; i < 384; i++) {
+      assertArrayEquals(records.get(i), reader.next());
+    }
+    assertFalse(reader.hasNext());
+    reader.close();
+  }
+
+  @Test
+  public void testFailureWaitsForWriters() throws Exception {
+    final LogName logName = LogName.of("testFailureWaitsForWriters");
+    final List<byte[]> records = newRecords(512);
+    final AtomicInteger numReads = new AtomicInteger();
+    final ParallelArchiver archiver = new ParallelArchiver(fs, LOCATION, logName,
+        () -> new SlowReader(records, numReads), 128, 256, executor);
+    final Path tmpDir = new Path(archiver.getArchiveDir(), ParallelArchiver.TMP_DIR);
+
+    try {
+      archiver.archive(0, 512, c -> fail("Unexpected commit " + c));
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+    // the cancelled writers have finished before the tmp dir was deleted
+    final int reads = numReads.get();
+    TimeUnit.MILLISECONDS.sleep(100);
+    assertEquals(reads, numReads.get());
+    assertFalse(fs.exists(tmpDir));
+    assertEquals(0, fs.listStatus(archiver.getArchiveDir()).length);
+  }
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.logservice.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class TestRecordIndex {
+
+  private static void assertPosition(long recordId, long raftIndex, int offset, RecordIndex.Position p) {
+    assertEquals(recordId, p.getRecordId());
+    assertEquals(raftIndex, p.getRaftIndex());
+    assertEquals(offset, p.getOffset());
+  }
+
+  @Test
+  public void testFloor() {
+    final RecordIndex index = new RecordIndex(10);
+    // raft index i has 7 records starting at recordId 7*(i-1)
+    for (long raftIndex = 1; raftIndex <= 10; raftIndex++) {
+      index.add(7 * (raftIndex - 1), 7, raftIndex);
+    }
+    // recordIds 0, 10, ..., 60 are indexed
+    assertEquals(7, index.size());
+
+    assertPosition(0, 1, 0, index.floor(0, 0));
+    assertPosition(0, 1, 0, index.floor(9, 0));
+    assertPosition(10, 2, 3, index.floor(10, 0));
+    assertPosition(20, 3, 6, index.floor(25, 0));
+    assertPosition(60, 9, 4, index.floor(1000, 0));
+
+    // positions before the start of the log are not used
+    assertNull(index.floor(25, 4));
+    index.purge(4);
+    assertEquals(4, index.size());
+    assertNull(index.floor(25, 0));
+    assertPosition(30, 5, 2, index.floor(35, 0));
+  }
+
+  @Test
+  public void testFirst() {
+    final RecordIndex index = new RecordIndex(10);
+    for (long raftIndex = 1; raftIndex <= 10; raftIndex++) {
+      index.add(7 * (raftIndex - 1), 7, raftIndex);
+    }
+    assertPosition(0, 1, 0, index.first(0));
+    assertPosition(20, 3, 6, index.first(3));
+    assertPosition(30, 5, 2, index.first(4));
+    assertNull(index.first(10));
+  }
+
+  @Test
+  public void testLargeEntry() {
+    final RecordIndex index = new RecordIndex(4);
+    index.add(0, 1, 1);
+    index.add(1, 10, 2);
+    assertEquals(3, index.size());
+    assertPosition(4, 2, 3, index.floor(7, 0));
+    assertPosition(8, 2, 7, index.floor(10, 0));
+  }
+
+  @Test
+  public void testToProtosAndRead() throws Exception {
+    final RecordIndex index = new RecordIndex(3);
+    for (long raftIndex = 1; raftIndex <= 5; raftIndex++) {
+      index.add(2 * (raftIndex - 1), 2, raftIndex);
+    }
+    final RecordIndex read = new RecordIndex(3);
+    read.add(100, 10, 100);
+    read.read(index.toProtos());
+    assertEquals(index.size(), read.size());
+    for (long recordId = 0; recordId < 10; recordId++) {
+      final RecordIndex.Position expected = index.floor(recordId, 0);
+      assertPosition(expected.getRecordId(), expected.getRaftIndex(), expected.getOffset(),
+          read.floor(recordId, 0));
+    }
+  }
+
+  @Test
+  public void testLastOfPrefix() {
+    final RecordIndex index = new RecordIndex(10);
+    // raft index i has 10 records of 100 bytes appended at time 1000*i
+    for (long raftIndex = 1; raftIndex <= 5; raftIndex++) {
+      index.add(10 * (raftIndex - 1), 10, raftIndex, 1000 * raftIndex, 100 * (raftIndex - 1));
+    }
+    assertPosition(20, 3, 0, index.lastOfPrefix(p -> p.getTimestamp() < 3500));
+    assertPosition(30, 4, 0, index.lastOfPrefix(p -> 500 - p.getBytesBefore() >= 200));
+    assertNull(index.lastOfPrefix(p -> p.getTimestamp() < 1000));
+
+    // the timestamps and the sizes are kept in the snapshots
+    final RecordIndex read = new RecordIndex(10);
+    read.read(index.toProtos());
+    final RecordIndex.Position p = read.floor(45, 0);
+    assertEquals(5000, p.getTimestamp());
+    assertEquals(400, p.getBytesBefore());
+
+    // the positions added without them are never removed by the retention
+    final RecordIndex unknown = new RecordIndex(10);
+    unknown.add(0, 10, 1);
+    assertEquals(RecordIndex.UNKNOWN, unknown.floor(0, 0).getTimestamp());
+  }
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.logservice.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ratis.protocol.RaftGroup;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.protocol.RaftPeer;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.junit.Test;
+
+public class TestWorkerLoads {
+  private static final RaftPeer A = new RaftPeer(RaftPeerId.valueOf("a"));
+  private static final RaftPeer B = new RaftPeer(RaftPeerId.valueOf("b"));
+  private static final RaftPeer C = new RaftPeer(RaftPeerId.valueOf("c"));
+  private static final RaftPeer D = new RaftPeer(RaftPeerId.valueOf("d"));
+  private static final List<RaftPeer> WORKERS = Arrays.asList(A, B, C, D);
+
+  private static Map<RaftGroupId, WorkerLoads.LogLoad> logs(RaftGroupId groupId, double appendRate) {
+    return Collections.singletonMap(groupId, new WorkerLoads.LogLoad(appendRate, 0));
+  }
+
+  @Test
+  public void testChooseLeastLoaded() {
+    final WorkerLoads loads = new WorkerLoads(1, 0, 0, 0);
+    loads.update(A.getId(), logs(RaftGroupId.randomId(), 100), 0);
+    loads.update(B.getId(), logs(RaftGroupId.randomId(), 10), 0);
+    loads.update(C.getId(), logs(RaftGroupId.randomId(), 50), 0);
+    // D has not reported any load
+    assertEquals(Arrays.asList(D, B, C), loads.chooseLeastLoaded(WORKERS, 3));
+
+    // weight the used disk only
+    final WorkerLoads disk = new WorkerLoads(0, 0, 0, 1);
+    disk.update(A.getId(), Collections.emptyMap(), 1000);
+    disk.update(B.getId(), Collections.emptyMap(), 10);
+    disk.update(C.getId(), Collections.emptyMap(), 500);
+    disk.update(D.getId(), Collections.emptyMap(), 100);
+    assertEquals(Arrays.asList(A, C), disk.chooseLeastLoaded(WORKERS, 2));
+  }
+
+  @Test
+  public void testAddLog() {
+    final WorkerLoads loads = new WorkerLoads(0, 0, 1, 0);
+    final RaftGroupId groupId = RaftGroupId.randomId();
+    Arrays.asList(A, B, C).forEach(p -> loads.addLog(p.getId(), groupId));
+    // the logs placed before the next heartbeat are accounted
+    assertEquals(Collections.singletonList(D), loads.chooseLeastLoaded(WORKERS, 1));
+    assertEquals(0, loads.getScore(D.getId()), 0);
+    assertTrue(loads.getScore(A.getId()) > 0);
+
+    loads.removeLog(A.getId(), groupId);
+    assertEquals(0, loads.getScore(A.getId()), 0);
+  }
+
+  @Test
+  public void testPlanMove() {
+    final WorkerLoads loads = new WorkerLoads(1, 0, 0, 0);
+    final RaftGroupId hot = RaftGroupId.randomId();
+    final RaftGroupId warm = RaftGroupId.randomId();
+    final Map<RaftGroupId, RaftGroup> groups = new HashMap<>();
+    groups.put(hot, RaftGroup.valueOf(hot, A, B, C));
+    groups.put(warm, RaftGroup.valueOf(warm, A, B, C));
+
+    final Map<RaftGroupId, WorkerLoads.LogLoad> a = new HashMap<>();
+    a.put(hot, new WorkerLoads.LogLoad(100, 0));
+    a.put(warm, new WorkerLoads.LogLoad(40, 0));
+    loads.update(A.getId(), a, 0);
+    loads.update(D.getId(), logs(RaftGroupId.randomId(), 60), 0);
+
+    // A is the most loaded worker; B and C already host its logs, so the logs can only move to D.
+    // The warm log is moved since moving the hot log would only make D the hot spot.
+    final WorkerLoads.Move move = loads.planMove(WORKERS, groups, 1.5);
+    assertNotNull(move);
+    assertEquals(warm, move.getGroupId());
+    assertEquals(A.getId(), move.getFrom());
+    assertEquals(D.getId(), move.getTo());
+
+    // balanced
+    assertNull(loads.planMove(WORKERS, groups, 10));
+    assertNull(loads.planMove(Collections.singletonList(A), groups, 1.5));
+  }
+}
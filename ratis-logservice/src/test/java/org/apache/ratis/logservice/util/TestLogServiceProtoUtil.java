@@ -26,6 +26,8 @@ import java.util.List;
 import org.apache.ratis.logservice.api.LogName;
 import org.apache.ratis.logservice.api.LogStream;
 import org.apache.ratis.logservice.proto.LogServiceProtos.*;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.thirdparty.com.google.protobuf.UnsafeByteOperations;
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -50,13 +52,32 @@ public class TestLogServiceProtoUtil {
 
   }
 
+  @Test
+  public void testParseFromAliased() throws Exception {
+    LogName name = LogName.of("test");
+    List<ByteString> entries = new ArrayList<ByteString>();
+    entries.add(ByteString.copyFrom(new byte[] {1,1}));
+    entries.add(ByteString.copyFrom(new byte[] {2,2}));
+    byte[] bytes = LogServiceProtoUtil.toAppendByteStringLogRequestProto(name, entries).toByteArray();
+
+    LogServiceRequestProto aliased = LogServiceProtoUtil.parseFromAliased(
+        UnsafeByteOperations.unsafeWrap(bytes), LogServiceRequestProto.parser());
+    LogServiceRequestProto copied = LogServiceRequestProto.parseFrom(bytes);
+    assertEquals(copied, aliased);
+
+    // the records parsed with aliasing share the bytes of the request
+    bytes[bytes.length - 1] = 3;
+    assertEquals(ByteString.copyFrom(new byte[] {2,3}), aliased.getAppendRequest().getData(1));
+    assertEquals(entries.get(1), copied.getAppendRequest().getData(1));
+  }
+
   @Test
   public void testAppendReply() {
-    List<byte[]> entries = new ArrayList<byte[]>();
+    List<ByteString> entries = new ArrayList<ByteString>();
     byte[] e1 = new byte[] {1,1};
     byte[] e2 = new byte[] {2,2};
-    entries.add(e1);
-    entries.add(e2);
+    entries.add(ByteString.copyFrom(e1));
+    entries.add(ByteString.copyFrom(e2));
 
     AppendLogEntryReplyProto proto =
         LogServiceProtoUtil.toAppendLogReplyProto(null, null);
@@ -79,11 +100,11 @@ public class TestLogServiceProtoUtil {
 
   @Test
   public void testReadReply() {
-    List<byte[]> entries = new ArrayList<byte[]>();
+    List<ByteString> entries = new ArrayList<ByteString>();
     byte[] e1 = new byte[] {1,1};
     byte[] e2 = new byte[] {2,2};
-    entries.add(e1);
-    entries.add(e2);
+    entries.add(ByteString.copyFrom(e1));
+    entries.add(ByteString.copyFrom(e2));
 
     ReadLogReplyProto proto =
         LogServiceProtoUtil.toReadLogReplyProto(entries, null);
@@ -17,6 +17,8 @@
  */
 package org.apache.ratis.metrics;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
@@ -47,5 +49,12 @@ public final class MetricsReporting {
       builder.build().start();
     };
   }
-}
 
+  /**
+   * Start a {@link PrometheusReporter} for all the registries in {@link MetricRegistries#global()}.
+   * The caller should close it.
+   */
+  public static PrometheusReporter prometheusReporter(InetSocketAddress address) throws IOException {
+    return new PrometheusReporter(MetricRegistries.global(), address).start();
+  }
+}
@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Objects;
+
+/**
+ * An embedded HTTP server exposing all the {@link RatisMetricRegistry}s of a {@link MetricRegistries}
+ * in the Prometheus text format at {@link #PATH}.
+ * Unlike the per-registry reporters in {@link MetricsReporting},
+ * a single reporter serves the registries of all the servers, groups and clients in the JVM.
+ * The scrapes are served one at a time by the server thread, reusing the same {@link PrometheusTextFormat}.
+ */
+public final class PrometheusReporter implements Closeable {
+  public static final Logger LOG = LoggerFactory.getLogger(PrometheusReporter.class);
+
+  public static final String PATH = "/metrics";
+
+  private final MetricRegistries registries;
+  private final HttpServer server;
+  private final PrometheusTextFormat format = new PrometheusTextFormat();
+
+  public PrometheusReporter(MetricRegistries registries, InetSocketAddress address) throws IOException {
+    this.registries = Objects.requireNonNull(registries, "registries == null");
+    this.server = HttpServer.create(address, 0);
+    server.createContext(PATH, this::handle);
+  }
+
+  public PrometheusReporter start() {
+    server.start();
+    LOG.info("Started {} at {}{}", getClass().getSimpleName(), getAddress(), PATH);
+    return this;
+  }
+
+  /** @return the bound address, which has the actual port when the given port is 0. */
+  public InetSocketAddress getAddress() {
+    return server.getAddress();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      final String method = exchange.getRequestMethod();
+      final boolean head = "HEAD".equals(method);
+      if (!head && !"GET".equals(method)) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      exchange.getResponseHeaders().set("Content-Type", PrometheusTextFormat.CONTENT_TYPE);
+      synchronized (format) {
+        final int length = format.render(registries.getMetricRegistries());
+        exchange.sendResponseHeaders(200, head? -1: length);
+        if (!head) {
+          try (OutputStream out = exchange.getResponseBody()) {
+            format.writeTo(out);
+          }
+        }
+      }
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to serve " + exchange.getRequestURI(), e);
+      throw e;
+    } finally {
+      exchange.close();
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+}
@@ -0,0 +1,329 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render {@link RatisMetricRegistry}s in the Prometheus text exposition format (version 0.0.4).
+ * <p>
+ * The name of a metric family is "application_component_metric", sanitized,
+ * and the {@link MetricRegistryInfo#getPrefix()} of each registry becomes the "prefix" label,
+ * so that the same metric of all the groups is in the same family.
+ * Counters and gauges are rendered as gauges, meters as counters,
+ * and histograms and timers as summaries; the timers are in seconds.
+ * <p>
+ * The names, the labels and the output buffer are reused across the renderings;
+ * only the metrics which are new since the previous rendering are rendered from scratch.
+ * This class is not thread-safe.
+ */
+class PrometheusTextFormat {
+  static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final double[] QUANTILES = {0.5, 0.75, 0.95, 0.98, 0.99, 0.999};
+  private static final byte[][] QUANTILE_LABELS = new byte[QUANTILES.length][];
+  static {
+    for (int i = 0; i < QUANTILES.length; i++) {
+      QUANTILE_LABELS[i] = bytes("quantile=\"" + QUANTILES[i] + "\"");
+    }
+  }
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  enum Type {
+    GAUGE, COUNTER, SUMMARY;
+
+    private final String lowerCase = name().toLowerCase();
+  }
+
+  /** The metrics with the same name. */
+  private static final class Family {
+    private final Type type;
+    private final byte[] name;
+    private final byte[] countName;
+    private final byte[] typeLine;
+    /** The series of the current rendering. */
+    private final List<Series> series = new ArrayList<>();
+
+    private Family(String name, Type type) {
+      this.type = type;
+      this.name = bytes(name);
+      this.countName = bytes(name + "_count");
+      this.typeLine = bytes("# TYPE " + name + " " + type.lowerCase + "\n");
+    }
+  }
+
+  /** A metric of a registry. */
+  private static final class Series {
+    private final Metric metric;
+    private final Family family;
+    /** The labels without the braces. */
+    private final byte[] labels;
+    private long generation;
+
+    private Series(Metric metric, Family family, byte[] labels) {
+      this.metric = metric;
+      this.family = family;
+      this.labels = labels;
+    }
+  }
+
+  /** The series of a registry. */
+  private static final class Registry {
+    private final byte[] labels;
+    private final String metricNamePrefix;
+    private final String familyNamePrefix;
+    private final Map<String, Series> series = new HashMap<>();
+    private long generation;
+
+    private Registry(MetricRegistryInfo info) {
+      final String prefix = info.getPrefix();
+      this.labels = prefix == null? new byte[0]: bytes("prefix=\"" + escapeLabelValue(prefix) + "\"");
+      this.metricNamePrefix = info.getName() + ".";
+      this.familyNamePrefix = info.getApplicationName() + "_" + info.getMetricsComponentName() + "_";
+    }
+
+    private String getFamilyName(String metricName) {
+      final String shortName = metricName.startsWith(metricNamePrefix)?
+          metricName.substring(metricNamePrefix.length()): metricName;
+      return sanitizeName(familyNamePrefix + shortName);
+    }
+  }
+
+  /** A {@link ByteArrayOutputStream} which is reused. */
+  private static final class Buffer extends ByteArrayOutputStream {
+    private Buffer() {
+      super(1 << 16);
+    }
+
+    private void append(byte[] b) {
+      write(b, 0, b.length);
+    }
+
+    private void writeAscii(String s) {
+      for (int i = 0; i < s.length(); i++) {
+        write(s.charAt(i));
+      }
+    }
+
+    private void writeLong(long value) {
+      if (value == Long.MIN_VALUE) {
+        writeAscii(Long.toString(value));
+        return;
+      }
+      if (value < 0) {
+        write('-');
+        value = -value;
+      }
+      long divisor = 1;
+      for (long v = value; v >= 10; v /= 10) {
+        divisor *= 10;
+      }
+      for (; divisor > 0; divisor /= 10) {
+        write((int) ('0' + (value / divisor) % 10));
+      }
+    }
+
+    private void writeDouble(double value) {
+      if (Double.isNaN(value)) {
+        writeAscii("NaN");
+      } else if (Double.isInfinite(value)) {
+        writeAscii(value > 0? "+Inf": "-Inf");
+      } else if (value == (long) value) {
+        writeLong((long) value);
+      } else {
+        writeAscii(Double.toString(value));
+      }
+    }
+  }
+
+  private final Map<MetricRegistryInfo, Registry> registries = new HashMap<>();
+  private final Map<String, Family> families = new TreeMap<>();
+  private final Buffer buffer = new Buffer();
+  private long generation = 0;
+
+  /**
+   * Render the given registries to the internal buffer.
+   * @return the number of bytes rendered.
+   */
+  int render(Collection<RatisMetricRegistry> ratisRegistries) {
+    generation++;
+    buffer.reset();
+    families.values().forEach(f -> f.series.clear());
+
+    for (RatisMetricRegistry r : ratisRegistries) {
+      final Registry registry = registries.computeIfAbsent(r.getMetricRegistryInfo(), Registry::new);
+      registry.generation = generation;
+      for (Map.Entry<String, Metric> e : r.getDropWizardMetricRegistry().getMetrics().entrySet()) {
+        Series s = registry.series.get(e.getKey());
+        if (s == null || s.metric != e.getValue()) {
+          s = newSeries(registry, e.getKey(), e.getValue());
+          if (s == null) {
+            continue;
+          }
+          registry.series.put(e.getKey(), s);
+        }
+        s.generation = generation;
+        s.family.series.add(s);
+      }
+    }
+
+    for (Family f : families.values()) {
+      if (!f.series.isEmpty()) {
+        buffer.append(f.typeLine);
+        f.series.forEach(this::renderSeries);
+      }
+    }
+
+    // remove the metrics and the registries which no longer exist
+    registries.values().removeIf(r -> r.generation != generation);
+    registries.values().forEach(r -> r.series.values().removeIf(s -> s.generation != generation));
+    families.values().removeIf(f -> f.series.isEmpty());
+    return buffer.size();
+  }
+
+  /** Write the rendered bytes to the given output. */
+  void writeTo(OutputStream out) throws IOException {
+    buffer.writeTo(out);
+  }
+
+  private Series newSeries(Registry registry, String metricName, Metric metric) {
+    final Type type;
+    String familyName = registry.getFamilyName(metricName);
+    if (metric instanceof Counter || metric instanceof Gauge) {
+      type = Type.GAUGE;
+    } else if (metric instanceof Meter) {
+      type = Type.COUNTER;
+      familyName += "_total";
+    } else if (metric instanceof Timer) {
+      type = Type.SUMMARY;
+      familyName += "_seconds";
+    } else if (metric instanceof Histogram) {
+      type = Type.SUMMARY;
+    } else {
+      return null;
+    }
+
+    Family family = families.computeIfAbsent(familyName, name -> new Family(name, type));
+    if (family.type != type) {
+      // the same name is used by different types
+      family = families.computeIfAbsent(familyName + "_" + type.lowerCase, name -> new Family(name, type));
+    }
+    return new Series(metric, family, registry.labels);
+  }
+
+  private void renderSeries(Series s) {
+    final Metric m = s.metric;
+    if (m instanceof Counter) {
+      writeSample(s.family.name, s.labels, null, ((Counter) m).getCount());
+    } else if (m instanceof Gauge) {
+      final Object value = ((Gauge<?>) m).getValue();
+      if (value instanceof Number) {
+        writeSample(s.family.name, s.labels, null, ((Number) value).doubleValue());
+      } else if (value instanceof Boolean) {
+        writeSample(s.family.name, s.labels, null, (Boolean) value? 1: 0);
+      }
+    } else if (m instanceof Meter) {
+      writeSample(s.family.name, s.labels, null, ((Meter) m).getCount());
+    } else if (m instanceof Timer) {
+      final Timer timer = (Timer) m;
+      writeSummary(s, timer.getSnapshot(), NANOS_PER_SECOND, timer.getCount());
+    } else if (m instanceof Histogram) {
+      final Histogram histogram = (Histogram) m;
+      writeSummary(s, histogram.getSnapshot(), 1, histogram.getCount());
+    }
+  }
+
+  private void writeSummary(Series s, Snapshot snapshot, double divisor, long count) {
+    for (int i = 0; i < QUANTILES.length; i++) {
+      writeSample(s.family.name, s.labels, QUANTILE_LABELS[i], snapshot.getValue(QUANTILES[i]) / divisor);
+    }
+    writeSample(s.family.countName, s.labels, null, count);
+  }
+
+  private void writeLabels(byte[] labels, byte[] extraLabels) {
+    if (labels.length == 0 && extraLabels == null) {
+      return;
+    }
+    buffer.write('{');
+    buffer.append(labels);
+    if (extraLabels != null) {
+      if (labels.length > 0) {
+        buffer.write(',');
+      }
+      buffer.append(extraLabels);
+    }
+    buffer.write('}');
+  }
+
+  private void writeSample(byte[] name, byte[] labels, byte[] extraLabels, long value) {
+    buffer.append(name);
+    writeLabels(labels, extraLabels);
+    buffer.write(' ');
+    buffer.writeLong(value);
+    buffer.write('\n');
+  }
+
+  private void writeSample(byte[] name, byte[] labels, byte[] extraLabels, double value) {
+    buffer.append(name);
+    writeLabels(labels, extraLabels);
+    buffer.write(' ');
+    buffer.writeDouble(value);
+    buffer.write('\n');
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** Replace the characters not in [a-zA-Z0-9_:] with '_'. */
+  static String sanitizeName(String name) {
+    final StringBuilder b = new StringBuilder(name.length() + 1);
+    if (name.isEmpty() || Character.isDigit(name.charAt(0))) {
+      b.append('_');
+    }
+    for (int i = 0; i < name.length(); i++) {
+      final char c = name.charAt(i);
+      final boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+          || c == '_' || c == ':';
+      b.append(valid? c: '_');
+    }
+    return b.toString();
+  }
+
+  static String escapeLabelValue(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
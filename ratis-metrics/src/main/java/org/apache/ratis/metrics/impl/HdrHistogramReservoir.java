@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.metrics.impl;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+import org.apache.ratis.util.Preconditions;
+import org.apache.ratis.util.TimeDuration;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Reservoir} backed by an HdrHistogram {@link Recorder}.
+ * Unlike {@link com.codahale.metrics.ExponentiallyDecayingReservoir},
+ * which takes a lock and allocates in every update,
+ * recording a value is wait-free and does not allocate.
+ * The snapshots are computed from the values recorded in the last one to two windows;
+ * the percentiles are accurate to the given number of significant digits.
+ * The values are clamped to [0, highestTrackableValue].
+ * A reservoir without a highest trackable value auto-resizes its histograms to the recorded values.
+ */
+public class HdrHistogramReservoir implements Reservoir {
+  /** The highest value supported by an auto-resizing {@link Histogram}. */
+  static final long AUTO_RESIZE_HIGHEST = Long.MAX_VALUE / 2;
+
+  private final Recorder recorder;
+  private final long highestTrackableValue;
+  private final long windowNanos;
+
+  /** The values recorded in the previous window. */
+  private Histogram previous;
+  /** The values recorded in the current window. */
+  private Histogram current;
+  private long currentStartNanos = System.nanoTime();
+  /** The interval histogram recycled in {@link #collect()}. */
+  private Histogram interval;
+
+  public HdrHistogramReservoir(long highestTrackableValue, int significantDigits, TimeDuration window) {
+    this(new Recorder(highestTrackableValue, significantDigits), highestTrackableValue,
+        new Histogram(highestTrackableValue, significantDigits),
+        new Histogram(highestTrackableValue, significantDigits), window);
+  }
+
+  /** Create an auto-resizing reservoir for the values which are not known to be bounded. */
+  public HdrHistogramReservoir(int significantDigits, TimeDuration window) {
+    this(new Recorder(significantDigits), AUTO_RESIZE_HIGHEST,
+        new Histogram(significantDigits), new Histogram(significantDigits), window);
+  }
+
+  private HdrHistogramReservoir(Recorder recorder, long highestTrackableValue,
+      Histogram previous, Histogram current, TimeDuration window) {
+    Preconditions.assertTrue(!window.isNonPositive(), () -> "window = " + window + " <= 0");
+    this.recorder = recorder;
+    this.highestTrackableValue = highestTrackableValue;
+    this.windowNanos = window.toLong(TimeUnit.NANOSECONDS);
+    this.previous = previous;
+    this.current = current;
+  }
+
+  @Override
+  public void update(long value) {
+    recorder.recordValue(Math.min(Math.max(value, 0), highestTrackableValue));
+  }
+
+  /** Move the newly recorded values to the current window, and rotate the windows if it is expired. */
+  private void collect() {
+    interval = recorder.getIntervalHistogram(interval);
+    final long now = System.nanoTime();
+    final long elapsed = now - currentStartNanos;
+    if (elapsed >= windowNanos) {
+      final Histogram reused = previous;
+      previous = current;
+      current = reused;
+      current.reset();
+      if (elapsed >= 2 * windowNanos) {
+        // no values were collected in the last window
+        previous.reset();
+      }
+      currentStartNanos = now;
+    }
+    current.add(interval);
+  }
+
+  @Override
+  public synchronized int size() {
+    collect();
+    return toInt(previous.getTotalCount() + current.getTotalCount());
+  }
+
+  @Override
+  public Snapshot getSnapshot() {
+    final Histogram copy;
+    synchronized (this) {
+      collect();
+      copy = current.copy();
+      copy.add(previous);
+    }
+    return new HdrHistogramSnapshot(copy);
+  }
+
+  static int toInt(long count) {
+    return (int) Math.min(count, Integer.MAX_VALUE);
+  }
+
+  /** An immutable {@link Snapshot} of a {@link Histogram}. */
+  static class HdrHistogramSnapshot extends Snapshot {
+    private final Histogram histogram;
+
+    HdrHistogramSnapshot(Histogram histogram) {
+      this.histogram = histogram;
+    }
+
+    @Override
+    public double getValue(double quantile) {
+      Preconditions.assertTrue(quantile >= 0 && quantile <= 1, () -> quantile + " is not in [0, 1]");
+      return histogram.getValueAtPercentile(quantile * 100);
+    }
+
+    /** @return the sorted values, one value per recorded bucket. */
+    @Override
+    public long[] getValues() {
+      int n = 0;
+      for (HistogramIterationValue ignored : histogram.recordedValues()) {
+        n++;
+      }
+      final long[] values = new long[n];
+      int i = 0;
+      for (HistogramIterationValue v : histogram.recordedValues()) {
+        values[i++] = v.getValueIteratedTo();
+      }
+      return values;
+    }
+
+    @Override
+    public int size() {
+      return toInt(histogram.getTotalCount());
+    }
+
+    @Override
+    public long getMax() {
+      return histogram.getMaxValue();
+    }
+
+    @Override
+    public double getMean() {
+      return histogram.getMean();
+    }
+
+    @Override
+    public long getMin() {
+      return histogram.getMinValue();
+    }
+
+    @Override
+    public double getStdDev() {
+      return histogram.getStdDeviation();
+    }
+
+    @Override
+    public void dump(OutputStream output) {
+      try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+        for (long value : getValues()) {
+          out.printf("%d%n", value);
+        }
+      }
+    }
+  }
+}
@@ -17,13 +17,95 @@
  */
 package org.apache.ratis.metrics.impl;
 
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
 import org.apache.ratis.metrics.MetricRegistryFactory;
 import org.apache.ratis.metrics.MetricRegistryInfo;
 import org.apache.ratis.metrics.RatisMetricRegistry;
+import org.apache.ratis.util.TimeDuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
 
 public class MetricRegistryFactoryImpl implements MetricRegistryFactory {
+  private static final Logger LOG = LoggerFactory.getLogger(MetricRegistryFactoryImpl.class);
+
+  /**
+   * The system property to select the {@link ReservoirType} of the timers and the histograms.
+   * Since the global {@link org.apache.ratis.metrics.MetricRegistries} is shared by all the servers and clients
+   * in a JVM, it is a JVM-wide setting.
+   */
+  public static final String RESERVOIR_TYPE_KEY = "raft.metrics.reservoir.type";
+  public static final ReservoirType RESERVOIR_TYPE_DEFAULT = ReservoirType.EXPONENTIALLY_DECAYING;
+
+  /** The reservoirs of the timers and the histograms. */
+  public enum ReservoirType {
+    /** The Dropwizard default reservoir. */
+    EXPONENTIALLY_DECAYING {
+      @Override
+      Timer newTimer() {
+        return new Timer();
+      }
+
+      @Override
+      Histogram newHistogram() {
+        return new Histogram(new ExponentiallyDecayingReservoir());
+      }
+    },
+    /** {@link HdrHistogramReservoir}, which has wait-free updates and accurate high percentiles. */
+    HDR_HISTOGRAM {
+      @Override
+      Timer newTimer() {
+        return new Timer(new HdrHistogramReservoir(TIMER_HIGHEST_NANOS, SIGNIFICANT_DIGITS, WINDOW));
+      }
+
+      @Override
+      Histogram newHistogram() {
+        return new Histogram(new HdrHistogramReservoir(SIGNIFICANT_DIGITS, WINDOW));
+      }
+    };
+
+    /**
+     * The timers track up to an hour.
+     * The histograms have no known bound, so they auto-resize to the recorded values.
+     */
+    private static final long TIMER_HIGHEST_NANOS = TimeUnit.HOURS.toNanos(1);
+    /** The values are accurate to 1%. */
+    private static final int SIGNIFICANT_DIGITS = 2;
+    private static final TimeDuration WINDOW = TimeDuration.valueOf(1, TimeUnit.MINUTES);
+
+    abstract Timer newTimer();
+
+    abstract Histogram newHistogram();
+  }
+
+  static ReservoirType getReservoirType() {
+    final String value = System.getProperty(RESERVOIR_TYPE_KEY);
+    if (value == null) {
+      return RESERVOIR_TYPE_DEFAULT;
+    }
+    try {
+      return ReservoirType.valueOf(value.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      LOG.warn("Unrecognized {} = {}, use the default {}", RESERVOIR_TYPE_KEY, value, RESERVOIR_TYPE_DEFAULT);
+      return RESERVOIR_TYPE_DEFAULT;
+    }
+  }
+
+  private final ReservoirType reservoirType;
+
+  public MetricRegistryFactoryImpl() {
+    this(getReservoirType());
+  }
+
+  public MetricRegistryFactoryImpl(ReservoirType reservoirType) {
+    this.reservoirType = reservoirType;
+  }
+
   @Override
   public RatisMetricRegistry create(MetricRegistryInfo info) {
-    return new RatisMetricRegistryImpl(info);
+    return new RatisMetricRegistryImpl(info, reservoirType);
   }
 }
@@ -32,6 +32,7 @@ import com.codahale.metrics.MetricSet;
 import com.codahale.metrics.Timer;
 import org.apache.ratis.metrics.MetricRegistryInfo;
 import org.apache.ratis.metrics.RatisMetricRegistry;
+import org.apache.ratis.metrics.impl.MetricRegistryFactoryImpl.ReservoirType;
 import org.apache.ratis.thirdparty.com.google.common.annotations.VisibleForTesting;
 
 /**
@@ -41,15 +42,23 @@ public class RatisMetricRegistryImpl implements RatisMetricRegistry {
   private MetricRegistry metricRegistry = new MetricRegistry();
 
   private final MetricRegistryInfo info;
+  private final MetricSupplier<Timer> timerSupplier;
+  private final MetricSupplier<Histogram> histogramSupplier;
 
   public RatisMetricRegistryImpl(MetricRegistryInfo info) {
+    this(info, MetricRegistryFactoryImpl.RESERVOIR_TYPE_DEFAULT);
+  }
+
+  public RatisMetricRegistryImpl(MetricRegistryInfo info, ReservoirType reservoirType) {
     super();
     this.info = info;
+    this.timerSupplier = reservoirType::newTimer;
+    this.histogramSupplier = reservoirType::newHistogram;
   }
 
   @Override
   public Timer timer(String name) {
-    return metricRegistry.timer(getMetricName(name));
+    return metricRegistry.timer(getMetricName(name), timerSupplier);
   }
 
   @Override
@@ -74,7 +83,7 @@ public class RatisMetricRegistryImpl implements RatisMetricRegistry {
   }
 
   @Override public Histogram histogram(String name) {
-    return metricRegistry.histogram(getMetricName(name));
+    return metricRegistry.histogram(getMetricName(name), histogramSupplier);
   }
 
    @Override public Meter meter(String name) {
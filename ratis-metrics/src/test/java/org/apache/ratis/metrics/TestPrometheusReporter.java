@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.ratis.metrics.impl.MetricRegistriesImpl;
+import org.junit.Test;
+
+public class TestPrometheusReporter {
+  static List<String> scrape(InetSocketAddress address) throws Exception {
+    final URL url = new URL("http", "localhost", address.getPort(), PrometheusReporter.PATH);
+    final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    try {
+      assertEquals(200, connection.getResponseCode());
+      assertEquals(PrometheusTextFormat.CONTENT_TYPE, connection.getContentType());
+      try (BufferedReader in = new BufferedReader(
+          new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+        return in.lines().collect(Collectors.toList());
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @Test
+  public void testScrape() throws Exception {
+    final MetricRegistries registries = new MetricRegistriesImpl();
+    final List<RatisMetricRegistry> groups = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      final RatisMetricRegistry r = registries.create(
+          new MetricRegistryInfo("s0@group-" + i, "ratis", "server", "test server"));
+      r.counter("numRequests").inc(i + 1);
+      r.timer("flush.Time").update(2, TimeUnit.MILLISECONDS);
+      r.meter("appends").mark(10);
+      r.gauge("leader", () -> () -> true);
+      groups.add(r);
+    }
+
+    try (PrometheusReporter reporter = new PrometheusReporter(registries, new InetSocketAddress(0)).start()) {
+      final List<String> lines = scrape(reporter.getAddress());
+
+      // one TYPE line per family
+      assertEquals(1, lines.stream().filter("# TYPE ratis_server_numRequests gauge"::equals).count());
+      assertEquals(1, lines.stream().filter("# TYPE ratis_server_flush_Time_seconds summary"::equals).count());
+      assertTrue(lines.contains("# TYPE ratis_server_appends_total counter"));
+
+      assertTrue(lines.contains("ratis_server_numRequests{prefix=\"s0@group-0\"} 1"));
+      assertTrue(lines.contains("ratis_server_numRequests{prefix=\"s0@group-1\"} 2"));
+      assertTrue(lines.contains("ratis_server_appends_total{prefix=\"s0@group-1\"} 10"));
+      assertTrue(lines.contains("ratis_server_leader{prefix=\"s0@group-0\"} 1"));
+      assertTrue(lines.contains("ratis_server_flush_Time_seconds{prefix=\"s0@group-0\",quantile=\"0.99\"} 0.002"));
+      assertTrue(lines.contains("ratis_server_flush_Time_seconds_count{prefix=\"s0@group-1\"} 1"));
+
+      // the samples of a family are together
+      final int i0 = lines.indexOf("ratis_server_numRequests{prefix=\"s0@group-0\"} 1");
+      final int i1 = lines.indexOf("ratis_server_numRequests{prefix=\"s0@group-1\"} 2");
+      assertEquals(1, Math.abs(i0 - i1));
+
+      // the removed registries and the new metrics are reflected in the next scrape
+      registries.remove(groups.get(1).getMetricRegistryInfo());
+      groups.get(0).counter("numRequests").inc();
+      groups.get(0).counter("newCounter").inc(5);
+      final List<String> next = scrape(reporter.getAddress());
+      assertTrue(next.contains("ratis_server_numRequests{prefix=\"s0@group-0\"} 2"));
+      assertTrue(next.contains("ratis_server_newCounter{prefix=\"s0@group-0\"} 5"));
+      assertTrue(next.stream().noneMatch(line -> line.contains("s0@group-1")));
+    }
+  }
+
+  @Test
+  public void testSanitize() {
+    assertEquals("ratis_log_worker_flushTime", PrometheusTextFormat.sanitizeName("ratis.log-worker.flushTime"));
+    assertEquals("_1abc", PrometheusTextFormat.sanitizeName("1abc"));
+    assertEquals("a\\\"b\\\\c\\n", PrometheusTextFormat.escapeLabelValue("a\"b\\c\n"));
+  }
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.metrics.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.apache.ratis.metrics.MetricRegistryInfo;
+import org.apache.ratis.metrics.RatisMetricRegistry;
+import org.apache.ratis.metrics.impl.MetricRegistryFactoryImpl.ReservoirType;
+import org.apache.ratis.util.TimeDuration;
+import org.junit.Test;
+
+public class TestHdrHistogramReservoir {
+  private static final TimeDuration ONE_HOUR = TimeDuration.valueOf(1, TimeUnit.HOURS);
+
+  private static void assertValue(double expected, double actual) {
+    // accurate to 2 significant digits
+    assertEquals(expected, actual, expected / 100);
+  }
+
+  @Test
+  public void testPercentiles() {
+    final HdrHistogramReservoir reservoir = new HdrHistogramReservoir(1_000_000, 2, ONE_HOUR);
+    for (int i = 1; i <= 10_000; i++) {
+      reservoir.update(i);
+    }
+    assertEquals(10_000, reservoir.size());
+
+    final Snapshot snapshot = reservoir.getSnapshot();
+    assertEquals(10_000, snapshot.size());
+    assertValue(1, snapshot.getMin());
+    assertValue(10_000, snapshot.getMax());
+    assertValue(5_000, snapshot.getMean());
+    assertValue(5_000, snapshot.getMedian());
+    assertValue(9_900, snapshot.get99thPercentile());
+    assertValue(9_990, snapshot.get999thPercentile());
+
+    final long[] values = snapshot.getValues();
+    for (int i = 1; i < values.length; i++) {
+      assertTrue(values[i - 1] < values[i]);
+    }
+
+    // the snapshot keeps the values
+    reservoir.update(20_000);
+    assertEquals(10_001, reservoir.getSnapshot().size());
+    assertEquals(10_000, snapshot.size());
+  }
+
+  @Test
+  public void testClamp() {
+    final HdrHistogramReservoir reservoir = new HdrHistogramReservoir(1_000, 2, ONE_HOUR);
+    reservoir.update(-1);
+    reservoir.update(Long.MAX_VALUE);
+    final Snapshot snapshot = reservoir.getSnapshot();
+    assertEquals(2, snapshot.size());
+    assertEquals(0, snapshot.getMin());
+    assertValue(1_000, snapshot.getMax());
+  }
+
+  @Test
+  public void testAutoResize() {
+    final HdrHistogramReservoir reservoir = new HdrHistogramReservoir(2, ONE_HOUR);
+    reservoir.update(1);
+    reservoir.update(1L << 40);
+    reservoir.update(Long.MAX_VALUE);
+    final Snapshot snapshot = reservoir.getSnapshot();
+    assertEquals(3, snapshot.size());
+    assertEquals(1, snapshot.getMin());
+    assertValue(1L << 40, snapshot.getValue(0.5));
+    assertValue(HdrHistogramReservoir.AUTO_RESIZE_HIGHEST, snapshot.getMax());
+  }
+
+  @Test
+  public void testWindow() throws Exception {
+    final HdrHistogramReservoir reservoir = new HdrHistogramReservoir(1_000, 2,
+        TimeDuration.valueOf(100, TimeUnit.MILLISECONDS));
+    reservoir.update(1);
+    assertEquals(1, reservoir.size());
+
+    // the values expire after two windows
+    Thread.sleep(250);
+    assertEquals(0, reservoir.getSnapshot().size());
+  }
+
+  @Test
+  public void testReservoirType() {
+    final MetricRegistryInfo info = new MetricRegistryInfo("test", "ratis", "reservoir", "test reservoir");
+    final RatisMetricRegistry hdr = new MetricRegistryFactoryImpl(ReservoirType.HDR_HISTOGRAM).create(info);
+    final Timer timer = hdr.timer("timer");
+    timer.update(1, TimeUnit.MILLISECONDS);
+    assertTrue(timer.getSnapshot() instanceof HdrHistogramReservoir.HdrHistogramSnapshot);
+    assertValue(TimeUnit.MILLISECONDS.toNanos(1), timer.getSnapshot().getMax());
+    assertTrue(hdr.histogram("histogram").getSnapshot() instanceof HdrHistogramReservoir.HdrHistogramSnapshot);
+
+    final RatisMetricRegistry decaying = new MetricRegistryFactoryImpl(ReservoirType.EXPONENTIALLY_DECAYING)
+        .create(info);
+    assertTrue(!(decaying.timer("timer").getSnapshot() instanceof HdrHistogramReservoir.HdrHistogramSnapshot));
+  }
+}
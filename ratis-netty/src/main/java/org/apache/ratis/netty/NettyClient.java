@@ -21,13 +21,14 @@ import org.apache.ratis.thirdparty.io.netty.bootstrap.Bootstrap;
 import org.apache.ratis.thirdparty.io.netty.channel.Channel;
 import org.apache.ratis.thirdparty.io.netty.channel.ChannelFuture;
 import org.apache.ratis.thirdparty.io.netty.channel.ChannelInitializer;
+import org.apache.ratis.thirdparty.io.netty.channel.ChannelOption;
 import org.apache.ratis.thirdparty.io.netty.channel.EventLoopGroup;
 import org.apache.ratis.thirdparty.io.netty.channel.socket.SocketChannel;
-import org.apache.ratis.thirdparty.io.netty.channel.socket.nio.NioSocketChannel;
 import org.apache.ratis.thirdparty.io.netty.handler.logging.LogLevel;
 import org.apache.ratis.thirdparty.io.netty.handler.logging.LoggingHandler;
 import org.apache.ratis.util.LifeCycle;
 import org.apache.ratis.util.NetUtils;
+import org.apache.ratis.util.NettyUtils;
 
 import java.io.Closeable;
 import java.net.InetSocketAddress;
@@ -46,7 +47,8 @@ public class NettyClient implements Closeable {
     lifeCycle.startAndTransition(
         () -> channel = new Bootstrap()
             .group(group)
-            .channel(NioSocketChannel.class)
+            .channel(NettyUtils.getSocketChannelClass(group))
+            .option(ChannelOption.ALLOCATOR, NettyUtils.getAllocator())
             .handler(new LoggingHandler(LogLevel.INFO))
             .handler(initializer)
             .connect(address)
@@ -26,8 +26,23 @@ import java.util.function.Consumer;
 import static org.apache.ratis.conf.ConfUtils.*;
 
 public interface NettyConfigKeys {
+  Logger LOG = LoggerFactory.getLogger(NettyConfigKeys.class);
+  static Consumer<String> getDefaultLog() {
+    return LOG::info;
+  }
+
   String PREFIX = "raft.netty";
 
+  /** Use the native epoll transport, if it is available, for both the servers and the clients. */
+  String USE_EPOLL_KEY = PREFIX + ".use-epoll";
+  boolean USE_EPOLL_DEFAULT = false;
+  static boolean useEpoll(RaftProperties properties) {
+    return getBoolean(properties::getBoolean, USE_EPOLL_KEY, USE_EPOLL_DEFAULT, getDefaultLog());
+  }
+  static void setUseEpoll(RaftProperties properties, boolean useEpoll) {
+    setBoolean(properties::setBoolean, USE_EPOLL_KEY, useEpoll);
+  }
+
   interface Server {
     Logger LOG = LoggerFactory.getLogger(Server.class);
     static Consumer<String> getDefaultLog() {
@@ -47,6 +62,32 @@ public interface NettyConfigKeys {
     static void setPort(RaftProperties properties, int port) {
       setInt(properties::setInt, PORT_KEY, port);
     }
+
+    /** The boss group is shared by the servers in a JVM; 0 for the Netty default size. */
+    String BOSS_GROUP_SIZE_KEY = PREFIX + ".boss-group.size";
+    int BOSS_GROUP_SIZE_DEFAULT = 0;
+
+    static int bossGroupSize(RaftProperties properties) {
+      return getInt(properties::getInt,
+          BOSS_GROUP_SIZE_KEY, BOSS_GROUP_SIZE_DEFAULT, getDefaultLog(), requireMin(0));
+    }
+
+    static void setBossGroupSize(RaftProperties properties, int size) {
+      setInt(properties::setInt, BOSS_GROUP_SIZE_KEY, size);
+    }
+
+    /** The worker group is shared by the servers in a JVM; 0 for the Netty default size. */
+    String WORKER_GROUP_SIZE_KEY = PREFIX + ".worker-group.size";
+    int WORKER_GROUP_SIZE_DEFAULT = 0;
+
+    static int workerGroupSize(RaftProperties properties) {
+      return getInt(properties::getInt,
+          WORKER_GROUP_SIZE_KEY, WORKER_GROUP_SIZE_DEFAULT, getDefaultLog(), requireMin(0));
+    }
+
+    static void setWorkerGroupSize(RaftProperties properties, int size) {
+      setInt(properties::setInt, WORKER_GROUP_SIZE_KEY, size);
+    }
   }
 
   static void main(String[] args) {
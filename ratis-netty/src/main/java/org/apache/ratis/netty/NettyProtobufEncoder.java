@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.netty;
+
+import org.apache.ratis.thirdparty.com.google.protobuf.CodedOutputStream;
+import org.apache.ratis.thirdparty.com.google.protobuf.MessageLite;
+import org.apache.ratis.thirdparty.io.netty.buffer.ByteBuf;
+import org.apache.ratis.thirdparty.io.netty.channel.ChannelHandler;
+import org.apache.ratis.thirdparty.io.netty.channel.ChannelHandlerContext;
+import org.apache.ratis.thirdparty.io.netty.handler.codec.MessageToByteEncoder;
+
+import java.io.IOException;
+
+/**
+ * Encode a protobuf message with a varint32 length prefix,
+ * i.e. the combination of ProtobufVarint32LengthFieldPrepender and ProtobufEncoder.
+ * Unlike ProtobufEncoder, which serializes the message to a heap byte array,
+ * the message is serialized directly into a single buffer from the channel allocator,
+ * which is a pooled direct buffer by default.
+ */
+@ChannelHandler.Sharable
+public class NettyProtobufEncoder extends MessageToByteEncoder<MessageLite> {
+  private static int getFrameLength(int size) {
+    return CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+  }
+
+  @Override
+  protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, MessageLite msg, boolean preferDirect) {
+    final int length = getFrameLength(msg.getSerializedSize());
+    return preferDirect? ctx.alloc().ioBuffer(length): ctx.alloc().heapBuffer(length);
+  }
+
+  @Override
+  protected void encode(ChannelHandlerContext ctx, MessageLite msg, ByteBuf out) throws IOException {
+    final int size = msg.getSerializedSize();
+    final int length = getFrameLength(size);
+    out.ensureWritable(length);
+    final CodedOutputStream cos = CodedOutputStream.newInstance(out.nioBuffer(out.writerIndex(), length));
+    cos.writeUInt32NoTag(size);
+    msg.writeTo(cos);
+    cos.checkNoSpaceLeft();
+    out.writerIndex(out.writerIndex() + length);
+  }
+}
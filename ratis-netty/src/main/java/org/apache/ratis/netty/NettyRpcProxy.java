@@ -19,34 +19,41 @@ package org.apache.ratis.netty;
 
 import org.apache.ratis.protocol.RaftPeer;
 import org.apache.ratis.thirdparty.io.netty.channel.*;
-import org.apache.ratis.thirdparty.io.netty.channel.nio.NioEventLoopGroup;
 import org.apache.ratis.thirdparty.io.netty.channel.socket.SocketChannel;
 import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufDecoder;
-import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufEncoder;
 import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
-import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufVarint32LengthFieldPrepender;
 import org.apache.ratis.proto.RaftProtos.RaftRpcRequestProto;
 import org.apache.ratis.proto.netty.NettyProtos.RaftNettyServerReplyProto;
 import org.apache.ratis.proto.netty.NettyProtos.RaftNettyServerRequestProto;
 import org.apache.ratis.util.IOUtils;
+import org.apache.ratis.util.NettyUtils;
 import org.apache.ratis.util.PeerProxyMap;
 import org.apache.ratis.util.ProtoUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import static org.apache.ratis.proto.netty.NettyProtos.RaftNettyServerReplyProto.RaftNettyServerReplyCase.EXCEPTIONREPLY;
 
 public class NettyRpcProxy implements Closeable {
+  public static final Logger LOG = LoggerFactory.getLogger(NettyRpcProxy.class);
+
   public static class PeerMap extends PeerProxyMap<NettyRpcProxy> {
-    private final EventLoopGroup group = new NioEventLoopGroup();
+    private final EventLoopGroup group;
 
     public PeerMap(String name) {
+      this(name, false);
+    }
+
+    public PeerMap(String name, boolean useEpoll) {
       super(name);
+      this.group = NettyUtils.newEventLoopGroup(name, 0, useEpoll);
     }
 
     @Override
@@ -90,8 +97,9 @@ public class NettyRpcProxy implements Closeable {
 
   class Connection implements Closeable {
     private final NettyClient client = new NettyClient();
-    private final Queue<CompletableFuture<RaftNettyServerReplyProto>> replies
-        = new LinkedList<>();
+    /** The outstanding requests on this connection, keyed by the callIds set in {@link #offer}. */
+    private final Map<Long, CompletableFuture<RaftNettyServerReplyProto>> replies = new HashMap<>();
+    private long nextCallId = 0;
 
     Connection(EventLoopGroup group) throws InterruptedException {
       final ChannelInboundHandler inboundHandler
@@ -99,10 +107,11 @@ public class NettyRpcProxy implements Closeable {
         @Override
         protected void channelRead0(ChannelHandlerContext ctx,
                                     RaftNettyServerReplyProto proto) {
-          final CompletableFuture<RaftNettyServerReplyProto> future = pollReply();
+          final CompletableFuture<RaftNettyServerReplyProto> future = pollReply(proto.getCallId());
           if (future == null) {
-            throw new IllegalStateException("Request #" + getCallId(proto)
-                + " not found");
+            // the request was cancelled by the caller
+            LOG.debug("{}: ignore the reply of the cancelled request #{}", peer, proto.getCallId());
+            return;
           }
           if (proto.getRaftNettyServerReplyCase() == EXCEPTIONREPLY) {
             final Object ioe = ProtoUtils.toObject(proto.getExceptionReply().getException());
@@ -120,8 +129,7 @@ public class NettyRpcProxy implements Closeable {
 
           p.addLast(new ProtobufVarint32FrameDecoder());
           p.addLast(new ProtobufDecoder(RaftNettyServerReplyProto.getDefaultInstance()));
-          p.addLast(new ProtobufVarint32LengthFieldPrepender());
-          p.addLast(new ProtobufEncoder());
+          p.addLast(new NettyProtobufEncoder());
 
           p.addLast(inboundHandler);
         }
@@ -130,14 +138,27 @@ public class NettyRpcProxy implements Closeable {
       client.connect(peer.getAddress(), group, initializer);
     }
 
+    /** Send the request with a new callId; the replies are matched by the callIds so they may be out of order. */
     synchronized ChannelFuture offer(RaftNettyServerRequestProto request,
         CompletableFuture<RaftNettyServerReplyProto> reply) {
-      replies.offer(reply);
-      return client.writeAndFlush(request);
+      final long callId = nextCallId++;
+      replies.put(callId, reply);
+      reply.whenComplete((r, e) -> {
+        if (reply.isCancelled()) {
+          pollReply(callId);
+        }
+      });
+      final ChannelFuture f = client.writeAndFlush(request.toBuilder().setCallId(callId).build());
+      f.addListener(written -> {
+        if (!written.isSuccess() && pollReply(callId) != null) {
+          reply.completeExceptionally(IOUtils.asIOException(written.cause()));
+        }
+      });
+      return f;
     }
 
-    synchronized CompletableFuture<RaftNettyServerReplyProto> pollReply() {
-      return replies.poll();
+    synchronized CompletableFuture<RaftNettyServerReplyProto> pollReply(long callId) {
+      return replies.remove(callId);
     }
 
     @Override
@@ -145,7 +166,7 @@ public class NettyRpcProxy implements Closeable {
       client.close();
       if (!replies.isEmpty()) {
         final IOException e = new IOException("Connection to " + peer + " is closed.");
-        replies.stream().forEach(f -> f.completeExceptionally(e));
+        replies.values().forEach(f -> f.completeExceptionally(e));
         replies.clear();
       }
     }
@@ -164,6 +185,16 @@ public class NettyRpcProxy implements Closeable {
     connection.close();
   }
 
+  /**
+   * Send the request without waiting for the reply.
+   * The requests are multiplexed on the connection so that many requests can be in flight.
+   */
+  public CompletableFuture<RaftNettyServerReplyProto> sendAsync(RaftNettyServerRequestProto proto) {
+    final CompletableFuture<RaftNettyServerReplyProto> reply = new CompletableFuture<>();
+    connection.offer(proto, reply);
+    return reply;
+  }
+
   public RaftNettyServerReplyProto send(
       RaftRpcRequestProto request, RaftNettyServerRequestProto proto)
       throws IOException {
@@ -19,63 +19,101 @@ package org.apache.ratis.netty.client;
 
 import org.apache.ratis.client.impl.ClientProtoUtils;
 import org.apache.ratis.client.impl.RaftClientRpcWithProxy;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.netty.NettyConfigKeys;
 import org.apache.ratis.netty.NettyRpcProxy;
 import org.apache.ratis.protocol.*;
-import org.apache.ratis.proto.RaftProtos;
-import org.apache.ratis.proto.RaftProtos.RaftClientRequestProto;
 import org.apache.ratis.proto.RaftProtos.RaftRpcRequestProto;
-import org.apache.ratis.proto.RaftProtos.GroupManagementRequestProto;
-import org.apache.ratis.proto.RaftProtos.SetConfigurationRequestProto;
+import org.apache.ratis.proto.netty.NettyProtos.RaftNettyServerReplyProto;
 import org.apache.ratis.proto.netty.NettyProtos.RaftNettyServerRequestProto;
+import org.apache.ratis.util.JavaUtils;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 public class NettyClientRpc extends RaftClientRpcWithProxy<NettyRpcProxy> {
   public NettyClientRpc(ClientId clientId) {
     super(new NettyRpcProxy.PeerMap(clientId.toString()));
   }
 
+  public NettyClientRpc(ClientId clientId, RaftProperties properties) {
+    super(new NettyRpcProxy.PeerMap(clientId.toString(), NettyConfigKeys.useEpoll(properties)));
+  }
+
+  @Override
+  public CompletableFuture<RaftClientReply> sendRequestAsync(RaftClientRequest request) {
+    final RaftPeerId serverId = request.getServerId();
+    try {
+      final NettyRpcProxy proxy = getProxies().getProxy(serverId);
+      // the server submits and replies the ordered requests by their seqNums, see NettyRpcService
+      final CompletableFuture<RaftNettyServerReplyProto> sent = proxy.sendAsync(
+          toRaftNettyServerRequestProto(request).build());
+      final CompletableFuture<RaftClientReply> f = sent.thenApply(reply -> toRaftClientReply(request, reply));
+      f.whenComplete((reply, e) -> {
+        if (f.isCancelled()) {
+          sent.cancel(false);
+        }
+      });
+      return f;
+    } catch (Throwable e) {
+      return JavaUtils.completeExceptionally(e);
+    }
+  }
+
+  @Override
+  public CompletableFuture<RaftClientReply> sendRequestAsyncUnordered(RaftClientRequest request) {
+    // the unordered requests do not have a seqNum so that the server replies them once they complete
+    return sendRequestAsync(request);
+  }
+
   @Override
   public RaftClientReply sendRequest(RaftClientRequest request) throws IOException {
     final RaftPeerId serverId = request.getServerId();
     final NettyRpcProxy proxy = getProxies().getProxy(serverId);
 
+    final RaftNettyServerRequestProto.Builder b = toRaftNettyServerRequestProto(request);
+    return toRaftClientReply(request, proxy.send(getRpcRequest(b), b.build()));
+  }
+
+  private static RaftNettyServerRequestProto.Builder toRaftNettyServerRequestProto(RaftClientRequest request) {
     final RaftNettyServerRequestProto.Builder b = RaftNettyServerRequestProto.newBuilder();
-    final RaftRpcRequestProto rpcRequest;
     if (request instanceof GroupManagementRequest) {
-      final GroupManagementRequestProto proto = ClientProtoUtils.toGroupManagementRequestProto(
-          (GroupManagementRequest)request);
-      b.setGroupManagementRequest(proto);
-      rpcRequest = proto.getRpcRequest();
+      b.setGroupManagementRequest(ClientProtoUtils.toGroupManagementRequestProto((GroupManagementRequest)request));
     } else if (request instanceof SetConfigurationRequest) {
-      final SetConfigurationRequestProto proto = ClientProtoUtils.toSetConfigurationRequestProto(
-          (SetConfigurationRequest)request);
-      b.setSetConfigurationRequest(proto);
-      rpcRequest = proto.getRpcRequest();
+      b.setSetConfigurationRequest(ClientProtoUtils.toSetConfigurationRequestProto(
+          (SetConfigurationRequest)request));
     } else if (request instanceof GroupListRequest) {
-      final RaftProtos.GroupListRequestProto proto = ClientProtoUtils.toGroupListRequestProto(
-          (GroupListRequest)request);
-      b.setGroupListRequest(proto);
-      rpcRequest = proto.getRpcRequest();
+      b.setGroupListRequest(ClientProtoUtils.toGroupListRequestProto((GroupListRequest)request));
     } else if (request instanceof GroupInfoRequest) {
-      final RaftProtos.GroupInfoRequestProto proto = ClientProtoUtils.toGroupInfoRequestProto(
-          (GroupInfoRequest)request);
-      b.setGroupInfoRequest(proto);
-      rpcRequest = proto.getRpcRequest();
+      b.setGroupInfoRequest(ClientProtoUtils.toGroupInfoRequestProto((GroupInfoRequest)request));
     } else {
-      final RaftClientRequestProto proto = ClientProtoUtils.toRaftClientRequestProto(request);
-      b.setRaftClientRequest(proto);
-      rpcRequest = proto.getRpcRequest();
+      b.setRaftClientRequest(ClientProtoUtils.toRaftClientRequestProto(request));
+    }
+    return b;
+  }
+
+  private static RaftRpcRequestProto getRpcRequest(RaftNettyServerRequestProto.Builder b) {
+    switch (b.getRaftNettyServerRequestCase()) {
+      case GROUPMANAGEMENTREQUEST:
+        return b.getGroupManagementRequest().getRpcRequest();
+      case SETCONFIGURATIONREQUEST:
+        return b.getSetConfigurationRequest().getRpcRequest();
+      case GROUPLISTREQUEST:
+        return b.getGroupListRequest().getRpcRequest();
+      case GROUPINFOREQUEST:
+        return b.getGroupInfoRequest().getRpcRequest();
+      default:
+        return b.getRaftClientRequest().getRpcRequest();
     }
+  }
+
+  private static RaftClientReply toRaftClientReply(RaftClientRequest request, RaftNettyServerReplyProto reply) {
     if (request instanceof GroupListRequest) {
-      return ClientProtoUtils.toGroupListReply(
-          proxy.send(rpcRequest, b.build()).getGroupListReply());
+      return ClientProtoUtils.toGroupListReply(reply.getGroupListReply());
     } else if (request instanceof GroupInfoRequest) {
-      return ClientProtoUtils.toGroupInfoReply(
-          proxy.send(rpcRequest, b.build()).getGroupInfoReply());
+      return ClientProtoUtils.toGroupInfoReply(reply.getGroupInfoReply());
     } else {
-      return ClientProtoUtils.toRaftClientReply(
-          proxy.send(rpcRequest, b.build()).getRaftClientReply());
+      return ClientProtoUtils.toRaftClientReply(reply.getRaftClientReply());
     }
   }
 }
@@ -18,11 +18,16 @@
 package org.apache.ratis.netty.server;
 
 import org.apache.ratis.client.impl.ClientProtoUtils;
+import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.netty.NettyConfigKeys;
+import org.apache.ratis.netty.NettyProtobufEncoder;
 import org.apache.ratis.netty.NettyRpcProxy;
+import org.apache.ratis.protocol.AlreadyClosedException;
+import org.apache.ratis.protocol.ClientId;
 import org.apache.ratis.protocol.GroupInfoReply;
 import org.apache.ratis.protocol.GroupListReply;
 import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftGroupId;
 import org.apache.ratis.protocol.RaftPeerId;
 import org.apache.ratis.rpc.SupportedRpcType;
 import org.apache.ratis.server.RaftServer;
@@ -30,13 +35,9 @@ import org.apache.ratis.server.RaftServerRpc;
 import org.apache.ratis.server.impl.RaftServerRpcWithProxy;
 import org.apache.ratis.thirdparty.io.netty.bootstrap.ServerBootstrap;
 import org.apache.ratis.thirdparty.io.netty.channel.*;
-import org.apache.ratis.thirdparty.io.netty.channel.nio.NioEventLoopGroup;
 import org.apache.ratis.thirdparty.io.netty.channel.socket.SocketChannel;
-import org.apache.ratis.thirdparty.io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufDecoder;
-import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufEncoder;
 import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
-import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufVarint32LengthFieldPrepender;
 import org.apache.ratis.thirdparty.io.netty.handler.logging.LogLevel;
 import org.apache.ratis.thirdparty.io.netty.handler.logging.LoggingHandler;
 import org.apache.ratis.proto.RaftProtos.*;
@@ -44,18 +45,37 @@ import org.apache.ratis.proto.netty.NettyProtos.RaftNettyExceptionReplyProto;
 import org.apache.ratis.proto.netty.NettyProtos.RaftNettyServerReplyProto;
 import org.apache.ratis.proto.netty.NettyProtos.RaftNettyServerRequestProto;
 import org.apache.ratis.util.CodeInjectionForTesting;
+import org.apache.ratis.util.Daemon;
+import org.apache.ratis.util.IOUtils;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.NettyUtils;
+import org.apache.ratis.util.Preconditions;
 import org.apache.ratis.util.ProtoUtils;
+import org.apache.ratis.util.SlidingWindow;
+import org.apache.ratis.util.function.CheckedSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A netty server endpoint that acts as the communication layer.
  */
 public final class NettyRpcService extends RaftServerRpcWithProxy<NettyRpcProxy, NettyRpcProxy.PeerMap> {
+  public static final Logger LOG = LoggerFactory.getLogger(NettyRpcService.class);
   static final String CLASS_NAME = NettyRpcService.class.getSimpleName();
   public static final String SEND_SERVER_REQUEST = CLASS_NAME + ".sendServerRequest";
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
 
   public static class Builder extends RaftServerRpc.Builder<Builder, NettyRpcService> {
     private Builder() {}
@@ -77,23 +97,243 @@ public final class NettyRpcService extends RaftServerRpcWithProxy<NettyRpcProxy,
 
   private final RaftServer server;
 
-  private final EventLoopGroup bossGroup = new NioEventLoopGroup();
-  private final EventLoopGroup workerGroup = new NioEventLoopGroup();
+  /** The event loop groups shared by the servers in the JVM. */
+  private final NettyUtils.SharedEventLoopGroup bossGroup;
+  private final NettyUtils.SharedEventLoopGroup workerGroup;
   private final ChannelFuture channelFuture;
 
-  @ChannelHandler.Sharable
+  /** For the requests which can only be handled synchronously. */
+  private final ExecutorService executor;
+  /** The handlers of the active connections. */
+  private final Set<InboundHandler> inboundHandlers = ConcurrentHashMap.newKeySet();
+
+  /** An ordered async request with the callId of the netty envelope. */
+  private static class PendingOrderedRequest implements SlidingWindow.ServerSideRequest<RaftNettyServerReplyProto> {
+    private final RaftClientRequestProto request;
+    private final long callId;
+    private final AtomicReference<RaftNettyServerReplyProto> reply = new AtomicReference<>();
+
+    PendingOrderedRequest(RaftClientRequestProto request, long callId) {
+      this.request = request;
+      this.callId = callId;
+    }
+
+    @Override
+    public void fail(Throwable t) {
+      setReply(toRaftNettyServerReplyProto(request.getRpcRequest(), IOUtils.asIOException(t))
+          .setCallId(callId).build());
+    }
+
+    @Override
+    public boolean hasReply() {
+      return getReply() != null || this == COMPLETED;
+    }
+
+    @Override
+    public void setReply(RaftNettyServerReplyProto r) {
+      final boolean set = reply.compareAndSet(null, r);
+      Preconditions.assertTrue(set, () -> "Reply is already set: request=" + this + ", reply=" + reply);
+    }
+
+    RaftNettyServerReplyProto getReply() {
+      return reply.get();
+    }
+
+    RaftClientRequestProto getRequest() {
+      return request;
+    }
+
+    long getCallId() {
+      return callId;
+    }
+
+    @Override
+    public long getSeqNum() {
+      return request != null? request.getRpcRequest().getSlidingWindowEntry().getSeqNum(): Long.MAX_VALUE;
+    }
+
+    @Override
+    public boolean isFirstRequest() {
+      return request != null && request.getRpcRequest().getSlidingWindowEntry().getIsFirst();
+    }
+
+    @Override
+    public String toString() {
+      return request != null? getSeqNum() + ":" + callId: "COMPLETED";
+    }
+  }
+  private static final PendingOrderedRequest COMPLETED = new PendingOrderedRequest(null, -1);
+
+  /**
+   * The ordered async requests from a client on a connection.
+   * Similar to the ordered streams in gRPC,
+   * the requests are submitted to the server and are replied in the order of their seqNums,
+   * regardless of the arrival order.
+   * A new sliding window is started when a client sends a first request.
+   */
+  private class OrderedRequests {
+    private final String name;
+    private final ChannelHandlerContext ctx;
+    private final RaftGroupId groupId;
+    private final SlidingWindow.Server<PendingOrderedRequest, RaftNettyServerReplyProto> slidingWindow;
+    /** The requests with a smaller seqNum are from a previous sliding window. */
+    private final long firstSeqNum;
+    private long lastSubmitted;
+    private boolean closed = false;
+
+    OrderedRequests(ChannelHandlerContext ctx, ClientId clientId, PendingOrderedRequest first) {
+      this.name = getId() + "-" + clientId + "-" + ctx.channel().id().asShortText();
+      this.ctx = ctx;
+      this.groupId = ProtoUtils.toRaftGroupId(first.getRequest().getRpcRequest().getRaftGroupId());
+      this.slidingWindow = new SlidingWindow.Server<>(name, COMPLETED);
+      this.firstSeqNum = first.getSeqNum();
+      this.lastSubmitted = firstSeqNum - 1;
+    }
+
+    RaftGroupId getGroupId() {
+      return groupId;
+    }
+
+    synchronized void receive(PendingOrderedRequest pending) {
+      final long seqNum = pending.getSeqNum();
+      if (closed || seqNum < firstSeqNum) {
+        pending.fail(new AlreadyClosedException(name + " is closed or the request is from a previous window: "
+            + "seq = " + seqNum + ", firstSeqNum = " + firstSeqNum));
+        sendReply(pending);
+      } else if (seqNum <= lastSubmitted) {
+        // a retry of a submitted request; the retry cache of the server returns the same reply
+        submit(pending).thenAccept(ctx::writeAndFlush);
+      } else {
+        slidingWindow.receivedRequest(pending, this::submitInOrder);
+      }
+    }
+
+    private void submitInOrder(PendingOrderedRequest pending) {
+      final long seqNum = pending.getSeqNum();
+      lastSubmitted = seqNum;
+      submit(pending).thenAccept(reply -> slidingWindow.receiveReply(seqNum, reply, this::sendReply));
+    }
+
+    /** Submit the request to the server; the returned future is completed with the reply or the exception. */
+    private CompletableFuture<RaftNettyServerReplyProto> submit(PendingOrderedRequest pending) {
+      final CompletableFuture<RaftClientReply> submitted;
+      try {
+        submitted = server.submitClientRequestAsync(ClientProtoUtils.toRaftClientRequest(pending.getRequest()));
+      } catch (IOException e) {
+        return CompletableFuture.completedFuture(toReply(pending, null, e));
+      }
+      return submitted.handle((reply, e) -> toReply(pending, reply, e));
+    }
+
+    private RaftNettyServerReplyProto toReply(PendingOrderedRequest pending, RaftClientReply reply, Throwable e) {
+      final RaftNettyServerReplyProto.Builder b = e == null? toRaftClientReplyBuilder(reply)
+          : toRaftNettyServerReplyProto(pending.getRequest().getRpcRequest(),
+              IOUtils.asIOException(JavaUtils.unwrapCompletionException(e)));
+      return b.setCallId(pending.getCallId()).build();
+    }
+
+    private void sendReply(PendingOrderedRequest ready) {
+      Preconditions.assertTrue(ready.hasReply());
+      if (ready != COMPLETED) {
+        LOG.debug("{}: sendReply seq={}", name, ready.getSeqNum());
+        ctx.writeAndFlush(ready.getReply());
+      }
+    }
+
+    /** Fail the unprocessed requests; the processing requests are still replied. */
+    synchronized void close() {
+      if (!closed) {
+        closed = true;
+        LOG.debug("{}: close", name);
+        slidingWindow.endOfRequests(this::sendReply);
+      }
+    }
+  }
+
   class InboundHandler extends SimpleChannelInboundHandler<RaftNettyServerRequestProto> {
+    /** The ordered async requests of each client on this connection. */
+    private final Map<ClientId, OrderedRequests> orderedRequests = new ConcurrentHashMap<>();
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+      inboundHandlers.add(this);
+      super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      inboundHandlers.remove(this);
+      closeOrderedRequests(null);
+      super.channelInactive(ctx);
+    }
+
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, RaftNettyServerRequestProto proto) {
-      final RaftNettyServerReplyProto reply = handle(proto);
-      ctx.writeAndFlush(reply);
+      final long callId = proto.getCallId();
+      if (proto.hasRaftClientRequest()
+          && proto.getRaftClientRequest().getRpcRequest().getSlidingWindowEntry().getSeqNum() > 0) {
+        receiveOrdered(ctx, new PendingOrderedRequest(proto.getRaftClientRequest(), callId));
+        return;
+      }
+
+      // the replies of the other requests are written when the requests complete, possibly out of order
+      handleAsync(proto).whenComplete((reply, e) -> {
+        final RaftNettyServerReplyProto.Builder b;
+        if (e == null) {
+          b = reply;
+        } else {
+          final RaftRpcRequestProto request = getRpcRequest(proto);
+          if (request == null) {
+            LOG.error("{}: Failed to handle {}", getId(), proto.getRaftNettyServerRequestCase(), e);
+            return;
+          }
+          b = toRaftNettyServerReplyProto(request, IOUtils.asIOException(JavaUtils.unwrapCompletionException(e)));
+        }
+        ctx.writeAndFlush(b.setCallId(callId).build());
+      });
+    }
+
+    private void receiveOrdered(ChannelHandlerContext ctx, PendingOrderedRequest pending) {
+      final ClientId clientId = ClientId.valueOf(pending.getRequest().getRpcRequest().getRequestorId());
+      final OrderedRequests ordered = !pending.isFirstRequest()? orderedRequests.get(clientId)
+          : orderedRequests.compute(clientId, (id, previous) -> {
+            if (previous != null) {
+              previous.close();
+            }
+            return new OrderedRequests(ctx, clientId, pending);
+          });
+      try {
+        if (ordered == null) {
+          throw new AlreadyClosedException(getId() + ": No sliding window for " + clientId
+              + " on " + ctx.channel() + ", seq = " + pending.getSeqNum());
+        }
+        ordered.receive(pending);
+      } catch (Exception e) {
+        // the client resets its sliding window and retries
+        ctx.writeAndFlush(toRaftNettyServerReplyProto(pending.getRequest().getRpcRequest(), IOUtils.asIOException(e))
+            .setCallId(pending.getCallId()).build());
+      }
+    }
+
+    /** Close the ordered requests of the given group, or all of them if the group is null. */
+    void closeOrderedRequests(RaftGroupId groupId) {
+      for (Map.Entry<ClientId, OrderedRequests> e : orderedRequests.entrySet()) {
+        final OrderedRequests ordered = e.getValue();
+        if (groupId == null || groupId.equals(ordered.getGroupId())) {
+          ordered.close();
+          orderedRequests.remove(e.getKey(), ordered);
+        }
+      }
     }
   }
 
   /** Constructs a netty server with the given port. */
   private NettyRpcService(RaftServer server) {
-    super(server::getId, id -> new NettyRpcProxy.PeerMap(id.toString()));
+    super(server::getId, id -> new NettyRpcProxy.PeerMap(id.toString(),
+        NettyConfigKeys.useEpoll(server.getProperties())));
     this.server = server;
+    this.executor = Executors.newCachedThreadPool(
+        r -> new Daemon(r, CLASS_NAME + "-" + THREAD_COUNT.incrementAndGet()));
 
     final ChannelInitializer<SocketChannel> initializer
         = new ChannelInitializer<SocketChannel>() {
@@ -103,18 +343,25 @@ public final class NettyRpcService extends RaftServerRpcWithProxy<NettyRpcProxy,
 
         p.addLast(new ProtobufVarint32FrameDecoder());
         p.addLast(new ProtobufDecoder(RaftNettyServerRequestProto.getDefaultInstance()));
-        p.addLast(new ProtobufVarint32LengthFieldPrepender());
-        p.addLast(new ProtobufEncoder());
+        p.addLast(new NettyProtobufEncoder());
 
         p.addLast(new InboundHandler());
       }
     };
 
-    final int port = NettyConfigKeys.Server.port(server.getProperties());
+    final RaftProperties properties = server.getProperties();
+    final boolean useEpoll = NettyConfigKeys.useEpoll(properties);
+    bossGroup = NettyUtils.SharedEventLoopGroup.acquire(CLASS_NAME + "-boss",
+        NettyConfigKeys.Server.bossGroupSize(properties), useEpoll);
+    workerGroup = NettyUtils.SharedEventLoopGroup.acquire(CLASS_NAME + "-worker",
+        NettyConfigKeys.Server.workerGroupSize(properties), useEpoll);
+
+    final int port = NettyConfigKeys.Server.port(properties);
     channelFuture = new ServerBootstrap()
-        .group(bossGroup, workerGroup)
-        .channel(NioServerSocketChannel.class)
+        .group(bossGroup.get(), workerGroup.get())
+        .channel(NettyUtils.getServerChannelClass(workerGroup.get()))
         .handler(new LoggingHandler(LogLevel.INFO))
+        .childOption(ChannelOption.ALLOCATOR, NettyUtils.getAllocator())
         .childHandler(initializer)
         .bind(port);
   }
@@ -139,11 +386,20 @@ public final class NettyRpcService extends RaftServerRpcWithProxy<NettyRpcProxy,
 
   @Override
   public void closeImpl() throws IOException {
-    bossGroup.shutdownGracefully();
-    workerGroup.shutdownGracefully();
+    executor.shutdown();
     final ChannelFuture f = getChannel().close();
     super.closeImpl();
     f.syncUninterruptibly();
+    // the shared groups are shut down only when they are released by all the servers
+    bossGroup.release();
+    workerGroup.release();
+  }
+
+  @Override
+  public void notifyNotLeader(RaftGroupId groupId) {
+    LOG.debug("{}: notifyNotLeader {}", getId(), groupId);
+    // the clients resend the unprocessed ordered requests to the new leader
+    inboundHandlers.forEach(h -> h.closeOrderedRequests(groupId));
   }
 
   @Override
@@ -151,78 +407,63 @@ public final class NettyRpcService extends RaftServerRpcWithProxy<NettyRpcProxy,
     return (InetSocketAddress)getChannel().localAddress();
   }
 
-  RaftNettyServerReplyProto handle(RaftNettyServerRequestProto proto) {
+  /**
+   * Handle the request asynchronously so that the event loop is not blocked.
+   * The requests without an asynchronous API are handled by the executor.
+   */
+  CompletableFuture<RaftNettyServerReplyProto.Builder> handleAsync(RaftNettyServerRequestProto proto) {
     RaftRpcRequestProto rpcRequest = null;
     try {
       switch (proto.getRaftNettyServerRequestCase()) {
         case REQUESTVOTEREQUEST: {
           final RequestVoteRequestProto request = proto.getRequestVoteRequest();
           rpcRequest = request.getServerRequest();
-          final RequestVoteReplyProto reply = server.requestVote(request);
-          return RaftNettyServerReplyProto.newBuilder()
-              .setRequestVoteReply(reply)
-              .build();
+          return supplyAsync(() -> RaftNettyServerReplyProto.newBuilder()
+              .setRequestVoteReply(server.requestVote(request)));
         }
         case APPENDENTRIESREQUEST: {
           final AppendEntriesRequestProto request = proto.getAppendEntriesRequest();
           rpcRequest = request.getServerRequest();
-          final AppendEntriesReplyProto reply = server.appendEntries(request);
-          return RaftNettyServerReplyProto.newBuilder()
-              .setAppendEntriesReply(reply)
-              .build();
+          return server.appendEntriesAsync(request).thenApply(reply -> RaftNettyServerReplyProto.newBuilder()
+              .setAppendEntriesReply(reply));
         }
         case INSTALLSNAPSHOTREQUEST: {
           final InstallSnapshotRequestProto request = proto.getInstallSnapshotRequest();
           rpcRequest = request.getServerRequest();
-          final InstallSnapshotReplyProto reply = server.installSnapshot(request);
-          return RaftNettyServerReplyProto.newBuilder()
-              .setInstallSnapshotReply(reply)
-              .build();
+          return supplyAsync(() -> RaftNettyServerReplyProto.newBuilder()
+              .setInstallSnapshotReply(server.installSnapshot(request)));
         }
         case RAFTCLIENTREQUEST: {
           final RaftClientRequestProto request = proto.getRaftClientRequest();
           rpcRequest = request.getRpcRequest();
-          final RaftClientReply reply = server.submitClientRequest(
-              ClientProtoUtils.toRaftClientRequest(request));
-          return RaftNettyServerReplyProto.newBuilder()
-              .setRaftClientReply(ClientProtoUtils.toRaftClientReplyProto(reply))
-              .build();
+          return server.submitClientRequestAsync(ClientProtoUtils.toRaftClientRequest(request))
+              .thenApply(NettyRpcService::toRaftClientReplyBuilder);
         }
         case SETCONFIGURATIONREQUEST: {
           final SetConfigurationRequestProto request = proto.getSetConfigurationRequest();
           rpcRequest = request.getRpcRequest();
-          final RaftClientReply reply = server.setConfiguration(
-              ClientProtoUtils.toSetConfigurationRequest(request));
-          return RaftNettyServerReplyProto.newBuilder()
-              .setRaftClientReply(ClientProtoUtils.toRaftClientReplyProto(reply))
-              .build();
+          return server.setConfigurationAsync(ClientProtoUtils.toSetConfigurationRequest(request))
+              .thenApply(NettyRpcService::toRaftClientReplyBuilder);
         }
         case GROUPMANAGEMENTREQUEST: {
           final GroupManagementRequestProto request = proto.getGroupManagementRequest();
           rpcRequest = request.getRpcRequest();
-          final RaftClientReply reply = server.groupManagement(
-              ClientProtoUtils.toGroupManagementRequest(request));
-          return RaftNettyServerReplyProto.newBuilder()
-              .setRaftClientReply(ClientProtoUtils.toRaftClientReplyProto(reply))
-              .build();
+          return server.groupManagementAsync(ClientProtoUtils.toGroupManagementRequest(request))
+              .thenApply(NettyRpcService::toRaftClientReplyBuilder);
         }
         case GROUPLISTREQUEST: {
           final GroupListRequestProto request = proto.getGroupListRequest();
           rpcRequest = request.getRpcRequest();
-          final GroupListReply reply = server.getGroupList(
-              ClientProtoUtils.toGroupListRequest(request));
-          return RaftNettyServerReplyProto.newBuilder()
-              .setGroupListReply(ClientProtoUtils.toGroupListReplyProto(reply))
-              .build();
+          return server.getGroupListAsync(ClientProtoUtils.toGroupListRequest(request))
+              .thenApply(reply -> RaftNettyServerReplyProto.newBuilder()
+                  .setGroupListReply(ClientProtoUtils.toGroupListReplyProto(reply)));
         }
         case GROUPINFOREQUEST: {
           final GroupInfoRequestProto request = proto.getGroupInfoRequest();
           rpcRequest = request.getRpcRequest();
-          final GroupInfoReply reply = server.getGroupInfo(
-              ClientProtoUtils.toGroupInfoRequest(request));
-          return RaftNettyServerReplyProto.newBuilder()
-              .setGroupInfoReply(ClientProtoUtils.toGroupInfoReplyProto(reply))
-              .build();
+          return server.getGroupInfoAsync(ClientProtoUtils.toGroupInfoRequest(request))
+              .thenApply(reply -> RaftNettyServerReplyProto.newBuilder()
+                  .setGroupInfoReply(ClientProtoUtils.toGroupInfoReplyProto(reply)));
         }
         case RAFTNETTYSERVERREQUEST_NOT_SET:
           throw new IllegalArgumentException("Request case not set in proto: "
@@ -232,12 +473,44 @@ public final class NettyRpcService extends RaftServerRpcWithProxy<NettyRpcProxy,
               + proto.getRaftNettyServerRequestCase());
       }
     } catch (IOException ioe) {
-      return toRaftNettyServerReplyProto(
-          Objects.requireNonNull(rpcRequest, "rpcRequest = null"), ioe);
+      return CompletableFuture.completedFuture(toRaftNettyServerReplyProto(
+          Objects.requireNonNull(rpcRequest, "rpcRequest = null"), ioe));
+    }
+  }
+
+  private CompletableFuture<RaftNettyServerReplyProto.Builder> supplyAsync(
+      CheckedSupplier<RaftNettyServerReplyProto.Builder, IOException> supplier) {
+    return CompletableFuture.supplyAsync(() -> JavaUtils.supplyAndWrapAsCompletionException(supplier), executor);
+  }
+
+  private static RaftNettyServerReplyProto.Builder toRaftClientReplyBuilder(RaftClientReply reply) {
+    return RaftNettyServerReplyProto.newBuilder().setRaftClientReply(ClientProtoUtils.toRaftClientReplyProto(reply));
+  }
+
+  private static RaftRpcRequestProto getRpcRequest(RaftNettyServerRequestProto proto) {
+    switch (proto.getRaftNettyServerRequestCase()) {
+      case REQUESTVOTEREQUEST:
+        return proto.getRequestVoteRequest().getServerRequest();
+      case APPENDENTRIESREQUEST:
+        return proto.getAppendEntriesRequest().getServerRequest();
+      case INSTALLSNAPSHOTREQUEST:
+        return proto.getInstallSnapshotRequest().getServerRequest();
+      case RAFTCLIENTREQUEST:
+        return proto.getRaftClientRequest().getRpcRequest();
+      case SETCONFIGURATIONREQUEST:
+        return proto.getSetConfigurationRequest().getRpcRequest();
+      case GROUPMANAGEMENTREQUEST:
+        return proto.getGroupManagementRequest().getRpcRequest();
+      case GROUPLISTREQUEST:
+        return proto.getGroupListRequest().getRpcRequest();
+      case GROUPINFOREQUEST:
+        return proto.getGroupInfoRequest().getRpcRequest();
+      default:
+        return null;
     }
   }
 
-  private static RaftNettyServerReplyProto toRaftNettyServerReplyProto(
+  private static RaftNettyServerReplyProto.Builder toRaftNettyServerReplyProto(
       RaftRpcRequestProto request, IOException e) {
     final RaftRpcReplyProto.Builder rpcReply = RaftRpcReplyProto.newBuilder()
         .setRequestorId(request.getRequestorId())
@@ -247,7 +520,7 @@ public final class NettyRpcService extends RaftServerRpcWithProxy<NettyRpcProxy,
     final RaftNettyExceptionReplyProto.Builder ioe = RaftNettyExceptionReplyProto.newBuilder()
         .setRpcReply(rpcReply)
         .setException(ProtoUtils.writeObject2ByteString(e));
-    return RaftNettyServerReplyProto.newBuilder().setExceptionReply(ioe).build();
+    return RaftNettyServerReplyProto.newBuilder().setExceptionReply(ioe);
   }
 
   @Override
@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.rmap;
+
+import org.apache.ratis.proto.rmap.RMapProtos.Entry;
+import org.apache.ratis.proto.rmap.RMapProtos.RMapInfo;
+import org.apache.ratis.proto.rmap.RMapProtos.Scan;
+import org.apache.ratis.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+/**
+ * The in-memory data of a replicated map, sorted by the unsigned lexicographical order of the keys.
+ * <p>
+ * The writes are applied by a single thread, the state machine updater,
+ * while the reads and the snapshot writer may run concurrently.
+ * In order to write a snapshot without blocking the writes,
+ * a value keeps the previous version while a snapshot is in progress;
+ * see {@link #put(ByteString, ByteString, long, long)} and {@link #forEach(long, Consumer)}.
+ */
+final class RMap {
+  static final Comparator<ByteString> KEY_COMPARATOR = ByteString.unsignedLexicographicalComparator();
+
+  /** A value with the log index which wrote it. */
+  static final class Versioned {
+    private final ByteString value;
+    private final long index;
+    /** The latest version at or before the snapshot index, if a snapshot is in progress. */
+    private final Versioned previous;
+
+    Versioned(ByteString value, long index, Versioned previous) {
+      this.value = value;
+      this.index = index;
+      this.previous = previous;
+    }
+
+    ByteString getValue() {
+      return value;
+    }
+
+    /** @return the latest version at or before the given index, or null if there is no such version. */
+    Versioned asOf(long snapshotIndex) {
+      Versioned v = this;
+      while (v != null && v.index > snapshotIndex) {
+        v = v.previous;
+      }
+      return v;
+    }
+  }
+
+  private final RMapInfo info;
+  private final ConcurrentSkipListMap<ByteString, Versioned> data = new ConcurrentSkipListMap<>(KEY_COMPARATOR);
+
+  RMap(RMapInfo info) {
+    this.info = info;
+  }
+
+  RMapInfo getInfo() {
+    return info;
+  }
+
+  long getId() {
+    return info.getRmapId();
+  }
+
+  int size() {
+    return data.size();
+  }
+
+  ByteString get(ByteString key) {
+    final Versioned v = data.get(key);
+    return v == null? null: v.getValue();
+  }
+
+  @VisibleForTesting
+  int getNumVersions(ByteString key) {
+    int n = 0;
+    for (Versioned v = data.get(key); v != null; v = v.previous) {
+      n++;
+    }
+    return n;
+  }
+
+  /**
+   * Put the given key-value, which is written by the log entry at the given index.
+   * @param snapshotIndex the index of the snapshot in progress, or a negative number if there is none.
+   */
+  void put(ByteString key, ByteString value, long index, long snapshotIndex) {
+    final Versioned previous;
+    if (snapshotIndex < 0) {
+      previous = null;
+    } else {
+      // keep only the version to be written to the snapshot, without its own previous versions,
+      // so that a key overwritten during back-to-back snapshots does not accumulate versions.
+      final Versioned current = data.get(key);
+      final Versioned v = current == null? null: current.asOf(snapshotIndex);
+      previous = v == null? null: v.previous == null? v: new Versioned(v.value, v.index, null);
+    }
+    data.put(key, new Versioned(value, index, previous));
+  }
+
+  /**
+   * Apply the action to each entry as of the given snapshot index, in the key order.
+   * The entries written after the snapshot index are skipped
+   * and the overwritten entries are given as the versions at the snapshot index.
+   */
+  void forEach(long snapshotIndex, Consumer<Entry> action) {
+    for (Map.Entry<ByteString, Versioned> e : data.entrySet()) {
+      final Versioned v = e.getValue().asOf(snapshotIndex);
+      if (v != null) {
+        action.accept(Entry.newBuilder().setKey(e.getKey()).setValue(v.getValue()).build());
+      }
+    }
+  }
+
+  /**
+   * Scan the entries in the range of the given {@link Scan}.
+   * @param maxEntries the maximum number of entries to scan.
+   * @param action the action for each entry.
+   * @return true if there are more entries in the range.
+   */
+  boolean scan(Scan scan, int maxEntries, Consumer<Entry> action) {
+    final NavigableMap<ByteString, Versioned> range = subMap(scan);
+    int n = 0;
+    for (Map.Entry<ByteString, Versioned> e : range.entrySet()) {
+      if (n == maxEntries) {
+        return true;
+      }
+      final Entry.Builder b = Entry.newBuilder().setKey(e.getKey());
+      if (!scan.getKeysOnly()) {
+        b.setValue(e.getValue().getValue());
+      }
+      action.accept(b.build());
+      n++;
+    }
+    return false;
+  }
+
+  /** An empty start key or end key means unbounded. */
+  private NavigableMap<ByteString, Versioned> subMap(Scan scan) {
+    final ByteString start = scan.getStartKey();
+    final ByteString end = scan.getEndKey();
+    if (start.isEmpty() && end.isEmpty()) {
+      return data;
+    } else if (start.isEmpty()) {
+      return data.headMap(end, scan.getEndKeyInclusive());
+    } else if (end.isEmpty()) {
+      return data.tailMap(start, scan.getStartKeyInclusive());
+    } else if (KEY_COMPARATOR.compare(start, end) > 0) {
+      return new ConcurrentSkipListMap<>(KEY_COMPARATOR);
+    }
+    return data.subMap(start, scan.getStartKeyInclusive(), end, scan.getEndKeyInclusive());
+  }
+
+  @Override
+  public String toString() {
+    return info.getName() + ":" + info.getRmapId();
+  }
+}
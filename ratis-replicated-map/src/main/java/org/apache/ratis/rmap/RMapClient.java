@@ -0,0 +1,234 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.rmap;
+
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.proto.rmap.RMapProtos.Action;
+import org.apache.ratis.proto.rmap.RMapProtos.ActionResponse;
+import org.apache.ratis.proto.rmap.RMapProtos.CreateRMapRequest;
+import org.apache.ratis.proto.rmap.RMapProtos.DeleteRMapRequest;
+import org.apache.ratis.proto.rmap.RMapProtos.Entry;
+import org.apache.ratis.proto.rmap.RMapProtos.GetRequest;
+import org.apache.ratis.proto.rmap.RMapProtos.GetResponse;
+import org.apache.ratis.proto.rmap.RMapProtos.ListRMapInfosRequest;
+import org.apache.ratis.proto.rmap.RMapProtos.MultiActionRequest;
+import org.apache.ratis.proto.rmap.RMapProtos.PutRequest;
+import org.apache.ratis.proto.rmap.RMapProtos.RMapInfo;
+import org.apache.ratis.proto.rmap.RMapProtos.Request;
+import org.apache.ratis.proto.rmap.RMapProtos.Response;
+import org.apache.ratis.proto.rmap.RMapProtos.Scan;
+import org.apache.ratis.proto.rmap.RMapProtos.ScanRequest;
+import org.apache.ratis.proto.rmap.RMapProtos.ScanResponse;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.protocol.StateMachineException;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.Preconditions;
+import org.apache.ratis.util.function.CheckedFunction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A client of {@link RMapStateMachine}.
+ * <p>
+ * The gets and the scans are linearizable, except for {@link #staleScan},
+ * which reads from the given server without going through the leader.
+ * A scan is streamed in pages: each page is a separate read,
+ * so that the pages together are not necessarily a consistent view of the map.
+ */
+public class RMapClient implements Closeable {
+  public static final int DEFAULT_PAGE_SIZE = 1000;
+
+  private final RaftClient client;
+
+  public RMapClient(RaftClient client) {
+    this.client = client;
+  }
+
+  @Override
+  public void close() throws IOException {
+    client.close();
+  }
+
+  private static Response send(Request request, CheckedFunction<Message, RaftClientReply, IOException> sendFunction)
+      throws IOException {
+    final RaftClientReply reply = sendFunction.apply(Message.valueOf(request.toByteString()));
+    final StateMachineException sme = reply.getStateMachineException();
+    if (sme != null) {
+      throw new IOException("Failed to send request " + request.getRequestTypeCase(), sme);
+    }
+    Preconditions.assertTrue(reply.isSuccess(), () -> "Failed " + request.getRequestTypeCase() + ", reply=" + reply);
+    final Response response = Response.parseFrom(reply.getMessage().getContent());
+    if (response.hasException()) {
+      throw new IOException(response.getException().getExceptionClassName() + " from the server: "
+          + response.getException().getStackTrace());
+    }
+    return response;
+  }
+
+  private Response send(Request request) throws IOException {
+    return send(request, client::send);
+  }
+
+  private Response sendReadOnly(Request request) throws IOException {
+    return send(request, client::sendReadOnly);
+  }
+
+  public RMapInfo createRMap(String name) throws IOException {
+    final CreateRMapRequest create = CreateRMapRequest.newBuilder()
+        .setRmapInfo(RMapInfo.newBuilder().setName(name))
+        .build();
+    return send(Request.newBuilder().setCreateRmapRequest(create).build())
+        .getCreateRmapResponse().getRmapInfo();
+  }
+
+  public void deleteRMap(long rmapId) throws IOException {
+    send(Request.newBuilder().setDeleteRmapRequest(DeleteRMapRequest.newBuilder().setRmapId(rmapId)).build());
+  }
+
+  /** @return the infos of the maps with names matching the given regular expression. */
+  public List<RMapInfo> listRMapInfos(String namePattern) throws IOException {
+    final ListRMapInfosRequest list = ListRMapInfosRequest.newBuilder().setNamePattern(namePattern).build();
+    return sendReadOnly(Request.newBuilder().setListRmapInfosRequest(list).build())
+        .getListRmapInfosResponse().getRmapInfoList();
+  }
+
+  public void put(long rmapId, ByteString key, ByteString value) throws IOException {
+    putAll(rmapId, Collections.singletonList(Entry.newBuilder().setKey(key).setValue(value).build()));
+  }
+
+  /** Put all the entries in a single log entry. */
+  public void putAll(long rmapId, List<Entry> entries) throws IOException {
+    final MultiActionRequest.Builder multi = MultiActionRequest.newBuilder().setRmapId(rmapId);
+    for (Entry e : entries) {
+      multi.addAction(Action.newBuilder().setPutRequest(
+          PutRequest.newBuilder().setKey(e.getKey()).setValue(e.getValue())));
+    }
+    send(Request.newBuilder().setMultiActionRequest(multi).build());
+  }
+
+  /** @return the value of the given key, or null if the key is not found. */
+  public ByteString get(long rmapId, ByteString key) throws IOException {
+    final MultiActionRequest multi = MultiActionRequest.newBuilder().setRmapId(rmapId)
+        .addAction(Action.newBuilder().setGetRequest(GetRequest.newBuilder().setKey(key)))
+        .build();
+    final List<ActionResponse> responses = sendReadOnly(Request.newBuilder().setMultiActionRequest(multi).build())
+        .getMultiActionResponse().getActionResponseList();
+    Preconditions.assertTrue(responses.size() == 1, () -> "Unexpected responses " + responses);
+    final GetResponse get = responses.get(0).getGetResponse();
+    return get.getFound()? get.getValue(): null;
+  }
+
+  /**
+   * Scan the entries in the range of the given {@link Scan} using linearizable reads.
+   * @param pageSize the number of entries to read in each page.
+   * @return an iterator of the entries, which throws {@link UncheckedIOException} if it fails to read a page.
+   */
+  public Iterator<Entry> scan(long rmapId, Scan scan, int pageSize) {
+    return new PagedScanner(rmapId, scan, pageSize, this::sendReadOnly);
+  }
+
+  /**
+   * The same as {@link #scan(long, Scan, int)}
+   * except that the pages are read from the given server, which may be a follower, using stale reads.
+   * @param minIndex the minimum log index the server must have applied.
+   */
+  public Iterator<Entry> staleScan(long rmapId, Scan scan, int pageSize, RaftPeerId server, long minIndex) {
+    return new PagedScanner(rmapId, scan, pageSize,
+        request -> send(request, message -> client.sendStaleRead(message, minIndex, server)));
+  }
+
+  /** Read a scan page by page. */
+  private static final class PagedScanner implements Iterator<Entry> {
+    private final long rmapId;
+    private final int pageSize;
+    private final CheckedFunction<Request, Response, IOException> readFunction;
+
+    private Scan next;
+    /** The number of remaining entries if the scan has a limit. */
+    private int remaining;
+    private List<Entry> page = Collections.emptyList();
+    private int i = 0;
+
+    private PagedScanner(long rmapId, Scan scan, int pageSize,
+        CheckedFunction<Request, Response, IOException> readFunction) {
+      Preconditions.assertTrue(pageSize > 0, () -> "pageSize = " + pageSize + " <= 0");
+      this.rmapId = rmapId;
+      this.pageSize = pageSize;
+      this.readFunction = readFunction;
+      this.next = scan;
+      this.remaining = scan.getLimit();
+    }
+
+    private void readNextPage() {
+      final boolean limited = next.getLimit() > 0;
+      final int limit = limited? Math.min(pageSize, remaining): pageSize;
+      final ScanRequest request = ScanRequest.newBuilder()
+          .setRmapId(rmapId)
+          .setScan(next.toBuilder().setLimit(limit))
+          .build();
+      final ScanResponse response;
+      try {
+        response = readFunction.apply(Request.newBuilder().setScanRequest(request).build()).getScanResponse();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to scan rmap " + rmapId + " from " + next, e);
+      }
+
+      page = response.getEntryList();
+      i = 0;
+      if (limited) {
+        remaining -= page.size();
+      }
+      if (!response.getHasMore() || page.isEmpty() || (limited && remaining <= 0)) {
+        next = null;
+      } else {
+        // continue after the last key
+        next = next.toBuilder()
+            .setStartKey(page.get(page.size() - 1).getKey())
+            .setStartKeyInclusive(false)
+            .build();
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (i == page.size()) {
+        if (next == null) {
+          return false;
+        }
+        readNextPage();
+      }
+      return true;
+    }
+
+    @Override
+    public Entry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return page.get(i++);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.rmap;
+
+import org.apache.ratis.proto.rmap.RMapProtos.CreateRMapWALEntry;
+import org.apache.ratis.proto.rmap.RMapProtos.Entry;
+import org.apache.ratis.proto.rmap.RMapProtos.WALEntry;
+import org.apache.ratis.util.AtomicFileOutputStream;
+import org.apache.ratis.util.function.CheckedConsumer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The snapshot file of {@link RMapStateMachine}, which is a sequence of length-delimited {@link WALEntry}s.
+ * For each map, there is a {@link CreateRMapWALEntry} followed by the entries of the map in batches.
+ * The entries are streamed to the file in batches so that the snapshot is never materialized in memory.
+ */
+final class RMapSnapshot {
+  static final int BATCH_SIZE = 1024;
+
+  private RMapSnapshot() {
+  }
+
+  /** Write the given maps as of the given index to the file atomically. */
+  static void write(File file, Collection<RMap> maps, long snapshotIndex) throws IOException {
+    final AtomicFileOutputStream atomic = new AtomicFileOutputStream(file);
+    boolean success = false;
+    try {
+      final OutputStream out = new BufferedOutputStream(atomic);
+      for (RMap map : maps) {
+        write(out, map, snapshotIndex);
+      }
+      out.flush();
+      success = true;
+    } finally {
+      if (success) {
+        atomic.close();
+      } else {
+        atomic.abort();
+      }
+    }
+  }
+
+  private static void write(OutputStream out, RMap map, long snapshotIndex) throws IOException {
+    WALEntry.newBuilder()
+        .setRmapId(map.getId())
+        .setCreateRmapEntry(CreateRMapWALEntry.newBuilder().setRmapInfo(map.getInfo()))
+        .build().writeDelimitedTo(out);
+
+    final List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+    final Consumer<List<Entry>> flush = b -> {
+      try {
+        WALEntry.newBuilder().setRmapId(map.getId()).addAllEntry(b).build().writeDelimitedTo(out);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      b.clear();
+    };
+    try {
+      map.forEach(snapshotIndex, e -> {
+        batch.add(e);
+        if (batch.size() == BATCH_SIZE) {
+          flush.accept(batch);
+        }
+      });
+      if (!batch.isEmpty()) {
+        flush.accept(batch);
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** Read the maps from the given file and pass each map to the consumer. */
+  static void read(File file, long snapshotIndex, CheckedConsumer<RMap, IOException> consumer) throws IOException {
+    try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+      RMap map = null;
+      for (WALEntry e = WALEntry.parseDelimitedFrom(in); e != null; e = WALEntry.parseDelimitedFrom(in)) {
+        if (e.hasCreateRmapEntry()) {
+          if (map != null) {
+            consumer.accept(map);
+          }
+          map = new RMap(e.getCreateRmapEntry().getRmapInfo());
+        } else if (map == null || map.getId() != e.getRmapId()) {
+          throw new IOException("Unexpected entries for rmap " + e.getRmapId() + " after " + map
+              + " in snapshot file " + file);
+        } else {
+          for (Entry entry : e.getEntryList()) {
+            map.put(entry.getKey(), entry.getValue(), snapshotIndex, -1);
+          }
+        }
+      }
+      if (map != null) {
+        consumer.accept(map);
+      }
+    }
+  }
+}
@@ -0,0 +1,331 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.rmap;
+
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.proto.rmap.RMapProtos.Action;
+import org.apache.ratis.proto.rmap.RMapProtos.ActionResponse;
+import org.apache.ratis.proto.rmap.RMapProtos.CreateRMapResponse;
+import org.apache.ratis.proto.rmap.RMapProtos.DeleteRMapResponse;
+import org.apache.ratis.proto.rmap.RMapProtos.ExceptionResponse;
+import org.apache.ratis.proto.rmap.RMapProtos.GetRequest;
+import org.apache.ratis.proto.rmap.RMapProtos.GetResponse;
+import org.apache.ratis.proto.rmap.RMapProtos.ListRMapInfosRequest;
+import org.apache.ratis.proto.rmap.RMapProtos.ListRMapInfosResponse;
+import org.apache.ratis.proto.rmap.RMapProtos.MultiActionRequest;
+import org.apache.ratis.proto.rmap.RMapProtos.MultiActionResponse;
+import org.apache.ratis.proto.rmap.RMapProtos.PutRequest;
+import org.apache.ratis.proto.rmap.RMapProtos.PutResponse;
+import org.apache.ratis.proto.rmap.RMapProtos.RMapInfo;
+import org.apache.ratis.proto.rmap.RMapProtos.Request;
+import org.apache.ratis.proto.rmap.RMapProtos.Response;
+import org.apache.ratis.proto.rmap.RMapProtos.Scan;
+import org.apache.ratis.proto.rmap.RMapProtos.ScanRequest;
+import org.apache.ratis.proto.rmap.RMapProtos.ScanResponse;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.server.RaftServer;
+import org.apache.ratis.server.impl.RaftServerConstants;
+import org.apache.ratis.server.protocol.TermIndex;
+import org.apache.ratis.server.storage.RaftStorage;
+import org.apache.ratis.statemachine.StateMachineStorage;
+import org.apache.ratis.statemachine.TransactionContext;
+import org.apache.ratis.statemachine.impl.BaseStateMachine;
+import org.apache.ratis.statemachine.impl.SimpleStateMachineStorage;
+import org.apache.ratis.statemachine.impl.SingleFileSnapshotInfo;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.Daemon;
+import org.apache.ratis.util.MD5FileUtil;
+import org.apache.ratis.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link org.apache.ratis.statemachine.StateMachine} hosting replicated sorted maps.
+ * <p>
+ * The writes, i.e. {@link MultiActionRequest}s with puts and the creation and the deletion of the maps,
+ * are applied as transactions; all the actions in a {@link MultiActionRequest} are applied in the same log entry.
+ * The reads, i.e. gets, scans and listing the maps, are served by {@link #query(Message)},
+ * which is linearizable when it is sent as a read-only request to the leader,
+ * or possibly stale when it is sent as a stale read to any server.
+ * A map is identified by the log index of its creation.
+ * <p>
+ * The snapshots are written by a background thread, without blocking the writes,
+ * from the view of the maps at the snapshot index; see {@link RMap}.
+ * Therefore, {@link #takeSnapshot()} starts a new snapshot and returns the index of the latest completed snapshot.
+ */
+public class RMapStateMachine extends BaseStateMachine {
+  /** The maximum number of entries in a {@link ScanResponse}. */
+  public static final int SCAN_PAGE_SIZE_MAX = 10_000;
+
+  private final SimpleStateMachineStorage storage = new SimpleStateMachineStorage();
+  private final Map<Long, RMap> maps = new ConcurrentHashMap<>();
+
+  private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(
+      r -> new Daemon(r, RMapStateMachine.class.getSimpleName() + "-snapshot"));
+  /** The index of the snapshot in progress, or -1 if there is none. */
+  private volatile long snapshotInProgress = -1;
+  /** The index of the latest completed snapshot. */
+  private volatile long completedSnapshotIndex = RaftServerConstants.INVALID_LOG_INDEX;
+  /** The index of the latest snapshot returned by {@link #takeSnapshot()}. */
+  private long reportedSnapshotIndex = RaftServerConstants.INVALID_LOG_INDEX;
+
+  @Override
+  public void initialize(RaftServer server, RaftGroupId groupId, RaftStorage raftStorage) throws IOException {
+    super.initialize(server, groupId, raftStorage);
+    storage.init(raftStorage);
+    loadSnapshot(storage.getLatestSnapshot());
+  }
+
+  @Override
+  public void reinitialize() throws IOException {
+    storage.loadLatestSnapshot();
+    loadSnapshot(storage.getLatestSnapshot());
+  }
+
+  private void loadSnapshot(SingleFileSnapshotInfo snapshot) throws IOException {
+    if (snapshot == null) {
+      LOG.info("{}: There is no snapshot to load", getId());
+      return;
+    }
+    final File snapshotFile = snapshot.getFile().getPath().toFile();
+    final TermIndex last = SimpleStateMachineStorage.getTermIndexFromSnapshotFile(snapshotFile);
+    maps.clear();
+    RMapSnapshot.read(snapshotFile, last.getIndex(), map -> maps.put(map.getId(), map));
+    setLastAppliedTermIndex(last);
+    completedSnapshotIndex = last.getIndex();
+    reportedSnapshotIndex = last.getIndex();
+    LOG.info("{}: Loaded {} maps from snapshot {}", getId(), maps.size(), snapshotFile);
+  }
+
+  @Override
+  public StateMachineStorage getStateMachineStorage() {
+    return storage;
+  }
+
+  @Override
+  public long takeSnapshot() {
+    final long completed = completedSnapshotIndex;
+    if (snapshotInProgress >= 0 || completed > reportedSnapshotIndex) {
+      // report the completed snapshot before starting a new one
+      reportedSnapshotIndex = completed;
+      return completed;
+    }
+
+    final TermIndex last = getLastAppliedTermIndex();
+    if (last.getIndex() > completed) {
+      // all the entries up to the last applied index are applied; see StateMachineUpdater
+      snapshotInProgress = last.getIndex();
+      final List<RMap> snapshotMaps = new ArrayList<>(maps.values());
+      snapshotExecutor.submit(() -> writeSnapshot(last, snapshotMaps));
+    }
+    return completed;
+  }
+
+  private void writeSnapshot(TermIndex last, List<RMap> snapshotMaps) {
+    final File snapshotFile = storage.getSnapshotFile(last.getTerm(), last.getIndex());
+    LOG.info("{}: Taking a snapshot of {} maps to file {}", getId(), snapshotMaps.size(), snapshotFile);
+    try {
+      RMapSnapshot.write(snapshotFile, snapshotMaps, last.getIndex());
+      MD5FileUtil.saveMD5File(snapshotFile, MD5FileUtil.computeMd5ForFile(snapshotFile));
+      storage.loadLatestSnapshot();
+      completedSnapshotIndex = last.getIndex();
+    } catch (Throwable t) {
+      LOG.warn(getId() + ": Failed to write snapshot file " + snapshotFile, t);
+    } finally {
+      snapshotInProgress = -1;
+    }
+  }
+
+  @Override
+  public void close() {
+    snapshotExecutor.shutdown();
+    maps.clear();
+  }
+
+  @Override
+  public CompletableFuture<Message> applyTransaction(TransactionContext trx) {
+    final LogEntryProto entry = trx.getLogEntry();
+    final long index = entry.getIndex();
+    Response response;
+    try {
+      response = apply(Request.parseFrom(entry.getStateMachineLogEntry().getLogData()), index);
+    } catch (Exception e) {
+      response = toResponse(e);
+    }
+    updateLastAppliedTermIndex(entry.getTerm(), index);
+    return CompletableFuture.completedFuture(Message.valueOf(response.toByteString()));
+  }
+
+  @Override
+  public CompletableFuture<Message> query(Message message) {
+    Response response;
+    try {
+      response = read(Request.parseFrom(message.getContent()));
+    } catch (Exception e) {
+      response = toResponse(e);
+    }
+    return CompletableFuture.completedFuture(Message.valueOf(response.toByteString()));
+  }
+
+  private Response apply(Request request, long index) throws IOException {
+    switch (request.getRequestTypeCase()) {
+      case MULTI_ACTION_REQUEST:
+        return Response.newBuilder().setMultiActionResponse(
+            multiAction(request.getMultiActionRequest(), index)).build();
+      case CREATE_RMAP_REQUEST:
+        return Response.newBuilder().setCreateRmapResponse(CreateRMapResponse.newBuilder().setRmapInfo(
+            createRMap(request.getCreateRmapRequest().getRmapInfo(), index))).build();
+      case DELETE_RMAP_REQUEST:
+        deleteRMap(request.getDeleteRmapRequest().getRmapId());
+        return Response.newBuilder().setDeleteRmapResponse(DeleteRMapResponse.getDefaultInstance()).build();
+      default:
+        return read(request);
+    }
+  }
+
+  private Response read(Request request) throws IOException {
+    switch (request.getRequestTypeCase()) {
+      case MULTI_ACTION_REQUEST:
+        return Response.newBuilder().setMultiActionResponse(
+            multiAction(request.getMultiActionRequest(), -1)).build();
+      case SCAN_REQUEST:
+        return Response.newBuilder().setScanResponse(scan(request.getScanRequest())).build();
+      case LIST_RMAP_INFOS_REQUEST:
+        return Response.newBuilder().setListRmapInfosResponse(
+            listRMapInfos(request.getListRmapInfosRequest())).build();
+      default:
+        throw new IOException("Unexpected request " + request.getRequestTypeCase());
+    }
+  }
+
+  private RMap getRMap(long rmapId) throws IOException {
+    final RMap map = maps.get(rmapId);
+    if (map == null) {
+      throw new IOException("RMap " + rmapId + " not found");
+    }
+    return map;
+  }
+
+  /**
+   * Apply the actions in order.
+   * @param index the log index of the actions, or -1 if the actions are read-only.
+   */
+  private MultiActionResponse multiAction(MultiActionRequest request, long index) throws IOException {
+    final RMap map = getRMap(request.getRmapId());
+    final long snapshotIndex = snapshotInProgress;
+    final MultiActionResponse.Builder b = MultiActionResponse.newBuilder();
+    for (Action action : request.getActionList()) {
+      switch (action.getActionTypeCase()) {
+        case GET_REQUEST:
+          b.addActionResponse(ActionResponse.newBuilder().setGetResponse(get(map, action.getGetRequest())));
+          break;
+        case PUT_REQUEST:
+          if (index < 0) {
+            throw new IOException("Unexpected put in a read-only request for " + map);
+          }
+          final PutRequest put = action.getPutRequest();
+          map.put(put.getKey(), put.getValue(), index, snapshotIndex);
+          b.addActionResponse(ActionResponse.newBuilder().setPutResponse(PutResponse.getDefaultInstance()));
+          break;
+        default:
+          throw new IOException("Unexpected action " + action.getActionTypeCase() + " for " + map);
+      }
+    }
+    return b.build();
+  }
+
+  private static GetResponse get(RMap map, GetRequest get) {
+    final GetResponse.Builder b = GetResponse.newBuilder().setKey(get.getKey());
+    final ByteString value = map.get(get.getKey());
+    if (value != null) {
+      b.setFound(true).setValue(value);
+    }
+    return b.build();
+  }
+
+  private ScanResponse scan(ScanRequest request) throws IOException {
+    final RMap map = getRMap(request.getRmapId());
+    final Scan scan = request.getScan();
+    final int limit = scan.getLimit() > 0? Math.min(scan.getLimit(), SCAN_PAGE_SIZE_MAX): SCAN_PAGE_SIZE_MAX;
+    final ScanResponse.Builder b = ScanResponse.newBuilder();
+    final boolean hasMore = map.scan(scan, limit, b::addEntry);
+    return b.setHasMore(hasMore).build();
+  }
+
+  private RMapInfo createRMap(RMapInfo info, long index) throws IOException {
+    if (info.getName().isEmpty()) {
+      throw new IOException("The name of a RMap must not be empty: " + info);
+    }
+    for (RMap map : maps.values()) {
+      if (map.getInfo().getName().equals(info.getName())) {
+        throw new IOException("RMap " + info.getName() + " already exists: " + map);
+      }
+    }
+    final RMapInfo created = info.toBuilder().setRmapId(index).build();
+    maps.put(index, new RMap(created));
+    LOG.info("{}: Created RMap {}", getId(), created.getName());
+    return created;
+  }
+
+  private void deleteRMap(long rmapId) throws IOException {
+    final RMap removed = maps.remove(rmapId);
+    if (removed == null) {
+      throw new IOException("RMap " + rmapId + " not found");
+    }
+    LOG.info("{}: Deleted RMap {}", getId(), removed);
+  }
+
+  private ListRMapInfosResponse listRMapInfos(ListRMapInfosRequest request) {
+    final ListRMapInfosResponse.Builder b = ListRMapInfosResponse.newBuilder();
+    switch (request.getListRMapInfosTypeCase()) {
+      case RMAP_ID:
+        final RMap map = maps.get(request.getRmapId());
+        if (map != null) {
+          b.addRmapInfo(map.getInfo());
+        }
+        break;
+      case NAME_PATTERN:
+        final Pattern pattern = Pattern.compile(request.getNamePattern());
+        maps.values().stream().map(RMap::getInfo)
+            .filter(info -> pattern.matcher(info.getName()).matches())
+            .forEach(b::addRmapInfo);
+        break;
+      default:
+        maps.values().stream().map(RMap::getInfo).forEach(b::addRmapInfo);
+    }
+    return b.build();
+  }
+
+  private static Response toResponse(Exception e) {
+    return Response.newBuilder().setException(ExceptionResponse.newBuilder()
+        .setExceptionClassName(e.getClass().getName())
+        .setStackTrace(StringUtils.stringifyException(e))
+        .setDoNotRetry(true))
+        .build();
+  }
+}
@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.rmap;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.proto.rmap.RMapProtos.Entry;
+import org.apache.ratis.proto.rmap.RMapProtos.RMapInfo;
+import org.apache.ratis.proto.rmap.RMapProtos.Scan;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestRMap extends BaseTest {
+  static ByteString key(int i) {
+    return ByteString.copyFromUtf8(String.format("k%04d", i));
+  }
+
+  static ByteString value(int i) {
+    return ByteString.copyFromUtf8("v" + i);
+  }
+
+  static RMap newRMap(long id, int numEntries) {
+    final RMap map = new RMap(RMapInfo.newBuilder().setRmapId(id).setName("map" + id).build());
+    for (int i = 0; i < numEntries; i++) {
+      map.put(key(i), value(i), i, -1);
+    }
+    return map;
+  }
+
+  static List<Entry> scan(RMap map, Scan scan, int maxEntries) {
+    final List<Entry> entries = new ArrayList<>();
+    map.scan(scan, maxEntries, entries::add);
+    return entries;
+  }
+
+  static void assertKeys(List<Entry> entries, int first, int last) {
+    Assert.assertEquals(last - first + 1, entries.size());
+    for (int i = first; i <= last; i++) {
+      Assert.assertEquals(key(i), entries.get(i - first).getKey());
+    }
+  }
+
+  @Test
+  public void testScan() {
+    final RMap map = newRMap(1, 100);
+    Assert.assertEquals(value(7), map.get(key(7)));
+    Assert.assertNull(map.get(key(100)));
+
+    assertKeys(scan(map, Scan.getDefaultInstance(), 1000), 0, 99);
+    Assert.assertTrue(map.scan(Scan.getDefaultInstance(), 10, e -> { }));
+    Assert.assertFalse(map.scan(Scan.getDefaultInstance(), 100, e -> { }));
+
+    final Scan range = Scan.newBuilder().setStartKey(key(10)).setEndKey(key(20)).build();
+    assertKeys(scan(map, range, 1000), 11, 19);
+    assertKeys(scan(map, range.toBuilder().setStartKeyInclusive(true).setEndKeyInclusive(true).build(), 1000),
+        10, 20);
+    assertKeys(scan(map, Scan.newBuilder().setEndKey(key(5)).setEndKeyInclusive(true).build(), 1000), 0, 5);
+    assertKeys(scan(map, Scan.newBuilder().setStartKey(key(95)).setStartKeyInclusive(true).build(), 1000), 95, 99);
+    Assert.assertTrue(scan(map, Scan.newBuilder().setStartKey(key(20)).setEndKey(key(10)).build(), 1000).isEmpty());
+
+    final List<Entry> keysOnly = scan(map, range.toBuilder().setKeysOnly(true).build(), 1000);
+    assertKeys(keysOnly, 11, 19);
+    keysOnly.forEach(e -> Assert.assertTrue(e.getValue().isEmpty()));
+  }
+
+  @Test
+  public void testSnapshotView() {
+    final RMap map = newRMap(1, 3);
+    final long snapshotIndex = 2;
+
+    // writes after the snapshot index
+    map.put(key(1), value(100), 3, snapshotIndex);
+    map.put(key(1), value(101), 4, snapshotIndex);
+    map.put(key(5), value(5), 5, snapshotIndex);
+    Assert.assertEquals(value(101), map.get(key(1)));
+
+    final List<Entry> view = new ArrayList<>();
+    map.forEach(snapshotIndex, view::add);
+    assertKeys(view, 0, 2);
+    Assert.assertEquals(value(1), view.get(1).getValue());
+
+    // the previous versions are dropped after the snapshot
+    map.put(key(1), value(102), 6, -1);
+    final List<Entry> latest = new ArrayList<>();
+    map.forEach(Long.MAX_VALUE, latest::add);
+    Assert.assertEquals(4, latest.size());
+    Assert.assertEquals(value(102), latest.get(1).getValue());
+  }
+
+  @Test
+  public void testBackToBackSnapshots() {
+    final RMap map = newRMap(1, 1);
+    // overwrite a key during each of the snapshots
+    for (long index = 1; index < 100; index++) {
+      map.put(key(0), value((int) index), index, index - 1);
+      Assert.assertTrue(map.getNumVersions(key(0)) <= 2);
+
+      final List<Entry> view = new ArrayList<>();
+      map.forEach(index - 1, view::add);
+      assertKeys(view, 0, 0);
+      Assert.assertEquals(value((int) index - 1), view.get(0).getValue());
+    }
+  }
+
+  @Test
+  public void testSnapshotFile() throws Exception {
+    final int numEntries = 3 * RMapSnapshot.BATCH_SIZE + 1;
+    final List<RMap> maps = Arrays.asList(newRMap(1, numEntries), newRMap(2, 0), newRMap(3, 10));
+    final File file = new File(getClassTestDir(), "snapshot");
+    Assert.assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+    RMapSnapshot.write(file, maps, Long.MAX_VALUE);
+
+    final List<RMap> loaded = new ArrayList<>();
+    RMapSnapshot.read(file, 0, loaded::add);
+    Assert.assertEquals(maps.size(), loaded.size());
+    for (int i = 0; i < maps.size(); i++) {
+      final RMap expected = maps.get(i);
+      final RMap actual = loaded.get(i);
+      Assert.assertEquals(expected.getInfo(), actual.getInfo());
+      Assert.assertEquals(scan(expected, Scan.getDefaultInstance(), Integer.MAX_VALUE),
+          scan(actual, Scan.getDefaultInstance(), Integer.MAX_VALUE));
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.rmap;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.MiniRaftCluster;
+import org.apache.ratis.RaftTestUtil;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.grpc.MiniRaftClusterWithGrpc;
+import org.apache.ratis.proto.rmap.RMapProtos.Entry;
+import org.apache.ratis.proto.rmap.RMapProtos.RMapInfo;
+import org.apache.ratis.proto.rmap.RMapProtos.Scan;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.impl.RaftServerImpl;
+import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.TimeDuration;
+import org.apache.ratis.util.function.CheckedRunnable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TestRMapWithGrpc extends BaseTest implements MiniRaftClusterWithGrpc.FactoryGet {
+  static final int NUM_BATCHES = 20;
+  static final int BATCH_SIZE = 100;
+  static final int NUM_ENTRIES = NUM_BATCHES * BATCH_SIZE;
+
+  {
+    final RaftProperties p = getProperties();
+    p.setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY, RMapStateMachine.class, StateMachine.class);
+    RaftServerConfigKeys.Snapshot.setAutoTriggerEnabled(p, true);
+    RaftServerConfigKeys.Snapshot.setAutoTriggerThreshold(p, NUM_BATCHES / 2);
+  }
+
+  static List<Entry> toList(Iterator<Entry> i) {
+    final List<Entry> entries = new ArrayList<>();
+    i.forEachRemaining(entries::add);
+    return entries;
+  }
+
+  @Test
+  public void testRMap() throws Exception {
+    final MiniRaftCluster cluster = newCluster(3);
+    cluster.start();
+    try {
+      RaftTestUtil.waitForLeader(cluster);
+      runTestRMap(cluster);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  void runTestRMap(MiniRaftCluster cluster) throws Exception {
+    try (RMapClient client = new RMapClient(cluster.createClient())) {
+      final RMapInfo info = client.createRMap("test");
+      Assert.assertEquals("test", info.getName());
+      testFailure(() -> client.createRMap("test"));
+      Assert.assertEquals(1, client.listRMapInfos("t.*").size());
+      Assert.assertEquals(0, client.listRMapInfos("x.*").size());
+
+      final long id = info.getRmapId();
+      for (int b = 0; b < NUM_BATCHES; b++) {
+        final List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+          final int k = b * BATCH_SIZE + i;
+          batch.add(Entry.newBuilder().setKey(TestRMap.key(k)).setValue(TestRMap.value(k)).build());
+        }
+        client.putAll(id, batch);
+      }
+      Assert.assertEquals(TestRMap.value(123), client.get(id, TestRMap.key(123)));
+      Assert.assertNull(client.get(id, TestRMap.key(NUM_ENTRIES)));
+
+      // linearizable scans in pages
+      final List<Entry> all = toList(client.scan(id, Scan.getDefaultInstance(), 128));
+      TestRMap.assertKeys(all, 0, NUM_ENTRIES - 1);
+      final Scan limited = Scan.newBuilder().setStartKey(TestRMap.key(100)).setStartKeyInclusive(true)
+          .setLimit(250).build();
+      TestRMap.assertKeys(toList(client.scan(id, limited, 100)), 100, 349);
+
+      // stale scans from a follower
+      final RaftServerImpl leader = cluster.getLeader();
+      final long appliedIndex = leader.getStateMachine().getLastAppliedTermIndex().getIndex();
+      final RaftPeerId followerId = cluster.getFollowers().get(0).getId();
+      final List<Entry> stale = JavaUtils.attemptRepeatedly(
+          () -> toList(client.staleScan(id, Scan.getDefaultInstance(), 500, followerId, appliedIndex)),
+          10, TimeDuration.valueOf(100, TimeUnit.MILLISECONDS), "staleScan", LOG);
+      TestRMap.assertKeys(stale, 0, NUM_ENTRIES - 1);
+
+      // a snapshot is written in the background
+      JavaUtils.attemptUntilTrue(() -> leader.getStateMachine().getLatestSnapshot() != null,
+          50, TimeDuration.valueOf(100, TimeUnit.MILLISECONDS), "snapshot", LOG);
+
+      client.deleteRMap(id);
+      testFailure(() -> client.get(id, TestRMap.key(0)));
+      Assert.assertEquals(0, client.listRMapInfos(".*").size());
+    }
+  }
+
+  void testFailure(CheckedRunnable<IOException> op) {
+    try {
+      op.run();
+      Assert.fail("Expected IOException");
+    } catch (IOException e) {
+      LOG.info("Got expected exception: " + e);
+    }
+  }
+}
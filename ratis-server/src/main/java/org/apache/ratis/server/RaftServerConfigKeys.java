@@ -98,6 +98,101 @@ public interface RaftServerConfigKeys {
     static void setByteLimit(RaftProperties properties, int byteLimit) {
       setInt(properties::setInt, BYTE_LIMIT_KEY, byteLimit, requireMin(1));
     }
+
+    /** Leader-side coalescing of the log appends of concurrent write requests; each request has its own entry. */
+    interface Coalesce {
+      String PREFIX = Write.PREFIX + ".coalesce";
+
+      String ENABLED_KEY = PREFIX + ".enabled";
+      boolean ENABLED_DEFAULT = false;
+      static boolean enabled(RaftProperties properties) {
+        return getBoolean(properties::getBoolean, ENABLED_KEY, ENABLED_DEFAULT, getDefaultLog());
+      }
+      static void setEnabled(RaftProperties properties, boolean enabled) {
+        setBoolean(properties::setBoolean, ENABLED_KEY, enabled);
+      }
+
+      /** The max number of requests appended at once. */
+      String ELEMENT_LIMIT_KEY = PREFIX + ".element-limit";
+      int ELEMENT_LIMIT_DEFAULT = 64;
+      static int elementLimit(RaftProperties properties) {
+        return getInt(properties::getInt, ELEMENT_LIMIT_KEY, ELEMENT_LIMIT_DEFAULT, getDefaultLog(), requireMin(1));
+      }
+      static void setElementLimit(RaftProperties properties, int limit) {
+        setInt(properties::setInt, ELEMENT_LIMIT_KEY, limit, requireMin(1));
+      }
+
+      /** The max total size of the requests appended at once. */
+      String BYTE_LIMIT_KEY = PREFIX + ".byte-limit";
+      SizeInBytes BYTE_LIMIT_DEFAULT = SizeInBytes.valueOf("1MB");
+      static SizeInBytes byteLimit(RaftProperties properties) {
+        return getSizeInBytes(properties::getSizeInBytes,
+            BYTE_LIMIT_KEY, BYTE_LIMIT_DEFAULT, getDefaultLog());
+      }
+      static void setByteLimit(RaftProperties properties, SizeInBytes byteLimit) {
+        setSizeInBytes(properties::set, BYTE_LIMIT_KEY, byteLimit);
+      }
+
+      /** The max time a request waits for other requests to be coalesced with. */
+      String LINGER_KEY = PREFIX + ".linger";
+      TimeDuration LINGER_DEFAULT = TimeDuration.valueOf(1, TimeUnit.MILLISECONDS);
+      static TimeDuration linger(RaftProperties properties) {
+        return getTimeDuration(properties.getTimeDuration(LINGER_DEFAULT.getUnit()),
+            LINGER_KEY, LINGER_DEFAULT, getDefaultLog());
+      }
+      static void setLinger(RaftProperties properties, TimeDuration linger) {
+        setTimeDuration(properties::setTimeDuration, LINGER_KEY, linger);
+      }
+    }
+
+    /**
+     * Trace the time spent by the write requests in each stage of the leader write pipeline.
+     * The traces are kept in preallocated arrays so that it is cheap enough to be enabled in production.
+     */
+    interface Trace {
+      String PREFIX = Write.PREFIX + ".trace";
+
+      String ENABLED_KEY = PREFIX + ".enabled";
+      boolean ENABLED_DEFAULT = false;
+      static boolean enabled(RaftProperties properties) {
+        return getBoolean(properties::getBoolean, ENABLED_KEY, ENABLED_DEFAULT, getDefaultLog());
+      }
+      static void setEnabled(RaftProperties properties, boolean enabled) {
+        setBoolean(properties::setBoolean, ENABLED_KEY, enabled);
+      }
+
+      /** The max number of outstanding log entries traced; the older entries are overwritten. */
+      String CAPACITY_KEY = PREFIX + ".capacity";
+      int CAPACITY_DEFAULT = 1024;
+      static int capacity(RaftProperties properties) {
+        return getInt(properties::getInt, CAPACITY_KEY, CAPACITY_DEFAULT, getDefaultLog(), requireMin(1));
+      }
+      static void setCapacity(RaftProperties properties, int capacity) {
+        setInt(properties::setInt, CAPACITY_KEY, capacity, requireMin(1));
+      }
+
+      /** Log the stages of a request if its total time exceeds this threshold. */
+      String SLOW_THRESHOLD_KEY = PREFIX + ".slow.threshold";
+      TimeDuration SLOW_THRESHOLD_DEFAULT = TimeDuration.valueOf(1, TimeUnit.SECONDS);
+      static TimeDuration slowThreshold(RaftProperties properties) {
+        return getTimeDuration(properties.getTimeDuration(SLOW_THRESHOLD_DEFAULT.getUnit()),
+            SLOW_THRESHOLD_KEY, SLOW_THRESHOLD_DEFAULT, getDefaultLog());
+      }
+      static void setSlowThreshold(RaftProperties properties, TimeDuration threshold) {
+        setTimeDuration(properties::setTimeDuration, SLOW_THRESHOLD_KEY, threshold);
+      }
+
+      /** Log at most one slow request in each interval; the other slow requests are only counted. */
+      String SLOW_LOG_INTERVAL_KEY = PREFIX + ".slow.log-interval";
+      TimeDuration SLOW_LOG_INTERVAL_DEFAULT = TimeDuration.valueOf(10, TimeUnit.SECONDS);
+      static TimeDuration slowLogInterval(RaftProperties properties) {
+        return getTimeDuration(properties.getTimeDuration(SLOW_LOG_INTERVAL_DEFAULT.getUnit()),
+            SLOW_LOG_INTERVAL_KEY, SLOW_LOG_INTERVAL_DEFAULT, getDefaultLog());
+      }
+      static void setSlowLogInterval(RaftProperties properties, TimeDuration interval) {
+        setTimeDuration(properties::setTimeDuration, SLOW_LOG_INTERVAL_KEY, interval);
+      }
+    }
   }
 
   interface Watch {
@@ -452,6 +547,43 @@ public interface RaftServerConfigKeys {
     static void setExpiryTime(RaftProperties properties, TimeDuration expiryTime) {
       setTimeDuration(properties::setTimeDuration, EXPIRY_TIME_KEY, expiryTime);
     }
+
+    /**
+     * The compact retry cache keeps only the ids and the result summary of the applied calls.
+     * It is bounded by the number of clients and the number of calls per client,
+     * and it is saved together with the state machine snapshots.
+     */
+    interface Compact {
+      String PREFIX = RetryCache.PREFIX + ".compact";
+
+      String ENABLED_KEY = PREFIX + ".enabled";
+      boolean ENABLED_DEFAULT = false;
+      static boolean enabled(RaftProperties properties) {
+        return getBoolean(properties::getBoolean, ENABLED_KEY, ENABLED_DEFAULT, getDefaultLog());
+      }
+      static void setEnabled(RaftProperties properties, boolean enabled) {
+        setBoolean(properties::setBoolean, ENABLED_KEY, enabled);
+      }
+
+      String CLIENT_LIMIT_KEY = PREFIX + ".client-limit";
+      int CLIENT_LIMIT_DEFAULT = 4096;
+      static int clientLimit(RaftProperties properties) {
+        return getInt(properties::getInt, CLIENT_LIMIT_KEY, CLIENT_LIMIT_DEFAULT, getDefaultLog(), requireMin(1));
+      }
+      static void setClientLimit(RaftProperties properties, int clientLimit) {
+        setInt(properties::setInt, CLIENT_LIMIT_KEY, clientLimit, requireMin(1));
+      }
+
+      String CALL_LIMIT_KEY = PREFIX + ".call-limit";
+      int CALL_LIMIT_DEFAULT = 256;
+      /** @return the max number of calls kept for each client. */
+      static int callLimit(RaftProperties properties) {
+        return getInt(properties::getInt, CALL_LIMIT_KEY, CALL_LIMIT_DEFAULT, getDefaultLog(), requireMin(1));
+      }
+      static void setCallLimit(RaftProperties properties, int callLimit) {
+        setInt(properties::setInt, CALL_LIMIT_KEY, callLimit, requireMin(1));
+      }
+    }
   }
 
   interface Notification {
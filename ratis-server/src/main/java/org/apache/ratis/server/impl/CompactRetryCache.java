@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.protocol.ClientId;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.raftlog.RaftLog;
+import org.apache.ratis.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.ratis.util.AtomicFileOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A compact cache of the applied client calls.
+ *
+ * Unlike {@link RetryCache}, which keeps the reply of each call for a period of time,
+ * this cache only keeps the call ids with the log index and the success flag of the calls.
+ * It is updated when applying the log entries to the state machine, on the leader and the followers,
+ * so that it can be rebuilt from the log and it is saved together with the state machine snapshots.
+ * Therefore, a retry of a call applied before a restart or a leader change is still detected.
+ *
+ * The cache is bounded by the number of clients, which are evicted in the least-recently-applied order,
+ * and the number of calls per client, which are evicted in the applied order.
+ */
+class CompactRetryCache {
+  static final Logger LOG = LoggerFactory.getLogger(CompactRetryCache.class);
+
+  private static final int FORMAT_VERSION = 1;
+
+  /** The result returned when a call is not in the cache; it is not a valid log index or its complement. */
+  static final long NOT_FOUND = Long.MIN_VALUE;
+
+  /** The recently applied calls of a client in a ring buffer. */
+  static class ClientCalls {
+    private final long[] callIds;
+    /** The log index of the call, or its bitwise complement if the call failed. */
+    private final long[] results;
+    /** Map a call id to its position so that a lookup does not scan the ring buffer. */
+    private final Map<Long, Integer> positions = new HashMap<>();
+    private int size = 0;
+    /** The position of the next call. */
+    private int next = 0;
+
+    ClientCalls(int limit) {
+      this.callIds = new long[limit];
+      this.results = new long[limit];
+    }
+
+    synchronized void put(long callId, long logIndex, boolean success) {
+      final long result = success? logIndex: ~logIndex;
+      final Integer i = positions.get(callId);
+      if (i != null) {
+        results[i] = result;
+        return;
+      }
+      if (size == callIds.length) {
+        // evict the oldest call
+        positions.remove(callIds[next]);
+      } else {
+        size++;
+      }
+      callIds[next] = callId;
+      results[next] = result;
+      positions.put(callId, next);
+      next = (next + 1) % callIds.length;
+    }
+
+    /** @return the result of the given call, or {@link #NOT_FOUND}. */
+    synchronized long get(long callId) {
+      final Integer i = positions.get(callId);
+      return i != null? results[i]: NOT_FOUND;
+    }
+
+    /** Write the calls from the oldest to the most recent. */
+    synchronized void write(DataOutputStream out) throws IOException {
+      out.writeInt(size);
+      for(int n = size; n > 0; n--) {
+        final int i = (next - n + callIds.length) % callIds.length;
+        out.writeLong(callIds[i]);
+        out.writeLong(results[i]);
+      }
+    }
+  }
+
+  private final int clientLimit;
+  private final int callLimit;
+
+  /** For the lock-free lookups. */
+  private final ConcurrentMap<ClientId, ClientCalls> clients = new ConcurrentHashMap<>();
+  /** For evicting the least-recently-applied clients; guarded by this object. */
+  private final LinkedHashMap<ClientId, ClientCalls> order = new LinkedHashMap<>(16, 0.75f, true);
+  /** The index of the last applied log entry; guarded by this object. */
+  private long appliedIndex = RaftLog.INVALID_LOG_INDEX;
+
+  CompactRetryCache(RaftProperties properties) {
+    this(RaftServerConfigKeys.RetryCache.Compact.clientLimit(properties),
+        RaftServerConfigKeys.RetryCache.Compact.callLimit(properties));
+  }
+
+  @VisibleForTesting
+  CompactRetryCache(int clientLimit, int callLimit) {
+    this.clientLimit = clientLimit;
+    this.callLimit = callLimit;
+  }
+
+  /** Record the result of a call applied at the given log index. */
+  synchronized void put(ClientId clientId, long callId, long logIndex, boolean success) {
+    ClientCalls calls = order.get(clientId);
+    if (calls == null) {
+      calls = new ClientCalls(callLimit);
+      order.put(clientId, calls);
+      clients.put(clientId, calls);
+      evict();
+    }
+    calls.put(callId, logIndex, success);
+    appliedIndex = Math.max(appliedIndex, logIndex);
+  }
+
+  private void evict() {
+    for(Iterator<Map.Entry<ClientId, ClientCalls>> i = order.entrySet().iterator(); order.size() > clientLimit; ) {
+      clients.remove(i.next().getKey());
+      i.remove();
+    }
+  }
+
+  /**
+   * @return the log index of the given call if it succeeded,
+   *         the bitwise complement of the log index if it failed,
+   *         or {@link #NOT_FOUND} if the call is not in the cache.
+   */
+  long get(ClientId clientId, long callId) {
+    final ClientCalls calls = clients.get(clientId);
+    return calls != null? calls.get(callId): NOT_FOUND;
+  }
+
+  @VisibleForTesting
+  synchronized int getNumClients() {
+    return order.size();
+  }
+
+  synchronized long getAppliedIndex() {
+    return appliedIndex;
+  }
+
+  /**
+   * Atomically save this cache to the given file.
+   * It is called after a snapshot is taken so that the saved cache covers the snapshot.
+   */
+  synchronized void save(File file) throws IOException {
+    final AtomicFileOutputStream fos = new AtomicFileOutputStream(file);
+    boolean saved = false;
+    try {
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+      out.writeInt(FORMAT_VERSION);
+      out.writeLong(appliedIndex);
+      out.writeInt(order.size());
+      // write from the least-recently-applied client so that the order is kept after loading
+      for(Map.Entry<ClientId, ClientCalls> e : order.entrySet()) {
+        final UUID uuid = e.getKey().getUuid();
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+        e.getValue().write(out);
+      }
+      out.flush();
+      saved = true;
+    } finally {
+      if (saved) {
+        fos.close();
+      } else {
+        fos.abort();
+      }
+    }
+    LOG.debug("Saved {} clients up to index {} to {}", order.size(), appliedIndex, file);
+  }
+
+  /** Load the cache from the given file, if it exists. */
+  synchronized void load(File file) throws IOException {
+    if (!file.exists()) {
+      return;
+    }
+    try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      final int version = in.readInt();
+      if (version != FORMAT_VERSION) {
+        throw new IOException("Unsupported format version " + version + " in " + file);
+      }
+      final long index = in.readLong();
+      final int numClients = in.readInt();
+      for(int c = 0; c < numClients; c++) {
+        final ClientId clientId = ClientId.valueOf(new UUID(in.readLong(), in.readLong()));
+        final int numCalls = in.readInt();
+        for(int n = 0; n < numCalls; n++) {
+          final long callId = in.readLong();
+          final long result = in.readLong();
+          final boolean success = result >= 0;
+          put(clientId, callId, success? result: ~result, success);
+        }
+      }
+      appliedIndex = Math.max(appliedIndex, index);
+    }
+    LOG.info("Loaded {} clients up to index {} from {}", order.size(), appliedIndex, file);
+  }
+
+  @Override
+  public synchronized String toString() {
+    return getClass().getSimpleName() + ":clients=" + order.size() + ",appliedIndex=" + appliedIndex;
+  }
+}
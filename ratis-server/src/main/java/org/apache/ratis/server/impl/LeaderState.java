@@ -39,6 +39,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.function.LongSupplier;
 import java.util.function.Predicate;
@@ -197,6 +198,13 @@ public class LeaderState {
   private final PendingRequests pendingRequests;
   private final WatchRequests watchRequests;
   private final StreamRequests streamRequests;
+  /** Null if write coalescing is disabled. */
+  private final WriteCoalescer writeCoalescer;
+  /**
+   * Serialize the log appends of this leader.
+   * The lock order is the server lock (if it is held) and then this lock.
+   */
+  private final ReentrantLock appendLock = new ReentrantLock();
   private volatile boolean running = true;
 
   private final int stagingCatchupGap;
@@ -223,6 +231,8 @@ public class LeaderState {
     this.pendingRequests = new PendingRequests(server.getMemberId(), properties, raftServerMetrics);
     this.watchRequests = new WatchRequests(server.getMemberId(), properties);
     this.streamRequests = new StreamRequests(server.getMemberId());
+    this.writeCoalescer = RaftServerConfigKeys.Write.Coalesce.enabled(properties)?
+        new WriteCoalescer(server, this, properties): null;
 
     final RaftConfiguration conf = server.getRaftConf();
     Collection<RaftPeer> others = conf.getOtherPeers(server.getId());
@@ -241,8 +251,11 @@ public class LeaderState {
         server.getRaftConf(), server.getState().getCurrentTerm(), raftLog.getNextIndex());
     CodeInjectionForTesting.execute(APPEND_PLACEHOLDER,
         server.getId().toString(), null);
-    raftLog.append(placeHolder);
+    try(AutoCloseableLock lock = lockAppend()) {
+      raftLog.append(placeHolder);
+    }
     processor.start();
+    Optional.ofNullable(writeCoalescer).ifPresent(WriteCoalescer::start);
     senders.forEach(LogAppender::startAppender);
     return placeHolder;
   }
@@ -251,14 +264,33 @@ public class LeaderState {
     return server.getState().getLastAppliedIndex() >= placeHolderIndex;
   }
 
+  /**
+   * @return the lock which must be held when appending log entries.
+   *         After acquiring it, the caller must check {@link #isRunning()} before appending.
+   */
+  AutoCloseableLock lockAppend() {
+    return AutoCloseableLock.acquire(appendLock);
+  }
+
+  boolean isRunning() {
+    return running;
+  }
+
   void stop() {
-    this.running = false;
+    try(AutoCloseableLock lock = lockAppend()) {
+      // wait for the ongoing appends
+      this.running = false;
+    }
     // do not interrupt event processor since it may be in the middle of logSync
     senders.forEach(LogAppender::stopAppender);
     final NotLeaderException nle = server.generateNotLeaderException();
     final Collection<CommitInfoProto> commitInfos = server.getCommitInfos();
     try {
-      final Collection<TransactionContext> transactions = pendingRequests.sendNotLeaderResponses(nle, commitInfos);
+      final Collection<TransactionContext> transactions = new ArrayList<>(
+          pendingRequests.sendNotLeaderResponses(nle, commitInfos));
+      if (writeCoalescer != null) {
+        transactions.addAll(writeCoalescer.stop(nle, commitInfos));
+      }
       server.getStateMachine().notifyNotLeader(transactions);
       watchRequests.failWatches(nle);
     } catch (IOException e) {
@@ -325,6 +357,15 @@ public class LeaderState {
     return pendingRequests.add(permit, request, entry);
   }
 
+  /** Should the writes be submitted to the {@link WriteCoalescer}? */
+  boolean isCoalescing() {
+    return writeCoalescer != null;
+  }
+
+  void submitWrite(WriteCoalescer.PendingWrite write) {
+    writeCoalescer.submit(write);
+  }
+
   CompletableFuture<RaftClientReply> streamAsync(RaftClientRequest request) {
     return streamRequests.streamAsync(request)
         .thenApply(dummy -> new RaftClientReply(request, server.getCommitInfos()))
@@ -373,7 +414,10 @@ public class LeaderState {
     final RaftConfiguration oldNewConf= stagingState.generateOldNewConf(current,
         state.getLog().getNextIndex());
     // apply the (old, new) configuration to log, and use it as the current conf
-    long index = state.getLog().append(state.getCurrentTerm(), oldNewConf);
+    final long index;
+    try(AutoCloseableLock lock = lockAppend()) {
+      index = state.getLog().append(state.getCurrentTerm(), oldNewConf);
+    }
     updateConfiguration(index, oldNewConf);
 
     this.stagingState = null;
@@ -636,6 +680,7 @@ public class LeaderState {
       final TermIndex[] entriesToCommit = raftLog.getEntries(
           oldLastCommitted + 1, majority + 1);
       if (server.getState().updateStatemachine(majority, currentTerm)) {
+        server.getWriteTracer().record(WriteTracer.Stage.COMMITTED, oldLastCommitted + 1, majority);
         watchRequests.update(ReplicationLevel.MAJORITY, majority);
         logMetadata(majority);
         commitIndexChanged();
@@ -647,7 +692,9 @@ public class LeaderState {
   }
 
   private void logMetadata(long commitIndex) {
-    raftLog.appendMetadata(currentTerm, commitIndex);
+    try(AutoCloseableLock lock = lockAppend()) {
+      raftLog.appendMetadata(currentTerm, commitIndex);
+    }
     notifySenders();
   }
 
@@ -699,7 +746,10 @@ public class LeaderState {
         .build();
     // stop the LogAppender if the corresponding follower is no longer in the conf
     updateSenders(newConf);
-    long index = raftLog.append(server.getState().getCurrentTerm(), newConf);
+    final long index;
+    try(AutoCloseableLock lock = lockAppend()) {
+      index = raftLog.append(server.getState().getCurrentTerm(), newConf);
+    }
     updateConfiguration(index, newConf);
     notifySenders();
   }
@@ -18,6 +18,7 @@
 package org.apache.ratis.server.impl;
 
 import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.io.MD5Hash;
 import org.apache.ratis.protocol.RaftPeerId;
 import org.apache.ratis.server.RaftServerConfigKeys;
 import org.apache.ratis.server.protocol.TermIndex;
@@ -36,6 +37,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 
@@ -293,6 +295,7 @@ public class LogAppender {
       implements Iterable<InstallSnapshotRequestProto> {
     private final SnapshotInfo snapshot;
     private final List<FileInfo> files;
+    private final FileChunkProto retryCacheChunk;
     private FileInputStream in;
     private int fileIndex = 0;
 
@@ -310,11 +313,41 @@ public class LogAppender {
       this.snapshot = snapshot;
       this.requestId = requestId;
       this.files = snapshot.getFiles();
+      this.retryCacheChunk = readRetryCacheChunk();
       if (files.size() > 0) {
         startReadFile();
       }
     }
 
+    /**
+     * The compact retry cache, if there is any, is sent together with the snapshot in the first request
+     * since the follower cannot rebuild it from the log entries before the snapshot.
+     * The file is read at once so that the data matches the digest even if the file is saved again.
+     */
+    private FileChunkProto readRetryCacheChunk() {
+      final File file = server.getRetryCacheFile();
+      if (file == null || !file.exists()) {
+        return null;
+      }
+      try {
+        final byte[] data = Files.readAllBytes(file.toPath());
+        if (data.length > snapshotChunkMaxSize) {
+          LOG.warn("{}: Skip sending {} since its size {} exceeds the snapshot chunk limit {}",
+              LogAppender.this, file, data.length, snapshotChunkMaxSize);
+          return null;
+        }
+        return FileChunkProto.newBuilder()
+            .setFilename(server.getState().getStorage().getStorageDir().relativizeToRoot(file.toPath()).toString())
+            .setOffset(0).setChunkIndex(0).setDone(true)
+            .setFileDigest(ByteString.copyFrom(MD5Hash.digest(data).getDigest()))
+            .setData(ByteString.copyFrom(data))
+            .build();
+      } catch (IOException e) {
+        LOG.warn("{}: Failed to read {}", LogAppender.this, file, e);
+        return null;
+      }
+    }
+
     private void startReadFile() throws IOException {
       currentFileInfo = files.get(fileIndex);
       File snapshotFile = currentFileInfo.getPath().toFile();
@@ -351,10 +384,11 @@ public class LogAppender {
                 targetLength, currentOffset, chunkIndex);
             boolean done = (fileIndex == files.size() - 1) &&
                 chunk.getDone();
+            final List<FileChunkProto> chunks = requestIndex == 0 && retryCacheChunk != null?
+                Arrays.asList(chunk, retryCacheChunk): Collections.singletonList(chunk);
             InstallSnapshotRequestProto request =
                 server.createInstallSnapshotRequest(follower.getPeer().getId(),
-                    requestId, requestIndex++, snapshot,
-                    Collections.singletonList(chunk), done);
+                    requestId, requestIndex++, snapshot, chunks, done);
             currentOffset += targetLength;
             chunkIndex++;
 
@@ -30,6 +30,7 @@ import org.apache.ratis.server.protocol.RaftServerProtocol;
 import org.apache.ratis.server.protocol.TermIndex;
 import org.apache.ratis.server.storage.FileInfo;
 import org.apache.ratis.server.raftlog.RaftLog;
+import org.apache.ratis.server.raftlog.RaftLogIOException;
 import org.apache.ratis.server.storage.RaftStorageDirectory;
 import org.apache.ratis.statemachine.SnapshotInfo;
 import org.apache.ratis.statemachine.StateMachine;
@@ -40,6 +41,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.management.ObjectName;
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -84,11 +86,14 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
   private final RoleInfo role;
 
   private final RetryCache retryCache;
+  /** Null if the compact retry cache is disabled. */
+  private final CompactRetryCache compactRetryCache;
   private final CommitInfoCache commitInfoCache = new CommitInfoCache();
 
   private final RaftServerJmxAdapter jmxAdapter;
   private final LeaderElectionMetrics leaderElectionMetrics;
   private final RaftServerMetrics raftServerMetrics;
+  private final WriteTracer writeTracer;
 
   private AtomicReference<TermIndex> inProgressInstallSnapshotRequest;
 
@@ -111,11 +116,13 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
 
     this.state = new ServerState(id, group, properties, this, stateMachine);
     this.retryCache = initRetryCache(properties);
+    this.compactRetryCache = initCompactRetryCache(properties);
     this.inProgressInstallSnapshotRequest = new AtomicReference<>(null);
 
     this.jmxAdapter = new RaftServerJmxAdapter();
     this.leaderElectionMetrics = LeaderElectionMetrics.getLeaderElectionMetrics(this);
     this.raftServerMetrics = RaftServerMetrics.getRaftServerMetrics(this);
+    this.writeTracer = new WriteTracer(getMemberId(), properties, raftServerMetrics);
   }
 
   private RetryCache initRetryCache(RaftProperties prop) {
@@ -123,6 +130,58 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
     return new RetryCache(expireTime);
   }
 
+  private CompactRetryCache initCompactRetryCache(RaftProperties prop) throws IOException {
+    if (!RaftServerConfigKeys.RetryCache.Compact.enabled(prop)) {
+      return null;
+    }
+    final CompactRetryCache cache = new CompactRetryCache(prop);
+    cache.load(state.getStorage().getStorageDir().getRetryCacheFile());
+    return cache;
+  }
+
+  /** Save the compact retry cache, if it is enabled, after a snapshot is taken at the given index. */
+  void saveRetryCache(long snapshotIndex) {
+    if (compactRetryCache == null) {
+      return;
+    }
+    try {
+      compactRetryCache.save(state.getStorage().getStorageDir().getRetryCacheFile());
+    } catch (IOException e) {
+      LOG.warn("{}: Failed to save {} for the snapshot at index {}", getMemberId(), compactRetryCache, snapshotIndex, e);
+    }
+  }
+
+  /**
+   * @return the file of the saved compact retry cache, which is sent together with a snapshot to a follower,
+   *         or null if the compact retry cache is disabled.
+   */
+  File getRetryCacheFile() {
+    return compactRetryCache == null? null: state.getStorage().getStorageDir().getRetryCacheFile();
+  }
+
+  /**
+   * Load the compact retry cache installed together with a snapshot from the leader, if there is any,
+   * since the log entries of the calls before the snapshot are not sent to this server.
+   */
+  void loadInstalledRetryCache() {
+    final RaftStorageDirectory dir = state.getStorage().getStorageDir();
+    final File installed = dir.getInstalledRetryCacheFile();
+    if (!installed.exists()) {
+      return;
+    }
+    try {
+      if (compactRetryCache != null) {
+        compactRetryCache.load(installed);
+        compactRetryCache.save(dir.getRetryCacheFile());
+      }
+    } catch (IOException e) {
+      LOG.warn("{}: Failed to load {} installed with a snapshot", getMemberId(), installed, e);
+    } finally {
+      FileUtils.deleteFileQuietly(installed);
+      FileUtils.deleteFileQuietly(MD5FileUtil.getDigestFileForFile(installed));
+    }
+  }
+
   LogAppender newLogAppender(
       LeaderState state, RaftPeer peer, Timestamp lastRpcTime, long nextIndex,
       boolean attendVote) {
@@ -160,6 +219,11 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
     return retryCache;
   }
 
+  @VisibleForTesting
+  CompactRetryCache getCompactRetryCache() {
+    return compactRetryCache;
+  }
+
   public RaftServerProxy getProxy() {
     return proxy;
   }
@@ -370,6 +434,19 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
     return infos;
   }
 
+  /**
+   * Purge the log up to the given snapshot index,
+   * but not beyond the commit index of any peer so that the entries can still be sent to the slow followers.
+   *
+   * @return the future of the actual purged log index.
+   */
+  public CompletableFuture<Long> purgeLog(long snapshotIndex) {
+    final long purgeIndex = getCommitInfos().stream()
+        .mapToLong(CommitInfoProto::getCommitIndex)
+        .reduce(snapshotIndex, Math::min);
+    return state.getLog().purge(purgeIndex);
+  }
+
   GroupInfoReply getGroupInfo(GroupInfoRequest request) {
     return new GroupInfoReply(request, getRoleInfoProto(),
         state.getStorage().getStorageDir().hasMetaFile(), getCommitInfos(), getGroup());
@@ -495,38 +572,51 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
    */
   private CompletableFuture<RaftClientReply> appendTransaction(
       RaftClientRequest request, TransactionContext context,
-      RetryCache.CacheEntry cacheEntry) throws IOException {
+      RetryCache.CacheEntry cacheEntry, long receivedTime) throws IOException {
     assertLifeCycleState(LifeCycle.States.RUNNING);
-    CompletableFuture<RaftClientReply> reply;
+    final CompletableFuture<RaftClientReply> reply = checkLeaderState(request, cacheEntry);
+    if (reply != null) {
+      return reply;
+    }
+    final LeaderState leaderState = role.getLeaderState().orElse(null);
+    if (leaderState == null) {
+      return failWithNotLeaderException(request, cacheEntry);
+    }
 
+    // The server lock is not required: the role and the leader state are read atomically
+    // and then the append lock of the leader state serializes the appends of this leader term.
     final PendingRequest pending;
-    synchronized (this) {
-      reply = checkLeaderState(request, cacheEntry);
-      if (reply != null) {
-        return reply;
+    try(AutoCloseableLock appendLock = leaderState.lockAppend()) {
+      if (!leaderState.isRunning()) {
+        return failWithNotLeaderException(request, cacheEntry);
       }
 
       // append the message to its local log
-      final LeaderState leaderState = role.getLeaderStateNonNull();
       final PendingRequests.Permit permit = leaderState.tryAcquirePendingRequest(request.getMessage());
       if (permit == null) {
         cacheEntry.failWithException(new ResourceUnavailableException(
             getMemberId() + ": Failed to acquire a pending write request for " + request));
         return cacheEntry.getReplyFuture();
       }
+      if (leaderState.isCoalescing()) {
+        // the write will be appended later together with the other coalesced writes
+        final WriteCoalescer.PendingWrite write = new WriteCoalescer.PendingWrite(
+            permit, request, context, cacheEntry, receivedTime);
+        leaderState.submitWrite(write);
+        return write.getFuture();
+      }
       try {
-        state.appendLog(context);
+        state.appendLog(leaderState.getCurrentTerm(), context);
       } catch (StateMachineException e) {
         // the StateMachineException is thrown by the SM in the preAppend stage.
         // Return the exception in a RaftClientReply.
         RaftClientReply exceptionReply = new RaftClientReply(request, e, getCommitInfos());
         cacheEntry.failWithReply(exceptionReply);
         // leader will step down here
-        if (isLeader()) {
-          leaderState.submitStepDownEvent();
-        }
+        leaderState.submitStepDownEvent();
         return CompletableFuture.completedFuture(exceptionReply);
       }
+      writeTracer.appended(context.getLogEntry().getIndex(), receivedTime);
 
       // put the request into the pending queue
       pending = leaderState.addPendingRequest(permit, request, context);
@@ -540,11 +630,63 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
     return pending.getFuture();
   }
 
+  private CompletableFuture<RaftClientReply> failWithNotLeaderException(
+      RaftClientRequest request, RetryCache.CacheEntry cacheEntry) {
+    final RaftClientReply reply = new RaftClientReply(request, generateNotLeaderException(), getCommitInfos());
+    return RetryCache.failWithReply(reply, cacheEntry);
+  }
+
+  /**
+   * Append the writes coalesced by the {@link WriteCoalescer} of the given leader state
+   * as consecutive log entries, one entry per write, at once.
+   */
+  void appendTransactions(LeaderState leaderState, List<WriteCoalescer.PendingWrite> writes) {
+    try(AutoCloseableLock appendLock = leaderState.lockAppend()) {
+      if (!leaderState.isRunning()) {
+        final NotLeaderException nle = generateNotLeaderException();
+        final Collection<CommitInfoProto> commitInfos = getCommitInfos();
+        writes.forEach(w -> w.fail(new RaftClientReply(w.getRequest(), nle, commitInfos)));
+        return;
+      }
+
+      final List<TransactionContext> batch = writes.stream()
+          .map(WriteCoalescer.PendingWrite::getContext)
+          .collect(Collectors.toList());
+      try {
+        state.appendLog(leaderState.getCurrentTerm(), batch);
+      } catch (StateMachineException e) {
+        // the transactions are cancelled, so the writes can fail without affecting the log.
+        final Collection<CommitInfoProto> commitInfos = getCommitInfos();
+        writes.forEach(w -> w.fail(new RaftClientReply(w.getRequest(), e, commitInfos)));
+        if (!(e.getCause() instanceof RaftLogIOException)) {
+          // the StateMachineException is thrown by the SM in the preAppend stage; leader will step down here.
+          // It does not step down if a log entry is too large.
+          leaderState.submitStepDownEvent();
+        }
+        return;
+      }
+      for(WriteCoalescer.PendingWrite w : writes) {
+        writeTracer.appended(w.getContext().getLogEntry().getIndex(), w.getReceivedTime());
+
+        // put the request into the pending queue
+        final PendingRequest pending = leaderState.addPendingRequest(w.getPermit(), w.getRequest(), w.getContext());
+        if (pending == null) {
+          w.fail(new ResourceUnavailableException(
+              getMemberId() + ": Failed to add a pending write request for " + w.getRequest()));
+        } else {
+          w.link(pending);
+        }
+      }
+      leaderState.notifySenders();
+    }
+  }
+
   @Override
   public CompletableFuture<RaftClientReply> submitClientRequestAsync(
       RaftClientRequest request) throws IOException {
     assertLifeCycleState(LifeCycle.States.RUNNING);
     LOG.debug("{}: receive client request({})", getMemberId(), request);
+    final long receivedTime = System.nanoTime();
     Timer timer = raftServerMetrics.getClientRequestTimer(request);
     final Timer.Context timerContext = (timer != null) ? timer.time() : null;
 
@@ -583,11 +725,17 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
         // query the retry cache
         RetryCache.CacheQueryResult previousResult = retryCache.queryCache(
             request.getClientId(), request.getCallId());
+        final long appliedResult = compactRetryCache == null? CompactRetryCache.NOT_FOUND
+            : compactRetryCache.get(request.getClientId(), request.getCallId());
         if (previousResult.isRetry()) {
           // if the previous attempt is still pending or it succeeded, return its
           // future
           raftServerMetrics.onRetryRequestCacheHit();
           replyFuture = previousResult.getEntry().getReplyFuture();
+        } else if (appliedResult != CompactRetryCache.NOT_FOUND) {
+          // the call was applied but its reply has expired from the retry cache, e.g. after a restart
+          raftServerMetrics.onRetryRequestCacheHit();
+          replyFuture = replyAppliedCall(request, previousResult.getEntry(), appliedResult);
         } else {
           final RetryCache.CacheEntry cacheEntry = previousResult.getEntry();
 
@@ -601,7 +749,7 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
             cacheEntry.failWithReply(exceptionReply);
             replyFuture =  CompletableFuture.completedFuture(exceptionReply);
           } else {
-            replyFuture = appendTransaction(request, context, cacheEntry);
+            replyFuture = appendTransaction(request, context, cacheEntry, receivedTime);
           }
         }
       }
@@ -615,6 +763,25 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
     return replyFuture;
   }
 
+  /**
+   * Reply a call found in the {@link CompactRetryCache}.
+   * Only the result summary is available so that the state machine reply is lost.
+   * A successful call is replied with an {@link AlreadyAppliedException}
+   * for the client to tell it apart from a new successful call.
+   */
+  private CompletableFuture<RaftClientReply> replyAppliedCall(RaftClientRequest request,
+      RetryCache.CacheEntry cacheEntry, long appliedResult) {
+    final boolean success = appliedResult >= 0;
+    final long logIndex = success? appliedResult: ~appliedResult;
+    final RaftException e = success? new AlreadyAppliedException(request.getCallId(), logIndex)
+        : new StateMachineException(getMemberId()
+        + ": Call " + request.getCallId() + " from " + request.getClientId() + " failed at index " + logIndex);
+    final RaftClientReply reply = new RaftClientReply(request.getClientId(), getMemberId(), request.getCallId(),
+        false, null, e, logIndex, getCommitInfos());
+    cacheEntry.updateResult(reply);
+    return cacheEntry.getReplyFuture();
+  }
+
   private CompletableFuture<RaftClientReply> watchAsync(RaftClientRequest request) {
     return role.getLeaderState()
         .map(ls -> ls.addWatchReqeust(request))
@@ -1298,13 +1465,15 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
         r = new RaftClientReply(clientId, getMemberId(), callId, false, null, e, logIndex, getCommitInfos());
       }
 
-      // update pending request
-      synchronized (RaftServerImpl.this) {
-        final LeaderState leaderState = role.getLeaderState().orElse(null);
-        if (isLeader() && leaderState != null) { // is leader and is running
-          leaderState.replyPendingRequest(logIndex, r);
-        }
+      if (compactRetryCache != null) {
+        compactRetryCache.put(clientId, callId, logIndex, exception == null);
       }
+
+      // update pending request; the pending requests are thread-safe so that the server lock is not required.
+      role.getLeaderState().ifPresent(leaderState -> {
+        leaderState.replyPendingRequest(logIndex, r);
+        writeTracer.replied(logIndex);
+      });
       cacheEntry.updateResult(r);
     });
   }
@@ -1327,29 +1496,35 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
       state.writeRaftConfiguration(next);
     } else if (next.hasStateMachineLogEntry()) {
       // check whether there is a TransactionContext because we are the leader.
-      TransactionContext trx = role.getLeaderState()
-          .map(leader -> leader.getTransactionContext(next.getIndex())).orElseGet(
-              () -> TransactionContext.newBuilder()
-                  .setServerRole(role.getCurrentRole())
-                  .setStateMachine(stateMachine)
-                  .setLogEntry(next)
-                  .build());
+      final TransactionContext trx = role.getLeaderState()
+          .map(leader -> leader.getTransactionContext(next.getIndex()))
+          .orElseGet(() -> newTransactionContext(next));
+      return replyPendingRequest(next, applyTransaction(trx, next));
+    }
+    return null;
+  }
 
-      // Let the StateMachine inject logic for committed transactions in sequential order.
-      trx = stateMachine.applyTransactionSerial(trx);
+  private TransactionContext newTransactionContext(LogEntryProto entry) {
+    return TransactionContext.newBuilder()
+        .setServerRole(role.getCurrentRole())
+        .setStateMachine(getStateMachine())
+        .setLogEntry(entry)
+        .build();
+  }
 
-      try {
-        // TODO: This step can be parallelized
-        CompletableFuture<Message> stateMachineFuture =
-            stateMachine.applyTransaction(trx);
-        return replyPendingRequest(next, stateMachineFuture);
-      } catch (Throwable e) {
-        LOG.error("{}: applyTransaction failed for index:{} proto:{}",
-            getMemberId(), next.getIndex(), ServerProtoUtils.toString(next), e);
-        throw e;
-      }
+  private CompletableFuture<Message> applyTransaction(TransactionContext trx, LogEntryProto next) {
+    final StateMachine stateMachine = getStateMachine();
+    // Let the StateMachine inject logic for committed transactions in sequential order.
+    trx = stateMachine.applyTransactionSerial(trx);
+
+    try {
+      // TODO: This step can be parallelized
+      return stateMachine.applyTransaction(trx);
+    } catch (Throwable e) {
+      LOG.error("{}: applyTransaction failed for index:{} proto:{}",
+          getMemberId(), next.getIndex(), ServerProtoUtils.toString(next), e);
+      throw e;
     }
-    return null;
   }
 
   /**
@@ -1381,6 +1556,10 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
     return raftServerMetrics;
   }
 
+  public WriteTracer getWriteTracer() {
+    return writeTracer;
+  }
+
   private class RaftServerJmxAdapter extends JmxRegister implements RaftServerMXBean {
     @Override
     public String getId() {
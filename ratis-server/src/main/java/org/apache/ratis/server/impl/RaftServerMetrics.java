@@ -60,6 +60,10 @@ public final class RaftServerMetrics extends RatisMetrics {
   public static final String REQUEST_BYTE_SIZE_LIMIT_HIT_COUNTER = "numRequestsByteSizeLimitHits";
   public static final String REQUEST_QUEUE_SIZE = "numPendingRequestInQueue";
   public static final String REQUEST_BYTE_SIZE = "numPendingRequestByteSize";
+  // Time taken by a traced write request from the previous stage to the given stage, see WriteTracer.Stage.
+  public static final String WRITE_STAGE_TIME = "writeStage_%s";
+  // Total time taken by a traced write request from received to replied.
+  public static final String WRITE_TOTAL_TIME = "writeTotalTime";
 
 
   private Map<String, Long> followerLastHeartbeatElapsedTimeMap = new HashMap<>();
@@ -164,6 +168,14 @@ public final class RaftServerMetrics extends RatisMetrics {
     return registry.timer(timerName);
   }
 
+  Timer getWriteStageTimer(String stage) {
+    return getTimer(String.format(WRITE_STAGE_TIME, stage));
+  }
+
+  Timer getWriteTotalTimer() {
+    return getTimer(WRITE_TOTAL_TIME);
+  }
+
   public Counter getCounter(String counterName) {
     return registry.counter(counterName);
   }
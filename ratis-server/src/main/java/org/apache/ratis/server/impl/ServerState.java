@@ -278,11 +278,21 @@ public class ServerState implements Closeable {
     return log;
   }
 
-  void appendLog(TransactionContext operation) throws StateMachineException {
-    log.append(currentTerm.get(), operation);
+  /**
+   * Append the given operation with the given leader term.
+   * Note that the current term may have been advanced if the leader is stepping down.
+   */
+  void appendLog(long leaderTerm, TransactionContext operation) throws StateMachineException {
+    log.append(leaderTerm, operation);
     Objects.requireNonNull(operation.getLogEntry());
   }
 
+  /** Append the given operations with the given leader term, each in its own log entry. */
+  void appendLog(long leaderTerm, List<TransactionContext> operations) throws StateMachineException {
+    log.append(leaderTerm, operations);
+    operations.forEach(operation -> Objects.requireNonNull(operation.getLogEntry()));
+  }
+
   /**
    * Check if accept the leader selfId and term from the incoming AppendEntries rpc.
    * If accept, update the current state.
@@ -18,7 +18,6 @@
 package org.apache.ratis.server.impl;
 
 import org.apache.ratis.conf.RaftProperties;
-import org.apache.ratis.proto.RaftProtos.CommitInfoProto;
 import org.apache.ratis.protocol.Message;
 import org.apache.ratis.protocol.StateMachineException;
 import org.apache.ratis.server.RaftServerConfigKeys;
@@ -42,7 +41,6 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
-import java.util.stream.LongStream;
 
 import com.codahale.metrics.Timer;
 
@@ -201,6 +199,8 @@ class StateMachineUpdater implements Runnable {
   private void reload() throws IOException {
     Preconditions.assertTrue(stateMachine.getLifeCycleState() == LifeCycle.State.PAUSED);
 
+    // load the retry cache before the state machine so that the state machine does not see the file
+    server.loadInstalledRetryCache();
     stateMachine.reinitialize();
 
     final SnapshotInfo snapshot = stateMachine.getLatestSnapshot();
@@ -224,6 +224,7 @@ class StateMachineUpdater implements Runnable {
           LOG.debug("{}: applying nextIndex={}", this, nextIndex);
         }
 
+        server.getWriteTracer().record(WriteTracer.Stage.APPLYING, nextIndex);
         final CompletableFuture<Message> f = server.applyLogToStateMachine(next);
         if (f != null) {
           futures.get().add(f);
@@ -273,10 +274,9 @@ class StateMachineUpdater implements Runnable {
     if (i >= 0) {
       LOG.info("{}: Took a snapshot at index {}", name, i);
       snapshotIndex.updateIncreasingly(i, infoIndexChange);
+      server.saveRetryCache(i);
 
-      final LongStream commitIndexStream = server.getCommitInfos().stream().mapToLong(CommitInfoProto::getCommitIndex);
-      final long purgeIndex = LongStream.concat(LongStream.of(i), commitIndexStream).min().orElse(i);
-      raftLog.purge(purgeIndex);
+      server.purgeLog(i);
     }
   }
 
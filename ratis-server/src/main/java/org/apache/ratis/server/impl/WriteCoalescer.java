@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.CommitInfoProto;
+import org.apache.ratis.proto.RaftProtos.StateMachineLogEntryProto;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.NotLeaderException;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftClientRequest;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.statemachine.TransactionContext;
+import org.apache.ratis.util.Daemon;
+import org.apache.ratis.util.TimeDuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesce the write requests submitted concurrently to the leader into batches of log appends.
+ *
+ * The requests are queued and then drained by a single thread,
+ * which appends up to an element limit and a byte limit of them at once,
+ * so that the cost of locking, flushing and replication is shared by the batch.
+ * Each request still has its own log entry so that the state machine sees one transaction per log index.
+ * A request waits in the queue for at most the linger time.
+ *
+ * The number of queued requests is bounded by the {@link PendingRequests.Permit}s they hold.
+ */
+class WriteCoalescer {
+  public static final Logger LOG = LoggerFactory.getLogger(WriteCoalescer.class);
+
+  /** A write request waiting to be coalesced. */
+  static class PendingWrite {
+    private final PendingRequests.Permit permit;
+    private final RaftClientRequest request;
+    private final TransactionContext context;
+    private final RetryCache.CacheEntry cacheEntry;
+    /** The {@link System#nanoTime()} when the request is received. */
+    private final long receivedTime;
+    private final CompletableFuture<RaftClientReply> future = new CompletableFuture<>();
+
+    PendingWrite(PendingRequests.Permit permit, RaftClientRequest request, TransactionContext context,
+        RetryCache.CacheEntry cacheEntry, long receivedTime) {
+      this.permit = permit;
+      this.request = request;
+      this.context = context;
+      this.cacheEntry = cacheEntry;
+      this.receivedTime = receivedTime;
+    }
+
+    PendingRequests.Permit getPermit() {
+      return permit;
+    }
+
+    RaftClientRequest getRequest() {
+      return request;
+    }
+
+    TransactionContext getContext() {
+      return context;
+    }
+
+    long getReceivedTime() {
+      return receivedTime;
+    }
+
+    CompletableFuture<RaftClientReply> getFuture() {
+      return future;
+    }
+
+    /** @return the size of the log entry data of this write. */
+    int getSize() {
+      final StateMachineLogEntryProto smLog = context.getStateMachineLogEntry();
+      return smLog != null? smLog.getSerializedSize(): Message.getSize(request.getMessage());
+    }
+
+    /** Complete this write once the given pending request is replied. */
+    void link(PendingRequest pending) {
+      pending.getFuture().whenComplete((reply, e) -> {
+        if (e != null) {
+          future.completeExceptionally(e);
+        } else {
+          future.complete(reply);
+        }
+      });
+    }
+
+    void fail(RaftClientReply reply) {
+      cacheEntry.failWithReply(reply);
+      future.complete(reply);
+    }
+
+    void fail(Throwable t) {
+      cacheEntry.failWithException(t);
+      future.completeExceptionally(t);
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + ":" + request;
+    }
+  }
+
+  private final String name;
+  private final RaftServerImpl server;
+  private final LeaderState leaderState;
+  private final int elementLimit;
+  private final long byteLimit;
+  private final long lingerNanos;
+
+  private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+  private final Daemon drainer;
+  private volatile boolean running = true;
+  /** The write polled from the queue which did not fit into the previous batch. */
+  private PendingWrite carried;
+
+  WriteCoalescer(RaftServerImpl server, LeaderState leaderState, RaftProperties properties) {
+    this.name = server.getMemberId() + "-" + getClass().getSimpleName();
+    this.server = server;
+    this.leaderState = leaderState;
+    this.elementLimit = RaftServerConfigKeys.Write.Coalesce.elementLimit(properties);
+    this.byteLimit = RaftServerConfigKeys.Write.Coalesce.byteLimit(properties).getSize();
+    final TimeDuration linger = RaftServerConfigKeys.Write.Coalesce.linger(properties);
+    this.lingerNanos = linger.toLong(TimeUnit.NANOSECONDS);
+    this.drainer = new Daemon(this::run, name);
+  }
+
+  void start() {
+    drainer.start();
+  }
+
+  /** Submit the given write. The caller must hold the append lock of the leader. */
+  void submit(PendingWrite write) {
+    queue.offer(write);
+  }
+
+  /**
+   * Stop draining and fail all the queued writes.
+   * It must be called after the leader is stopped so that no more writes will be submitted.
+   *
+   * @return the transactions of the failed writes.
+   */
+  Collection<TransactionContext> stop(NotLeaderException nle, Collection<CommitInfoProto> commitInfos) {
+    running = false;
+    drainer.interrupt();
+
+    final List<TransactionContext> transactions = new ArrayList<>();
+    for(PendingWrite w; (w = queue.poll()) != null; ) {
+      w.fail(new RaftClientReply(w.getRequest(), nle, commitInfos));
+      transactions.add(w.getContext());
+    }
+    return transactions;
+  }
+
+  private void run() {
+    final List<PendingWrite> batch = new ArrayList<>(elementLimit);
+    while (running) {
+      try {
+        if (poll(batch)) {
+          server.appendTransactions(leaderState, batch);
+        }
+      } catch (InterruptedException e) {
+        if (!running) {
+          LOG.info("{}: interrupted gracefully", this);
+        } else {
+          throw new IllegalStateException(this + ": interrupted UNEXPECTEDLY", e);
+        }
+      } catch (Throwable t) {
+        LOG.error("{}: Failed to append {}", this, batch, t);
+        batch.forEach(w -> w.fail(t));
+      } finally {
+        batch.clear();
+      }
+    }
+
+    final PendingWrite w = carried;
+    if (w != null) {
+      w.fail(new RaftClientReply(w.getRequest(), server.generateNotLeaderException(), server.getCommitInfos()));
+    }
+  }
+
+  /**
+   * Poll the queued writes into the given batch
+   * until the element limit, the byte limit or the linger time is reached.
+   *
+   * @return true if the batch is non-empty.
+   */
+  private boolean poll(List<PendingWrite> batch) throws InterruptedException {
+    PendingWrite first = carried;
+    carried = null;
+    if (first == null) {
+      first = queue.poll(server.getMaxTimeoutMs(), TimeUnit.MILLISECONDS);
+      if (first == null) {
+        return false;
+      }
+    }
+    batch.add(first);
+
+    long bytes = first.getSize();
+    final long deadline = System.nanoTime() + lingerNanos;
+    while (batch.size() < elementLimit) {
+      final long remaining = deadline - System.nanoTime();
+      final PendingWrite next = remaining > 0? queue.poll(remaining, TimeUnit.NANOSECONDS): queue.poll();
+      if (next == null) {
+        break;
+      }
+      bytes += next.getSize();
+      if (bytes > byteLimit) {
+        carried = next;
+        break;
+      }
+      batch.add(next);
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
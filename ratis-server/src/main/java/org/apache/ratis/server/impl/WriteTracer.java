@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import com.codahale.metrics.Timer;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Trace the time spent by the write requests in each {@link Stage} of the leader write pipeline.
+ *
+ * The traces are kept by log index in preallocated arrays of a fixed capacity
+ * so that no objects are created per request;
+ * the slot of an index is reused by a larger index.
+ * When a request is replied, the time between the consecutive stages are recorded in the per-stage timers,
+ * and the stages of the request are logged if its total time exceeds the slow threshold.
+ */
+public final class WriteTracer {
+  public static final Logger LOG = LoggerFactory.getLogger(WriteTracer.class);
+
+  /** The stages in the order of the pipeline. */
+  public enum Stage {
+    /** The request is received by the leader. */
+    RECEIVED,
+    /** The log entry is enqueued to the log worker. */
+    ENQUEUED,
+    /** The log entry is appended to the RaftLog. */
+    APPENDED,
+    /** The log entry is flushed by the log worker. */
+    FLUSHED,
+    /** The log entry is acknowledged by a majority, i.e. it is committed. */
+    COMMITTED,
+    /** The StateMachineUpdater starts applying the log entry to the state machine. */
+    APPLYING,
+    /** The request is replied, i.e. the state machine has applied the log entry. */
+    REPLIED;
+
+    private static final Stage[] VALUES = values();
+
+    String getMetricName() {
+      return name().toLowerCase();
+    }
+  }
+
+  private static final int NUM_STAGES = Stage.VALUES.length;
+  private static final long NOT_RECORDED = Long.MIN_VALUE;
+  /** A slot is being claimed by a new index. */
+  private static final long CLAIMING = Long.MIN_VALUE;
+
+  /** A finished index i is stored as ~i, which is negative. */
+  private static long decode(long stored) {
+    return stored < 0? ~stored: stored;
+  }
+
+  private final Object name;
+  private final int capacity;
+  /** The log index in each slot; null if the tracer is disabled. */
+  private final AtomicLongArray indices;
+  /** The timestamps of the stages, {@link #NUM_STAGES} for each slot. */
+  private final AtomicLongArray timestamps;
+
+  /** The timers of the time from the previous stage; the element for {@link Stage#RECEIVED} is null. */
+  private final Timer[] stageTimers = new Timer[NUM_STAGES];
+  private final Timer totalTimer;
+
+  private final long slowThresholdNanos;
+  private final long slowLogIntervalNanos;
+  private final AtomicLong nextSlowLogTime = new AtomicLong(System.nanoTime());
+  private final AtomicLong slowCount = new AtomicLong();
+
+  WriteTracer(Object name, RaftProperties properties, RaftServerMetrics metrics) {
+    this.name = name;
+    if (!RaftServerConfigKeys.Write.Trace.enabled(properties)) {
+      this.capacity = 0;
+      this.indices = null;
+      this.timestamps = null;
+      this.totalTimer = null;
+      this.slowThresholdNanos = Long.MAX_VALUE;
+      this.slowLogIntervalNanos = Long.MAX_VALUE;
+      return;
+    }
+
+    this.capacity = RaftServerConfigKeys.Write.Trace.capacity(properties);
+    this.indices = new AtomicLongArray(capacity);
+    for(int i = 0; i < capacity; i++) {
+      indices.set(i, ~0L); // index 0 is finished so that it will not be traced.
+    }
+    this.timestamps = new AtomicLongArray(capacity * NUM_STAGES);
+    for(int i = 0; i < timestamps.length(); i++) {
+      timestamps.set(i, NOT_RECORDED);
+    }
+
+    for(int i = 1; i < NUM_STAGES; i++) {
+      stageTimers[i] = metrics.getWriteStageTimer(Stage.VALUES[i].getMetricName());
+    }
+    this.totalTimer = metrics.getWriteTotalTimer();
+    this.slowThresholdNanos = RaftServerConfigKeys.Write.Trace.slowThreshold(properties).toLong(TimeUnit.NANOSECONDS);
+    this.slowLogIntervalNanos = RaftServerConfigKeys.Write.Trace.slowLogInterval(properties)
+        .toLong(TimeUnit.NANOSECONDS);
+  }
+
+  public boolean isEnabled() {
+    return indices != null;
+  }
+
+  /**
+   * @return the slot of the given index, or -1 if the index is not traced.
+   *         A slot is claimed by a larger index, which resets the timestamps of the slot.
+   */
+  private int getSlot(long index) {
+    final int slot = (int) (index % capacity);
+    for(;;) {
+      final long stored = indices.get(slot);
+      if (stored == index) {
+        return slot;
+      } else if (stored == CLAIMING) {
+        // another thread is resetting the slot; wait for it.
+        Thread.yield();
+      } else if (decode(stored) >= index) {
+        // either the index is finished or the slot is reused by a larger index
+        return -1;
+      } else if (indices.compareAndSet(slot, stored, CLAIMING)) {
+        final int offset = slot * NUM_STAGES;
+        for(int i = 0; i < NUM_STAGES; i++) {
+          timestamps.set(offset + i, NOT_RECORDED);
+        }
+        indices.set(slot, index);
+        return slot;
+      }
+    }
+  }
+
+  private void recordAt(Stage stage, long index, long time) {
+    final int slot = getSlot(index);
+    if (slot >= 0) {
+      timestamps.set(slot * NUM_STAGES + stage.ordinal(), time);
+    }
+  }
+
+  /** Record the given stage of the given index at the current time. */
+  public void record(Stage stage, long index) {
+    if (isEnabled() && index > 0) {
+      recordAt(stage, index, System.nanoTime());
+    }
+  }
+
+  /** Record the given stage of all the indices in the range [startIndex, endIndex] at the current time. */
+  public void record(Stage stage, long startIndex, long endIndex) {
+    if (isEnabled()) {
+      final long now = System.nanoTime();
+      // the older indices are already overwritten
+      for(long i = Math.max(Math.max(startIndex, endIndex - capacity + 1), 1); i <= endIndex; i++) {
+        recordAt(stage, i, now);
+      }
+    }
+  }
+
+  /** The log entry of a request received at the given time is appended to the RaftLog. */
+  void appended(long index, long receivedTime) {
+    if (isEnabled() && index > 0) {
+      recordAt(Stage.RECEIVED, index, receivedTime);
+      recordAt(Stage.APPENDED, index, System.nanoTime());
+    }
+  }
+
+  /** The (first) request of the given index is replied; finish the trace. */
+  void replied(long index) {
+    if (!isEnabled() || index <= 0) {
+      return;
+    }
+    final long now = System.nanoTime();
+    final int slot = (int) (index % capacity);
+    if (!indices.compareAndSet(slot, index, ~index)) {
+      return; // not traced or already finished
+    }
+
+    final int offset = slot * NUM_STAGES;
+    final long received = timestamps.get(offset);
+    if (received == NOT_RECORDED) {
+      return; // not a client request
+    }
+    timestamps.set(offset + Stage.REPLIED.ordinal(), now);
+
+    long previous = received;
+    for(int i = 1; i < NUM_STAGES; i++) {
+      final long t = timestamps.get(offset + i);
+      if (t != NOT_RECORDED) {
+        // the stages may overlap, e.g. an entry can be committed by the followers before it is flushed locally.
+        stageTimers[i].update(Math.max(0, t - previous), TimeUnit.NANOSECONDS);
+        previous = Math.max(previous, t);
+      }
+    }
+    final long total = now - received;
+    totalTimer.update(total, TimeUnit.NANOSECONDS);
+
+    if (total > slowThresholdNanos) {
+      final long count = slowCount.incrementAndGet();
+      final long next = nextSlowLogTime.get();
+      if (now - next >= 0 && nextSlowLogTime.compareAndSet(next, now + slowLogIntervalNanos)) {
+        slowCount.addAndGet(-count);
+        LOG.warn("{}: {} slow write request(s) since the last log, e.g. index {}, the time since received: {}",
+            name, count, index, toString(offset, received));
+      }
+    }
+  }
+
+  private String toString(int offset, long received) {
+    final StringBuilder b = new StringBuilder();
+    for(int i = 1; i < NUM_STAGES; i++) {
+      final long t = timestamps.get(offset + i);
+      if (t != NOT_RECORDED) {
+        b.append(b.length() == 0? "": ", ").append(Stage.VALUES[i]).append('=')
+            .append(TimeUnit.NANOSECONDS.toMicros(t - received)).append("us");
+      }
+    }
+    return b.toString();
+  }
+}
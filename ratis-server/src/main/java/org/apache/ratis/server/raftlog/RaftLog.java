@@ -38,6 +38,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -183,6 +184,53 @@ public abstract class RaftLog implements RaftLogSequentialOps, Closeable {
     }
   }
 
+  @Override
+  public final long append(long term, List<TransactionContext> transactions) throws StateMachineException {
+    return runner.runSequentially(() -> appendImpl(term, transactions));
+  }
+
+  private long appendImpl(long term, List<TransactionContext> transactions) throws StateMachineException {
+    checkLogState();
+    try(AutoCloseableLock writeLock = writeLock()) {
+      final long firstIndex = getNextIndex();
+
+      // each transaction has its own log entry with consecutive indices;
+      // the entries are built before appending any of them so that either all or none of them are appended.
+      final List<TransactionContext> preAppended = new ArrayList<>(transactions.size());
+      final List<LogEntryProto> entries = new ArrayList<>(transactions.size());
+      for(TransactionContext operation : transactions) {
+        try {
+          operation = operation.preAppendTransaction();
+        } catch (IOException e) {
+          cancelTransactions(preAppended);
+          throw new StateMachineException(memberId, e);
+        }
+        preAppended.add(operation);
+
+        final LogEntryProto e = operation.initLogEntry(term, firstIndex + entries.size());
+        int entrySize = e.getSerializedSize();
+        if (entrySize > maxBufferSize) {
+          cancelTransactions(preAppended);
+          throw new StateMachineException(memberId, new RaftLogIOException(
+              "Log entry size " + entrySize + " exceeds the max buffer limit of " + maxBufferSize));
+        }
+        entries.add(e);
+      }
+      entries.forEach(this::appendEntry);
+      return firstIndex + entries.size() - 1;
+    }
+  }
+
+  private void cancelTransactions(List<TransactionContext> transactions) {
+    for(TransactionContext t : transactions) {
+      try {
+        t.cancelTransaction();
+      } catch (IOException e) {
+        LOG.warn("{}: Failed to cancel transaction {}", name, t, e);
+      }
+    }
+  }
+
   @Override
   public final long appendMetadata(long term, long newCommitIndex) {
     return runner.runSequentially(() -> appendMetadataImpl(term, newCommitIndex));
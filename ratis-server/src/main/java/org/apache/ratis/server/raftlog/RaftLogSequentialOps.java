@@ -92,6 +92,18 @@ interface RaftLogSequentialOps {
    */
   long append(long term, TransactionContext transaction) throws StateMachineException;
 
+  /**
+   * Append asynchronously a log entry for each of the given transactions for the given term,
+   * with consecutive indices.
+   * Either all or none of the transactions are appended.
+   * Used by the leader.
+   *
+   * Note that the underlying I/O operation is submitted but may not be completed when this method returns.
+   *
+   * @return the index of the last new log entry.
+   */
+  long append(long term, List<TransactionContext> transactions) throws StateMachineException;
+
   /**
    * Append asynchronously a log entry for the given term and configuration
    * Used by the leader.
@@ -25,6 +25,7 @@ import org.apache.ratis.protocol.TimeoutIOException;
 import org.apache.ratis.server.RaftServerConfigKeys;
 import org.apache.ratis.server.impl.RaftServerImpl;
 import org.apache.ratis.server.impl.ServerProtoUtils;
+import org.apache.ratis.server.impl.WriteTracer;
 import org.apache.ratis.server.metrics.RaftLogMetrics;
 import org.apache.ratis.server.raftlog.RaftLog;
 import org.apache.ratis.server.raftlog.RaftLogIOException;
@@ -370,7 +371,9 @@ class SegmentedRaftLogWorker implements Runnable {
 
   private void updateFlushedIndexIncreasingly() {
     final long i = lastWrittenIndex;
+    final long previous = flushIndex.get();
     flushIndex.updateIncreasingly(i, traceIndexChange);
+    trace(WriteTracer.Stage.FLUSHED, previous + 1, i);
     postUpdateFlushedIndex();
     writeTasks.updateIndex(i);
   }
@@ -400,7 +403,16 @@ class SegmentedRaftLogWorker implements Runnable {
   }
 
   Task writeLogEntry(LogEntryProto entry) {
-    return addIOTask(new WriteLog(entry));
+    final Task task = addIOTask(new WriteLog(entry));
+    trace(WriteTracer.Stage.ENQUEUED, entry.getIndex(), entry.getIndex());
+    return task;
+  }
+
+  private void trace(WriteTracer.Stage stage, long startIndex, long endIndex) {
+    final WriteTracer tracer = server != null? server.getWriteTracer(): null;
+    if (tracer != null) {
+      tracer.record(stage, startIndex, endIndex);
+    }
   }
 
   Task truncate(TruncationSegments ts, long index) {
@@ -46,6 +46,7 @@ public class RaftStorageDirectory {
   static final String STORAGE_DIR_CURRENT = "current";
   static final String STORAGE_FILE_LOCK = "in_use.lock";
   static final String META_FILE_NAME = "raft-meta";
+  static final String RETRY_CACHE_FILE_NAME = "retry-cache";
   static final String LOG_FILE_INPROGRESS = "inprogress";
   static final String LOG_FILE_PREFIX = "log";
   static final String STATE_MACHINE = "sm"; // directory containing state machine snapshots
@@ -153,6 +154,15 @@ public class RaftStorageDirectory {
     return new File(getCurrentDir(), META_FILE_NAME + CONF_EXTENSION);
   }
 
+  public File getRetryCacheFile() {
+    return new File(getCurrentDir(), RETRY_CACHE_FILE_NAME);
+  }
+
+  /** @return the retry cache file installed together with a snapshot from the leader. */
+  public File getInstalledRetryCacheFile() {
+    return new File(getStateMachineDir(), RETRY_CACHE_FILE_NAME);
+  }
+
   public File getOpenLogFile(long startIndex) {
     return new File(getCurrentDir(), getOpenLogFileName(startIndex));
   }
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis;
+
+import org.apache.ratis.RaftTestUtil.SimpleMessage;
+import org.apache.ratis.client.LeaderRoutingTable;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.client.RaftClientConfigKeys;
+import org.apache.ratis.client.impl.RaftClientTestUtil;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.TimeDuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public abstract class LeaderRoutingTests<CLUSTER extends MiniRaftCluster>
+    extends BaseTest
+    implements MiniRaftCluster.Factory.Get<CLUSTER> {
+  public static final int NUM_SERVERS = 3;
+
+  private final RaftProperties properties = new RaftProperties();
+
+  {
+    RaftClientConfigKeys.Routing.setShared(properties, true);
+  }
+
+  @Override
+  public RaftProperties getProperties() {
+    return properties;
+  }
+
+  @Test
+  public void testSharedLeaderRouting() throws Exception {
+    runWithNewCluster(NUM_SERVERS, this::runTestSharedLeaderRouting);
+  }
+
+  void runTestSharedLeaderRouting(CLUSTER cluster) throws Exception {
+    RaftTestUtil.waitForLeader(cluster);
+    final RaftGroupId groupId = cluster.getGroup().getGroupId();
+
+    final RaftPeerId leaderId;
+    try (RaftClient client = cluster.createClient()) {
+      final RaftClientReply reply = client.send(new SimpleMessage("m0"));
+      Assert.assertTrue(reply.isSuccess());
+      // the server which replied successfully is the leader the table should record
+      leaderId = reply.getServerId();
+      final LeaderRoutingTable table = client.getClientRpc().getLeaderRoutingTable();
+      Assert.assertEquals(leaderId, table.getLeader(groupId));
+    }
+
+    // a new client starts with the leader learned by the previous client
+    try (RaftClient client = cluster.createClient()) {
+      Assert.assertEquals(leaderId, RaftClientTestUtil.getLeaderId(client));
+    }
+
+    // the table follows the leader change
+    RaftTestUtil.changeLeader(cluster, leaderId);
+    final RaftPeerId newLeaderId;
+    try (RaftClient client = cluster.createClient()) {
+      final RaftClientReply reply = client.send(new SimpleMessage("m1"));
+      Assert.assertTrue(reply.isSuccess());
+      newLeaderId = reply.getServerId();
+      Assert.assertNotEquals(leaderId, newLeaderId);
+      Assert.assertEquals(newLeaderId, client.getClientRpc().getLeaderRoutingTable().getLeader(groupId));
+    }
+    try (RaftClient client = cluster.createClient()) {
+      Assert.assertEquals(newLeaderId, RaftClientTestUtil.getLeaderId(client));
+    }
+  }
+
+  @Test
+  public void testRefreshLeader() throws Exception {
+    RaftClientConfigKeys.Routing.setRefreshInterval(properties, TimeDuration.valueOf(100, TimeUnit.MILLISECONDS));
+    runWithNewCluster(NUM_SERVERS, this::runTestRefreshLeader);
+  }
+
+  void runTestRefreshLeader(CLUSTER cluster) throws Exception {
+    final RaftPeerId leaderId = RaftTestUtil.waitForLeader(cluster).getId();
+    try (RaftClient client = cluster.createClient(leaderId)) {
+      // the client learns the new leader without sending any requests
+      final RaftPeerId newLeaderId = RaftTestUtil.changeLeader(cluster, leaderId);
+      JavaUtils.attemptUntilTrue(() -> newLeaderId.equals(RaftClientTestUtil.getLeaderId(client)),
+          50, TimeDuration.valueOf(100, TimeUnit.MILLISECONDS), "refreshLeader", LOG);
+    }
+  }
+}
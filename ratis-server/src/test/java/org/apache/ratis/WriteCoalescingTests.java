@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis;
+
+import org.apache.ratis.RaftTestUtil.SimpleMessage;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.impl.RaftServerImpl;
+import org.apache.ratis.server.raftlog.RaftLog;
+import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.statemachine.TransactionContext;
+import org.apache.ratis.statemachine.impl.BaseStateMachine;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.SizeInBytes;
+import org.apache.ratis.util.TimeDuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public abstract class WriteCoalescingTests<CLUSTER extends MiniRaftCluster>
+    extends BaseTest
+    implements MiniRaftCluster.Factory.Get<CLUSTER> {
+  public static final int NUM_SERVERS = 3;
+
+  /** Record the data and the log indices of the applied transactions. */
+  public static class RecordingStateMachine extends BaseStateMachine {
+    private final List<ByteString> applied = new ArrayList<>();
+    private final List<Long> appliedIndices = new ArrayList<>();
+
+    @Override
+    public CompletableFuture<Message> applyTransaction(TransactionContext trx) {
+      final LogEntryProto entry = trx.getLogEntry();
+      synchronized (this) {
+        applied.add(entry.getStateMachineLogEntry().getLogData());
+        appliedIndices.add(entry.getIndex());
+      }
+      return super.applyTransaction(trx);
+    }
+
+    synchronized List<ByteString> getApplied() {
+      return new ArrayList<>(applied);
+    }
+
+    synchronized List<Long> getAppliedIndices() {
+      return new ArrayList<>(appliedIndices);
+    }
+  }
+
+  private final RaftProperties properties = new RaftProperties();
+
+  {
+    properties.setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY, RecordingStateMachine.class, StateMachine.class);
+    RaftServerConfigKeys.Write.Coalesce.setEnabled(properties, true);
+    // use a long linger time so that the concurrent writes are coalesced
+    RaftServerConfigKeys.Write.Coalesce.setLinger(properties, TimeDuration.valueOf(100, TimeUnit.MILLISECONDS));
+  }
+
+  @Override
+  public RaftProperties getProperties() {
+    return properties;
+  }
+
+  @Test
+  public void testCoalescedWrites() throws Exception {
+    runWithNewCluster(NUM_SERVERS, this::runTestCoalescedWrites);
+  }
+
+  void runTestCoalescedWrites(CLUSTER cluster) throws Exception {
+    final RaftServerImpl leader = RaftTestUtil.waitForLeader(cluster);
+    final RaftLog log = leader.getState().getLog();
+    final long startIndex = log.getNextIndex();
+
+    final SimpleMessage[] messages = SimpleMessage.create(100);
+    sendAsync(cluster, leader, messages);
+
+    // each write has its own log entry
+    int numEntries = 0;
+    for (long i = startIndex; i < log.getNextIndex(); i++) {
+      if (log.get(i).hasStateMachineLogEntry()) {
+        numEntries++;
+      }
+    }
+    Assert.assertEquals(messages.length, numEntries);
+
+    assertReplicatedAndApplied(cluster, leader, startIndex, messages);
+  }
+
+  @Test
+  public void testCoalescedWritesWithinBufferLimit() throws Exception {
+    // the coalescing byte limit (1MB by default) exceeds the appender buffer limit
+    final SizeInBytes bufferByteLimit = SizeInBytes.valueOf("16KB");
+    RaftServerConfigKeys.Log.Appender.setBufferByteLimit(properties, bufferByteLimit);
+    runWithNewCluster(NUM_SERVERS, cluster -> runTestCoalescedWritesWithinBufferLimit(cluster, bufferByteLimit));
+  }
+
+  void runTestCoalescedWritesWithinBufferLimit(CLUSTER cluster, SizeInBytes bufferByteLimit) throws Exception {
+    final RaftServerImpl leader = RaftTestUtil.waitForLeader(cluster);
+    final RaftLog log = leader.getState().getLog();
+    final long startIndex = log.getNextIndex();
+
+    final char[] chars = new char[1000];
+    Arrays.fill(chars, 'x');
+    final SimpleMessage[] messages = SimpleMessage.create(100, new String(chars));
+    sendAsync(cluster, leader, messages);
+
+    // each log entry has only one request, so the entries do not exceed the buffer limit
+    for (long i = startIndex; i < log.getNextIndex(); i++) {
+      Assert.assertTrue(log.get(i).getSerializedSize() <= bufferByteLimit.getSize());
+    }
+
+    assertReplicatedAndApplied(cluster, RaftTestUtil.waitForLeader(cluster), startIndex, messages);
+  }
+
+  static void sendAsync(MiniRaftCluster cluster, RaftServerImpl leader, SimpleMessage[] messages)
+      throws Exception {
+    try (RaftClient client = cluster.createClient(leader.getId())) {
+      final List<CompletableFuture<RaftClientReply>> futures = new ArrayList<>();
+      for (SimpleMessage m : messages) {
+        futures.add(client.sendAsync(m));
+      }
+      // each request gets its own reply, which is the message echoed by the BaseStateMachine
+      for (int i = 0; i < messages.length; i++) {
+        final RaftClientReply reply = futures.get(i).get();
+        Assert.assertTrue(reply.isSuccess());
+        Assert.assertEquals(messages[i].getContent(), reply.getMessage().getContent());
+      }
+    }
+  }
+
+  /**
+   * The followers have the same log entries as the leader
+   * and all the servers apply each message exactly once in the same order,
+   * one transaction per log index.
+   */
+  void assertReplicatedAndApplied(CLUSTER cluster, RaftServerImpl leader, long startIndex,
+      SimpleMessage[] messages) throws Exception {
+    final RaftLog leaderLog = leader.getState().getLog();
+    final long endIndex = leaderLog.getNextIndex();
+    for (RaftServerImpl s : cluster.iterateServerImpls()) {
+      final RecordingStateMachine sm = (RecordingStateMachine) s.getStateMachine();
+      JavaUtils.attemptUntilTrue(() -> sm.getApplied().size() >= messages.length,
+          100, TimeDuration.valueOf(100, TimeUnit.MILLISECONDS), s.getId() + " applied", LOG);
+    }
+
+    final List<ByteString> expected = ((RecordingStateMachine) leader.getStateMachine()).getApplied();
+    final Comparator<ByteString> comparator = ByteString.unsignedLexicographicalComparator();
+    Assert.assertEquals(Arrays.stream(messages).map(Message::getContent).sorted(comparator).collect(Collectors.toList()),
+        expected.stream().sorted(comparator).collect(Collectors.toList()));
+
+    for (RaftServerImpl s : cluster.getFollowers()) {
+      final RaftLog followerLog = s.getState().getLog();
+      for (long i = startIndex; i < endIndex; i++) {
+        Assert.assertEquals(s.getId() + ": index " + i, leaderLog.get(i), followerLog.get(i));
+      }
+      Assert.assertEquals(s.getId() + " applied", expected,
+          ((RecordingStateMachine) s.getStateMachine()).getApplied());
+    }
+
+    final List<Long> indices = ((RecordingStateMachine) leader.getStateMachine()).getAppliedIndices();
+    for (int i = 0; i < indices.size(); i++) {
+      if (i > 0) {
+        Assert.assertTrue("indices = " + indices, indices.get(i) > indices.get(i - 1));
+      }
+      Assert.assertEquals(expected.get(i), leaderLog.get(indices.get(i)).getStateMachineLogEntry().getLogData());
+    }
+  }
+}
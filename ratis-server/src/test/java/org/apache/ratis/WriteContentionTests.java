@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis;
+
+import org.apache.ratis.RaftTestUtil.SimpleMessage;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.server.impl.RaftServerImpl;
+import org.apache.ratis.server.raftlog.RaftLog;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.TimeDuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write concurrently from multiple clients to the leader,
+ * whose client write path is not serialized by the server lock.
+ * Each write must be appended exactly once, the writes of each client must be in order,
+ * and the followers must have the same log and apply all the writes.
+ */
+public abstract class WriteContentionTests<CLUSTER extends MiniRaftCluster>
+    extends BaseTest
+    implements MiniRaftCluster.Factory.Get<CLUSTER> {
+  public static final int NUM_SERVERS = 3;
+  public static final int NUM_CLIENTS = 8;
+  public static final int NUM_MESSAGES = 50;
+
+  @Test
+  public void testConcurrentWrites() throws Exception {
+    runWithNewCluster(NUM_SERVERS, this::runTestConcurrentWrites);
+  }
+
+  void runTestConcurrentWrites(CLUSTER cluster) throws Exception {
+    final RaftServerImpl leader = RaftTestUtil.waitForLeader(cluster);
+    final RaftLog log = leader.getState().getLog();
+    final long startIndex = log.getNextIndex();
+
+    final SimpleMessage[][] messages = new SimpleMessage[NUM_CLIENTS][];
+    for (int i = 0; i < NUM_CLIENTS; i++) {
+      messages[i] = SimpleMessage.create(NUM_MESSAGES, "c" + i + "-");
+    }
+    runClients(messages, cluster, leader);
+    final long endIndex = log.getNextIndex();
+
+    // each client's writes are appended exactly once, in the order sent
+    final Map<ByteString, Integer> positions = new HashMap<>();
+    for (int i = 0; i < NUM_CLIENTS; i++) {
+      for (int j = 0; j < NUM_MESSAGES; j++) {
+        positions.put(messages[i][j].getContent(), i * NUM_MESSAGES + j);
+      }
+    }
+    final int[] next = new int[NUM_CLIENTS];
+    int numAppended = 0;
+    for (long index = startIndex; index < endIndex; index++) {
+      final LogEntryProto e = log.get(index);
+      if (!e.hasStateMachineLogEntry()) {
+        continue;
+      }
+      final Integer p = positions.get(e.getStateMachineLogEntry().getLogData());
+      Assert.assertNotNull("Unexpected entry at index " + index, p);
+      final int client = p / NUM_MESSAGES;
+      Assert.assertEquals("Out of order at index " + index, next[client], p % NUM_MESSAGES);
+      next[client]++;
+      numAppended++;
+    }
+    Assert.assertEquals(NUM_CLIENTS * NUM_MESSAGES, numAppended);
+
+    // the followers have the same log and apply all the writes
+    final long lastIndex = endIndex - 1;
+    for (RaftServerImpl s : cluster.getFollowers()) {
+      JavaUtils.attemptUntilTrue(() -> s.getState().getLastAppliedIndex() >= lastIndex,
+          50, TimeDuration.valueOf(100, TimeUnit.MILLISECONDS), s.getId() + " applied", LOG);
+      final RaftLog followerLog = s.getState().getLog();
+      for (long index = startIndex; index < endIndex; index++) {
+        Assert.assertEquals(s.getId() + ": index " + index, log.get(index), followerLog.get(index));
+      }
+    }
+  }
+
+  private void runClients(SimpleMessage[][] messages, CLUSTER cluster, RaftServerImpl leader) throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(messages.length);
+    final List<CompletableFuture<Void>> futures = new ArrayList<>(messages.length);
+    for (SimpleMessage[] clientMessages : messages) {
+      futures.add(CompletableFuture.runAsync(() -> {
+        try (RaftClient client = cluster.createClient(leader.getId())) {
+          for (SimpleMessage m : clientMessages) {
+            final RaftClientReply reply = client.send(m);
+            Assert.assertTrue(reply.isSuccess());
+            Assert.assertEquals(m.getContent(), reply.getMessage().getContent());
+          }
+        } catch (Exception e) {
+          throw new IllegalStateException("Failed to send messages", e);
+        }
+      }, executor));
+    }
+    try {
+      JavaUtils.allOf(futures).get();
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -98,6 +98,11 @@ public class RaftServerTestUtil {
     return entry.isFailed();
   }
 
+  public static boolean isInCompactRetryCache(RaftServerImpl server, ClientId clientId, long callId) {
+    final CompactRetryCache cache = server.getCompactRetryCache();
+    return cache != null && cache.get(clientId, callId) != CompactRetryCache.NOT_FOUND;
+  }
+
   public static RaftPeerRole getRole(RaftServerImpl server) {
     return server.getRole().getRaftPeerRole();
   }
@@ -34,6 +34,7 @@ import org.apache.ratis.metrics.MetricRegistries;
 import org.apache.ratis.metrics.MetricRegistryInfo;
 import org.apache.ratis.metrics.RatisMetricRegistry;
 import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftPeer;
 import org.apache.ratis.protocol.RaftPeerId;
 import org.apache.ratis.server.RaftServerConfigKeys;
 import org.apache.ratis.server.impl.RaftServerImpl;
@@ -117,6 +118,7 @@ public abstract class RaftSnapshotBaseTest extends BaseTest {
     RaftServerConfigKeys.Snapshot.setAutoTriggerThreshold(
         prop, SNAPSHOT_TRIGGER_THRESHOLD);
     RaftServerConfigKeys.Snapshot.setAutoTriggerEnabled(prop, true);
+    RaftServerConfigKeys.RetryCache.Compact.setEnabled(prop, true);
     this.cluster = getFactory().newCluster(1, prop);
     cluster.start();
   }
@@ -178,12 +180,15 @@ public abstract class RaftSnapshotBaseTest extends BaseTest {
   @Test
   public void testBasicInstallSnapshot() throws Exception {
     final List<LogPathAndIndex> logs;
+    final RaftClientReply firstReply;
     int i = 0;
     try {
       RaftTestUtil.waitForLeader(cluster);
       final RaftPeerId leaderId = cluster.getLeader().getId();
 
       try(final RaftClient client = cluster.createClient(leaderId)) {
+        firstReply = client.send(new SimpleMessage("m" + i++));
+        Assert.assertTrue(firstReply.isSuccess());
         for (; i < SNAPSHOT_TRIGGER_THRESHOLD * 2 - 1; i++) {
           RaftClientReply reply = client.send(new SimpleMessage("m" + i));
           Assert.assertTrue(reply.isSuccess());
@@ -230,6 +235,16 @@ public abstract class RaftSnapshotBaseTest extends BaseTest {
       verifyInstallSnapshotMetric(cluster.getLeader());
       RaftServerTestUtil.waitAndCheckNewConf(cluster, change.allPeersInNewConf, 0, null);
 
+      // the compact retry cache is installed together with the snapshot
+      for (RaftPeer peer : change.newPeers) {
+        final RaftServerImpl server = cluster.getRaftServerImpl(peer.getId());
+        JavaUtils.attemptRepeatedly(() -> {
+          Assert.assertTrue(RaftServerTestUtil.isInCompactRetryCache(
+              server, firstReply.getClientId(), firstReply.getCallId()));
+          return null;
+        }, 10, ONE_SECOND, peer.getId() + " compact retry cache", LOG);
+      }
+
       // restart the peer and check if it can correctly handle conf change
       cluster.restartServer(cluster.getLeader().getId(), false);
       assertLeaderContent(cluster);
@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.netty;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.MiniRaftCluster;
+import org.apache.ratis.RaftTestUtil;
+import org.apache.ratis.RaftTestUtil.SimpleMessage;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.grpc.MiniRaftClusterWithGrpc;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.server.impl.RaftServerImpl;
+import org.apache.ratis.statemachine.SimpleStateMachine4Testing;
+import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.util.Timestamp;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Compare the async throughput of the Netty rpc with the gRPC rpc.
+ * The ordered async requests must be appended to the log in the order they are sent.
+ */
+public class TestAsyncThroughputWithNetty extends BaseTest {
+  private static final int NUM_SERVERS = 3;
+  private static final int NUM_MESSAGES = 2000;
+
+  private static RaftProperties newProperties() {
+    final RaftProperties properties = new RaftProperties();
+    properties.setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY,
+        SimpleStateMachine4Testing.class, StateMachine.class);
+    return properties;
+  }
+
+  @Test
+  public void testAsyncThroughput() throws Exception {
+    final double netty = runAsync(MiniRaftClusterWithNetty.FACTORY.newCluster(NUM_SERVERS, newProperties()));
+    final double grpc = runAsync(MiniRaftClusterWithGrpc.FACTORY.newCluster(NUM_SERVERS, newProperties()));
+    LOG.info("Async throughput: Netty {} requests/s, gRPC {} requests/s", netty, grpc);
+    // a loose bound in order to tolerate slow machines; it only catches Netty being serialized per request
+    Assert.assertTrue("Netty " + netty + " requests/s is much slower than gRPC " + grpc + " requests/s",
+        netty * 10 > grpc);
+  }
+
+  /** @return the number of requests per second. */
+  double runAsync(MiniRaftCluster cluster) throws Exception {
+    cluster.start();
+    try {
+      final RaftServerImpl leader = RaftTestUtil.waitForLeader(cluster);
+      final SimpleMessage[] messages = SimpleMessage.create(NUM_MESSAGES + 1);
+      try (RaftClient client = cluster.createClient()) {
+        // warm up the connections
+        Assert.assertTrue(client.send(messages[0]).isSuccess());
+
+        final Timestamp start = Timestamp.currentTime();
+        final List<CompletableFuture<RaftClientReply>> futures = new ArrayList<>(NUM_MESSAGES);
+        for (int i = 1; i < messages.length; i++) {
+          futures.add(client.sendAsync(messages[i]));
+        }
+        long previousIndex = -1;
+        for (CompletableFuture<RaftClientReply> f : futures) {
+          final RaftClientReply reply = f.join();
+          Assert.assertTrue(reply.isSuccess());
+          Assert.assertTrue(reply.getLogIndex() > previousIndex);
+          previousIndex = reply.getLogIndex();
+        }
+        final long elapsedMs = Math.max(1, start.elapsedTimeMs());
+        LOG.info("{}: {} async requests in {} ms", cluster.getClass().getSimpleName(), NUM_MESSAGES, elapsedMs);
+
+        RaftTestUtil.assertLogEntries(leader, leader.getState().getCurrentTerm(), messages);
+        return NUM_MESSAGES * 1000.0 / elapsedMs;
+      }
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
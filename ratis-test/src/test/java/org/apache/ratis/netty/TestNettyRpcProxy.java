@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.netty;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.proto.RaftProtos.ClientMessageEntryProto;
+import org.apache.ratis.proto.RaftProtos.RaftClientReplyProto;
+import org.apache.ratis.proto.RaftProtos.RaftClientRequestProto;
+import org.apache.ratis.proto.RaftProtos.RaftRpcReplyProto;
+import org.apache.ratis.proto.RaftProtos.RaftRpcRequestProto;
+import org.apache.ratis.proto.netty.NettyProtos.RaftNettyServerReplyProto;
+import org.apache.ratis.proto.netty.NettyProtos.RaftNettyServerRequestProto;
+import org.apache.ratis.protocol.RaftPeer;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.thirdparty.io.netty.bootstrap.ServerBootstrap;
+import org.apache.ratis.thirdparty.io.netty.channel.Channel;
+import org.apache.ratis.thirdparty.io.netty.channel.ChannelHandlerContext;
+import org.apache.ratis.thirdparty.io.netty.channel.ChannelInitializer;
+import org.apache.ratis.thirdparty.io.netty.channel.ChannelPipeline;
+import org.apache.ratis.thirdparty.io.netty.channel.EventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.SimpleChannelInboundHandler;
+import org.apache.ratis.thirdparty.io.netty.channel.nio.NioEventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.socket.SocketChannel;
+import org.apache.ratis.thirdparty.io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufDecoder;
+import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
+import org.apache.ratis.util.NetUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/** Test the callIds of the requests multiplexed on a {@link NettyRpcProxy} connection. */
+public class TestNettyRpcProxy extends BaseTest {
+  static final ByteString SLOW = ByteString.copyFromUtf8("slow");
+  static final ByteString FAST = ByteString.copyFromUtf8("fast");
+
+  /** Reply to the slow requests after the given delay and to the other requests immediately. */
+  static class DelayHandler extends SimpleChannelInboundHandler<RaftNettyServerRequestProto> {
+    private final long slowDelayMs;
+
+    DelayHandler(long slowDelayMs) {
+      this.slowDelayMs = slowDelayMs;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, RaftNettyServerRequestProto proto) {
+      final RaftClientRequestProto request = proto.getRaftClientRequest();
+      // echo the message so that the reply can be checked against the request
+      final RaftClientReplyProto reply = RaftClientReplyProto.newBuilder()
+          .setRpcReply(RaftRpcReplyProto.newBuilder()
+              .setCallId(request.getRpcRequest().getCallId())
+              .setSuccess(true))
+          .setMessage(request.getMessage())
+          .build();
+      final RaftNettyServerReplyProto nettyReply = RaftNettyServerReplyProto.newBuilder()
+          .setRaftClientReply(reply)
+          .setCallId(proto.getCallId())
+          .build();
+      if (request.getMessage().getContent().equals(SLOW)) {
+        ctx.executor().schedule(() -> ctx.writeAndFlush(nettyReply), slowDelayMs, TimeUnit.MILLISECONDS);
+      } else {
+        ctx.writeAndFlush(nettyReply);
+      }
+    }
+  }
+
+  private EventLoopGroup group;
+  private Channel serverChannel;
+  private NettyRpcProxy proxy;
+
+  @Before
+  public void setUp() throws Exception {
+    group = new NioEventLoopGroup(2);
+    final InetSocketAddress address = NetUtils.createLocalServerAddress();
+    serverChannel = new ServerBootstrap()
+        .group(group)
+        .channel(NioServerSocketChannel.class)
+        .childHandler(new ChannelInitializer<SocketChannel>() {
+          @Override
+          protected void initChannel(SocketChannel ch) {
+            final ChannelPipeline p = ch.pipeline();
+            p.addLast(new ProtobufVarint32FrameDecoder());
+            p.addLast(new ProtobufDecoder(RaftNettyServerRequestProto.getDefaultInstance()));
+            p.addLast(new NettyProtobufEncoder());
+            p.addLast(new DelayHandler(1000));
+          }
+        })
+        .bind(address).sync().channel();
+    proxy = new NettyRpcProxy(new RaftPeer(RaftPeerId.valueOf("s0"), address), group);
+  }
+
+  @After
+  public void tearDown() {
+    if (proxy != null) {
+      proxy.close();
+    }
+    if (serverChannel != null) {
+      serverChannel.close().syncUninterruptibly();
+    }
+    if (group != null) {
+      group.shutdownGracefully();
+    }
+  }
+
+  static RaftNettyServerRequestProto newRequest(long callId, ByteString content) {
+    final RaftClientRequestProto request = RaftClientRequestProto.newBuilder()
+        .setRpcRequest(RaftRpcRequestProto.newBuilder().setCallId(callId))
+        .setMessage(ClientMessageEntryProto.newBuilder().setContent(content))
+        .build();
+    return RaftNettyServerRequestProto.newBuilder().setRaftClientRequest(request).build();
+  }
+
+  static void assertReply(long expectedCallId, ByteString expectedContent, RaftNettyServerReplyProto reply) {
+    Assert.assertEquals(expectedCallId, NettyRpcProxy.getCallId(reply));
+    Assert.assertEquals(expectedContent, reply.getRaftClientReply().getMessage().getContent());
+  }
+
+  @Test
+  public void testOutOfOrderReplies() throws Exception {
+    final CompletableFuture<RaftNettyServerReplyProto> slow = proxy.sendAsync(newRequest(1, SLOW));
+    final CompletableFuture<RaftNettyServerReplyProto> fast = proxy.sendAsync(newRequest(2, FAST));
+
+    // the reply of the fast request is received before the reply of the slow request
+    assertReply(2, FAST, fast.get(5, TimeUnit.SECONDS));
+    Assert.assertFalse(slow.isDone());
+    assertReply(1, SLOW, slow.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    final CompletableFuture<RaftNettyServerReplyProto> slow = proxy.sendAsync(newRequest(1, SLOW));
+    Assert.assertTrue(slow.cancel(false));
+
+    // the reply of the cancelled request is ignored and the connection can still be used
+    final CompletableFuture<RaftNettyServerReplyProto> slow2 = proxy.sendAsync(newRequest(2, SLOW));
+    final CompletableFuture<RaftNettyServerReplyProto> fast = proxy.sendAsync(newRequest(3, FAST));
+    assertReply(3, FAST, fast.get(5, TimeUnit.SECONDS));
+    assertReply(2, SLOW, slow2.get(5, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.retry;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.RaftTestUtil.SimpleMessage;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.client.RaftClientConfigKeys;
+import org.apache.ratis.client.RaftClientRpc;
+import org.apache.ratis.client.retry.AdaptiveTimeoutRetryPolicy;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftClientRequest;
+import org.apache.ratis.protocol.RaftGroup;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.protocol.RaftPeer;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.protocol.TimeoutIOException;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.TimeDuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/** Test {@link AdaptiveTimeoutRetryPolicy}. */
+public class TestAdaptiveTimeoutRetryPolicy extends BaseTest {
+  static final TimeDuration MIN_TIMEOUT = TimeDuration.valueOf(10, TimeUnit.MILLISECONDS);
+  static final TimeDuration MAX_TIMEOUT = TimeDuration.valueOf(1, TimeUnit.SECONDS);
+
+  static AdaptiveTimeoutRetryPolicy.Builder newBuilder() {
+    return AdaptiveTimeoutRetryPolicy.newBuilder()
+        .setMinTimeout(MIN_TIMEOUT)
+        .setMaxTimeout(MAX_TIMEOUT)
+        .setTimeoutMultiplier(2)
+        .setMinSamples(10);
+  }
+
+  static void addSamples(AdaptiveTimeoutRetryPolicy policy, RaftPeerId server, int n, long latencyMs) {
+    for(int i = 0; i < n; i++) {
+      policy.onReply(server, TimeUnit.MILLISECONDS.toNanos(latencyMs));
+    }
+  }
+
+  static long getTimeoutMs(AdaptiveTimeoutRetryPolicy policy, RaftPeerId server) {
+    return policy.getTimeout(server).toLong(TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void testTimeout() {
+    final AdaptiveTimeoutRetryPolicy policy = newBuilder().build();
+    final RaftPeerId s0 = RaftPeerId.valueOf("s0");
+    final RaftPeerId s1 = RaftPeerId.valueOf("s1");
+    final RaftPeerId s2 = RaftPeerId.valueOf("s2");
+
+    // not enough samples
+    Assert.assertEquals(MAX_TIMEOUT.toLong(TimeUnit.MILLISECONDS), getTimeoutMs(policy, s0));
+    addSamples(policy, s0, 9, 50);
+    Assert.assertEquals(MAX_TIMEOUT.toLong(TimeUnit.MILLISECONDS), getTimeoutMs(policy, s0));
+
+    addSamples(policy, s0, 1, 50);
+    Assert.assertEquals(100, getTimeoutMs(policy, s0));
+
+    // bounded by the min and the max timeouts
+    addSamples(policy, s1, 10, 1);
+    Assert.assertEquals(MIN_TIMEOUT.toLong(TimeUnit.MILLISECONDS), getTimeoutMs(policy, s1));
+    addSamples(policy, s2, 10, 2000);
+    Assert.assertEquals(MAX_TIMEOUT.toLong(TimeUnit.MILLISECONDS), getTimeoutMs(policy, s2));
+  }
+
+  @Test
+  public void testHedgeDelay() {
+    final RaftPeerId s0 = RaftPeerId.valueOf("s0");
+
+    final AdaptiveTimeoutRetryPolicy policy = newBuilder().build();
+    Assert.assertFalse(policy.getHedgeDelay(s0).isPresent());
+    addSamples(policy, s0, 10, 50);
+    Assert.assertEquals(50, policy.getHedgeDelay(s0).map(d -> d.toLong(TimeUnit.MILLISECONDS)).orElse(-1L).longValue());
+
+    final AdaptiveTimeoutRetryPolicy disabled = newBuilder().setHedgeEnabled(false).build();
+    addSamples(disabled, s0, 10, 50);
+    Assert.assertFalse(disabled.getHedgeDelay(s0).isPresent());
+  }
+
+  @Test
+  public void testRetry() {
+    final AdaptiveTimeoutRetryPolicy policy = newBuilder()
+        .setRetryPolicy(RetryPolicies.retryUpToMaximumCountWithFixedSleep(2, MIN_TIMEOUT))
+        .build();
+    for(int i = 1; i < 4; i++) {
+      final int attempt = i;
+      final RetryPolicy.Action action = policy.handleAttemptFailure(() -> attempt);
+      Assert.assertEquals(attempt < 2, action.shouldRetry());
+    }
+  }
+
+  /** An rpc which never replies. */
+  static class NoReplyRpc implements RaftClientRpc {
+    private final List<CompletableFuture<RaftClientReply>> sent = new CopyOnWriteArrayList<>();
+
+    @Override
+    public CompletableFuture<RaftClientReply> sendRequestAsync(RaftClientRequest request) {
+      final CompletableFuture<RaftClientReply> f = new CompletableFuture<>();
+      sent.add(f);
+      return f;
+    }
+
+    @Override
+    public RaftClientReply sendRequest(RaftClientRequest request) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addServers(Iterable<RaftPeer> servers) {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  @Test
+  public void testTimeoutCancelsRequest() throws Exception {
+    final RaftPeer s0 = new RaftPeer(RaftPeerId.valueOf("s0"));
+    final RaftProperties properties = new RaftProperties();
+    RaftClientConfigKeys.Async.Experimental.setSendDummyRequest(properties, false);
+    final NoReplyRpc rpc = new NoReplyRpc();
+    final AdaptiveTimeoutRetryPolicy policy = newBuilder()
+        .setRetryPolicy(RetryPolicies.noRetry())
+        .setMaxTimeout(TimeDuration.valueOf(100, TimeUnit.MILLISECONDS))
+        .build();
+
+    try (RaftClient client = RaftClient.newBuilder()
+        .setRaftGroup(RaftGroup.valueOf(RaftGroupId.randomId(), s0))
+        .setClientRpc(rpc)
+        .setProperties(properties)
+        .setRetryPolicy(policy)
+        .build()) {
+      final CompletableFuture<RaftClientReply> f = client.sendAsync(new SimpleMessage("m"));
+      try {
+        f.get();
+        Assert.fail("Expected a timeout");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(JavaUtils.unwrapCompletionException(e.getCause()) instanceof TimeoutIOException);
+      }
+
+      // the request was cancelled in the rpc before the timeout was reported
+      Assert.assertEquals(1, rpc.sent.size());
+      Assert.assertTrue(rpc.sent.get(0).isCancelled());
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.protocol.ClientId;
+import org.apache.ratis.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.apache.ratis.server.impl.CompactRetryCache.NOT_FOUND;
+
+public class TestCompactRetryCache extends BaseTest {
+  @Test
+  public void testPutAndGet() {
+    final CompactRetryCache cache = new CompactRetryCache(10, 4);
+    final ClientId clientId = ClientId.randomId();
+
+    cache.put(clientId, 1, 100, true);
+    cache.put(clientId, 2, 101, false);
+    Assert.assertEquals(100, cache.get(clientId, 1));
+    Assert.assertEquals(101, ~cache.get(clientId, 2));
+    Assert.assertEquals(NOT_FOUND, cache.get(clientId, 3));
+    Assert.assertEquals(NOT_FOUND, cache.get(ClientId.randomId(), 1));
+    Assert.assertEquals(101, cache.getAppliedIndex());
+
+    // the oldest calls are evicted once the call limit is reached
+    for(long callId = 3; callId <= 5; callId++) {
+      cache.put(clientId, callId, 99 + callId, true);
+    }
+    Assert.assertEquals(NOT_FOUND, cache.get(clientId, 1));
+    for(long callId = 2; callId <= 5; callId++) {
+      Assert.assertNotEquals(NOT_FOUND, cache.get(clientId, callId));
+    }
+  }
+
+  @Test
+  public void testClientLimit() {
+    final CompactRetryCache cache = new CompactRetryCache(2, 4);
+    final ClientId c0 = ClientId.randomId();
+    final ClientId c1 = ClientId.randomId();
+    final ClientId c2 = ClientId.randomId();
+
+    cache.put(c0, 1, 1, true);
+    cache.put(c1, 1, 2, true);
+    cache.put(c0, 2, 3, true);
+    // c1 is the least recently applied client
+    cache.put(c2, 1, 4, true);
+    Assert.assertEquals(2, cache.getNumClients());
+    Assert.assertEquals(NOT_FOUND, cache.get(c1, 1));
+    Assert.assertEquals(1, cache.get(c0, 1));
+    Assert.assertEquals(4, cache.get(c2, 1));
+  }
+
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    final File dir = getTestDir();
+    FileUtils.createDirectories(dir);
+    final File file = new File(dir, "retry-cache");
+
+    final CompactRetryCache cache = new CompactRetryCache(10, 4);
+    final ClientId[] clients = {ClientId.randomId(), ClientId.randomId(), ClientId.randomId()};
+    long index = 0;
+    for(long callId = 0; callId < 6; callId++) {
+      for(ClientId c : clients) {
+        cache.put(c, callId, index++, callId % 3 != 0);
+      }
+    }
+    cache.save(file);
+
+    final CompactRetryCache loaded = new CompactRetryCache(10, 4);
+    loaded.load(file);
+    Assert.assertEquals(cache.getAppliedIndex(), loaded.getAppliedIndex());
+    Assert.assertEquals(clients.length, loaded.getNumClients());
+    for(ClientId c : clients) {
+      for(long callId = 0; callId < 6; callId++) {
+        Assert.assertEquals(cache.get(c, callId), loaded.get(c, callId));
+      }
+    }
+
+    // a missing file is ignored
+    final CompactRetryCache empty = new CompactRetryCache(10, 4);
+    empty.load(new File(dir, "non-existing"));
+    Assert.assertEquals(0, empty.getNumClients());
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.MiniRaftCluster;
+import org.apache.ratis.RaftTestUtil;
+import org.apache.ratis.RaftTestUtil.SimpleMessage;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.grpc.MiniRaftClusterWithGrpc;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.statemachine.SimpleStateMachine4Testing;
+import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.TimeDuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class TestWriteTracer extends BaseTest implements MiniRaftClusterWithGrpc.FactoryGet {
+  {
+    final RaftProperties p = getProperties();
+    p.setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY, SimpleStateMachine4Testing.class, StateMachine.class);
+    RaftServerConfigKeys.Write.Trace.setEnabled(p, true);
+    // log every slow request
+    RaftServerConfigKeys.Write.Trace.setSlowThreshold(p, TimeDuration.valueOf(1, TimeUnit.MILLISECONDS));
+    RaftServerConfigKeys.Write.Trace.setSlowLogInterval(p, TimeDuration.ZERO);
+  }
+
+  @Test
+  public void testWriteTracer() throws Exception {
+    runWithNewCluster(3, this::runTestWriteTracer);
+  }
+
+  void runTestWriteTracer(MiniRaftCluster cluster) throws Exception {
+    final RaftServerImpl leader = RaftTestUtil.waitForLeader(cluster);
+    Assert.assertTrue(leader.getWriteTracer().isEnabled());
+
+    final int numRequests = 10;
+    try (RaftClient client = cluster.createClient(leader.getId())) {
+      for (int i = 0; i < numRequests; i++) {
+        Assert.assertTrue(client.send(new SimpleMessage("m" + i)).isSuccess());
+      }
+    }
+
+    // the trace is finished after the reply is sent
+    final RaftServerMetrics metrics = leader.getRaftServerMetrics();
+    JavaUtils.attemptUntilTrue(() -> metrics.getTimer(RaftServerMetrics.WRITE_TOTAL_TIME).getCount() == numRequests,
+        10, TimeDuration.valueOf(100, TimeUnit.MILLISECONDS), "writeTotalTime", LOG);
+    for (WriteTracer.Stage stage : WriteTracer.Stage.values()) {
+      if (stage != WriteTracer.Stage.RECEIVED) {
+        final String name = String.format(RaftServerMetrics.WRITE_STAGE_TIME, stage.getMetricName());
+        Assert.assertEquals(name, numRequests, metrics.getTimer(name).getCount());
+      }
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.util;
+
+import org.apache.ratis.thirdparty.io.netty.channel.epoll.EpollEventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.nio.NioEventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestNettyUtils {
+  @Test(timeout = 10000)
+  public void testSharedEventLoopGroup() {
+    final NettyUtils.SharedEventLoopGroup a = NettyUtils.SharedEventLoopGroup.acquire("test", 1, false);
+    final NettyUtils.SharedEventLoopGroup b = NettyUtils.SharedEventLoopGroup.acquire("test", 1, false);
+    final NettyUtils.SharedEventLoopGroup c = NettyUtils.SharedEventLoopGroup.acquire("test", 2, false);
+    Assert.assertSame(a, b);
+    Assert.assertNotSame(a, c);
+    Assert.assertTrue(a.get() instanceof NioEventLoopGroup);
+    Assert.assertEquals(NioServerSocketChannel.class, NettyUtils.getServerChannelClass(a.get()));
+
+    // shut down only when it is released by all the users
+    a.release();
+    Assert.assertFalse(b.get().isShuttingDown());
+    b.release();
+    Assert.assertTrue(b.get().isShuttingDown());
+    c.release();
+    try {
+      c.release();
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testEpollFallback() {
+    final NettyUtils.SharedEventLoopGroup epoll = NettyUtils.SharedEventLoopGroup.acquire("test-epoll", 1, true);
+    try {
+      // fall back to NIO when the native transport is not available
+      Assert.assertEquals(NettyUtils.isEpollAvailable(), epoll.get() instanceof EpollEventLoopGroup);
+    } finally {
+      epoll.release();
+    }
+  }
+}